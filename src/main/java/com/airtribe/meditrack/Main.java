@@ -1,11 +1,16 @@
 package com.airtribe.meditrack;
 
+import java.io.File;
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
+import com.airtribe.meditrack.constants.Constants;
 import com.airtribe.meditrack.entity.Appointment;
 import com.airtribe.meditrack.entity.AppointmentStatus;
 import com.airtribe.meditrack.entity.Bill;
@@ -18,8 +23,11 @@ import com.airtribe.meditrack.service.AppointmentService;
 import com.airtribe.meditrack.service.BillingService;
 import com.airtribe.meditrack.service.DoctorService;
 import com.airtribe.meditrack.service.PatientService;
+import com.airtribe.meditrack.util.Checkpointer;
 import com.airtribe.meditrack.util.DateUtil;
+import com.airtribe.meditrack.util.IdGenerator;
 import com.airtribe.meditrack.util.Validator;
+import com.airtribe.meditrack.util.WriteAheadLog;
 
 /**
  * Main application class for MediTrack Clinic Management System.
@@ -30,6 +38,8 @@ public class Main {
     private static PatientService patientService;
     private static AppointmentService appointmentService;
     private static BillingService billingService;
+    private static WriteAheadLog writeAheadLog;
+    private static Checkpointer checkpointer;
     private static Scanner scanner;
     
     /**
@@ -54,14 +64,118 @@ public class Main {
      * Initialize all services.
      */
     private static void initializeServices() {
+        try {
+            IdGenerator.getInstance().enablePersistence(Constants.ID_STATE_FILE);
+        } catch (IOException e) {
+            System.err.println("Could not read ID high-water marks, IDs will not survive a restart: "
+                    + e.getMessage());
+        }
         doctorService = new DoctorService();
-        patientService = new PatientService();
+        try {
+            patientService = new PatientService(Constants.PATIENT_RECORDS_FILE, Constants.PATIENT_CACHE_SIZE);
+        } catch (IOException e) {
+            System.err.println("Could not open the patient record file, keeping patients in memory: "
+                    + e.getMessage());
+            patientService = new PatientService();
+        }
         appointmentService = new AppointmentService(doctorService, patientService);
         billingService = new BillingService(appointmentService);
+        loadSnapshots();
+        recoverFromLog();
         scanner = new Scanner(System.in);
         System.out.println("MediTrack Clinic Management System Initialized");
     }
     
+    /**
+     * Load the binary snapshots saved at the last exit, if any.
+     * Doctors and patients load before appointments and bills, which refer to them.
+     */
+    private static void loadSnapshots() {
+        try {
+            if (new File(Constants.DOCTORS_DAT).exists()) {
+                doctorService.loadSnapshot(Constants.DOCTORS_DAT);
+            }
+            if (new File(Constants.PATIENTS_DAT).exists()) {
+                patientService.loadSnapshot(Constants.PATIENTS_DAT);
+            }
+            if (new File(Constants.APPOINTMENTS_DAT).exists()) {
+                appointmentService.loadSnapshot(Constants.APPOINTMENTS_DAT);
+            }
+            if (new File(Constants.BILLS_DAT).exists()) {
+                billingService.loadSnapshot(Constants.BILLS_DAT);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not load saved data: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Replay changes logged since the last snapshot (after a crash), then log
+     * every further change.
+     */
+    private static void recoverFromLog() {
+        try {
+            writeAheadLog = WriteAheadLog.open(Constants.WAL_FILE, Constants.WAL_GROUP_COMMIT_MILLIS);
+            doctorService.attachLog(writeAheadLog);
+            patientService.attachLog(writeAheadLog);
+            appointmentService.attachLog(writeAheadLog);
+            billingService.attachLog(writeAheadLog);
+            long replayed = writeAheadLog.replay();
+            if (replayed > 0) {
+                System.out.println(String.format("Recovered %d changes from the write-ahead log in %.0f ms",
+                        replayed, writeAheadLog.getReplayMillis()));
+            }
+            checkpointer = Checkpointer.start(writeAheadLog, Main::writeSnapshots,
+                    Constants.CHECKPOINT_LOG_BYTES, Constants.CHECKPOINT_INTERVAL_MILLIS);
+        } catch (IOException e) {
+            System.err.println("Could not open the write-ahead log, changes will not survive a crash: "
+                    + e.getMessage());
+        }
+    }
+    
+    /**
+     * Save every store to its binary snapshot.
+     *
+     * @return true, if every snapshot was saved
+     */
+    private static boolean saveSnapshots() {
+        try {
+            writeSnapshots();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not save data: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    private static void writeSnapshots() throws IOException {
+        doctorService.saveSnapshot(Constants.DOCTORS_DAT);
+        patientService.saveSnapshot(Constants.PATIENTS_DAT);
+        appointmentService.saveSnapshot(Constants.APPOINTMENTS_DAT);
+        billingService.saveSnapshot(Constants.BILLS_DAT);
+    }
+    
+    /**
+     * Save snapshots on exit; once they cover everything, empty the log.
+     */
+    private static void shutdownPersistence() {
+        if (checkpointer != null) {
+            checkpointer.close();
+        }
+        boolean saved = saveSnapshots();
+        if (writeAheadLog == null) {
+            return;
+        }
+        try {
+            if (saved) {
+                writeAheadLog.reset();
+            }
+            writeAheadLog.close();
+        } catch (IOException e) {
+            System.err.println("Could not close the write-ahead log: " + e.getMessage());
+        }
+    }
+    
     /**
      * Main menu display.
      */
@@ -95,6 +209,7 @@ public class Main {
                     reportsMenu();
                     break;
                 case "6":
+                    shutdownPersistence();
                     System.out.println("Thank you for using MediTrack!");
                     scanner.close();
                     System.exit(0);
@@ -232,8 +347,16 @@ public class Main {
         
         if (result != null) {
             System.out.println(result);
-        } else {
+            return;
+        }
+        List<Doctor> matches = doctorService.searchDoctorsByName(query, Constants.NAME_SEARCH_LIMIT);
+        if (matches.isEmpty()) {
             System.out.println("Doctor not found.");
+            return;
+        }
+        System.out.println("No exact match. Closest names:");
+        for (Doctor match : matches) {
+            System.out.println("  " + match.getId() + " - " + match.getName());
         }
     }
     
@@ -305,7 +428,9 @@ public class Main {
             System.out.println("3. Search Patient");
             System.out.println("4. Update Patient");
             System.out.println("5. Add Allergy");
-            System.out.println("6. Back to Main Menu");
+            System.out.println("6. Allergy Alert");
+            System.out.println("7. Search Medical Histories");
+            System.out.println("8. Back to Main Menu");
             System.out.print("Select option: ");
             
             String choice = scanner.nextLine();
@@ -327,6 +452,12 @@ public class Main {
                     addAllergy();
                     break;
                 case "6":
+                    allergyAlert();
+                    break;
+                case "7":
+                    searchMedicalHistories();
+                    break;
+                case "8":
                     return;
                 default:
                     System.out.println("Invalid option. Please try again.");
@@ -402,8 +533,16 @@ public class Main {
         
         if (result != null) {
             System.out.println(result);
-        } else {
+            return;
+        }
+        List<Patient> matches = patientService.searchPatientsByName(query, Constants.NAME_SEARCH_LIMIT);
+        if (matches.isEmpty()) {
             System.out.println("Patient not found.");
+            return;
+        }
+        System.out.println("No exact match. Closest names:");
+        for (Patient match : matches) {
+            System.out.println("  " + match.getId() + " - " + match.getName());
         }
     }
     
@@ -473,6 +612,48 @@ public class Main {
         patientService.addAllergy(patientId, allergy);
     }
     
+    /**
+     * List patients with all or any of some allergies, e.g. before dispensing
+     */
+    private static void allergyAlert() {
+        System.out.println("\n--- Allergy Alert ---");
+        System.out.print("Allergies (comma-separated): ");
+        List<String> allergies = new ArrayList<>();
+        for (String allergy : scanner.nextLine().split(",")) {
+            if (!allergy.trim().isEmpty()) {
+                allergies.add(allergy.trim());
+            }
+        }
+        System.out.print("Match all or any (all/any): ");
+        boolean all = scanner.nextLine().trim().equalsIgnoreCase("all");
+        
+        List<Patient> patients = all ? patientService.getPatientsAllergicToAll(allergies)
+                : patientService.getPatientsAllergicToAny(allergies);
+        System.out.println(patients.size() + " patient(s) allergic to " + (all ? "all" : "any") + " of "
+                + allergies + ":");
+        for (Patient patient : patients) {
+            System.out.println("  " + patient.getId() + " - " + patient.getName() + " " + patient.getAllergies());
+        }
+    }
+    
+    /**
+     * Find patients by words in their medical history
+     */
+    private static void searchMedicalHistories() {
+        System.out.println("\n--- Search Medical Histories ---");
+        System.out.println("Words must all match; use \"quotes\" for phrases, -word to exclude, OR for alternatives.");
+        System.out.print("Query: ");
+        String query = scanner.nextLine();
+        
+        List<Patient> patients = patientService.searchByMedicalHistory(query, Constants.TEXT_SEARCH_LIMIT);
+        if (patients.isEmpty()) {
+            System.out.println("No matching patients.");
+        }
+        for (Patient patient : patients) {
+            System.out.println("  " + patient.getId() + " - " + patient.getName() + ": " + patient.getMedicalHistory());
+        }
+    }
+    
     /**
      * Appointment management menu
      */
@@ -485,7 +666,9 @@ public class Main {
             System.out.println("4. Cancel Appointment");
             System.out.println("5. Complete Appointment");
             System.out.println("6. View Upcoming Appointments");
-            System.out.println("7. Back to Main Menu");
+            System.out.println("7. View Today's Schedule");
+            System.out.println("8. Search Appointment Notes");
+            System.out.println("9. Back to Main Menu");
             System.out.print("Select option: ");
             
             String choice = scanner.nextLine();
@@ -510,6 +693,12 @@ public class Main {
                     viewUpcomingAppointments();
                     break;
                 case "7":
+                    viewTodaysSchedule();
+                    break;
+                case "8":
+                    searchAppointmentNotes();
+                    break;
+                case "9":
                     return;
                 default:
                     System.out.println("Invalid option. Please try again.");
@@ -640,6 +829,41 @@ public class Main {
         }
     }
     
+    /**
+     * View today's schedule
+     */
+    private static void viewTodaysSchedule() {
+        List<Appointment> schedule = appointmentService.getTodaysSchedule();
+        
+        if (schedule.isEmpty()) {
+            System.out.println("No appointments scheduled for today.");
+            return;
+        }
+        
+        System.out.println("\n========== TODAY'S SCHEDULE ==========");
+        for (Appointment apt : schedule) {
+            System.out.println(apt);
+        }
+    }
+    
+    /**
+     * Find appointments by words in their notes
+     */
+    private static void searchAppointmentNotes() {
+        System.out.println("\n--- Search Appointment Notes ---");
+        System.out.println("Words must all match; use \"quotes\" for phrases, -word to exclude, OR for alternatives.");
+        System.out.print("Query: ");
+        String query = scanner.nextLine();
+        
+        List<Appointment> appointments = appointmentService.searchNotes(query, Constants.TEXT_SEARCH_LIMIT);
+        if (appointments.isEmpty()) {
+            System.out.println("No matching appointments.");
+        }
+        for (Appointment apt : appointments) {
+            System.out.println(apt + "\n    Notes: " + apt.getNotes());
+        }
+    }
+    
     /**
      * Billing management menu
      */
@@ -763,7 +987,8 @@ public class Main {
             System.out.println("2. Doctor Analytics");
             System.out.println("3. Financial Reports");
             System.out.println("4. Appointment Statistics");
-            System.out.println("5. Back to Main Menu");
+            System.out.println("5. Population Health");
+            System.out.println("6. Back to Main Menu");
             System.out.print("Select option: ");
             
             String choice = scanner.nextLine();
@@ -782,6 +1007,9 @@ public class Main {
                     appointmentStatistics();
                     break;
                 case "5":
+                    populationHealth();
+                    break;
+                case "6":
                     return;
                 default:
                     System.out.println("Invalid option. Please try again.");
@@ -797,7 +1025,7 @@ public class Main {
         System.out.println("Total Doctors: " + doctorService.getTotalDoctors());
         System.out.println("Total Patients: " + patientService.getTotalPatients());
         System.out.println("Total Appointments: " + appointmentService.getTotalAppointments());
-        System.out.println("Total Bills: " + billingService.getAllBills().size());
+        System.out.println("Total Bills: " + billingService.getTotalBills());
     }
     
     /**
@@ -809,7 +1037,11 @@ public class Main {
         for (Specialization spec : Specialization.values()) {
             double avg = doctorService.getAverageConsultationFee(spec);
             if (avg > 0) {
-                System.out.println(spec + ": Average Fee ₹" + String.format("%.2f", avg));
+                System.out.println(spec + ": Average Fee ₹" + String.format("%.2f", avg)
+                        + " (" + doctorService.countBySpecialization(spec) + " doctors)");
+                for (Doctor doctor : doctorService.getTopDoctorsByRating(spec, 3)) {
+                    System.out.println("    " + doctor.getName() + " - rating " + doctor.getRating());
+                }
             }
         }
     }
@@ -822,8 +1054,23 @@ public class Main {
         System.out.println("Total Revenue (Paid): ₹" + String.format("%.2f", billingService.getTotalRevenue()));
         System.out.println("Outstanding Amount: ₹" + String.format("%.2f", billingService.getOutstandingAmount()));
         System.out.println("Average Bill Amount: ₹" + String.format("%.2f", billingService.getAverageBillAmount()));
-        System.out.println("Paid Bills: " + billingService.getPaidBills().size());
-        System.out.println("Pending Bills: " + billingService.getPendingBills().size());
+        System.out.println("Paid Bills: " + billingService.getPaidBillCount());
+        System.out.println("Pending Bills: " + billingService.getPendingBillCount());
+    }
+    
+    /**
+     * Display patient age bands and BMI categories
+     */
+    private static void populationHealth() {
+        System.out.println("\n========== POPULATION HEALTH ==========");
+        System.out.println("Patients by age:");
+        for (Map.Entry<Integer, Integer> band : patientService.getAgeHistogram(10).entrySet()) {
+            System.out.println(String.format("  %3d-%-3d %d", band.getKey(), band.getKey() + 9, band.getValue()));
+        }
+        System.out.println("Patients by BMI:");
+        for (Map.Entry<String, Integer> category : patientService.getBMICategoryCounts().entrySet()) {
+            System.out.println(String.format("  %-13s %d", category.getKey(), category.getValue()));
+        }
     }
     
     /**
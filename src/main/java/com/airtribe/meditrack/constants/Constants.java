@@ -5,8 +5,9 @@ package com.airtribe.meditrack.constants;
  * Demonstrates static initialization and constant management.
  */
 public class Constants {
-    // Tax rate for billing
-    public static final double TAX_RATE = 0.18;
+    // Tax rate for billing (18% GST); bills use the exact basis-point form
+    public static final int TAX_RATE_BASIS_POINTS = 1800;
+    public static final double TAX_RATE = TAX_RATE_BASIS_POINTS / 10_000.0;
     
     // File paths for persistence
     public static final String PATIENTS_CSV = "data/patients.csv";
@@ -18,6 +19,29 @@ public class Constants {
     public static final String PATIENTS_DAT = "data/patients.dat";
     public static final String DOCTORS_DAT = "data/doctors.dat";
     public static final String APPOINTMENTS_DAT = "data/appointments.dat";
+    public static final String BILLS_DAT = "data/bills.dat";
+    
+    // ID high-water marks, and how many IDs each fsync of that file reserves
+    public static final String ID_STATE_FILE = "data/ids.properties";
+    public static final int ID_BLOCK_SIZE = 1000;
+    
+    // Write-ahead log of store changes since the last snapshot, and its fsync interval
+    public static final String WAL_FILE = "data/meditrack.wal";
+    public static final long WAL_GROUP_COMMIT_MILLIS = 20;
+    
+    // Checkpoint (snapshot and compact the log) when it reaches this size, or this often
+    public static final long CHECKPOINT_LOG_BYTES = 4L * 1024 * 1024;
+    public static final long CHECKPOINT_INTERVAL_MILLIS = 5 * 60 * 1000;
+    
+    // Full patient records live on disk; this many recently used ones are cached
+    public static final String PATIENT_RECORDS_FILE = "data/patients.records";
+    public static final int PATIENT_CACHE_SIZE = 1000;
+    
+    // Name searches without an exact match list up to this many close matches
+    public static final int NAME_SEARCH_LIMIT = 10;
+    
+    // Medical history and appointment note searches list at most this many records
+    public static final int TEXT_SEARCH_LIMIT = 50;
     
     // Application settings
     public static final int MAX_PATIENTS = 1000;
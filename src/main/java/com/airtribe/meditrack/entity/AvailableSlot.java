@@ -0,0 +1,60 @@
+package com.airtribe.meditrack.entity;
+
+import java.time.LocalDateTime;
+
+/**
+ * Immutable free appointment slot offered by a doctor.
+ */
+public final class AvailableSlot {
+    private final String doctorId;
+    private final String doctorName;
+    private final Specialization specialization;
+    private final LocalDateTime start;
+    private final LocalDateTime end;
+
+    /**
+     * Instantiates a new available slot.
+     *
+     * @param doctor the doctor
+     * @param start the slot start
+     * @param end the slot end
+     */
+    public AvailableSlot(Doctor doctor, LocalDateTime start, LocalDateTime end) {
+        this.doctorId = doctor.getId();
+        this.doctorName = doctor.getName();
+        this.specialization = doctor.getSpecialization();
+        this.start = start;
+        this.end = end;
+    }
+
+    public String getDoctorId() {
+        return doctorId;
+    }
+
+    public String getDoctorName() {
+        return doctorName;
+    }
+
+    public Specialization getSpecialization() {
+        return specialization;
+    }
+
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    public LocalDateTime getEnd() {
+        return end;
+    }
+
+    @Override
+    public String toString() {
+        return "AvailableSlot{" +
+                "doctorId='" + doctorId + '\'' +
+                ", doctorName='" + doctorName + '\'' +
+                ", specialization=" + specialization +
+                ", start=" + start +
+                ", end=" + end +
+                '}';
+    }
+}
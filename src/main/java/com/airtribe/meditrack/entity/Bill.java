@@ -1,6 +1,7 @@
 package com.airtribe.meditrack.entity;
 
 import com.airtribe.meditrack.interface_.Payable;
+import com.airtribe.meditrack.util.Money;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 
@@ -15,12 +16,13 @@ public class Bill implements Payable, Serializable {
     private String appointmentId;
     private String patientId;
     private String doctorId;
-    private double consultationFee;
-    private double medicinesCharges;
-    private double testCharges;
-    private double otherCharges;
-    private double taxAmount;
-    private double totalAmount;
+    // All amounts are held in paise (see Money)
+    private long consultationFee;
+    private long medicinesCharges;
+    private long testCharges;
+    private long otherCharges;
+    private long taxAmount;
+    private long totalAmount;
     private LocalDateTime billDate;
     private boolean isPaid;
     
@@ -29,11 +31,11 @@ public class Bill implements Payable, Serializable {
      */
     // Default constructor
     public Bill() {
-        this.medicinesCharges = 0.0;
-        this.testCharges = 0.0;
-        this.otherCharges = 0.0;
-        this.taxAmount = 0.0;
-        this.totalAmount = 0.0;
+        this.medicinesCharges = 0;
+        this.testCharges = 0;
+        this.otherCharges = 0;
+        this.taxAmount = 0;
+        this.totalAmount = 0;
         this.isPaid = false;
         this.billDate = LocalDateTime.now();
     }
@@ -53,10 +55,10 @@ public class Bill implements Payable, Serializable {
         this.appointmentId = appointmentId;
         this.patientId = patientId;
         this.doctorId = doctorId;
-        this.consultationFee = consultationFee;
-        this.medicinesCharges = 0.0;
-        this.testCharges = 0.0;
-        this.otherCharges = 0.0;
+        this.consultationFee = Money.ofRupees(consultationFee);
+        this.medicinesCharges = 0;
+        this.testCharges = 0;
+        this.otherCharges = 0;
         this.billDate = LocalDateTime.now();
         this.isPaid = false;
         calculateTotal();
@@ -83,10 +85,10 @@ public class Bill implements Payable, Serializable {
         this.appointmentId = appointmentId;
         this.patientId = patientId;
         this.doctorId = doctorId;
-        this.consultationFee = consultationFee;
-        this.medicinesCharges = medicinesCharges;
-        this.testCharges = testCharges;
-        this.otherCharges = otherCharges;
+        this.consultationFee = Money.ofRupees(consultationFee);
+        this.medicinesCharges = Money.ofRupees(medicinesCharges);
+        this.testCharges = Money.ofRupees(testCharges);
+        this.otherCharges = Money.ofRupees(otherCharges);
         this.billDate = billDate;
         this.isPaid = false;
         calculateTotal();
@@ -126,46 +128,90 @@ public class Bill implements Payable, Serializable {
     }
     
     public double getConsultationFee() {
+        return Money.toRupees(consultationFee);
+    }
+    
+    public long getConsultationFeePaise() {
         return consultationFee;
     }
     
     public void setConsultationFee(double consultationFee) {
-        this.consultationFee = consultationFee;
+        this.consultationFee = Money.ofRupees(consultationFee);
+        calculateTotal();
+    }
+    
+    public void setConsultationFeePaise(long consultationFeePaise) {
+        this.consultationFee = consultationFeePaise;
         calculateTotal();
     }
     
     public double getMedicinesCharges() {
+        return Money.toRupees(medicinesCharges);
+    }
+    
+    public long getMedicinesChargesPaise() {
         return medicinesCharges;
     }
     
     public void setMedicinesCharges(double medicinesCharges) {
-        this.medicinesCharges = medicinesCharges;
+        this.medicinesCharges = Money.ofRupees(medicinesCharges);
+        calculateTotal();
+    }
+    
+    public void setMedicinesChargesPaise(long medicinesChargesPaise) {
+        this.medicinesCharges = medicinesChargesPaise;
         calculateTotal();
     }
     
     public double getTestCharges() {
+        return Money.toRupees(testCharges);
+    }
+    
+    public long getTestChargesPaise() {
         return testCharges;
     }
     
     public void setTestCharges(double testCharges) {
-        this.testCharges = testCharges;
+        this.testCharges = Money.ofRupees(testCharges);
+        calculateTotal();
+    }
+    
+    public void setTestChargesPaise(long testChargesPaise) {
+        this.testCharges = testChargesPaise;
         calculateTotal();
     }
     
     public double getOtherCharges() {
+        return Money.toRupees(otherCharges);
+    }
+    
+    public long getOtherChargesPaise() {
         return otherCharges;
     }
     
     public void setOtherCharges(double otherCharges) {
-        this.otherCharges = otherCharges;
+        this.otherCharges = Money.ofRupees(otherCharges);
+        calculateTotal();
+    }
+    
+    public void setOtherChargesPaise(long otherChargesPaise) {
+        this.otherCharges = otherChargesPaise;
         calculateTotal();
     }
     
     public double getTaxAmount() {
+        return Money.toRupees(taxAmount);
+    }
+    
+    public long getTaxAmountPaise() {
         return taxAmount;
     }
     
     public double getTotalAmount() {
+        return Money.toRupees(totalAmount);
+    }
+    
+    public long getTotalAmountPaise() {
         return totalAmount;
     }
     
@@ -173,6 +219,10 @@ public class Bill implements Payable, Serializable {
         return billDate;
     }
     
+    public void setBillDate(LocalDateTime billDate) {
+        this.billDate = billDate;
+    }
+    
     public boolean isPaid() {
         return isPaid;
     }
@@ -186,8 +236,8 @@ public class Bill implements Payable, Serializable {
      */
     // Calculate subtotal and total with tax
     private void calculateTotal() {
-        double subtotal = consultationFee + medicinesCharges + testCharges + otherCharges;
-        this.taxAmount = getTaxAmount(subtotal);
+        long subtotal = consultationFee + medicinesCharges + testCharges + otherCharges;
+        this.taxAmount = getTaxPaise(subtotal);
         this.totalAmount = subtotal + taxAmount;
     }
     
@@ -208,11 +258,11 @@ public class Bill implements Payable, Serializable {
                 "billId='" + billId + '\'' +
                 ", appointmentId='" + appointmentId + '\'' +
                 ", patientId='" + patientId + '\'' +
-                ", consultationFee=" + consultationFee +
-                ", medicinesCharges=" + medicinesCharges +
-                ", testCharges=" + testCharges +
-                ", taxAmount=" + String.format("%.2f", taxAmount) +
-                ", totalAmount=" + String.format("%.2f", totalAmount) +
+                ", consultationFee=" + Money.format(consultationFee) +
+                ", medicinesCharges=" + Money.format(medicinesCharges) +
+                ", testCharges=" + Money.format(testCharges) +
+                ", taxAmount=" + Money.format(taxAmount) +
+                ", totalAmount=" + Money.format(totalAmount) +
                 ", isPaid=" + isPaid +
                 '}';
     }
@@ -3,6 +3,8 @@ package com.airtribe.meditrack.entity;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 
+import com.airtribe.meditrack.util.Money;
+
 /**
  * Immutable BillSummary class.
  * Demonstrates immutability pattern for thread-safe billing summaries.
@@ -14,8 +16,9 @@ public final class BillSummary implements Serializable {
     private final String billId;
     private final String patientName;
     private final String doctorName;
-    private final double totalAmount;
-    private final double taxAmount;
+    // Amounts in paise (see Money)
+    private final long totalAmount;
+    private final long taxAmount;
     private final LocalDateTime billDate;
     private final boolean isPaid;
     
@@ -49,10 +52,18 @@ public final class BillSummary implements Serializable {
     }
     
     public double getTotalAmount() {
+        return Money.toRupees(totalAmount);
+    }
+    
+    public long getTotalAmountPaise() {
         return totalAmount;
     }
     
     public double getTaxAmount() {
+        return Money.toRupees(taxAmount);
+    }
+    
+    public long getTaxAmountPaise() {
         return taxAmount;
     }
     
@@ -70,8 +81,8 @@ public final class BillSummary implements Serializable {
                 "billId='" + billId + '\'' +
                 ", patientName='" + patientName + '\'' +
                 ", doctorName='" + doctorName + '\'' +
-                ", totalAmount=" + String.format("%.2f", totalAmount) +
-                ", taxAmount=" + String.format("%.2f", taxAmount) +
+                ", totalAmount=" + Money.format(totalAmount) +
+                ", taxAmount=" + Money.format(taxAmount) +
                 ", billDate=" + billDate +
                 ", isPaid=" + isPaid +
                 '}';
@@ -82,8 +93,8 @@ public final class BillSummary implements Serializable {
         private String billId;
         private String patientName;
         private String doctorName;
-        private double totalAmount;
-        private double taxAmount;
+        private long totalAmount;
+        private long taxAmount;
         private LocalDateTime billDate;
         private boolean isPaid;
         
@@ -103,12 +114,22 @@ public final class BillSummary implements Serializable {
         }
         
         public Builder totalAmount(double totalAmount) {
-            this.totalAmount = totalAmount;
+            this.totalAmount = Money.ofRupees(totalAmount);
+            return this;
+        }
+        
+        public Builder totalAmountPaise(long totalAmountPaise) {
+            this.totalAmount = totalAmountPaise;
             return this;
         }
         
         public Builder taxAmount(double taxAmount) {
-            this.taxAmount = taxAmount;
+            this.taxAmount = Money.ofRupees(taxAmount);
+            return this;
+        }
+        
+        public Builder taxAmountPaise(long taxAmountPaise) {
+            this.taxAmount = taxAmountPaise;
             return this;
         }
         
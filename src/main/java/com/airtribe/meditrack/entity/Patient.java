@@ -1,17 +1,31 @@
 package com.airtribe.meditrack.entity;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import com.airtribe.meditrack.util.TermDictionary;
+
 /**
  * Patient class extending Person and implementing Cloneable.
  * Demonstrates inheritance, deep cloning, and collection handling.
+ * Allergies are held as codes from one dictionary shared by all patients,
+ * in an array that is replaced rather than changed, so it can be read
+ * while another thread adds an allergy.
  */
 public class Patient extends Person implements Cloneable {
     private static final long serialVersionUID = 1L;
+    private static final TermDictionary ALLERGY_DICTIONARY = new TermDictionary();
+    private static final int[] NO_ALLERGIES = new int[0];
     
     private String medicalHistory;
-    private List<String> allergies;
+    // Codes are only meaningful in this JVM, so serialization writes the allergy names
+    private transient volatile int[] allergyCodes;
+    // Computed on first use, NaN until then and again after height or weight change
+    private transient volatile double cachedBmi = Double.NaN;
     private double height;
     private double weight;
     private String bloodType;
@@ -23,7 +37,7 @@ public class Patient extends Person implements Cloneable {
     // Default constructor
     public Patient() {
         super();
-        this.allergies = new ArrayList<>();
+        this.allergyCodes = NO_ALLERGIES;
         this.medicalHistory = "";
         this.height = 0.0;
         this.weight = 0.0;
@@ -46,7 +60,7 @@ public class Patient extends Person implements Cloneable {
     public Patient(String id, String name, String email, String phone, int age, 
                    String gender, String address) {
         super(id, name, email, phone, age, gender, address);
-        this.allergies = new ArrayList<>();
+        this.allergyCodes = NO_ALLERGIES;
         this.medicalHistory = "";
         this.height = 0.0;
         this.weight = 0.0;
@@ -78,7 +92,7 @@ public class Patient extends Person implements Cloneable {
                    String bloodType, String emergencyContact) {
         super(id, name, email, phone, age, gender, address);
         this.medicalHistory = medicalHistory;
-        this.allergies = allergies != null ? new ArrayList<>(allergies) : new ArrayList<>();
+        setAllergies(allergies);
         this.height = height;
         this.weight = weight;
         this.bloodType = bloodType;
@@ -94,18 +108,74 @@ public class Patient extends Person implements Cloneable {
         this.medicalHistory = medicalHistory;
     }
     
+    /**
+     * Get the allergies.
+     *
+     * @return a copy of the allergies, in the order they were added
+     */
     public List<String> getAllergies() {
+        int[] codes = allergyCodes;
+        List<String> allergies = new ArrayList<>(codes.length);
+        for (int code : codes) {
+            allergies.add(ALLERGY_DICTIONARY.termOf(code));
+        }
         return allergies;
     }
     
     public void setAllergies(List<String> allergies) {
-        this.allergies = allergies != null ? new ArrayList<>(allergies) : new ArrayList<>();
+        this.allergyCodes = NO_ALLERGIES;
+        if (allergies != null) {
+            for (String allergy : allergies) {
+                addAllergy(allergy);
+            }
+        }
     }
     
     public void addAllergy(String allergy) {
-        if (!allergies.contains(allergy)) {
-            allergies.add(allergy);
+        int code = ALLERGY_DICTIONARY.intern(allergy);
+        int[] codes = allergyCodes;
+        for (int existing : codes) {
+            if (existing == code) {
+                return;
+            }
+        }
+        int[] grown = Arrays.copyOf(codes, codes.length + 1);
+        grown[codes.length] = code;
+        allergyCodes = grown;
+    }
+    
+    /**
+     * Check for an allergy.
+     *
+     * @param allergy the allergy
+     * @return true, if the patient has it
+     */
+    public boolean hasAllergy(String allergy) {
+        int code = ALLERGY_DICTIONARY.codeOf(allergy);
+        for (int existing : allergyCodes) {
+            if (existing == code) {
+                return true;
+            }
         }
+        return false;
+    }
+    
+    /**
+     * Get the allergies as codes from getAllergyDictionary().
+     *
+     * @return the codes; callers must not modify the array
+     */
+    public int[] getAllergyCodes() {
+        return allergyCodes;
+    }
+    
+    /**
+     * Get the dictionary that allergy codes of all patients come from.
+     *
+     * @return the allergy dictionary
+     */
+    public static TermDictionary getAllergyDictionary() {
+        return ALLERGY_DICTIONARY;
     }
     
     public double getHeight() {
@@ -114,6 +184,7 @@ public class Patient extends Person implements Cloneable {
     
     public void setHeight(double height) {
         this.height = height;
+        this.cachedBmi = Double.NaN;
     }
     
     public double getWeight() {
@@ -122,6 +193,7 @@ public class Patient extends Person implements Cloneable {
     
     public void setWeight(double weight) {
         this.weight = weight;
+        this.cachedBmi = Double.NaN;
     }
     
     public String getBloodType() {
@@ -141,9 +213,14 @@ public class Patient extends Person implements Cloneable {
     }
     
     public double getBMI() {
-        if (height == 0) return 0;
-        double heightInMeters = height / 100;
-        return weight / (heightInMeters * heightInMeters);
+        double bmi = cachedBmi;
+        if (Double.isNaN(bmi)) {
+            if (height == 0) return 0;
+            double heightInMeters = height / 100;
+            bmi = weight / (heightInMeters * heightInMeters);
+            cachedBmi = bmi;
+        }
+        return bmi;
     }
     
     // Polymorphic method override
@@ -155,10 +232,20 @@ public class Patient extends Person implements Cloneable {
     // Deep clone implementation
     @Override
     public Patient clone() throws CloneNotSupportedException {
-        Patient cloned = (Patient) super.clone();
-        // Deep copy the allergies list
-        cloned.allergies = new ArrayList<>(this.allergies);
-        return cloned;
+        // The allergy codes array is never changed in place, so sharing it is a deep copy
+        return (Patient) super.clone();
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(getAllergies());
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        setAllergies((List<String>) in.readObject());
+        cachedBmi = Double.NaN;
     }
     
     @Override
@@ -1,5 +1,7 @@
 package com.airtribe.meditrack.interface_;
 
+import com.airtribe.meditrack.util.Money;
+
 /**
  * Interface for entities that can generate bills/payments.
  * Demonstrates polymorphic behavior for billing.
@@ -27,6 +29,16 @@ public interface Payable {
      * @return the tax amount
      */
     default double getTaxAmount(double amount) {
-        return amount * 0.18; // 18% GST
+        return Money.toRupees(getTaxPaise(Money.ofRupees(amount))); // 18% GST
+    }
+    
+    /**
+     * Get tax amount in paise, rounded half-up to the paisa.
+     *
+     * @param amountPaise the amount in paise
+     * @return the tax amount in paise
+     */
+    default long getTaxPaise(long amountPaise) {
+        return Money.taxOn(amountPaise);
     }
 }
@@ -0,0 +1,165 @@
+package com.airtribe.meditrack.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.airtribe.meditrack.entity.Patient;
+import com.airtribe.meditrack.util.StoreIndex;
+
+/**
+ * Patients by allergy, as one bitmap per allergy code (see
+ * Patient.getAllergyDictionary()) over patient ordinals. Registered on the
+ * patient store as an index, so it is kept in step by every add, update and
+ * delete, and "allergic to all of" and "allergic to any of" queries across
+ * the whole patient base are word-at-a-time AND and OR of bitmaps.
+ * Ordinals of removed patients are reused, so the bitmaps stay as dense as
+ * the patient base.
+ */
+public class AllergyIndex implements StoreIndex<Patient> {
+    private static final int[] NO_CODES = new int[0];
+
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<BitSet> patientsByCode = new ArrayList<>();
+    // Per ordinal: the patient ID and the allergy codes it was filed under, null when free
+    private String[] patientIds = new String[64];
+    private int[][] filedCodes = new int[64][];
+    private int ordinalCount;
+    private int[] freeOrdinals = new int[16];
+    private int freeCount;
+
+    @Override
+    public synchronized void put(String patientId, Patient patient) {
+        int[] codes = patient.getAllergyCodes();
+        Integer ordinal = ordinals.get(patientId);
+        if (ordinal == null) {
+            if (codes.length == 0) {
+                return;
+            }
+            ordinal = allocate(patientId);
+        }
+        for (int code : filedCodes[ordinal]) {
+            patientsByCode.get(code).clear(ordinal);
+        }
+        for (int code : codes) {
+            while (patientsByCode.size() <= code) {
+                patientsByCode.add(new BitSet());
+            }
+            patientsByCode.get(code).set(ordinal);
+        }
+        filedCodes[ordinal] = codes;
+    }
+
+    @Override
+    public synchronized void remove(String patientId) {
+        Integer ordinal = ordinals.remove(patientId);
+        if (ordinal == null) {
+            return;
+        }
+        for (int code : filedCodes[ordinal]) {
+            patientsByCode.get(code).clear(ordinal);
+        }
+        patientIds[ordinal] = null;
+        filedCodes[ordinal] = null;
+        if (freeCount == freeOrdinals.length) {
+            freeOrdinals = Arrays.copyOf(freeOrdinals, freeCount * 2);
+        }
+        freeOrdinals[freeCount++] = ordinal;
+    }
+
+    @Override
+    public synchronized void clear() {
+        ordinals.clear();
+        patientsByCode.clear();
+        patientIds = new String[64];
+        filedCodes = new int[64][];
+        ordinalCount = 0;
+        freeCount = 0;
+    }
+
+    /**
+     * Get the IDs of the patients with every one of the given allergies.
+     *
+     * @param allergies the allergies
+     * @return the patient IDs, or none if no allergies are given
+     */
+    public synchronized List<String> withAll(Collection<String> allergies) {
+        BitSet matches = null;
+        for (String allergy : allergies) {
+            BitSet patients = patientsWith(allergy);
+            if (patients == null) {
+                return new ArrayList<>();
+            }
+            if (matches == null) {
+                matches = (BitSet) patients.clone();
+            } else {
+                matches.and(patients);
+            }
+        }
+        return idsOf(matches);
+    }
+
+    /**
+     * Get the IDs of the patients with at least one of the given allergies.
+     *
+     * @param allergies the allergies
+     * @return the patient IDs
+     */
+    public synchronized List<String> withAny(Collection<String> allergies) {
+        BitSet matches = new BitSet();
+        for (String allergy : allergies) {
+            BitSet patients = patientsWith(allergy);
+            if (patients != null) {
+                matches.or(patients);
+            }
+        }
+        return idsOf(matches);
+    }
+
+    /**
+     * Count the patients with an allergy.
+     *
+     * @param allergy the allergy
+     * @return the count
+     */
+    public synchronized int count(String allergy) {
+        BitSet patients = patientsWith(allergy);
+        return patients != null ? patients.cardinality() : 0;
+    }
+
+    private BitSet patientsWith(String allergy) {
+        int code = Patient.getAllergyDictionary().codeOf(allergy);
+        return code >= 0 && code < patientsByCode.size() ? patientsByCode.get(code) : null;
+    }
+
+    private List<String> idsOf(BitSet matches) {
+        List<String> ids = new ArrayList<>(matches != null ? matches.cardinality() : 0);
+        if (matches != null) {
+            for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+                ids.add(patientIds[ordinal]);
+            }
+        }
+        return ids;
+    }
+
+    private int allocate(String patientId) {
+        int ordinal;
+        if (freeCount > 0) {
+            ordinal = freeOrdinals[--freeCount];
+        } else {
+            if (ordinalCount == patientIds.length) {
+                patientIds = Arrays.copyOf(patientIds, ordinalCount * 2);
+                filedCodes = Arrays.copyOf(filedCodes, ordinalCount * 2);
+            }
+            ordinal = ordinalCount++;
+        }
+        patientIds[ordinal] = patientId;
+        filedCodes[ordinal] = NO_CODES;
+        ordinals.put(patientId, ordinal);
+        return ordinal;
+    }
+}
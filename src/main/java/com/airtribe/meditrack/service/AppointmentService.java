@@ -1,15 +1,36 @@
 package com.airtribe.meditrack.service;
 
+import java.io.IOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
 
+import com.airtribe.meditrack.constants.Constants;
 import com.airtribe.meditrack.entity.Appointment;
 import com.airtribe.meditrack.entity.AppointmentStatus;
 import com.airtribe.meditrack.entity.Doctor;
 import com.airtribe.meditrack.entity.Patient;
 import com.airtribe.meditrack.exception.AppointmentNotFoundException;
+import com.airtribe.meditrack.util.CSVBinder;
+import com.airtribe.meditrack.util.CSVReader;
+import com.airtribe.meditrack.util.CSVRecord;
+import com.airtribe.meditrack.util.ConcurrentDataStore;
 import com.airtribe.meditrack.util.DataStore;
+import com.airtribe.meditrack.util.FullTextIndex;
+import com.airtribe.meditrack.util.HashIndex;
 import com.airtribe.meditrack.util.IdGenerator;
+import com.airtribe.meditrack.util.OrderedIndex;
+import com.airtribe.meditrack.util.ParallelCSVReader;
+import com.airtribe.meditrack.util.Snapshots;
+import com.airtribe.meditrack.util.StripedLock;
+import com.airtribe.meditrack.util.WriteAheadLog;
 
 /**
  * Service class for managing appointments.
@@ -17,9 +38,18 @@ import com.airtribe.meditrack.util.IdGenerator;
  */
 public class AppointmentService {
     private DataStore<Appointment> appointmentStore;
+    private HashIndex<Appointment, String> appointmentsByPatient;
+    private HashIndex<Appointment, String> appointmentsByDoctor;
+    private HashIndex<Appointment, AppointmentStatus> appointmentsByStatus;
+    private OrderedIndex<Appointment, LocalDateTime> activeByTime;
+    private OrderedIndex<Appointment, DoctorTimeKey> activeByDoctorTime;
+    private FullTextIndex<Appointment> notesText;
     private DoctorService doctorService;
     private PatientService patientService;
     private IdGenerator idGenerator;
+    // Bookings for one doctor are serialized; different doctors rarely share a stripe
+    private final StripedLock bookingLocks = new StripedLock();
+    private AvailabilityService availabilityService;
     
     /**
      * Instantiates a new appointment service.
@@ -28,10 +58,21 @@ public class AppointmentService {
      * @param patientService the patient service
      */
     public AppointmentService(DoctorService doctorService, PatientService patientService) {
-        this.appointmentStore = new DataStore<>();
+        this.appointmentStore = new ConcurrentDataStore<>();
+        this.appointmentsByPatient = appointmentStore.addHashIndex("patientId", Appointment::getPatientId);
+        this.appointmentsByDoctor = appointmentStore.addHashIndex("doctorId", Appointment::getDoctorId);
+        this.appointmentsByStatus = appointmentStore.addHashIndex("status", Appointment::getStatus);
+        // Time-ordered views leave out cancelled appointments
+        this.activeByTime = appointmentStore.addOrderedIndex("activeTime",
+                apt -> apt.isCancelled() ? null : apt.getAppointmentDateTime());
+        this.activeByDoctorTime = appointmentStore.addOrderedIndex("activeDoctorTime",
+                apt -> apt.isCancelled() || apt.getAppointmentDateTime() == null ? null
+                        : new DoctorTimeKey(apt.getDoctorId(), apt.getAppointmentDateTime()));
+        this.notesText = appointmentStore.addIndex("notes", new FullTextIndex<>(Appointment::getNotes));
         this.doctorService = doctorService;
         this.patientService = patientService;
         this.idGenerator = IdGenerator.getInstance();
+        this.availabilityService = new AvailabilityService(doctorService);
     }
     
     /**
@@ -56,12 +97,24 @@ public class AppointmentService {
             throw new AppointmentNotFoundException("Invalid doctor or patient ID");
         }
         
-        String appointmentId = idGenerator.generateAppointmentId();
-        Appointment appointment = new Appointment(appointmentId, patientId, doctorId, 
-                appointmentDateTime, reason);
-        appointment.setConsultationFee(doctor.getConsultationFee());
+        String appointmentId;
+        Appointment appointment;
+        Lock lock = bookingLocks.get(doctorId);
+        lock.lock();
+        try {
+            if (hasConflict(doctorId, appointmentDateTime, null)) {
+                throw new AppointmentNotFoundException("Doctor already has an appointment in this slot");
+            }
+            appointmentId = idGenerator.generateAppointmentId();
+            appointment = new Appointment(appointmentId, patientId, doctorId, 
+                    appointmentDateTime, reason);
+            appointment.setConsultationFee(doctor.getConsultationFee());
+            appointmentStore.add(appointmentId, appointment);
+            refreshAvailability(doctorId, appointmentDateTime);
+        } finally {
+            lock.unlock();
+        }
         
-        appointmentStore.add(appointmentId, appointment);
         System.out.println("Appointment created: " + appointmentId + " - " + patient.getName() + 
                 " with Dr. " + doctor.getName());
         return appointment;
@@ -98,7 +151,7 @@ public class AppointmentService {
      * @return the appointments by patient id
      */
     public List<Appointment> getAppointmentsByPatientId(String patientId) {
-        return appointmentStore.search(apt -> apt.getPatientId().equals(patientId));
+        return appointmentStore.findBy(appointmentsByPatient, patientId);
     }
     
     /**
@@ -108,7 +161,7 @@ public class AppointmentService {
      * @return the appointments by doctor id
      */
     public List<Appointment> getAppointmentsByDoctorId(String doctorId) {
-        return appointmentStore.search(apt -> apt.getDoctorId().equals(doctorId));
+        return appointmentStore.findBy(appointmentsByDoctor, doctorId);
     }
     
     /**
@@ -120,6 +173,7 @@ public class AppointmentService {
     public void confirmAppointment(String appointmentId) throws AppointmentNotFoundException {
         Appointment appointment = getAppointmentById(appointmentId);
         appointment.setStatus(AppointmentStatus.CONFIRMED);
+        appointmentStore.update(appointmentId, appointment);
         System.out.println("Appointment confirmed: " + appointmentId);
     }
     
@@ -134,7 +188,15 @@ public class AppointmentService {
 		if (appointment.getStatus() != null && appointment.getStatus().equals(AppointmentStatus.COMPLETED)) {
 			throw new AppointmentNotFoundException("Appointment is completed, cannot be cancelled", appointmentId);
 		}
-		appointment.setStatus(AppointmentStatus.CANCELLED);
+		Lock lock = bookingLocks.get(appointment.getDoctorId());
+		lock.lock();
+		try {
+			appointment.setStatus(AppointmentStatus.CANCELLED);
+			appointmentStore.update(appointmentId, appointment);
+			refreshAvailability(appointment.getDoctorId(), appointment.getAppointmentDateTime());
+		} finally {
+			lock.unlock();
+		}
 		System.out.println("Appointment cancelled: " + appointmentId);
 	}
     
@@ -152,9 +214,21 @@ public class AppointmentService {
         if (notes != null && !notes.isEmpty()) {
             appointment.setNotes(notes);
         }
+        appointmentStore.update(appointmentId, appointment);
         System.out.println("Appointment completed: " + appointmentId);
     }
     
+    /**
+     * Search appointment notes, with the query syntax of FullTextIndex.search.
+     *
+     * @param query the query
+     * @param limit the maximum number of appointments
+     * @return the list
+     */
+    public List<Appointment> searchNotes(String query, int limit) {
+        return appointmentStore.resolve(notesText.search(query, limit));
+    }
+    
     /**
      * Get appointments by status.
      *
@@ -162,7 +236,7 @@ public class AppointmentService {
      * @return the appointments by status
      */
     public List<Appointment> getAppointmentsByStatus(AppointmentStatus status) {
-        return appointmentStore.search(apt -> apt.getStatus() == status);
+        return appointmentStore.findBy(appointmentsByStatus, status);
     }
     
     /**
@@ -171,10 +245,51 @@ public class AppointmentService {
      * @return the upcoming appointments
      */
     public List<Appointment> getUpcomingAppointments() {
-        LocalDateTime now = LocalDateTime.now();
-        return appointmentStore.search(apt -> 
-            apt.getAppointmentDateTime().isAfter(now) && 
-            apt.getStatus() != AppointmentStatus.CANCELLED);
+        return getUpcomingAppointments(Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Get the next upcoming (non-cancelled) appointments in chronological order.
+     *
+     * @param limit the maximum number of appointments
+     * @return the upcoming appointments
+     */
+    public List<Appointment> getUpcomingAppointments(int limit) {
+        return appointmentStore.resolve(activeByTime.range(LocalDateTime.now(), false, null, false, limit));
+    }
+    
+    /**
+     * Get non-cancelled appointments in [from, to), in chronological order.
+     *
+     * @param from the inclusive start
+     * @param to the exclusive end
+     * @return the appointments between
+     */
+    public List<Appointment> getAppointmentsBetween(LocalDateTime from, LocalDateTime to) {
+        return appointmentStore.findRange(activeByTime, from, to);
+    }
+    
+    /**
+     * Get today's non-cancelled appointments, in chronological order.
+     *
+     * @return the todays schedule
+     */
+    public List<Appointment> getTodaysSchedule() {
+        LocalDate today = LocalDate.now();
+        return getAppointmentsBetween(today.atStartOfDay(), today.plusDays(1).atStartOfDay());
+    }
+    
+    /**
+     * Get the next upcoming appointments for a doctor, in chronological order.
+     *
+     * @param doctorId the doctor id
+     * @param limit the maximum number of appointments
+     * @return the next appointments for doctor
+     */
+    public List<Appointment> getNextAppointmentsForDoctor(String doctorId, int limit) {
+        return appointmentStore.resolve(activeByDoctorTime.range(
+                new DoctorTimeKey(doctorId, LocalDateTime.now()), false,
+                new DoctorTimeKey(doctorId, LocalDateTime.MAX), true, limit));
     }
     
     /**
@@ -193,9 +308,7 @@ public class AppointmentService {
      * @return the doctor appointment count
      */
     public int getDoctorAppointmentCount(String doctorId) {
-        return (int) appointmentStore.getAll().stream()
-                .filter(apt -> apt.getDoctorId().equals(doctorId))
-                .count();
+        return appointmentsByDoctor.count(doctorId);
     }
     
     /**
@@ -224,7 +337,239 @@ public class AppointmentService {
     public void rescheduleAppointment(String appointmentId, LocalDateTime newDateTime) 
             throws AppointmentNotFoundException {
         Appointment appointment = getAppointmentById(appointmentId);
-        appointment.setAppointmentDateTime(newDateTime);
+        Lock lock = bookingLocks.get(appointment.getDoctorId());
+        lock.lock();
+        try {
+            if (hasConflict(appointment.getDoctorId(), newDateTime, appointmentId)) {
+                throw new AppointmentNotFoundException("Doctor already has an appointment in this slot",
+                        appointmentId);
+            }
+            LocalDateTime oldDateTime = appointment.getAppointmentDateTime();
+            appointment.setAppointmentDateTime(newDateTime);
+            appointmentStore.update(appointmentId, appointment);
+            refreshAvailability(appointment.getDoctorId(), oldDateTime);
+            refreshAvailability(appointment.getDoctorId(), newDateTime);
+        } finally {
+            lock.unlock();
+        }
         System.out.println("Appointment rescheduled: " + appointmentId);
     }
+    
+    /**
+     * Check whether a doctor is free for a slot starting at the given time.
+     *
+     * @param doctorId the doctor id
+     * @param dateTime the slot start
+     * @return true, if no active appointment overlaps the slot
+     */
+    public boolean isSlotAvailable(String doctorId, LocalDateTime dateTime) {
+        return !hasConflict(doctorId, dateTime, null);
+    }
+    
+    /**
+     * Bulk-load appointments exported earlier, keeping their IDs and status.
+     * Thread-safe, so batches from a parallel import can be fed in concurrently.
+     * The source is trusted: doctors and patients are not looked up and slots
+     * are not checked for overlaps. Availability is refreshed once per doctor-day.
+     *
+     * @param appointments the appointments
+     */
+    public void importAppointments(List<Appointment> appointments) {
+        Map<String, Set<LocalDate>> touchedDays = new HashMap<>();
+        for (Appointment appointment : appointments) {
+            appointmentStore.add(appointment.getAppointmentId(), appointment);
+            if (appointment.getAppointmentDateTime() != null) {
+                touchedDays.computeIfAbsent(appointment.getDoctorId(), id -> new HashSet<>())
+                        .add(appointment.getAppointmentDateTime().toLocalDate());
+            }
+        }
+        for (Map.Entry<String, Set<LocalDate>> entry : touchedDays.entrySet()) {
+            Lock lock = bookingLocks.get(entry.getKey());
+            lock.lock();
+            try {
+                for (LocalDate date : entry.getValue()) {
+                    refreshAvailability(entry.getKey(), date.atStartOfDay());
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+    
+    /**
+     * Import an appointment export in parallel. Rows are bound with
+     * CSVSchemas.APPOINTMENT: by the header's column names when the file starts
+     * with a header, otherwise in the schema's column order (appointmentId,
+     * patientId, doctorId, dateTime, reason, status, notes, consultationFee).
+     *
+     * @param filePath the file path
+     * @param parallelism the number of parser threads
+     * @return the number of appointments imported
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public long importFromCSV(String filePath, int parallelism) throws IOException {
+        final CSVBinder.Mapping<Appointment> mapping;
+        try (CSVReader reader = CSVReader.open(filePath)) {
+            CSVRecord first = reader.next();
+            mapping = first != null && CSVSchemas.APPOINTMENT.isHeader(first)
+                    ? CSVSchemas.APPOINTMENT.forHeader(first)
+                    : CSVSchemas.APPOINTMENT.defaultMapping();
+        }
+        final LongAdder imported = new LongAdder();
+        ParallelCSVReader.read(filePath, parallelism, ParallelCSVReader.DEFAULT_BATCH_SIZE,
+                record -> record.length(0) == 0 || CSVSchemas.APPOINTMENT.isHeader(record)
+                        ? null : mapping.bind(record),
+                batch -> {
+                    importAppointments(batch);
+                    imported.add(batch.size());
+                });
+        return imported.sum();
+    }
+    
+    /**
+     * Save all appointments to a binary snapshot (see Snapshots).
+     *
+     * @param filePath the file path
+     * @return the number of appointments saved
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public int saveSnapshot(String filePath) throws IOException {
+        return Snapshots.save(filePath, appointmentStore.getAll(), SnapshotCodecs.APPOINTMENT);
+    }
+    
+    /**
+     * Load appointments from a binary snapshot, replacing any with the same ID.
+     *
+     * @param filePath the file path
+     * @return the number of appointments loaded
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public int loadSnapshot(String filePath) throws IOException {
+        List<Appointment> appointments = Snapshots.load(filePath, SnapshotCodecs.APPOINTMENT);
+        importAppointments(appointments);
+        return appointments.size();
+    }
+    
+    /**
+     * Log every change to the appointment store in a write-ahead log, and have
+     * replay() restore them along with the affected days' availability.
+     * Attach after loading the snapshot.
+     *
+     * @param log the write-ahead log
+     */
+    public void attachLog(WriteAheadLog log) {
+        log.attach("appointments", appointmentStore, SnapshotCodecs.APPOINTMENT, (before, after) -> {
+            if (before != null) {
+                refreshAvailabilityLocked(before.getDoctorId(), before.getAppointmentDateTime());
+            }
+            if (after != null) {
+                refreshAvailabilityLocked(after.getDoctorId(), after.getAppointmentDateTime());
+            }
+        });
+    }
+    
+    /**
+     * Recompute a doctor's availability for a day under the doctor's booking lock.
+     *
+     * @param doctorId the doctor id
+     * @param dateTime any time on the affected day
+     */
+    private void refreshAvailabilityLocked(String doctorId, LocalDateTime dateTime) {
+        Lock lock = bookingLocks.get(doctorId);
+        lock.lock();
+        try {
+            refreshAvailability(doctorId, dateTime);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Get the availability service kept in sync with this service's bookings.
+     *
+     * @return the availability service
+     */
+    public AvailabilityService getAvailabilityService() {
+        return availabilityService;
+    }
+    
+    /**
+     * Recompute a doctor's availability bitmap for the day of the given time
+     * from that day's active appointments. Callers hold the doctor's booking lock.
+     *
+     * @param doctorId the doctor id
+     * @param dateTime any time on the affected day
+     */
+    private void refreshAvailability(String doctorId, LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return;
+        }
+        LocalDate date = dateTime.toLocalDate();
+        List<String> ids = activeByDoctorTime.range(
+                new DoctorTimeKey(doctorId, date.atStartOfDay()), true,
+                new DoctorTimeKey(doctorId, date.plusDays(1).atStartOfDay()), false, Integer.MAX_VALUE);
+        List<LocalDateTime> starts = new ArrayList<>(ids.size());
+        for (Appointment apt : appointmentStore.resolve(ids)) {
+            starts.add(apt.getAppointmentDateTime());
+        }
+        availabilityService.updateDay(doctorId, date, starts);
+    }
+    
+    /**
+     * Slots all last APPOINTMENT_SLOT_DURATION, so two of them overlap exactly when
+     * their starts are less than one duration apart: a single range probe on the
+     * (doctor, time) index answers it in O(log n). Callers hold the doctor's booking lock.
+     *
+     * @param doctorId the doctor id
+     * @param dateTime the slot start
+     * @param ignoredAppointmentId appointment to disregard (the one being rescheduled), may be null
+     * @return true, if another active appointment overlaps
+     */
+    private boolean hasConflict(String doctorId, LocalDateTime dateTime, String ignoredAppointmentId) {
+        if (dateTime == null) {
+            return false;
+        }
+        List<String> overlapping = activeByDoctorTime.range(
+                new DoctorTimeKey(doctorId, dateTime.minusMinutes(Constants.APPOINTMENT_SLOT_DURATION)), false,
+                new DoctorTimeKey(doctorId, dateTime.plusMinutes(Constants.APPOINTMENT_SLOT_DURATION)), false, 2);
+        for (String id : overlapping) {
+            if (!id.equals(ignoredAppointmentId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Index key ordering appointments by doctor, then by time.
+     */
+    private static final class DoctorTimeKey implements Comparable<DoctorTimeKey> {
+        private final String doctorId;
+        private final LocalDateTime dateTime;
+        
+        private DoctorTimeKey(String doctorId, LocalDateTime dateTime) {
+            this.doctorId = doctorId;
+            this.dateTime = dateTime;
+        }
+        
+        @Override
+        public int compareTo(DoctorTimeKey other) {
+            int byDoctor = doctorId.compareTo(other.doctorId);
+            return byDoctor != 0 ? byDoctor : dateTime.compareTo(other.dateTime);
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            
+            DoctorTimeKey that = (DoctorTimeKey) o;
+            return doctorId.equals(that.doctorId) && dateTime.equals(that.dateTime);
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * doctorId.hashCode() + dateTime.hashCode();
+        }
+    }
 }
@@ -0,0 +1,197 @@
+package com.airtribe.meditrack.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.airtribe.meditrack.constants.Constants;
+import com.airtribe.meditrack.entity.AvailableSlot;
+import com.airtribe.meditrack.entity.Doctor;
+import com.airtribe.meditrack.entity.Specialization;
+
+/**
+ * Service answering slot-availability queries across doctors and specializations.
+ * Keeps one bitmap per doctor per day (bit i set = slot i occupied), where the
+ * clinic day is cut into APPOINTMENT_SLOT_DURATION slots between opening and
+ * closing hour. Bitmaps are refreshed by AppointmentService on book, cancel and
+ * reschedule, so queries never touch appointments.
+ */
+public class AvailabilityService {
+    public static final int SLOTS_PER_DAY = (Constants.CLINIC_CLOSING_HOUR - Constants.CLINIC_OPENING_HOUR) * 60
+            / Constants.APPOINTMENT_SLOT_DURATION;
+    private static final long ALL_SLOTS = SLOTS_PER_DAY == 64 ? -1L : (1L << SLOTS_PER_DAY) - 1;
+
+    static {
+        if (SLOTS_PER_DAY > 64) {
+            throw new ExceptionInInitializerError("Clinic day does not fit a 64-slot bitmap");
+        }
+    }
+
+    private final DoctorService doctorService;
+    // doctorId -> (epoch day -> occupied slot bitmap); days without bookings are absent
+    private final Map<String, Map<Long, Long>> occupied;
+
+    /**
+     * Instantiates a new availability service.
+     *
+     * @param doctorService the doctor service
+     */
+    public AvailabilityService(DoctorService doctorService) {
+        this.doctorService = doctorService;
+        this.occupied = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Rebuild one doctor-day bitmap from the starts of that day's active appointments.
+     * Called by AppointmentService while it holds the doctor's booking lock.
+     *
+     * @param doctorId the doctor id
+     * @param date the date
+     * @param appointmentStarts the appointment starts on that date
+     */
+    void updateDay(String doctorId, LocalDate date, List<LocalDateTime> appointmentStarts) {
+        long bits = 0L;
+        for (LocalDateTime start : appointmentStarts) {
+            bits |= occupiedMask(start);
+        }
+        Map<Long, Long> days = occupied.computeIfAbsent(doctorId, id -> new ConcurrentHashMap<>());
+        if (bits == 0L) {
+            days.remove(date.toEpochDay());
+        } else {
+            days.put(date.toEpochDay(), bits);
+        }
+    }
+
+    /**
+     * Get free slots for one doctor on one date.
+     *
+     * @param doctorId the doctor id
+     * @param date the date
+     * @return the free slots, in time order
+     */
+    public List<AvailableSlot> getFreeSlots(String doctorId, LocalDate date) {
+        List<AvailableSlot> results = new ArrayList<>();
+        Doctor doctor = doctorService.getDoctorById(doctorId);
+        if (doctor != null) {
+            long free = freeMask(doctorId, date, null);
+            for (int slot = 0; slot < SLOTS_PER_DAY; slot++) {
+                if ((free & (1L << slot)) != 0) {
+                    results.add(toSlot(doctor, date, slot));
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Find the earliest free slot with any doctor of a specialization.
+     *
+     * @param specialization the specialization
+     * @param from the earliest acceptable start
+     * @param days how many days ahead to look (including the day of from)
+     * @return the earliest available slot, or null if none
+     */
+    public AvailableSlot findEarliestAvailable(Specialization specialization, LocalDateTime from, int days) {
+        List<AvailableSlot> best = findAvailableSlots(specialization, from, days, 1);
+        return best.isEmpty() ? null : best.get(0);
+    }
+
+    /**
+     * Find the N earliest free slots across doctors of a specialization.
+     * Ties on start time go to the higher-rated doctor.
+     *
+     * @param specialization the specialization
+     * @param from the earliest acceptable start
+     * @param days how many days ahead to look (including the day of from)
+     * @param limit the maximum number of options
+     * @return the available slots, earliest first
+     */
+    public List<AvailableSlot> findAvailableSlots(Specialization specialization, LocalDateTime from,
+                                                  int days, int limit) {
+        List<AvailableSlot> results = new ArrayList<>();
+        List<Doctor> doctors = rankedDoctors(specialization);
+        if (doctors.isEmpty()) {
+            return results;
+        }
+
+        long[] free = new long[doctors.size()];
+        LocalDate firstDay = from.toLocalDate();
+        for (int d = 0; d < days && results.size() < limit; d++) {
+            LocalDate date = firstDay.plusDays(d);
+            long anyFree = 0L;
+            for (int i = 0; i < doctors.size(); i++) {
+                free[i] = freeMask(doctors.get(i).getId(), date, d == 0 ? from : null);
+                anyFree |= free[i];
+            }
+            // Walk only the slots where at least one doctor is free
+            while (anyFree != 0L && results.size() < limit) {
+                int slot = Long.numberOfTrailingZeros(anyFree);
+                anyFree &= anyFree - 1;
+                for (int i = 0; i < doctors.size() && results.size() < limit; i++) {
+                    if ((free[i] & (1L << slot)) != 0) {
+                        results.add(toSlot(doctors.get(i), date, slot));
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Get every free slot on a date across doctors of a specialization.
+     *
+     * @param specialization the specialization
+     * @param date the date
+     * @return the day view, earliest first
+     */
+    public List<AvailableSlot> getDayView(Specialization specialization, LocalDate date) {
+        return findAvailableSlots(specialization, date.atStartOfDay(), 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Bitmap of the slots a single appointment occupies (any overlap counts).
+     *
+     * @param start the appointment start
+     * @return the mask
+     */
+    private static long occupiedMask(LocalDateTime start) {
+        long offset = Duration.between(start.toLocalDate().atTime(Constants.CLINIC_OPENING_HOUR, 0), start)
+                .toMinutes();
+        long first = Math.floorDiv(offset, Constants.APPOINTMENT_SLOT_DURATION);
+        long last = Math.floorDiv(offset + Constants.APPOINTMENT_SLOT_DURATION - 1, Constants.APPOINTMENT_SLOT_DURATION);
+        long mask = 0L;
+        for (long slot = Math.max(0, first); slot <= Math.min(SLOTS_PER_DAY - 1, last); slot++) {
+            mask |= 1L << slot;
+        }
+        return mask;
+    }
+
+    private long freeMask(String doctorId, LocalDate date, LocalDateTime notBefore) {
+        Map<Long, Long> days = occupied.get(doctorId);
+        Long bits = days != null ? days.get(date.toEpochDay()) : null;
+        long free = ALL_SLOTS & ~(bits != null ? bits : 0L);
+        if (notBefore != null) {
+            long offset = Duration.between(date.atTime(Constants.CLINIC_OPENING_HOUR, 0), notBefore).toMinutes();
+            long firstSlot = offset <= 0 ? 0
+                    : Math.floorDiv(offset + Constants.APPOINTMENT_SLOT_DURATION - 1, Constants.APPOINTMENT_SLOT_DURATION);
+            free = firstSlot >= SLOTS_PER_DAY ? 0L : free & ~((1L << firstSlot) - 1);
+        }
+        return free;
+    }
+
+    private List<Doctor> rankedDoctors(Specialization specialization) {
+        List<Doctor> doctors = new ArrayList<>(doctorService.searchBySpecialization(specialization));
+        doctors.sort((d1, d2) -> Double.compare(d2.getRating(), d1.getRating()));
+        return doctors;
+    }
+
+    private static AvailableSlot toSlot(Doctor doctor, LocalDate date, int slot) {
+        LocalDateTime start = date.atTime(Constants.CLINIC_OPENING_HOUR, 0)
+                .plusMinutes((long) slot * Constants.APPOINTMENT_SLOT_DURATION);
+        return new AvailableSlot(doctor, start, start.plusMinutes(Constants.APPOINTMENT_SLOT_DURATION));
+    }
+}
@@ -0,0 +1,239 @@
+package com.airtribe.meditrack.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.airtribe.meditrack.entity.Bill;
+import com.airtribe.meditrack.util.Money;
+import com.airtribe.meditrack.util.StoreIndex;
+
+/**
+ * Running billing totals (paid/pending sums and counts) overall, per doctor
+ * and per patient. Registered on the bill store as an index, so it is kept
+ * in step by every add, update and delete, and all reads are O(1).
+ * Each bill's last recorded contribution is remembered so it can be backed
+ * out exactly when the bill changes. Amounts are summed as paise, so totals
+ * do not depend on the order bills were added in.
+ */
+public class BillingLedger implements StoreIndex<Bill> {
+    private final Totals overall = new Totals();
+    private final Map<String, Totals> byDoctor = new HashMap<>();
+    private final Map<String, Totals> byPatient = new HashMap<>();
+    private final Map<String, Contribution> contributions = new HashMap<>();
+
+    @Override
+    public synchronized void put(String billId, Bill bill) {
+        remove(billId);
+        Contribution contribution = new Contribution(bill.getDoctorId(), bill.getPatientId(),
+                bill.getTotalAmountPaise(), bill.isPaid());
+        contributions.put(billId, contribution);
+        apply(contribution, 1);
+    }
+
+    @Override
+    public synchronized void remove(String billId) {
+        Contribution previous = contributions.remove(billId);
+        if (previous != null) {
+            apply(previous, -1);
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        overall.reset();
+        byDoctor.clear();
+        byPatient.clear();
+        contributions.clear();
+    }
+
+    /**
+     * Get clinic-wide totals.
+     *
+     * @return a snapshot of the totals
+     */
+    public synchronized Totals getOverall() {
+        return overall.copy();
+    }
+
+    /**
+     * Get totals for one doctor.
+     *
+     * @param doctorId the doctor id
+     * @return a snapshot of the totals (zero if the doctor has no bills)
+     */
+    public synchronized Totals getDoctorTotals(String doctorId) {
+        Totals totals = byDoctor.get(doctorId);
+        return totals != null ? totals.copy() : new Totals();
+    }
+
+    /**
+     * Get totals for one patient.
+     *
+     * @param patientId the patient id
+     * @return a snapshot of the totals (zero if the patient has no bills)
+     */
+    public synchronized Totals getPatientTotals(String patientId) {
+        Totals totals = byPatient.get(patientId);
+        return totals != null ? totals.copy() : new Totals();
+    }
+
+    /**
+     * Compare this ledger with another one, typically rebuilt from scratch.
+     *
+     * @param other the other ledger
+     * @return null if they agree, otherwise a description of the first difference
+     */
+    public synchronized String findMismatch(BillingLedger other) {
+        synchronized (other) {
+            if (!overall.matches(other.overall)) {
+                return "overall: " + overall + " vs " + other.overall;
+            }
+            String mismatch = findMismatch("doctor", byDoctor, other.byDoctor);
+            return mismatch != null ? mismatch : findMismatch("patient", byPatient, other.byPatient);
+        }
+    }
+
+    private static String findMismatch(String scope, Map<String, Totals> mine, Map<String, Totals> theirs) {
+        if (mine.size() != theirs.size()) {
+            return scope + " count: " + mine.size() + " vs " + theirs.size();
+        }
+        for (Map.Entry<String, Totals> entry : mine.entrySet()) {
+            Totals other = theirs.get(entry.getKey());
+            if (other == null || !entry.getValue().matches(other)) {
+                return scope + " " + entry.getKey() + ": " + entry.getValue() + " vs " + other;
+            }
+        }
+        return null;
+    }
+
+    private void apply(Contribution contribution, int sign) {
+        overall.apply(contribution, sign);
+        applyTo(byDoctor, contribution.doctorId, contribution, sign);
+        applyTo(byPatient, contribution.patientId, contribution, sign);
+    }
+
+    private static void applyTo(Map<String, Totals> map, String key, Contribution contribution, int sign) {
+        if (key == null) {
+            return;
+        }
+        Totals totals = map.get(key);
+        if (totals == null) {
+            totals = new Totals();
+            map.put(key, totals);
+        }
+        totals.apply(contribution, sign);
+        if (totals.getBillCount() == 0) {
+            map.remove(key);
+        }
+    }
+
+    /**
+     * What one bill adds to the totals.
+     */
+    private static final class Contribution {
+        private final String doctorId;
+        private final String patientId;
+        private final long amount;
+        private final boolean paid;
+
+        private Contribution(String doctorId, String patientId, long amount, boolean paid) {
+            this.doctorId = doctorId;
+            this.patientId = patientId;
+            this.amount = amount;
+            this.paid = paid;
+        }
+    }
+
+    /**
+     * Paid and pending sums and counts.
+     */
+    public static final class Totals {
+        // Amounts in paise (see Money)
+        private long paidAmount;
+        private int paidCount;
+        private long pendingAmount;
+        private int pendingCount;
+
+        public double getPaidAmount() {
+            return Money.toRupees(paidAmount);
+        }
+
+        public long getPaidPaise() {
+            return paidAmount;
+        }
+
+        public int getPaidCount() {
+            return paidCount;
+        }
+
+        public double getPendingAmount() {
+            return Money.toRupees(pendingAmount);
+        }
+
+        public long getPendingPaise() {
+            return pendingAmount;
+        }
+
+        public int getPendingCount() {
+            return pendingCount;
+        }
+
+        public int getBillCount() {
+            return paidCount + pendingCount;
+        }
+
+        public double getTotalAmount() {
+            return Money.toRupees(getTotalPaise());
+        }
+
+        public long getTotalPaise() {
+            return paidAmount + pendingAmount;
+        }
+
+        public double getAverageAmount() {
+            int count = getBillCount();
+            return count > 0 ? Money.toRupees(getTotalPaise()) / count : 0.0;
+        }
+
+        private void apply(Contribution contribution, int sign) {
+            if (contribution.paid) {
+                paidAmount += sign * contribution.amount;
+                paidCount += sign;
+            } else {
+                pendingAmount += sign * contribution.amount;
+                pendingCount += sign;
+            }
+        }
+
+        private boolean matches(Totals other) {
+            return paidCount == other.paidCount && pendingCount == other.pendingCount
+                    && paidAmount == other.paidAmount && pendingAmount == other.pendingAmount;
+        }
+
+        private void reset() {
+            paidAmount = 0L;
+            paidCount = 0;
+            pendingAmount = 0L;
+            pendingCount = 0;
+        }
+
+        private Totals copy() {
+            Totals copy = new Totals();
+            copy.paidAmount = paidAmount;
+            copy.paidCount = paidCount;
+            copy.pendingAmount = pendingAmount;
+            copy.pendingCount = pendingCount;
+            return copy;
+        }
+
+        @Override
+        public String toString() {
+            return "Totals{" +
+                    "paidAmount=" + Money.format(paidAmount) +
+                    ", paidCount=" + paidCount +
+                    ", pendingAmount=" + Money.format(pendingAmount) +
+                    ", pendingCount=" + pendingCount +
+                    '}';
+        }
+    }
+}
@@ -1,13 +1,19 @@
 package com.airtribe.meditrack.service;
 
+import java.io.IOException;
 import java.util.List;
 
 import com.airtribe.meditrack.entity.Appointment;
 import com.airtribe.meditrack.entity.Bill;
 import com.airtribe.meditrack.entity.BillSummary;
 import com.airtribe.meditrack.exception.AppointmentNotFoundException;
+import com.airtribe.meditrack.util.ConcurrentDataStore;
 import com.airtribe.meditrack.util.DataStore;
+import com.airtribe.meditrack.util.HashIndex;
 import com.airtribe.meditrack.util.IdGenerator;
+import com.airtribe.meditrack.util.Money;
+import com.airtribe.meditrack.util.Snapshots;
+import com.airtribe.meditrack.util.WriteAheadLog;
 
 /**
  * Service class for managing bills and payment processing.
@@ -15,6 +21,9 @@ import com.airtribe.meditrack.util.IdGenerator;
  */
 public class BillingService {
     private DataStore<Bill> billStore;
+    private HashIndex<Bill, String> billsByPatient;
+    private HashIndex<Bill, Boolean> billsByPaidState;
+    private BillingLedger ledger;
     private AppointmentService appointmentService;
     private IdGenerator idGenerator;
     
@@ -24,7 +33,10 @@ public class BillingService {
      * @param appointmentService the appointment service
      */
     public BillingService(AppointmentService appointmentService) {
-        this.billStore = new DataStore<>();
+        this.billStore = new ConcurrentDataStore<>();
+        this.billsByPatient = billStore.addHashIndex("patientId", Bill::getPatientId);
+        this.billsByPaidState = billStore.addHashIndex("paid", Bill::isPaid);
+        this.ledger = billStore.addIndex("ledger", new BillingLedger());
         this.appointmentService = appointmentService;
         this.idGenerator = IdGenerator.getInstance();
     }
@@ -75,7 +87,7 @@ public class BillingService {
      * @return the bills by patient id
      */
     public List<Bill> getBillsByPatientId(String patientId) {
-        return billStore.search(bill -> bill.getPatientId().equals(patientId));
+        return billStore.findBy(billsByPatient, patientId);
     }
     
     /**
@@ -87,6 +99,7 @@ public class BillingService {
         Bill bill = getBillById(billId);
         if (bill != null) {
             bill.setPaid(true);
+            billStore.update(billId, bill);
             System.out.println("Bill marked as paid: " + billId);
         }
     }
@@ -97,7 +110,7 @@ public class BillingService {
      * @return the pending bills
      */
     public List<Bill> getPendingBills() {
-        return billStore.search(bill -> !bill.isPaid());
+        return billStore.findBy(billsByPaidState, Boolean.FALSE);
     }
     
     /**
@@ -106,7 +119,7 @@ public class BillingService {
      * @return the paid bills
      */
     public List<Bill> getPaidBills() {
-        return billStore.search(bill -> bill.isPaid());
+        return billStore.findBy(billsByPaidState, Boolean.TRUE);
     }
     
     /**
@@ -115,20 +128,34 @@ public class BillingService {
      * @return the total revenue
      */
     public double getTotalRevenue() {
-        return getPaidBills().stream()
-                .mapToDouble(Bill::getTotalAmount)
-                .sum();
+        return ledger.getOverall().getPaidAmount();
     }
     
+    /**
+     * Get total revenue from paid bills, exact in paise.
+     *
+     * @return the total revenue in paise
+     */
+    public long getTotalRevenuePaise() {
+        return ledger.getOverall().getPaidPaise();
+    }
+
     /**
      * Get outstanding amount (from pending bills).
      *
      * @return the outstanding amount
      */
     public double getOutstandingAmount() {
-        return getPendingBills().stream()
-                .mapToDouble(Bill::getTotalAmount)
-                .sum();
+        return ledger.getOverall().getPendingAmount();
+    }
+
+    /**
+     * Get outstanding amount (from pending bills), exact in paise.
+     *
+     * @return the outstanding amount in paise
+     */
+    public long getOutstandingPaise() {
+        return ledger.getOverall().getPendingPaise();
     }
     
     /**
@@ -137,10 +164,84 @@ public class BillingService {
      * @return the average bill amount
      */
     public double getAverageBillAmount() {
-        return getAllBills().stream()
-                .mapToDouble(Bill::getTotalAmount)
-                .average()
-                .orElse(0.0);
+        return ledger.getOverall().getAverageAmount();
+    }
+    
+    /**
+     * Get number of paid bills.
+     *
+     * @return the paid bill count
+     */
+    public int getPaidBillCount() {
+        return ledger.getOverall().getPaidCount();
+    }
+    
+    /**
+     * Get number of pending bills.
+     *
+     * @return the pending bill count
+     */
+    public int getPendingBillCount() {
+        return ledger.getOverall().getPendingCount();
+    }
+    
+    /**
+     * Get total number of bills.
+     *
+     * @return the total bills
+     */
+    public int getTotalBills() {
+        return billStore.size();
+    }
+    
+    /**
+     * Get billing totals for a doctor.
+     *
+     * @param doctorId the doctor id
+     * @return the doctor totals
+     */
+    public BillingLedger.Totals getDoctorTotals(String doctorId) {
+        return ledger.getDoctorTotals(doctorId);
+    }
+    
+    /**
+     * Get billing totals for a patient.
+     *
+     * @param patientId the patient id
+     * @return the patient totals
+     */
+    public BillingLedger.Totals getPatientTotals(String patientId) {
+        return ledger.getPatientTotals(patientId);
+    }
+    
+    /**
+     * Re-record a bill after its charges were edited directly on the entity.
+     *
+     * @param billId the bill id
+     */
+    public void refreshBill(String billId) {
+        Bill bill = getBillById(billId);
+        if (bill != null) {
+            billStore.update(billId, bill);
+        }
+    }
+    
+    /**
+     * Verify the running aggregates against a full recompute over all bills.
+     *
+     * @return true, if the aggregates are consistent
+     */
+    public boolean verifyAggregates() {
+        BillingLedger recomputed = new BillingLedger();
+        for (Bill bill : billStore.getAll()) {
+            recomputed.put(bill.getBillId(), bill);
+        }
+        String mismatch = ledger.findMismatch(recomputed);
+        if (mismatch != null) {
+            System.err.println("Billing aggregates out of sync: " + mismatch);
+            return false;
+        }
+        return true;
     }
     
     /**
@@ -156,8 +257,8 @@ public class BillingService {
                 .billId(bill.getBillId())
                 .patientName(patientName)
                 .doctorName(doctorName)
-                .totalAmount(bill.getTotalAmount())
-                .taxAmount(bill.getTaxAmount())
+                .totalAmountPaise(bill.getTotalAmountPaise())
+                .taxAmountPaise(bill.getTaxAmountPaise())
                 .billDate(bill.getBillDate())
                 .isPaid(bill.isPaid())
                 .build();
@@ -180,10 +281,46 @@ public class BillingService {
             System.out.println("Medicines: ₹" + String.format("%.2f", bill.getMedicinesCharges()));
             System.out.println("Tests: ₹" + String.format("%.2f", bill.getTestCharges()));
             System.out.println("Other Charges: ₹" + String.format("%.2f", bill.getOtherCharges()));
-            System.out.println("Tax (18%): ₹" + String.format("%.2f", bill.getTaxAmount()));
-            System.out.println("Total Amount: ₹" + String.format("%.2f", bill.getTotalAmount()));
+            System.out.println("Tax (18%): ₹" + Money.format(bill.getTaxAmountPaise()));
+            System.out.println("Total Amount: ₹" + Money.format(bill.getTotalAmountPaise()));
             System.out.println("Status: " + (bill.isPaid() ? "PAID" : "PENDING"));
             System.out.println("=================================");
         }
     }
+    
+    /**
+     * Save all bills to a binary snapshot (see Snapshots).
+     *
+     * @param filePath the file path
+     * @return the number of bills saved
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public int saveSnapshot(String filePath) throws IOException {
+        return Snapshots.save(filePath, billStore.getAll(), SnapshotCodecs.BILL);
+    }
+    
+    /**
+     * Load bills from a binary snapshot, replacing any with the same ID.
+     *
+     * @param filePath the file path
+     * @return the number of bills loaded
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public int loadSnapshot(String filePath) throws IOException {
+        List<Bill> bills = Snapshots.load(filePath, SnapshotCodecs.BILL);
+        for (Bill bill : bills) {
+            billStore.add(bill.getBillId(), bill);
+        }
+        return bills.size();
+    }
+    
+    /**
+     * Log every change to the bills store in a write-ahead log, and have
+     * replay() restore them. Attach after loading the snapshot.
+     *
+     * @param log the write-ahead log
+     */
+    public void attachLog(WriteAheadLog log) {
+        log.attach("bills", billStore, SnapshotCodecs.BILL);
+    }
 }
@@ -0,0 +1,85 @@
+package com.airtribe.meditrack.service;
+
+import com.airtribe.meditrack.entity.Appointment;
+import com.airtribe.meditrack.entity.AppointmentStatus;
+import com.airtribe.meditrack.entity.Bill;
+import com.airtribe.meditrack.entity.Doctor;
+import com.airtribe.meditrack.entity.Patient;
+import com.airtribe.meditrack.entity.Specialization;
+import com.airtribe.meditrack.util.CSVBinder;
+
+/**
+ * CSV binders for the entities. The declared column order is the layout
+ * assumed for files without a header; files with a header may order columns
+ * freely and carry extra ones.
+ */
+public final class CSVSchemas {
+
+    public static final CSVBinder<Doctor> DOCTOR = CSVBinder.builder(Doctor::new)
+            .stringColumn("id", Doctor::setId)
+            .stringColumn("name", Doctor::setName)
+            .stringColumn("email", Doctor::setEmail)
+            .stringColumn("phone", Doctor::setPhone)
+            .intColumn("age", Doctor::setAge)
+            .stringColumn("gender", Doctor::setGender)
+            .stringColumn("address", Doctor::setAddress)
+            .enumColumn("specialization", Specialization.class, Doctor::setSpecialization)
+            .doubleColumn("consultationFee", Doctor::setConsultationFee)
+            .intColumn("yearsOfExperience", Doctor::setYearsOfExperience)
+            .stringColumn("licenseNumber", Doctor::setLicenseNumber)
+            .doubleColumn("rating", Doctor::setRating)
+            .intColumn("totalPatients", Doctor::setTotalPatients)
+            .build();
+
+    public static final CSVBinder<Patient> PATIENT = CSVBinder.builder(Patient::new)
+            .stringColumn("id", Patient::setId)
+            .stringColumn("name", Patient::setName)
+            .stringColumn("email", Patient::setEmail)
+            .stringColumn("phone", Patient::setPhone)
+            .intColumn("age", Patient::setAge)
+            .stringColumn("gender", Patient::setGender)
+            .stringColumn("address", Patient::setAddress)
+            .stringColumn("bloodType", Patient::setBloodType)
+            .doubleColumn("height", Patient::setHeight)
+            .doubleColumn("weight", Patient::setWeight)
+            .stringColumn("emergencyContact", Patient::setEmergencyContact)
+            // Allergies are ';'-separated within the field
+            .column("allergies", (patient, record, index) -> {
+                for (String allergy : record.get(index).split(";")) {
+                    if (!allergy.trim().isEmpty()) {
+                        patient.addAllergy(allergy.trim());
+                    }
+                }
+            })
+            .stringColumn("medicalHistory", Patient::setMedicalHistory)
+            .build();
+
+    public static final CSVBinder<Appointment> APPOINTMENT = CSVBinder.builder(Appointment::new)
+            .stringColumn("appointmentId", Appointment::setAppointmentId)
+            .stringColumn("patientId", Appointment::setPatientId)
+            .stringColumn("doctorId", Appointment::setDoctorId)
+            .dateTimeColumn("dateTime", Appointment::setAppointmentDateTime)
+            .stringColumn("reason", Appointment::setReason)
+            .enumColumn("status", AppointmentStatus.class, Appointment::setStatus)
+            .stringColumn("notes", Appointment::setNotes)
+            .doubleColumn("consultationFee", Appointment::setConsultationFee)
+            .build();
+
+    public static final CSVBinder<Bill> BILL = CSVBinder.builder(Bill::new)
+            .stringColumn("billId", Bill::setBillId)
+            .stringColumn("appointmentId", Bill::setAppointmentId)
+            .stringColumn("patientId", Bill::setPatientId)
+            .stringColumn("doctorId", Bill::setDoctorId)
+            .moneyColumn("consultationFee", Bill::setConsultationFeePaise)
+            .moneyColumn("medicinesCharges", Bill::setMedicinesChargesPaise)
+            .moneyColumn("testCharges", Bill::setTestChargesPaise)
+            .moneyColumn("otherCharges", Bill::setOtherChargesPaise)
+            .dateTimeColumn("billDate", Bill::setBillDate)
+            .booleanColumn("paid", Bill::setPaid)
+            .build();
+
+    // Prevent instantiation
+    private CSVSchemas() {
+        throw new AssertionError("Cannot instantiate CSVSchemas class");
+    }
+}
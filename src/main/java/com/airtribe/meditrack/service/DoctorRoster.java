@@ -0,0 +1,198 @@
+package com.airtribe.meditrack.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import com.airtribe.meditrack.entity.Doctor;
+import com.airtribe.meditrack.entity.Specialization;
+import com.airtribe.meditrack.util.Money;
+import com.airtribe.meditrack.util.StoreIndex;
+
+/**
+ * Doctors grouped by specialization in an EnumMap, with a running fee sum
+ * and rating and experience orderings per group and for the whole roster.
+ * Registered on the doctor store as an index, so it is kept in step by
+ * every add, update and delete: average fees are O(1) and the best k
+ * doctors are read off the front of an ordering in O(k), with no scan or
+ * sort of the roster.
+ * Each doctor's last filed values are remembered so they can be backed out
+ * exactly when the doctor changes. Fees are summed as paise.
+ */
+public class DoctorRoster implements StoreIndex<Doctor> {
+    // Highest rating (or experience) first; ties in doctor ID order
+    private static final Comparator<Filing> BY_RATING = Comparator.comparingDouble((Filing f) -> -f.rating)
+            .thenComparing(f -> f.doctorId);
+    private static final Comparator<Filing> BY_EXPERIENCE = Comparator.comparingInt((Filing f) -> -f.experience)
+            .thenComparing(f -> f.doctorId);
+
+    private final Map<Specialization, Group> groups = new EnumMap<>(Specialization.class);
+    private final Group all = new Group();
+    private final Map<String, Filing> filings = new HashMap<>();
+
+    @Override
+    public synchronized void put(String doctorId, Doctor doctor) {
+        remove(doctorId);
+        Filing filing = new Filing(doctorId, doctor.getSpecialization(),
+                Money.ofRupees(doctor.getConsultationFee()), doctor.getRating(), doctor.getYearsOfExperience());
+        filings.put(doctorId, filing);
+        all.add(filing);
+        if (filing.specialization != null) {
+            Group group = groups.get(filing.specialization);
+            if (group == null) {
+                group = new Group();
+                groups.put(filing.specialization, group);
+            }
+            group.add(filing);
+        }
+    }
+
+    @Override
+    public synchronized void remove(String doctorId) {
+        Filing previous = filings.remove(doctorId);
+        if (previous == null) {
+            return;
+        }
+        all.remove(previous);
+        if (previous.specialization != null) {
+            Group group = groups.get(previous.specialization);
+            group.remove(previous);
+            if (group.ids.isEmpty()) {
+                groups.remove(previous.specialization);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        groups.clear();
+        all.clear();
+        filings.clear();
+    }
+
+    /**
+     * Get the IDs of the doctors in a specialization.
+     *
+     * @param specialization the specialization
+     * @return the doctor IDs, in ID order
+     */
+    public synchronized List<String> getDoctorIds(Specialization specialization) {
+        Group group = groups.get(specialization);
+        return group != null ? new ArrayList<>(group.ids) : new ArrayList<String>();
+    }
+
+    /**
+     * Count the doctors in a specialization.
+     *
+     * @param specialization the specialization, or null for all doctors
+     * @return the count
+     */
+    public synchronized int count(Specialization specialization) {
+        Group group = group(specialization);
+        return group != null ? group.ids.size() : 0;
+    }
+
+    /**
+     * Get the average consultation fee of a specialization.
+     *
+     * @param specialization the specialization, or null for all doctors
+     * @return the average fee, or 0 if there are no such doctors
+     */
+    public synchronized double getAverageFee(Specialization specialization) {
+        Group group = group(specialization);
+        return group != null && !group.ids.isEmpty() ? Money.toRupees(group.feeSum) / group.ids.size() : 0.0;
+    }
+
+    /**
+     * Get the IDs of the best-rated doctors.
+     *
+     * @param specialization the specialization, or null for all doctors
+     * @param limit the maximum number of doctors
+     * @return the doctor IDs, highest rating first
+     */
+    public synchronized List<String> topByRating(Specialization specialization, int limit) {
+        Group group = group(specialization);
+        return group != null ? first(group.byRating, limit) : new ArrayList<String>();
+    }
+
+    /**
+     * Get the IDs of the most experienced doctors.
+     *
+     * @param specialization the specialization, or null for all doctors
+     * @param limit the maximum number of doctors
+     * @return the doctor IDs, most years of experience first
+     */
+    public synchronized List<String> topByExperience(Specialization specialization, int limit) {
+        Group group = group(specialization);
+        return group != null ? first(group.byExperience, limit) : new ArrayList<String>();
+    }
+
+    private Group group(Specialization specialization) {
+        return specialization == null ? all : groups.get(specialization);
+    }
+
+    private static List<String> first(TreeSet<Filing> ordering, int limit) {
+        List<String> results = new ArrayList<>(Math.min(Math.max(limit, 0), ordering.size()));
+        Iterator<Filing> filings = ordering.iterator();
+        while (results.size() < limit && filings.hasNext()) {
+            results.add(filings.next().doctorId);
+        }
+        return results;
+    }
+
+    /**
+     * What one doctor was filed under.
+     */
+    private static final class Filing {
+        private final String doctorId;
+        private final Specialization specialization;
+        private final long fee;
+        private final double rating;
+        private final int experience;
+
+        private Filing(String doctorId, Specialization specialization, long fee, double rating, int experience) {
+            this.doctorId = doctorId;
+            this.specialization = specialization;
+            this.fee = fee;
+            this.rating = rating;
+            this.experience = experience;
+        }
+    }
+
+    /**
+     * The doctors of one specialization (or of the whole roster).
+     */
+    private static final class Group {
+        private final TreeSet<String> ids = new TreeSet<>();
+        private final TreeSet<Filing> byRating = new TreeSet<>(BY_RATING);
+        private final TreeSet<Filing> byExperience = new TreeSet<>(BY_EXPERIENCE);
+        // Fees in paise (see Money)
+        private long feeSum;
+
+        private void add(Filing filing) {
+            ids.add(filing.doctorId);
+            byRating.add(filing);
+            byExperience.add(filing);
+            feeSum += filing.fee;
+        }
+
+        private void remove(Filing filing) {
+            ids.remove(filing.doctorId);
+            byRating.remove(filing);
+            byExperience.remove(filing);
+            feeSum -= filing.fee;
+        }
+
+        private void clear() {
+            ids.clear();
+            byRating.clear();
+            byExperience.clear();
+            feeSum = 0;
+        }
+    }
+}
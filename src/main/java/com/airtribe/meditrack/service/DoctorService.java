@@ -3,10 +3,14 @@ package com.airtribe.meditrack.service;
 import com.airtribe.meditrack.entity.Doctor;
 import com.airtribe.meditrack.entity.Specialization;
 import com.airtribe.meditrack.interface_.Searchable;
+import com.airtribe.meditrack.util.ConcurrentDataStore;
 import com.airtribe.meditrack.util.DataStore;
 import com.airtribe.meditrack.util.IdGenerator;
+import com.airtribe.meditrack.util.NameIndex;
+import com.airtribe.meditrack.util.Snapshots;
+import com.airtribe.meditrack.util.WriteAheadLog;
+import java.io.IOException;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Service class for managing doctors.
@@ -14,13 +18,17 @@ import java.util.stream.Collectors;
  */
 public class DoctorService implements Searchable {
     private DataStore<Doctor> doctorStore;
+    private DoctorRoster roster;
+    private NameIndex<Doctor> doctorsByName;
     private IdGenerator idGenerator;
     
     /**
      * Instantiates a new doctor service.
      */
     public DoctorService() {
-        this.doctorStore = new DataStore<>();
+        this.doctorStore = new ConcurrentDataStore<>();
+        this.roster = doctorStore.addIndex("roster", new DoctorRoster());
+        this.doctorsByName = doctorStore.addIndex("name", new NameIndex<>(Doctor::getName));
         this.idGenerator = IdGenerator.getInstance();
     }
     
@@ -79,8 +87,24 @@ public class DoctorService implements Searchable {
      */
     @Override
     public Doctor searchByName(String name) {
-        List<Doctor> results = doctorStore.search(doctor -> doctor.getName().equalsIgnoreCase(name));
-        return results.isEmpty() ? null : results.get(0);
+        // The index also folds punctuation and spacing, so confirm the match
+        for (Doctor doctor : doctorStore.resolve(doctorsByName.findExact(name))) {
+            if (doctor.getName().equalsIgnoreCase(name)) {
+                return doctor;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Search doctors by name prefix, substring or approximate match.
+     *
+     * @param query the query
+     * @param limit the maximum number of doctors
+     * @return the list, best match first
+     */
+    public List<Doctor> searchDoctorsByName(String query, int limit) {
+        return doctorStore.resolve(doctorsByName.search(query, limit));
     }
     
     /**
@@ -90,7 +114,7 @@ public class DoctorService implements Searchable {
      * @return the list
      */
     public List<Doctor> searchBySpecialization(Specialization specialization) {
-        return doctorStore.search(doctor -> doctor.getSpecialization() == specialization);
+        return doctorStore.resolve(roster.getDoctorIds(specialization));
     }
     
     /**
@@ -143,16 +167,13 @@ public class DoctorService implements Searchable {
     }
     
     /**
-     * Get average consultation fee for a specialization.
+     * Get average consultation fee for a specialization, from the roster's running sums.
      *
      * @param specialization the specialization
      * @return the average consultation fee
      */
     public double getAverageConsultationFee(Specialization specialization) {
-        return searchBySpecialization(specialization).stream()
-                .mapToDouble(Doctor::getConsultationFee)
-                .average()
-                .orElse(0.0);
+        return roster.getAverageFee(specialization);
     }
     
     /**
@@ -161,9 +182,7 @@ public class DoctorService implements Searchable {
      * @return the doctors sorted by rating
      */
     public List<Doctor> getDoctorsSortedByRating() {
-        return getAllDoctors().stream()
-                .sorted((d1, d2) -> Double.compare(d2.getRating(), d1.getRating()))
-                .collect(Collectors.toList());
+        return getTopDoctorsByRating(null, Integer.MAX_VALUE);
     }
     
     /**
@@ -172,8 +191,74 @@ public class DoctorService implements Searchable {
      * @return the doctors sorted by experience
      */
     public List<Doctor> getDoctorsSortedByExperience() {
-        return getAllDoctors().stream()
-                .sorted((d1, d2) -> Integer.compare(d2.getYearsOfExperience(), d1.getYearsOfExperience()))
-                .collect(Collectors.toList());
+        return getTopDoctorsByExperience(null, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Get the best-rated doctors, e.g. the best 5 neurologists, without sorting the roster.
+     *
+     * @param specialization the specialization, or null for all doctors
+     * @param limit the maximum number of doctors
+     * @return the doctors, highest rating first
+     */
+    public List<Doctor> getTopDoctorsByRating(Specialization specialization, int limit) {
+        return doctorStore.resolve(roster.topByRating(specialization, limit));
+    }
+    
+    /**
+     * Get the most experienced doctors without sorting the roster.
+     *
+     * @param specialization the specialization, or null for all doctors
+     * @param limit the maximum number of doctors
+     * @return the doctors, most years of experience first
+     */
+    public List<Doctor> getTopDoctorsByExperience(Specialization specialization, int limit) {
+        return doctorStore.resolve(roster.topByExperience(specialization, limit));
+    }
+    
+    /**
+     * Count doctors in a specialization in O(1).
+     *
+     * @param specialization the specialization
+     * @return the count
+     */
+    public int countBySpecialization(Specialization specialization) {
+        return roster.count(specialization);
+    }
+    
+    /**
+     * Save all doctors to a binary snapshot (see Snapshots).
+     *
+     * @param filePath the file path
+     * @return the number of doctors saved
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public int saveSnapshot(String filePath) throws IOException {
+        return Snapshots.save(filePath, doctorStore.getAll(), SnapshotCodecs.DOCTOR);
+    }
+    
+    /**
+     * Load doctors from a binary snapshot, replacing any with the same ID.
+     *
+     * @param filePath the file path
+     * @return the number of doctors loaded
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public int loadSnapshot(String filePath) throws IOException {
+        List<Doctor> doctors = Snapshots.load(filePath, SnapshotCodecs.DOCTOR);
+        for (Doctor doctor : doctors) {
+            doctorStore.add(doctor.getId(), doctor);
+        }
+        return doctors.size();
+    }
+    
+    /**
+     * Log every change to the doctors store in a write-ahead log, and have
+     * replay() restore them. Attach after loading the snapshot.
+     *
+     * @param log the write-ahead log
+     */
+    public void attachLog(WriteAheadLog log) {
+        log.attach("doctors", doctorStore, SnapshotCodecs.DOCTOR);
     }
 }
@@ -1,25 +1,73 @@
 package com.airtribe.meditrack.service;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import com.airtribe.meditrack.entity.Patient;
 import com.airtribe.meditrack.interface_.Searchable;
+import com.airtribe.meditrack.util.ConcurrentDataStore;
 import com.airtribe.meditrack.util.DataStore;
+import com.airtribe.meditrack.util.FullTextIndex;
+import com.airtribe.meditrack.util.HashIndex;
 import com.airtribe.meditrack.util.IdGenerator;
+import com.airtribe.meditrack.util.NameIndex;
+import com.airtribe.meditrack.util.OrderedIndex;
+import com.airtribe.meditrack.util.Snapshots;
+import com.airtribe.meditrack.util.TieredDataStore;
+import com.airtribe.meditrack.util.WriteAheadLog;
 
 /**
  * Service class for managing patients.
  * Demonstrates CRUD operations, search, and cloning.
  */
 public class PatientService implements Searchable {
+    private static final double BMI_NORMAL = 18.5;
+    private static final double BMI_OVERWEIGHT = 25.0;
+    private static final double BMI_OBESE = 30.0;
+    
     private DataStore<Patient> patientStore;
+    private HashIndex<Patient, String> patientsByBloodType;
+    private NameIndex<Patient> patientsByName;
+    private AllergyIndex patientsByAllergy;
+    private OrderedIndex<Patient, Integer> patientsByAge;
+    // Filed by BMI in tenths, rounded down, so histogram bins are counts of index keys
+    private OrderedIndex<Patient, Integer> patientsByBmi;
+    private FullTextIndex<Patient> medicalHistoryText;
     private IdGenerator idGenerator;
     
     /**
-     * Instantiates a new patient service.
+     * Instantiates a new patient service that keeps every patient in memory.
      */
     public PatientService() {
-        this.patientStore = new DataStore<>();
+        this(new ConcurrentDataStore<>());
+    }
+    
+    /**
+     * Instantiates a new patient service that keeps only each patient's ID,
+     * name and phone in memory, and reads full records from a record file as
+     * they are needed, caching the most recently used ones.
+     *
+     * @param recordFilePath the record file path
+     * @param cacheSize the number of full patient records to cache
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public PatientService(String recordFilePath, int cacheSize) throws IOException {
+        this(new TieredDataStore<>(recordFilePath, SnapshotCodecs.PATIENT, PatientSummary::new, cacheSize));
+    }
+    
+    private PatientService(DataStore<Patient> patientStore) {
+        this.patientStore = patientStore;
+        this.patientsByBloodType = patientStore.addHashIndex("bloodType", Patient::getBloodType);
+        this.patientsByName = patientStore.addIndex("name", new NameIndex<>(Patient::getName));
+        this.patientsByAllergy = patientStore.addIndex("allergies", new AllergyIndex());
+        this.patientsByAge = patientStore.addOrderedIndex("age", Patient::getAge);
+        this.patientsByBmi = patientStore.addOrderedIndex("bmi", patient -> bmiTenths(patient.getBMI()));
+        this.medicalHistoryText = patientStore.addIndex("medicalHistory",
+                new FullTextIndex<>(Patient::getMedicalHistory));
         this.idGenerator = IdGenerator.getInstance();
     }
     
@@ -72,8 +120,24 @@ public class PatientService implements Searchable {
      */
     @Override
     public Patient searchByName(String name) {
-        List<Patient> results = patientStore.search(patient -> patient.getName().equalsIgnoreCase(name));
-        return results.isEmpty() ? null : results.get(0);
+        // The index also folds punctuation and spacing, so confirm the match
+        for (Patient patient : patientStore.resolve(patientsByName.findExact(name))) {
+            if (patient.getName().equalsIgnoreCase(name)) {
+                return patient;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Search patients by name prefix, substring or approximate match.
+     *
+     * @param query the query
+     * @param limit the maximum number of patients
+     * @return the list, best match first
+     */
+    public List<Patient> searchPatientsByName(String query, int limit) {
+        return patientStore.resolve(patientsByName.search(query, limit));
     }
     
     /**
@@ -83,7 +147,36 @@ public class PatientService implements Searchable {
      * @return the list
      */
     public List<Patient> searchByAge(int age) {
-        return patientStore.search(patient -> patient.getAge() == age);
+        return patientStore.findBy(patientsByAge, age);
+    }
+    
+    /**
+     * Search patients by age range.
+     *
+     * @param minAge the min age, inclusive
+     * @param maxAge the max age, inclusive
+     * @return the list, youngest first
+     */
+    public List<Patient> searchByAgeRange(int minAge, int maxAge) {
+        return patientStore.resolve(patientsByAge.range(minAge, true, maxAge, true, Integer.MAX_VALUE));
+    }
+    
+    /**
+     * Count patients per age band.
+     *
+     * @param bandWidth the width of each band in years, e.g. 10 for decades
+     * @return the count of each band, keyed by the band's first age, youngest first
+     */
+    public Map<Integer, Integer> getAgeHistogram(int bandWidth) {
+        if (bandWidth <= 0) {
+            throw new IllegalArgumentException("Band width must be positive: " + bandWidth);
+        }
+        Map<Integer, Integer> histogram = new TreeMap<>();
+        for (Map.Entry<Integer, Integer> entry : patientsByAge.countByKey(null, false, null, false).entrySet()) {
+            int band = Math.floorDiv(entry.getKey(), bandWidth) * bandWidth;
+            histogram.merge(band, entry.getValue(), Integer::sum);
+        }
+        return histogram;
     }
     
     /**
@@ -93,7 +186,7 @@ public class PatientService implements Searchable {
      * @return the list
      */
     public List<Patient> searchByBloodType(String bloodType) {
-        return patientStore.search(patient -> patient.getBloodType().equals(bloodType));
+        return patientStore.findBy(patientsByBloodType, bloodType);
     }
     
     /**
@@ -163,10 +256,41 @@ public class PatientService implements Searchable {
         Patient patient = getPatientById(patientId);
         if (patient != null) {
             patient.addAllergy(allergy);
+            patientStore.update(patientId, patient);
             System.out.println("Allergy added for patient: " + patient.getName());
         }
     }
     
+    /**
+     * Get patients allergic to every one of the given allergies.
+     *
+     * @param allergies the allergies
+     * @return the list
+     */
+    public List<Patient> getPatientsAllergicToAll(List<String> allergies) {
+        return patientStore.resolve(patientsByAllergy.withAll(allergies));
+    }
+    
+    /**
+     * Get patients allergic to at least one of the given allergies.
+     *
+     * @param allergies the allergies
+     * @return the list
+     */
+    public List<Patient> getPatientsAllergicToAny(List<String> allergies) {
+        return patientStore.resolve(patientsByAllergy.withAny(allergies));
+    }
+    
+    /**
+     * Count patients with an allergy.
+     *
+     * @param allergy the allergy
+     * @return the count
+     */
+    public int countPatientsWithAllergy(String allergy) {
+        return patientsByAllergy.count(allergy);
+    }
+    
     /**
      * Get patients with BMI over threshold (overweight/obese).
      *
@@ -174,7 +298,51 @@ public class PatientService implements Searchable {
      * @return the patients with high BMI
      */
     public List<Patient> getPatientsWithHighBMI(double threshold) {
-        return patientStore.search(patient -> patient.getBMI() > threshold);
+        List<Patient> results = new ArrayList<>();
+        for (Patient patient : patientStore.resolve(
+                patientsByBmi.range(bmiTenths(threshold), true, null, false, Integer.MAX_VALUE))) {
+            // Only the first bin can hold patients at or under the threshold
+            if (patient.getBMI() > threshold) {
+                results.add(patient);
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Get patients whose BMI falls in [minBmi, maxBmi).
+     *
+     * @param minBmi the inclusive lower bound
+     * @param maxBmi the exclusive upper bound
+     * @return the list, lowest BMI bin first
+     */
+    public List<Patient> getPatientsByBMIRange(double minBmi, double maxBmi) {
+        List<Patient> results = new ArrayList<>();
+        for (Patient patient : patientStore.resolve(
+                patientsByBmi.range(bmiTenths(minBmi), true, bmiTenths(maxBmi), true, Integer.MAX_VALUE))) {
+            double bmi = patient.getBMI();
+            if (bmi >= minBmi && bmi < maxBmi) {
+                results.add(patient);
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Count patients per BMI category (WHO adult cut-offs). Patients with
+     * no height recorded have a BMI of 0 and are counted as not recorded.
+     *
+     * @return the count of each category, from "Not recorded" to "Obese"
+     */
+    public Map<String, Integer> getBMICategoryCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        counts.put("Not recorded", patientsByBmi.count(0));
+        counts.put("Underweight", patientsByBmi.countRange(1, true, bmiTenths(BMI_NORMAL), false));
+        counts.put("Normal", patientsByBmi.countRange(bmiTenths(BMI_NORMAL), true, bmiTenths(BMI_OVERWEIGHT), false));
+        counts.put("Overweight", patientsByBmi.countRange(bmiTenths(BMI_OVERWEIGHT), true, bmiTenths(BMI_OBESE),
+                false));
+        counts.put("Obese", patientsByBmi.countRange(bmiTenths(BMI_OBESE), true, null, false));
+        return counts;
     }
     
     /**
@@ -188,6 +356,19 @@ public class PatientService implements Searchable {
         return patient != null ? patient.getMedicalHistory() : "";
     }
     
+    /**
+     * Search medical histories, e.g. for patients with a condition. Words
+     * must all appear; "quoted words" must appear together; -word excludes;
+     * OR separates alternatives (see FullTextIndex.search).
+     *
+     * @param query the query
+     * @param limit the maximum number of patients
+     * @return the list
+     */
+    public List<Patient> searchByMedicalHistory(String query, int limit) {
+        return patientStore.resolve(medicalHistoryText.search(query, limit));
+    }
+    
     /**
      * Update medical history.
      *
@@ -198,6 +379,47 @@ public class PatientService implements Searchable {
         Patient patient = getPatientById(patientId);
         if (patient != null) {
             patient.setMedicalHistory(history);
+            patientStore.update(patientId, patient);
+        }
+    }
+    
+    /**
+     * Save all patients to a binary snapshot (see Snapshots).
+     *
+     * @param filePath the file path
+     * @return the number of patients saved
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public int saveSnapshot(String filePath) throws IOException {
+        return Snapshots.save(filePath, patientStore.getAll(), SnapshotCodecs.PATIENT);
+    }
+    
+    /**
+     * Load patients from a binary snapshot, replacing any with the same ID.
+     *
+     * @param filePath the file path
+     * @return the number of patients loaded
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public int loadSnapshot(String filePath) throws IOException {
+        List<Patient> patients = Snapshots.load(filePath, SnapshotCodecs.PATIENT);
+        for (Patient patient : patients) {
+            patientStore.add(patient.getId(), patient);
         }
+        return patients.size();
+    }
+    
+    /**
+     * Log every change to the patients store in a write-ahead log, and have
+     * replay() restore them. Attach after loading the snapshot.
+     *
+     * @param log the write-ahead log
+     */
+    public void attachLog(WriteAheadLog log) {
+        log.attach("patients", patientStore, SnapshotCodecs.PATIENT);
+    }
+    
+    private static Integer bmiTenths(double bmi) {
+        return (int) Math.floor(bmi * 10);
     }
 }
@@ -0,0 +1,31 @@
+package com.airtribe.meditrack.service;
+
+import com.airtribe.meditrack.entity.Patient;
+
+/**
+ * The part of a patient kept in memory by the tiered patient store: enough
+ * to find a patient without reading the full record from disk.
+ */
+final class PatientSummary {
+    private final String id;
+    private final String name;
+    private final String phone;
+
+    PatientSummary(Patient patient) {
+        this.id = patient.getId();
+        this.name = patient.getName();
+        this.phone = patient.getPhone();
+    }
+
+    String getId() {
+        return id;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getPhone() {
+        return phone;
+    }
+}
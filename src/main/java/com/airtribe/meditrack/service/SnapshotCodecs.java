@@ -0,0 +1,231 @@
+package com.airtribe.meditrack.service;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.airtribe.meditrack.entity.Appointment;
+import com.airtribe.meditrack.entity.AppointmentStatus;
+import com.airtribe.meditrack.entity.Bill;
+import com.airtribe.meditrack.entity.Doctor;
+import com.airtribe.meditrack.entity.Patient;
+import com.airtribe.meditrack.entity.Person;
+import com.airtribe.meditrack.entity.Specialization;
+import com.airtribe.meditrack.util.SnapshotCodec;
+import com.airtribe.meditrack.util.SnapshotReader;
+import com.airtribe.meditrack.util.SnapshotWriter;
+
+/**
+ * Snapshot codecs for the entities. A codec writes fields in a fixed order;
+ * adding a field means bumping its version and reading the new field only
+ * when the snapshot's version has it.
+ */
+public final class SnapshotCodecs {
+    private static final Specialization[] SPECIALIZATIONS = Specialization.values();
+    private static final AppointmentStatus[] STATUSES = AppointmentStatus.values();
+
+    public static final SnapshotCodec<Doctor> DOCTOR = new SnapshotCodec<Doctor>() {
+        @Override
+        public String getType() {
+            return "Doctor";
+        }
+
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+
+        @Override
+        public String keyOf(Doctor doctor) {
+            return doctor.getId();
+        }
+
+        @Override
+        public void write(Doctor doctor, SnapshotWriter out) throws IOException {
+            writePerson(doctor, out);
+            out.writeEnum(doctor.getSpecialization());
+            out.writeDouble(doctor.getConsultationFee());
+            out.writeInt(doctor.getYearsOfExperience());
+            out.writeString(doctor.getLicenseNumber());
+            out.writeDouble(doctor.getRating());
+            out.writeInt(doctor.getTotalPatients());
+        }
+
+        @Override
+        public Doctor read(SnapshotReader in, int version) throws IOException {
+            Doctor doctor = new Doctor();
+            readPerson(doctor, in);
+            doctor.setSpecialization(in.readEnum(SPECIALIZATIONS));
+            doctor.setConsultationFee(in.readDouble());
+            doctor.setYearsOfExperience(in.readInt());
+            doctor.setLicenseNumber(in.readString());
+            doctor.setRating(in.readDouble());
+            doctor.setTotalPatients(in.readInt());
+            return doctor;
+        }
+    };
+
+    public static final SnapshotCodec<Patient> PATIENT = new SnapshotCodec<Patient>() {
+        @Override
+        public String getType() {
+            return "Patient";
+        }
+
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+
+        @Override
+        public String keyOf(Patient patient) {
+            return patient.getId();
+        }
+
+        @Override
+        public void write(Patient patient, SnapshotWriter out) throws IOException {
+            writePerson(patient, out);
+            out.writeString(patient.getMedicalHistory());
+            // A copy, so an allergy added while a checkpoint encodes the patient
+            // cannot fail it; the log record of that change supersedes this one
+            List<String> allergies = patient.getAllergies();
+            out.writeVarInt(allergies.size());
+            for (String allergy : allergies) {
+                out.writeString(allergy);
+            }
+            out.writeDouble(patient.getHeight());
+            out.writeDouble(patient.getWeight());
+            out.writeString(patient.getBloodType());
+            out.writeString(patient.getEmergencyContact());
+        }
+
+        @Override
+        public Patient read(SnapshotReader in, int version) throws IOException {
+            Patient patient = new Patient();
+            readPerson(patient, in);
+            patient.setMedicalHistory(in.readString());
+            for (int i = in.readVarInt(); i > 0; i--) {
+                patient.addAllergy(in.readString());
+            }
+            patient.setHeight(in.readDouble());
+            patient.setWeight(in.readDouble());
+            patient.setBloodType(in.readString());
+            patient.setEmergencyContact(in.readString());
+            return patient;
+        }
+    };
+
+    public static final SnapshotCodec<Appointment> APPOINTMENT = new SnapshotCodec<Appointment>() {
+        @Override
+        public String getType() {
+            return "Appointment";
+        }
+
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+
+        @Override
+        public String keyOf(Appointment appointment) {
+            return appointment.getAppointmentId();
+        }
+
+        @Override
+        public void write(Appointment appointment, SnapshotWriter out) throws IOException {
+            out.writeString(appointment.getAppointmentId());
+            out.writeString(appointment.getPatientId());
+            out.writeString(appointment.getDoctorId());
+            out.writeDateTime(appointment.getAppointmentDateTime());
+            out.writeString(appointment.getReason());
+            out.writeEnum(appointment.getStatus());
+            out.writeString(appointment.getNotes());
+            out.writeDouble(appointment.getConsultationFee());
+        }
+
+        @Override
+        public Appointment read(SnapshotReader in, int version) throws IOException {
+            Appointment appointment = new Appointment();
+            appointment.setAppointmentId(in.readString());
+            appointment.setPatientId(in.readString());
+            appointment.setDoctorId(in.readString());
+            appointment.setAppointmentDateTime(in.readDateTime());
+            appointment.setReason(in.readString());
+            appointment.setStatus(in.readEnum(STATUSES));
+            appointment.setNotes(in.readString());
+            appointment.setConsultationFee(in.readDouble());
+            return appointment;
+        }
+    };
+
+    public static final SnapshotCodec<Bill> BILL = new SnapshotCodec<Bill>() {
+        @Override
+        public String getType() {
+            return "Bill";
+        }
+
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+
+        @Override
+        public String keyOf(Bill bill) {
+            return bill.getBillId();
+        }
+
+        @Override
+        public void write(Bill bill, SnapshotWriter out) throws IOException {
+            out.writeString(bill.getBillId());
+            out.writeString(bill.getAppointmentId());
+            out.writeString(bill.getPatientId());
+            out.writeString(bill.getDoctorId());
+            // Amounts as exact paise; tax and total are derived on load
+            out.writeLong(bill.getConsultationFeePaise());
+            out.writeLong(bill.getMedicinesChargesPaise());
+            out.writeLong(bill.getTestChargesPaise());
+            out.writeLong(bill.getOtherChargesPaise());
+            out.writeDateTime(bill.getBillDate());
+            out.writeBoolean(bill.isPaid());
+        }
+
+        @Override
+        public Bill read(SnapshotReader in, int version) throws IOException {
+            Bill bill = new Bill();
+            bill.setBillId(in.readString());
+            bill.setAppointmentId(in.readString());
+            bill.setPatientId(in.readString());
+            bill.setDoctorId(in.readString());
+            bill.setConsultationFeePaise(in.readLong());
+            bill.setMedicinesChargesPaise(in.readLong());
+            bill.setTestChargesPaise(in.readLong());
+            bill.setOtherChargesPaise(in.readLong());
+            bill.setBillDate(in.readDateTime());
+            bill.setPaid(in.readBoolean());
+            return bill;
+        }
+    };
+
+    private static void writePerson(Person person, SnapshotWriter out) throws IOException {
+        out.writeString(person.getId());
+        out.writeString(person.getName());
+        out.writeString(person.getEmail());
+        out.writeString(person.getPhone());
+        out.writeInt(person.getAge());
+        out.writeString(person.getGender());
+        out.writeString(person.getAddress());
+    }
+
+    private static void readPerson(Person person, SnapshotReader in) throws IOException {
+        person.setId(in.readString());
+        person.setName(in.readString());
+        person.setEmail(in.readString());
+        person.setPhone(in.readString());
+        person.setAge(in.readInt());
+        person.setGender(in.readString());
+        person.setAddress(in.readString());
+    }
+
+    // Prevent instantiation
+    private SnapshotCodecs() {
+        throw new AssertionError("Cannot instantiate SnapshotCodecs class");
+    }
+}
@@ -0,0 +1,1447 @@
+package com.airtribe.meditrack.test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import com.airtribe.meditrack.entity.Appointment;
+import com.airtribe.meditrack.entity.AppointmentStatus;
+import com.airtribe.meditrack.entity.Bill;
+import com.airtribe.meditrack.entity.Doctor;
+import com.airtribe.meditrack.entity.Patient;
+import com.airtribe.meditrack.entity.Specialization;
+import com.airtribe.meditrack.service.AllergyIndex;
+import com.airtribe.meditrack.service.AppointmentService;
+import com.airtribe.meditrack.service.CSVSchemas;
+import com.airtribe.meditrack.service.SnapshotCodecs;
+import com.airtribe.meditrack.service.DoctorService;
+import com.airtribe.meditrack.service.PatientService;
+import com.airtribe.meditrack.util.CSVAppender;
+import com.airtribe.meditrack.util.CSVBinder;
+import com.airtribe.meditrack.util.CSVReader;
+import com.airtribe.meditrack.util.CSVRecord;
+import com.airtribe.meditrack.util.CSVUtil;
+import com.airtribe.meditrack.util.Checkpointer;
+import com.airtribe.meditrack.util.ConcurrentDataStore;
+import com.airtribe.meditrack.util.DataStore;
+import com.airtribe.meditrack.util.DateUtil;
+import com.airtribe.meditrack.util.FullTextIndex;
+import com.airtribe.meditrack.util.HashIndex;
+import com.airtribe.meditrack.util.IdGenerator;
+import com.airtribe.meditrack.util.Money;
+import com.airtribe.meditrack.util.NameIndex;
+import com.airtribe.meditrack.util.ParallelCSVReader;
+import com.airtribe.meditrack.util.Snapshots;
+import com.airtribe.meditrack.util.TieredDataStore;
+import com.airtribe.meditrack.util.WriteAheadLog;
+
+/**
+ * Manual benchmark runner for MediTrack data structures.
+ * Uses System.nanoTime() with a warm-up round instead of a benchmark framework,
+ * in the same spirit as TestRunner. Numbers are indicative, not rigorous.
+ * Usage: BenchmarkRunner [benchmark-name]  (runs everything when no name is given)
+ */
+public class BenchmarkRunner {
+    private static final int[] THREAD_COUNTS = {1, 4, 16, 64};
+    private static final int PRELOADED_KEYS = 10_000;
+    private static final int OPS_PER_ROUND = 400_000;
+    private static final int DOCTORS = 1_000;
+    
+    // Consumed results, so the JIT cannot drop the measured work
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        System.out.println("========== MediTrack Benchmarks ==========\n");
+        String only = args.length > 0 ? args[0] : null;
+
+        if (only == null || only.equals("datastore")) {
+            benchmarkDataStoreContention();
+        }
+        if (only == null || only.equals("index")) {
+            benchmarkSecondaryIndexLookup();
+        }
+        if (only == null || only.equals("money")) {
+            benchmarkMoneySummation();
+        }
+        if (only == null || only.equals("ids")) {
+            benchmarkIdGeneration();
+        }
+        if (only == null || only.equals("csv")) {
+            // Optional second argument: file size in MB
+            benchmarkCsvReading(args.length > 1 ? Integer.parseInt(args[1]) : 1024);
+        }
+        if (only == null || only.equals("mmap")) {
+            benchmarkMappedCsv(args.length > 1 ? Integer.parseInt(args[1]) : 256);
+        }
+        if (only == null || only.equals("import")) {
+            benchmarkParallelImport(args.length > 1 ? Integer.parseInt(args[1]) : 64);
+        }
+        if (only == null || only.equals("rfc")) {
+            benchmarkRfcParser(args.length > 1 ? Integer.parseInt(args[1]) : 128);
+        }
+        if (only == null || only.equals("bind")) {
+            benchmarkBinding(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+        }
+        if (only == null || only.equals("append")) {
+            benchmarkAppending(args.length > 1 ? Integer.parseInt(args[1]) : 100_000);
+        }
+        if (only == null || only.equals("snapshot")) {
+            benchmarkSnapshots(args.length > 1 ? Integer.parseInt(args[1]) : 200_000);
+        }
+        if (only == null || only.equals("wal")) {
+            benchmarkWriteAheadLog(args.length > 1 ? Integer.parseInt(args[1]) : 2_000);
+        }
+        if (only == null || only.equals("checkpoint")) {
+            benchmarkCheckpointing(args.length > 1 ? Integer.parseInt(args[1]) : 500_000);
+        }
+        if (only == null || only.equals("tiered")) {
+            benchmarkTieredPatients(args.length > 1 ? Integer.parseInt(args[1]) : 200_000);
+        }
+        if (only == null || only.equals("roster")) {
+            benchmarkDoctorRoster(args.length > 1 ? Integer.parseInt(args[1]) : 10_000);
+        }
+        if (only == null || only.equals("names")) {
+            benchmarkNameSearch(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+        }
+        if (only == null || only.equals("allergies")) {
+            benchmarkAllergyQueries(args.length > 1 ? Integer.parseInt(args[1]) : 500_000);
+        }
+        if (only == null || only.equals("ranges")) {
+            benchmarkAgeAndBmiQueries(args.length > 1 ? Integer.parseInt(args[1]) : 500_000);
+        }
+        if (only == null || only.equals("fulltext")) {
+            benchmarkFullText(args.length > 1 ? Integer.parseInt(args[1]) : 200_000);
+        }
+    }
+
+    /**
+     * Compare the plain DataStore (guarded by one global lock, the only safe way to
+     * share it) with ConcurrentDataStore under a 70% get / 20% update / 10% add mix.
+     */
+    private static void benchmarkDataStoreContention() {
+        System.out.println("--- DataStore contention (ops/sec) ---");
+        System.out.println(String.format("%-8s %18s %18s", "threads", "DataStore+lock", "ConcurrentDataStore"));
+
+        for (int threads : THREAD_COUNTS) {
+            // Warm-up round, result discarded
+            runContentionRound(new DataStore<String>(), true, threads);
+            runContentionRound(new ConcurrentDataStore<String>(), false, threads);
+
+            double plain = runContentionRound(new DataStore<String>(), true, threads);
+            double concurrent = runContentionRound(new ConcurrentDataStore<String>(), false, threads);
+            System.out.println(String.format("%-8d %18.0f %18.0f", threads, plain, concurrent));
+        }
+        System.out.println();
+    }
+
+    /**
+     * Compare a hash index lookup with the predicate scan it replaces,
+     * for "appointments of one doctor" over 1,000 doctors.
+     */
+    private static void benchmarkSecondaryIndexLookup() {
+        System.out.println("--- Secondary index vs scan (avg latency per lookup) ---");
+        System.out.println(String.format("%-10s %14s %14s", "entities", "scan (us)", "index (us)"));
+        
+        for (int size : new int[] {10_000, 100_000, 1_000_000}) {
+            DataStore<Appointment> store = new DataStore<>();
+            HashIndex<Appointment, String> byDoctor = store.addHashIndex("doctorId", Appointment::getDoctorId);
+            LocalDateTime base = LocalDateTime.now();
+            for (int i = 0; i < size; i++) {
+                String id = "APT" + i;
+                store.add(id, new Appointment(id, "PAT" + (i % 50_000), "DOC" + (i % DOCTORS),
+                        base.plusMinutes(i), "Checkup"));
+            }
+            
+            int lookups = size >= 1_000_000 ? 50 : 200;
+            long found = 0;
+            // Warm-up
+            for (int i = 0; i < lookups; i++) {
+                String doctorId = "DOC" + (i % DOCTORS);
+                found += store.search(apt -> apt.getDoctorId().equals(doctorId)).size();
+                found += store.findBy(byDoctor, doctorId).size();
+            }
+            
+            long begin = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                String doctorId = "DOC" + (i % DOCTORS);
+                found += store.search(apt -> apt.getDoctorId().equals(doctorId)).size();
+            }
+            double scanMicros = (System.nanoTime() - begin) / 1_000.0 / lookups;
+            
+            begin = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                found += store.findBy(byDoctor, "DOC" + (i % DOCTORS)).size();
+            }
+            double indexMicros = (System.nanoTime() - begin) / 1_000.0 / lookups;
+            
+            sink += found;
+            System.out.println(String.format("%-10d %14.1f %14.1f", size, scanMicros, indexMicros));
+        }
+        System.out.println();
+    }
+
+    /**
+     * Compare summing bill totals as doubles (the old revenue scan) with summing
+     * paise as longs, over 1,000,000 bills, and show the drift of the double sum.
+     */
+    private static void benchmarkMoneySummation() {
+        System.out.println("--- Revenue summation, 1,000,000 bills ---");
+        int size = 1_000_000;
+        Bill[] bills = new Bill[size];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < size; i++) {
+            // Fees in whole paise between 100.00 and 2,000.00
+            bills[i] = new Bill("BILL" + i, "APT" + i, "PAT" + i, "DOC" + (i % DOCTORS),
+                    random.nextInt(10_000, 200_001) / 100.0);
+        }
+        
+        double doubleSum = 0;
+        long paiseSum = 0;
+        // Warm-up
+        for (int round = 0; round < 5; round++) {
+            doubleSum = sumDoubles(bills);
+            paiseSum = sumPaise(bills);
+        }
+        
+        int rounds = 20;
+        long begin = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            doubleSum = sumDoubles(bills);
+        }
+        double doubleMillis = (System.nanoTime() - begin) / 1_000_000.0 / rounds;
+        
+        begin = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            paiseSum = sumPaise(bills);
+        }
+        double paiseMillis = (System.nanoTime() - begin) / 1_000_000.0 / rounds;
+        
+        sink += paiseSum + (long) doubleSum;
+        System.out.println(String.format("%-14s %12s %22s", "sum", "time (ms)", "result"));
+        System.out.println(String.format("%-14s %12.2f %22.6f", "double", doubleMillis, doubleSum));
+        System.out.println(String.format("%-14s %12.2f %22s", "long paise", paiseMillis, Money.format(paiseSum)));
+        System.out.println("drift of double sum: " + (Money.ofRupees(doubleSum) - paiseSum) + " paise");
+        System.out.println();
+    }
+
+    /**
+     * Compare the old String.format ID rendering with IdGenerator's char-buffer
+     * path: time and bytes allocated per ID on this thread.
+     */
+    private static void benchmarkIdGeneration() {
+        System.out.println("--- Appointment ID rendering, 2,000,000 IDs ---");
+        System.out.println(String.format("%-14s %12s %16s", "method", "ns/id", "bytes/id"));
+        int count = 2_000_000;
+        
+        // Warm-up
+        renderIds(false, count);
+        renderIds(true, count);
+        
+        for (boolean fast : new boolean[] {false, true}) {
+            long bytesBefore = allocatedBytes();
+            long begin = System.nanoTime();
+            renderIds(fast, count);
+            double nanos = (System.nanoTime() - begin) / (double) count;
+            long bytes = allocatedBytes() - bytesBefore;
+            System.out.println(String.format("%-14s %12.1f %16s", fast ? "char buffer" : "String.format",
+                    nanos, bytes < 0 ? "n/a" : String.format("%.1f", bytes / (double) count)));
+        }
+        System.out.println();
+    }
+
+    private static void renderIds(boolean fast, int count) {
+        long length = 0;
+        for (int i = 0; i < count; i++) {
+            long number = 10_000 + i;
+            String id = fast ? IdGenerator.formatAppointmentId(number) : "APT" + String.format("%08d", number);
+            length += id.length();
+        }
+        sink += length;
+    }
+
+    /**
+     * Bytes allocated so far by the current thread, or -1 when the JVM cannot tell.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * Compare CSVUtil.readCSV (whole file into a List) with the streaming
+     * CSVReader on a generated appointment export of the given size.
+     * readCSV is expected to run out of heap on large files; that is reported.
+     */
+    private static void benchmarkCsvReading(int megabytes) {
+        System.out.println("--- CSV import, " + megabytes + " MB appointment file ---");
+        try {
+            File file = generateAppointmentCsv(megabytes);
+            System.out.println(String.format("%-12s %12s %12s %14s", "reader", "rows", "MB/s", "heap used (MB)"));
+            
+            System.gc();
+            long heapBefore = usedHeap();
+            long begin = System.nanoTime();
+            final long[] checksum = new long[1];
+            long rows = CSVReader.forEach(file.getPath(), record -> checksum[0] += record.length(0));
+            long heapAfter = usedHeap();
+            printCsvRow("CSVReader", rows, file.length(), System.nanoTime() - begin, heapAfter - heapBefore);
+            sink += checksum[0];
+            
+            System.gc();
+            heapBefore = usedHeap();
+            begin = System.nanoTime();
+            try {
+                List<String[]> records = CSVUtil.readCSV(file.getPath());
+                heapAfter = usedHeap();
+                printCsvRow("readCSV", records.size(), file.length(), System.nanoTime() - begin, heapAfter - heapBefore);
+                sink += records.size();
+            } catch (OutOfMemoryError e) {
+                System.out.println(String.format("%-12s %12s %12s %14s", "readCSV", "-", "-",
+                        "OOM at -Xmx" + Runtime.getRuntime().maxMemory() / (1024 * 1024)));
+            }
+        } catch (IOException e) {
+            System.err.println("CSV benchmark failed: " + e.getMessage());
+        }
+        System.out.println();
+    }
+
+    /**
+     * Compare the three CSV read paths on a file small enough for readCSV:
+     * time and bytes allocated, summing one numeric field per row.
+     */
+    private static void benchmarkMappedCsv(int megabytes) {
+        System.out.println("--- CSV parse paths, " + megabytes + " MB appointment file ---");
+        try {
+            final File file = generateAppointmentCsv(megabytes);
+            System.out.println(String.format("%-16s %10s %12s %16s", "parser", "MB/s", "time (ms)", "allocated (MB)"));
+            final long[] checksum = new long[1];
+            
+            // One warm-up pass each, then the measured pass
+            for (int pass = 0; pass < 2; pass++) {
+                boolean print = pass == 1;
+                long bytes = allocatedBytes();
+                long begin = System.nanoTime();
+                List<String[]> records = CSVUtil.readCSV(file.getPath());
+                for (String[] record : records) {
+                    checksum[0] += record[0].length();
+                }
+                records = null;
+                reportParse(print, "readCSV", file, begin, bytes);
+                
+                bytes = allocatedBytes();
+                begin = System.nanoTime();
+                CSVReader.forEach(file.getPath(), record -> checksum[0] += record.length(0));
+                reportParse(print, "CSVReader", file, begin, bytes);
+                
+                bytes = allocatedBytes();
+                begin = System.nanoTime();
+                CSVUtil.forEachMappedRecord(file.getPath(), record -> checksum[0] += record.length(0));
+                reportParse(print, "MappedCSVParser", file, begin, bytes);
+            }
+            sink += checksum[0];
+        } catch (IOException e) {
+            System.err.println("CSV benchmark failed: " + e.getMessage());
+        }
+        System.out.println();
+    }
+
+    /**
+     * Parallel CSV ingestion at 1/2/4/8 threads: parse + map to Appointment
+     * (batches discarded), then a full import into an AppointmentService.
+     * Scaling is bounded by the cores actually available to the JVM.
+     */
+    private static void benchmarkParallelImport(int megabytes) {
+        System.out.println("--- Parallel CSV import, " + megabytes + " MB appointment file, "
+                + Runtime.getRuntime().availableProcessors() + " core(s) available ---");
+        System.out.println(String.format("%-8s %20s %20s", "threads", "parse+map (rows/s)", "import (rows/s)"));
+        try {
+            File file = generateAppointmentCsv(megabytes);
+            final LongAdder mapped = new LongAdder();
+            ParallelCSVReader.RecordMapper<Appointment> mapper = record -> new Appointment(record.get(0),
+                    record.get(1), record.get(2), LocalDateTime.parse(record.get(3)), record.get(4));
+            // Warm-up
+            ParallelCSVReader.read(file.getPath(), 1, ParallelCSVReader.DEFAULT_BATCH_SIZE, mapper,
+                    batch -> mapped.add(batch.size()));
+            
+            for (int threads : new int[] {1, 2, 4, 8}) {
+                mapped.reset();
+                long begin = System.nanoTime();
+                ParallelCSVReader.read(file.getPath(), threads, ParallelCSVReader.DEFAULT_BATCH_SIZE, mapper,
+                        batch -> mapped.add(batch.size()));
+                double parseRate = mapped.sum() / ((System.nanoTime() - begin) / 1_000_000_000.0);
+                
+                AppointmentService service = new AppointmentService(new DoctorService(), new PatientService());
+                System.gc();
+                begin = System.nanoTime();
+                long imported = service.importFromCSV(file.getPath(), threads);
+                double importRate = imported / ((System.nanoTime() - begin) / 1_000_000_000.0);
+                sink += imported + mapped.sum();
+                System.out.println(String.format("%-8d %20.0f %20.0f", threads, parseRate, importRate));
+            }
+        } catch (IOException e) {
+            System.err.println("Import benchmark failed: " + e.getMessage());
+        }
+        System.out.println();
+    }
+
+    /**
+     * Compare the RFC 4180 engine with the line-based parser it replaced,
+     * per line (parseLine) and per file (readCSV), on the appointment export.
+     */
+    private static void benchmarkRfcParser(int megabytes) {
+        System.out.println("--- RFC 4180 parser vs legacy line parser, " + megabytes + " MB ---");
+        System.out.println(String.format("%-22s %10s %12s", "parser", "MB/s", "time (ms)"));
+        try {
+            File file = generateAppointmentCsv(megabytes);
+            List<String> lines = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new FileReader(file), 1 << 16)) {
+                String line;
+                while ((line = reader.readLine()) != null && lines.size() < 2_000_000) {
+                    lines.add(line);
+                }
+            }
+            long lineBytes = 0;
+            for (String line : lines) {
+                lineBytes += line.length() + 1;
+            }
+            
+            for (int pass = 0; pass < 2; pass++) {
+                boolean print = pass == 1;
+                long begin = System.nanoTime();
+                long fields = 0;
+                for (String line : lines) {
+                    fields += legacyParseLine(line).length;
+                }
+                reportRate(print, "legacy parseLine", lineBytes, begin);
+                
+                begin = System.nanoTime();
+                for (String line : lines) {
+                    fields += CSVUtil.parseLine(line).length;
+                }
+                reportRate(print, "RFC parseLine", lineBytes, begin);
+                
+                begin = System.nanoTime();
+                try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        fields += legacyParseLine(line).length;
+                    }
+                }
+                reportRate(print, "legacy readCSV loop", file.length(), begin);
+                
+                begin = System.nanoTime();
+                try (CSVReader reader = new CSVReader(new BufferedReader(new FileReader(file)))) {
+                    CSVRecord record;
+                    while ((record = reader.next()) != null) {
+                        fields += record.toArray().length;
+                    }
+                }
+                reportRate(print, "RFC readCSV loop", file.length(), begin);
+                sink += fields;
+            }
+        } catch (IOException e) {
+            System.err.println("RFC benchmark failed: " + e.getMessage());
+        }
+        System.out.println();
+    }
+
+    /**
+     * Compare binding bill rows through String[] (toArray, then Double.parseDouble
+     * and DateUtil.parseDateTime per field) with the schema-driven CSVBinder.
+     * Both read the same file through CSVReader, so the difference is the binding.
+     */
+    private static void benchmarkBinding(int rows) {
+        System.out.println("--- Bill binding: String[] vs CSVBinder, " + rows + " rows ---");
+        System.out.println(String.format("%-16s %10s %16s", "binding", "ns/row", "bytes/row"));
+        try {
+            File file = File.createTempFile("meditrack-bench-bind", ".csv");
+            file.deleteOnExit();
+            LocalDateTime base = LocalDateTime.of(2024, 1, 1, 9, 0);
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                    StandardCharsets.UTF_8), 1 << 16)) {
+                for (int i = 0; i < rows; i++) {
+                    writer.write("BILL" + i + ",APT" + i + ",PAT" + (i % 50_000) + ",DOC" + (i % DOCTORS) + ","
+                            + (500 + i % 1000) + ".50," + (i % 300) + ".25,1200,0,"
+                            + DateUtil.formatDateTime(base.plusMinutes(i)) + "," + (i % 2 == 0) + "\n");
+                }
+            }
+            
+            CSVBinder.Mapping<Bill> mapping = CSVSchemas.BILL.defaultMapping();
+            for (int pass = 0; pass < 3; pass++) {
+                boolean print = pass == 2;
+                long bytesBefore = allocatedBytes();
+                long begin = System.nanoTime();
+                long total = 0;
+                try (CSVReader reader = CSVReader.open(file.getPath())) {
+                    CSVRecord record;
+                    while ((record = reader.next()) != null) {
+                        String[] values = record.toArray();
+                        Bill bill = new Bill();
+                        bill.setBillId(values[0]);
+                        bill.setAppointmentId(values[1]);
+                        bill.setPatientId(values[2]);
+                        bill.setDoctorId(values[3]);
+                        bill.setConsultationFee(Double.parseDouble(values[4]));
+                        bill.setMedicinesCharges(Double.parseDouble(values[5]));
+                        bill.setTestCharges(Double.parseDouble(values[6]));
+                        bill.setOtherCharges(Double.parseDouble(values[7]));
+                        bill.setBillDate(DateUtil.parseDateTime(values[8]));
+                        bill.setPaid(Boolean.parseBoolean(values[9]));
+                        total += bill.getTotalAmountPaise();
+                    }
+                }
+                reportBinding(print, "String[]", rows, begin, bytesBefore);
+                
+                bytesBefore = allocatedBytes();
+                begin = System.nanoTime();
+                try (CSVReader reader = CSVReader.open(file.getPath())) {
+                    CSVRecord record;
+                    while ((record = reader.next()) != null) {
+                        total += mapping.bind(record).getTotalAmountPaise();
+                    }
+                }
+                reportBinding(print, "CSVBinder", rows, begin, bytesBefore);
+                sink += total;
+            }
+        } catch (IOException e) {
+            System.err.println("Binding benchmark failed: " + e.getMessage());
+        }
+        System.out.println();
+    }
+
+    /**
+     * Compare appending records by opening the file per record (the old
+     * appendToCSV), appendToCSV on its long-lived appender, and a CSVAppender
+     * with group flushes, with and without a sync every 1000 records.
+     */
+    private static void benchmarkAppending(int records) {
+        System.out.println("--- CSV appends, " + records + " records ---");
+        System.out.println(String.format("%-24s %12s", "appender", "records/s"));
+        String[] record = {"APT10000000", "PAT123", "DOC45", "2024-01-01T09:00", "Follow-up, routine", "CONFIRMED"};
+        try {
+            for (int pass = 0; pass < 2; pass++) {
+                boolean print = pass == 1;
+                File file = File.createTempFile("meditrack-bench-append", ".csv");
+                file.deleteOnExit();
+                long begin = System.nanoTime();
+                for (int i = 0; i < records; i++) {
+                    try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, true))) {
+                        writer.write(CSVUtil.joinLine(record));
+                        writer.newLine();
+                    }
+                }
+                reportAppends(print, "open per record", records, begin);
+                
+                begin = System.nanoTime();
+                for (int i = 0; i < records; i++) {
+                    CSVUtil.appendToCSV(file.getPath(), record);
+                }
+                CSVUtil.closeAppenders();
+                reportAppends(print, "appendToCSV", records, begin);
+                
+                begin = System.nanoTime();
+                try (CSVAppender appender = CSVAppender.open(file.getPath())) {
+                    for (int i = 0; i < records; i++) {
+                        appender.append(record);
+                    }
+                }
+                reportAppends(print, "CSVAppender", records, begin);
+                
+                begin = System.nanoTime();
+                try (CSVAppender appender = CSVAppender.open(file.getPath())) {
+                    for (int i = 0; i < records; i++) {
+                        appender.append(record);
+                        if (i % 1000 == 999) {
+                            appender.sync();
+                        }
+                    }
+                    appender.sync();
+                }
+                reportAppends(print, "CSVAppender, sync/1000", records, begin);
+                file.delete();
+            }
+        } catch (IOException e) {
+            System.err.println("Append benchmark failed: " + e.getMessage());
+        }
+        System.out.println();
+    }
+
+    /**
+     * Compare saving and loading appointments as a binary snapshot, with Java
+     * serialization of the list, and as CSV (writeCSV, then CSVReader with the
+     * CSVBinder schema).
+     */
+    @SuppressWarnings("unchecked")
+    private static void benchmarkSnapshots(int count) {
+        System.out.println("--- Appointment persistence, " + count + " records ---");
+        System.out.println(String.format("%-16s %10s %10s %12s", "format", "save (ms)", "load (ms)", "size (KB)"));
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 9, 0);
+        List<Appointment> appointments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Appointment appointment = new Appointment("APT" + (10_000_000 + i), "PAT" + (i % 50_000),
+                    "DOC" + (i % DOCTORS), base.plusMinutes(30L * i), "Follow-up, routine");
+            appointment.setStatus(AppointmentStatus.values()[i % AppointmentStatus.values().length]);
+            appointment.setConsultationFee(500 + i % 1000);
+            appointments.add(appointment);
+        }
+        try {
+            File file = File.createTempFile("meditrack-bench-snapshot", ".dat");
+            file.deleteOnExit();
+            for (int pass = 0; pass < 3; pass++) {
+                boolean print = pass == 2;
+                
+                // Start each format with a clean heap, so earlier garbage is not billed to it
+                System.gc();
+                long begin = System.nanoTime();
+                Snapshots.save(file.getPath(), appointments, SnapshotCodecs.APPOINTMENT);
+                long saved = System.nanoTime();
+                sink += Snapshots.load(file.getPath(), SnapshotCodecs.APPOINTMENT).size();
+                reportPersistence(print, "binary snapshot", begin, saved, file);
+                
+                System.gc();
+                begin = System.nanoTime();
+                try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(file), 1 << 16))) {
+                    out.writeObject(appointments);
+                }
+                saved = System.nanoTime();
+                try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(
+                        new FileInputStream(file), 1 << 16))) {
+                    sink += ((List<Appointment>) in.readObject()).size();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException(e);
+                }
+                reportPersistence(print, "serialization", begin, saved, file);
+                
+                System.gc();
+                begin = System.nanoTime();
+                List<String[]> rows = new ArrayList<>(count);
+                for (Appointment appointment : appointments) {
+                    rows.add(new String[] {appointment.getAppointmentId(), appointment.getPatientId(),
+                            appointment.getDoctorId(), appointment.getAppointmentDateTime().toString(),
+                            appointment.getReason(), appointment.getStatus().name(), appointment.getNotes(),
+                            Double.toString(appointment.getConsultationFee())});
+                }
+                CSVUtil.writeCSV(file.getPath(), rows);
+                saved = System.nanoTime();
+                List<Appointment> loaded = new ArrayList<>(count);
+                CSVBinder.Mapping<Appointment> mapping = CSVSchemas.APPOINTMENT.defaultMapping();
+                try (CSVReader reader = CSVReader.open(file.getPath())) {
+                    CSVRecord record;
+                    while ((record = reader.next()) != null) {
+                        loaded.add(mapping.bind(record));
+                    }
+                }
+                sink += loaded.size();
+                reportPersistence(print, "CSV", begin, saved, file);
+            }
+        } catch (IOException e) {
+            System.err.println("Snapshot benchmark failed: " + e.getMessage());
+        }
+        System.out.println();
+    }
+
+    /**
+     * Compare write-ahead logging modes: synchronous commits from one thread
+     * (an fsync per change), synchronous commits from many threads (group
+     * commit shares fsyncs), and asynchronous group commit on a timer.
+     */
+    private static void benchmarkWriteAheadLog(int changesPerThread) {
+        System.out.println("--- Write-ahead log commits, " + changesPerThread + " changes per thread ---");
+        System.out.println(String.format("%-22s %8s %12s %16s", "mode", "threads", "changes/s", "changes/fsync"));
+        try {
+            runLogRound("sync, fsync per change", 0, 1, changesPerThread);
+            runLogRound("sync, group commit", 0, 16, changesPerThread);
+            runLogRound("async, 20 ms groups", 20, 16, changesPerThread);
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Write-ahead log benchmark failed: " + e.getMessage());
+        }
+        System.out.println();
+    }
+
+    private static void runLogRound(String name, long groupCommitMillis, int threads, final int changesPerThread)
+            throws IOException, InterruptedException {
+        File file = File.createTempFile("meditrack-bench-wal", ".log");
+        file.deleteOnExit();
+        final DataStore<Appointment> store = new ConcurrentDataStore<>();
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 9, 0);
+        try (WriteAheadLog log = WriteAheadLog.open(file.getPath(), groupCommitMillis)) {
+            log.attach("appointments", store, SnapshotCodecs.APPOINTMENT);
+            Thread[] writers = new Thread[threads];
+            long begin = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                writers[t] = new Thread(() -> {
+                    for (int i = 0; i < changesPerThread; i++) {
+                        String id = "APT" + thread + "-" + i;
+                        store.add(id, new Appointment(id, "PAT" + i, "DOC" + thread, base.plusMinutes(30L * i),
+                                "Follow-up, routine"));
+                    }
+                });
+                writers[t].start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            log.sync();
+            long nanos = System.nanoTime() - begin;
+            long changes = (long) threads * changesPerThread;
+            System.out.println(String.format("%-22s %8d %12.0f %16.1f", name, threads,
+                    changes / (nanos / 1_000_000_000.0), (double) changes / Math.max(1, log.getSyncCount())));
+        }
+        file.delete();
+    }
+
+    /**
+     * Restart time after a long history of updates to 10,000 appointments: replaying
+     * the whole log, against loading the last checkpoint and replaying its tail.
+     */
+    private static void benchmarkCheckpointing(int changes) {
+        System.out.println("--- Checkpointing, " + changes + " updates to 10000 appointments ---");
+        System.out.println(String.format("%-22s %10s %12s %12s %10s %12s", "mode", "changes/s", "checkpoints",
+                "avg/max ms", "log KB", "restart ms"));
+        try {
+            runCheckpointRound("log only", changes, 0);
+            runCheckpointRound("checkpoint every 1 MB", changes, 1024 * 1024);
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Checkpoint benchmark failed: " + e.getMessage());
+        }
+        System.out.println();
+    }
+
+    private static void runCheckpointRound(String name, int changes, long maxLogBytes)
+            throws IOException, InterruptedException {
+        File logFile = File.createTempFile("meditrack-bench-checkpoint", ".log");
+        File snapshotFile = File.createTempFile("meditrack-bench-checkpoint", ".dat");
+        logFile.deleteOnExit();
+        snapshotFile.deleteOnExit();
+        snapshotFile.delete();
+        final DataStore<Appointment> store = new ConcurrentDataStore<>();
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 9, 0);
+        String checkpoints = "-";
+        String durations = "-";
+        double rate;
+        try (WriteAheadLog log = WriteAheadLog.open(logFile.getPath(), 20)) {
+            log.attach("appointments", store, SnapshotCodecs.APPOINTMENT);
+            Checkpointer checkpointer = Checkpointer.start(log,
+                    () -> Snapshots.save(snapshotFile.getPath(), store.getAll(), SnapshotCodecs.APPOINTMENT),
+                    maxLogBytes, 0);
+            long begin = System.nanoTime();
+            for (int i = 0; i < changes; i++) {
+                String id = "APT" + (i % 10_000);
+                Appointment appointment = new Appointment(id, "PAT" + i, "DOC" + (i % DOCTORS),
+                        base.plusMinutes(30L * i), "Follow-up, routine");
+                appointment.setStatus(i % 2 == 0 ? AppointmentStatus.CONFIRMED : AppointmentStatus.PENDING);
+                store.add(id, appointment);
+            }
+            log.sync();
+            rate = changes / ((System.nanoTime() - begin) / 1_000_000_000.0);
+            checkpointer.close();
+            if (maxLogBytes > 0) {
+                checkpoints = String.valueOf(checkpointer.getCheckpointCount());
+                durations = String.format("%.0f/%.0f", checkpointer.getAverageDurationMillis(),
+                        checkpointer.getMaxDurationMillis());
+            }
+        }
+        // Restart: load the snapshot, if any, and replay the log
+        System.gc();
+        long begin = System.nanoTime();
+        DataStore<Appointment> recovered = new ConcurrentDataStore<>();
+        if (snapshotFile.exists()) {
+            for (Appointment appointment : Snapshots.load(snapshotFile.getPath(), SnapshotCodecs.APPOINTMENT)) {
+                recovered.add(appointment.getAppointmentId(), appointment);
+            }
+        }
+        try (WriteAheadLog log = WriteAheadLog.open(logFile.getPath(), 20)) {
+            log.attach("appointments", recovered, SnapshotCodecs.APPOINTMENT);
+            log.replay();
+        }
+        long nanos = System.nanoTime() - begin;
+        if (recovered.size() != store.size()) {
+            throw new IOException("Recovered " + recovered.size() + " of " + store.size() + " appointments");
+        }
+        System.out.println(String.format("%-22s %10.0f %12s %12s %10d %12.0f", name, rate, checkpoints, durations,
+                logFile.length() / 1024, nanos / 1_000_000.0));
+        logFile.delete();
+        snapshotFile.delete();
+    }
+
+    /**
+     * Heap held by a store of patients with long medical histories, all in memory
+     * against tiered to disk, and lookup cost when 90% of lookups go to the 1% of
+     * patients visiting this month.
+     */
+    private static void benchmarkTieredPatients(int count) {
+        System.out.println("--- Tiered patient store, " + count + " patients, 90% of lookups to 1% ---");
+        System.out.println(String.format("%-22s %10s %14s %12s", "store", "heap MB", "ns/lookup", "hit rate"));
+        try {
+            File recordFile = File.createTempFile("meditrack-bench-patients", ".records");
+            recordFile.deleteOnExit();
+            runTieredRound("all in memory", new ConcurrentDataStore<>(), count, null);
+            TieredDataStore<Patient, String> tiered = new TieredDataStore<>(recordFile.getPath(),
+                    SnapshotCodecs.PATIENT, Patient::getName, Math.max(1, count / 100));
+            runTieredRound("tiered, 1% cached", tiered, count, tiered);
+            tiered.close();
+            recordFile.delete();
+        } catch (IOException e) {
+            System.err.println("Tiered store benchmark failed: " + e.getMessage());
+        }
+        System.out.println();
+    }
+
+    private static void runTieredRound(String name, DataStore<Patient> store, int count,
+                                       TieredDataStore<Patient, String> tiered) {
+        System.gc();
+        long heapBefore = usedHeap();
+        StringBuilder history = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            history.append((char) ('a' + i % 26));
+        }
+        for (int i = 0; i < count; i++) {
+            Patient patient = new Patient("PAT" + i, "Patient " + i, "p" + i + "@email.com", "98" + (10_000_000 + i),
+                    20 + i % 60, i % 2 == 0 ? "Male" : "Female", "Street " + i + ", Pune");
+            patient.setMedicalHistory(history.toString() + i);
+            patient.addAllergy("Penicillin");
+            patient.addAllergy("Dust " + i % 10);
+            patient.setBloodType("O+");
+            store.add(patient.getId(), patient);
+        }
+        System.gc();
+        long heap = usedHeap() - heapBefore;
+        int hot = Math.max(1, count / 100);
+        int lookups = 1_000_000;
+        long hitsBefore = tiered != null ? tiered.getCacheHits() : 0;
+        long missesBefore = tiered != null ? tiered.getCacheMisses() : 0;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long begin = System.nanoTime();
+        long found = 0;
+        for (int i = 0; i < lookups; i++) {
+            int id = random.nextInt(10) < 9 ? random.nextInt(hot) : random.nextInt(count);
+            if (store.get("PAT" + id) != null) {
+                found++;
+            }
+        }
+        long nanos = System.nanoTime() - begin;
+        sink += found;
+        String hitRate = "-";
+        if (tiered != null) {
+            long hits = tiered.getCacheHits() - hitsBefore;
+            long misses = tiered.getCacheMisses() - missesBefore;
+            hitRate = String.format("%.1f%%", 100.0 * hits / Math.max(1, hits + misses));
+        }
+        System.out.println(String.format("%-22s %10d %14.0f %12s", name, heap / (1024 * 1024),
+                (double) nanos / lookups, hitRate));
+    }
+
+    /**
+     * Doctor analytics queries answered by scanning and sorting the roster (as
+     * DoctorService did before the DoctorRoster index) against the index.
+     */
+    private static void benchmarkDoctorRoster(int count) {
+        System.out.println("--- Doctor roster queries, " + count + " doctors ---");
+        DoctorService doctors = new DoctorService();
+        Random random = new Random(42);
+        Specialization[] specializations = Specialization.values();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));
+        try {
+            for (int i = 0; i < count; i++) {
+                Doctor doctor = doctors.addDoctor("Dr. " + i, "d" + i + "@meditrack.com", "9800000000", 40, "Female",
+                        "Pune", specializations[random.nextInt(specializations.length)], 300 + random.nextInt(500),
+                        random.nextInt(40), "LIC-" + i);
+                doctor.setRating(random.nextInt(51) / 10.0);
+                doctors.updateDoctor(doctor.getId(), doctor);
+            }
+        } finally {
+            System.setOut(out);
+        }
+        System.out.println(String.format("%-34s %12s %12s", "query", "scan+sort us", "roster us"));
+        for (int round = 0; round < 3; round++) {
+            boolean print = round == 2;
+            compareRosterQuery(print, "average fee, all specializations", () -> {
+                double sum = 0;
+                for (Specialization specialization : specializations) {
+                    sum += doctors.searchBySpecialization(specialization).stream()
+                            .mapToDouble(Doctor::getConsultationFee).average().orElse(0.0);
+                }
+                return (long) sum;
+            }, () -> {
+                double sum = 0;
+                for (Specialization specialization : specializations) {
+                    sum += doctors.getAverageConsultationFee(specialization);
+                }
+                return (long) sum;
+            });
+            compareRosterQuery(print, "best 5 neurologists by rating", () ->
+                    (long) doctors.getAllDoctors().stream()
+                            .filter(doctor -> doctor.getSpecialization() == Specialization.NEUROLOGIST)
+                            .sorted((d1, d2) -> Double.compare(d2.getRating(), d1.getRating()))
+                            .limit(5).collect(Collectors.toList()).size(),
+                    () -> (long) doctors.getTopDoctorsByRating(Specialization.NEUROLOGIST, 5).size());
+            compareRosterQuery(print, "best 10 by experience", () ->
+                    (long) doctors.getAllDoctors().stream()
+                            .sorted((d1, d2) -> Integer.compare(d2.getYearsOfExperience(), d1.getYearsOfExperience()))
+                            .limit(10).collect(Collectors.toList()).size(),
+                    () -> (long) doctors.getTopDoctorsByExperience(null, 10).size());
+            compareRosterQuery(print, "whole roster by rating", () ->
+                    (long) doctors.getAllDoctors().stream()
+                            .sorted((d1, d2) -> Double.compare(d2.getRating(), d1.getRating()))
+                            .collect(Collectors.toList()).size(),
+                    () -> (long) doctors.getDoctorsSortedByRating().size());
+        }
+        System.out.println();
+    }
+
+    private static void compareRosterQuery(boolean print, String name, LongSupplier scan,
+                                           LongSupplier roster) {
+        int repeats = 200;
+        long begin = System.nanoTime();
+        for (int i = 0; i < repeats; i++) {
+            sink += scan.getAsLong();
+        }
+        long scanned = System.nanoTime();
+        for (int i = 0; i < repeats; i++) {
+            sink += roster.getAsLong();
+        }
+        long end = System.nanoTime();
+        if (print) {
+            System.out.println(String.format("%-34s %12.1f %12.1f", name, (scanned - begin) / 1000.0 / repeats,
+                    (end - scanned) / 1000.0 / repeats));
+        }
+    }
+
+    /**
+     * Name search latency over synthetic patient names: the case-insensitive
+     * scan searchByName used to do against the NameIndex, for prefix,
+     * substring and misspelt queries.
+     */
+    private static void benchmarkNameSearch(int count) {
+        System.out.println("--- Name search, " + count + " names ---");
+        Random random = new Random(42);
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = syntheticWord(random) + " " + syntheticWord(random);
+        }
+        NameIndex<String> index = new NameIndex<>(name -> name);
+        long begin = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            index.put("PAT" + i, names[i]);
+        }
+        System.out.println(String.format("built in %.0f ms", (System.nanoTime() - begin) / 1_000_000.0));
+
+        int queries = 500;
+        String[] prefixes = new String[queries];
+        String[] substrings = new String[queries];
+        String[] typos = new String[queries];
+        for (int i = 0; i < queries; i++) {
+            String name = names[random.nextInt(count)];
+            String last = name.substring(name.indexOf(' ') + 1);
+            prefixes[i] = last.substring(0, Math.min(4, last.length()));
+            substrings[i] = name.substring(2, Math.min(name.length(), 6));
+            // Swap two letters of the surname
+            char[] letters = last.toCharArray();
+            int at = random.nextInt(letters.length - 1);
+            char swapped = letters[at];
+            letters[at] = letters[at + 1];
+            letters[at + 1] = swapped;
+            typos[i] = new String(letters);
+        }
+        System.out.println(String.format("%-12s %12s %12s %12s", "query", "scan p50 us", "index p50 us",
+                "index p99 us"));
+        for (int round = 0; round < 3; round++) {
+            boolean print = round == 2;
+            compareNameQuery(print, "prefix", names, prefixes, index);
+            compareNameQuery(print, "substring", names, substrings, index);
+            compareNameQuery(print, "misspelt", names, typos, index);
+        }
+        System.out.println();
+    }
+
+    private static String syntheticWord(Random random) {
+        String consonants = "bdghjklmnprstvy";
+        String vowels = "aeiou";
+        StringBuilder word = new StringBuilder();
+        int length = 2 + random.nextInt(2);
+        for (int i = 0; i < length; i++) {
+            word.append(consonants.charAt(random.nextInt(consonants.length())))
+                    .append(vowels.charAt(random.nextInt(vowels.length())));
+        }
+        word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+        return word.toString();
+    }
+
+    private static void compareNameQuery(boolean print, String name, String[] names, String[] queries,
+                                         NameIndex<String> index) {
+        // The scan is slow, so it only times a sample of the queries; it must see every name to rank them
+        long[] scanNanos = new long[20];
+        for (int i = 0; i < scanNanos.length; i++) {
+            String query = queries[i].toLowerCase();
+            long begin = System.nanoTime();
+            int found = 0;
+            for (String candidate : names) {
+                if (candidate.toLowerCase().contains(query)) {
+                    found++;
+                }
+            }
+            scanNanos[i] = System.nanoTime() - begin;
+            sink += found;
+        }
+        long[] indexNanos = new long[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            long begin = System.nanoTime();
+            sink += index.search(queries[i], 10).size();
+            indexNanos[i] = System.nanoTime() - begin;
+        }
+        Arrays.sort(scanNanos);
+        Arrays.sort(indexNanos);
+        if (print) {
+            System.out.println(String.format("%-12s %12.1f %12.1f %12.1f", name,
+                    scanNanos[scanNanos.length / 2] / 1000.0, indexNanos[indexNanos.length / 2] / 1000.0,
+                    indexNanos[indexNanos.length * 99 / 100] / 1000.0));
+        }
+    }
+
+    /**
+     * Pharmacy alert queries over the whole patient base: a scan of per-patient
+     * allergy string lists (as Patient held them before the allergy dictionary)
+     * against the AllergyIndex bitmaps.
+     */
+    private static void benchmarkAllergyQueries(int count) {
+        System.out.println("--- Allergy queries, " + count + " patients ---");
+        String[] vocabulary = new String[40];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = "Allergen " + i;
+        }
+        vocabulary[0] = "Penicillin";
+        vocabulary[1] = "Latex";
+        vocabulary[2] = "Sulfa";
+        Random random = new Random(42);
+        DataStore<Patient> store = new ConcurrentDataStore<>();
+        AllergyIndex index = store.addIndex("allergies", new AllergyIndex());
+        List<List<String>> legacyLists = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Patient patient = new Patient("PAT" + i, "Patient " + i, "p" + i + "@email.com", "9800000000", 40,
+                    "Female", "Pune");
+            List<String> allergies = new ArrayList<>();
+            for (int a = random.nextInt(4); a > 0; a--) {
+                // Skewed, so the first few allergens are the common ones
+                String allergy = vocabulary[(int) (vocabulary.length * Math.pow(random.nextDouble(), 3))];
+                if (!allergies.contains(allergy)) {
+                    allergies.add(allergy);
+                }
+            }
+            patient.setAllergies(allergies);
+            legacyLists.add(allergies);
+            store.add(patient.getId(), patient);
+        }
+        List<String> both = Arrays.asList("Penicillin", "Latex");
+        List<String> any = Arrays.asList("Penicillin", "Latex", "Sulfa");
+        System.out.println(String.format("%-30s %10s %10s %10s", "query", "matches", "scan ms", "index ms"));
+        for (int round = 0; round < 3; round++) {
+            boolean print = round == 2;
+            compareAllergyQuery(print, "penicillin AND latex", legacyLists,
+                    allergies -> allergies.containsAll(both), () -> index.withAll(both).size());
+            compareAllergyQuery(print, "penicillin OR latex OR sulfa", legacyLists,
+                    allergies -> allergies.contains("Penicillin") || allergies.contains("Latex")
+                            || allergies.contains("Sulfa"), () -> index.withAny(any).size());
+            compareAllergyQuery(print, "count penicillin", legacyLists,
+                    allergies -> allergies.contains("Penicillin"), () -> index.count("Penicillin"));
+        }
+        System.out.println();
+    }
+
+    private static void compareAllergyQuery(boolean print, String name, List<List<String>> legacyLists,
+                                            Predicate<List<String>> legacy,
+                                            IntSupplier indexed) {
+        int repeats = 10;
+        long begin = System.nanoTime();
+        int scanned = 0;
+        for (int r = 0; r < repeats; r++) {
+            scanned = 0;
+            for (List<String> allergies : legacyLists) {
+                if (legacy.test(allergies)) {
+                    scanned++;
+                }
+            }
+        }
+        long middle = System.nanoTime();
+        int matched = 0;
+        for (int r = 0; r < repeats; r++) {
+            matched = indexed.getAsInt();
+        }
+        long end = System.nanoTime();
+        sink += scanned + matched;
+        if (print) {
+            System.out.println(String.format("%-30s %10d %10.2f %10.2f", name, matched,
+                    (middle - begin) / 1_000_000.0 / repeats, (end - middle) / 1_000_000.0 / repeats));
+        }
+    }
+
+    /**
+     * Population-health queries answered by scanning every patient and
+     * recomputing BMI (as PatientService did before the age and BMI indexes)
+     * against the indexes.
+     */
+    private static void benchmarkAgeAndBmiQueries(int count) {
+        System.out.println("--- Age and BMI queries, " + count + " patients ---");
+        PatientService patients = new PatientService();
+        Random random = new Random(42);
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));
+        try {
+            for (int i = 0; i < count; i++) {
+                Patient patient = patients.addPatient("Patient " + i, "p" + i + "@email.com", "9800000000",
+                        random.nextInt(95), "Female", "Pune");
+                patient.setHeight(150 + random.nextInt(45));
+                patient.setWeight(45 + random.nextInt(60));
+                patients.updatePatient(patient.getId(), patient);
+            }
+        } finally {
+            System.setOut(out);
+        }
+        System.out.println(String.format("%-24s %10s %10s", "query", "scan ms", "index ms"));
+        for (int round = 0; round < 3; round++) {
+            boolean print = round == 2;
+            compareRangeQuery(print, "age == 42", () -> patients.getAllPatients().stream()
+                    .filter(p -> p.getAge() == 42).count(), () -> patients.searchByAge(42).size());
+            compareRangeQuery(print, "age 30 to 39", () -> patients.getAllPatients().stream()
+                    .filter(p -> p.getAge() >= 30 && p.getAge() <= 39).count(),
+                    () -> patients.searchByAgeRange(30, 39).size());
+            compareRangeQuery(print, "age histogram, decades", () -> patients.getAllPatients().stream()
+                    .collect(Collectors.groupingBy(p -> p.getAge() / 10, Collectors.counting())).size(),
+                    () -> patients.getAgeHistogram(10).size());
+            compareRangeQuery(print, "BMI over 35", () -> patients.getAllPatients().stream()
+                    .filter(p -> legacyBmi(p) > 35).count(), () -> patients.getPatientsWithHighBMI(35).size());
+            compareRangeQuery(print, "BMI categories", () -> patients.getAllPatients().stream()
+                    .collect(Collectors.groupingBy(p -> {
+                        double bmi = legacyBmi(p);
+                        return bmi == 0 ? 0 : bmi < 18.5 ? 1 : bmi < 25 ? 2 : bmi < 30 ? 3 : 4;
+                    }, Collectors.counting())).size(), () -> patients.getBMICategoryCounts().size());
+        }
+        System.out.println();
+    }
+
+    /**
+     * Patient.getBMI() before it was cached.
+     */
+    private static double legacyBmi(Patient patient) {
+        if (patient.getHeight() == 0) return 0;
+        double heightInMeters = patient.getHeight() / 100;
+        return patient.getWeight() / (heightInMeters * heightInMeters);
+    }
+
+    private static void compareRangeQuery(boolean print, String name, LongSupplier scan, LongSupplier indexed) {
+        int repeats = 10;
+        long begin = System.nanoTime();
+        for (int i = 0; i < repeats; i++) {
+            sink += scan.getAsLong();
+        }
+        long middle = System.nanoTime();
+        for (int i = 0; i < repeats; i++) {
+            sink += indexed.getAsLong();
+        }
+        long end = System.nanoTime();
+        if (print) {
+            System.out.println(String.format("%-24s %10.2f %10.2f", name, (middle - begin) / 1_000_000.0 / repeats,
+                    (end - middle) / 1_000_000.0 / repeats));
+        }
+    }
+
+    /**
+     * Finding patients by condition in synthetic medical histories: a scan of
+     * every history (the only way before the FullTextIndex) against the index,
+     * and the size of the varint postings against plain int postings.
+     */
+    private static void benchmarkFullText(int count) {
+        System.out.println("--- Full-text search, " + count + " medical histories ---");
+        String[] conditions = {"diabetes", "hypertension", "asthma", "migraine", "arthritis", "anaemia",
+            "hypothyroidism", "eczema", "gout", "psoriasis", "epilepsy", "glaucoma"};
+        String[] filler = new String[2_000];
+        for (int i = 0; i < filler.length; i++) {
+            filler[i] = "word" + Integer.toString(i, 36);
+        }
+        Random random = new Random(42);
+        String[] histories = new String[count];
+        FullTextIndex<String> index = new FullTextIndex<>(text -> text);
+        long textBytes = 0;
+        long plainBytes = 0;
+        long begin = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            StringBuilder history = new StringBuilder();
+            int words = 20 + random.nextInt(40);
+            for (int w = 0; w < words; w++) {
+                int roll = random.nextInt(100);
+                if (roll < 3) {
+                    history.append(conditions[random.nextInt(conditions.length)]);
+                } else if (roll < 5) {
+                    history.append(random.nextBoolean() ? "chest pain" : "pain in chest");
+                } else {
+                    // Skewed, so some filler words are common and most are rare
+                    history.append(filler[(int) (filler.length * Math.pow(random.nextDouble(), 3))]);
+                }
+                history.append(w % 8 == 7 ? ". " : " ");
+            }
+            histories[i] = history.toString();
+            index.put("PAT" + i, histories[i]);
+            textBytes += histories[i].length();
+            // As plain ints: document and position count per term, then each position
+            List<String> terms = FullTextIndex.tokenize(histories[i]);
+            plainBytes += 4L * (2 * new HashSet<>(terms).size() + terms.size());
+        }
+        System.out.println(String.format("indexed in %.0f ms; text %d KB, postings %d KB (as plain ints %d KB)",
+                (System.nanoTime() - begin) / 1_000_000.0, textBytes / 1024, index.getPostingsBytes() / 1024,
+                plainBytes / 1024));
+
+        System.out.println(String.format("%-26s %10s %10s %10s", "query", "matches", "scan ms", "index ms"));
+        for (int round = 0; round < 3; round++) {
+            boolean print = round == 2;
+            compareTextQuery(print, "gout", "gout", histories, history -> history.contains("gout"), index);
+            compareTextQuery(print, "diabetes AND hypertension", "diabetes hypertension", histories,
+                    history -> history.contains("diabetes") && history.contains("hypertension"), index);
+            compareTextQuery(print, "phrase \"chest pain\"", "\"chest pain\"", histories,
+                    history -> history.replace(".", "").contains("chest pain"), index);
+            compareTextQuery(print, "asthma OR eczema", "asthma OR eczema", histories,
+                    history -> history.contains("asthma") || history.contains("eczema"), index);
+            compareTextQuery(print, "diabetes NOT migraine", "diabetes -migraine", histories,
+                    history -> history.contains("diabetes") && !history.contains("migraine"), index);
+        }
+        System.out.println();
+    }
+
+    private static void compareTextQuery(boolean print, String name, String query, String[] histories,
+                                         Predicate<String> scan, FullTextIndex<String> index) {
+        int repeats = 3;
+        long begin = System.nanoTime();
+        int scanned = 0;
+        for (int r = 0; r < repeats; r++) {
+            scanned = 0;
+            for (String history : histories) {
+                if (scan.test(history.toLowerCase())) {
+                    scanned++;
+                }
+            }
+        }
+        long middle = System.nanoTime();
+        int matched = 0;
+        for (int r = 0; r < repeats; r++) {
+            matched = index.search(query, Integer.MAX_VALUE).size();
+        }
+        long end = System.nanoTime();
+        sink += scanned + matched;
+        if (print) {
+            System.out.println(String.format("%-26s %10s %10.2f %10.2f", name,
+                    matched == scanned ? String.valueOf(matched) : matched + "/" + scanned,
+                    (middle - begin) / 1_000_000.0 / repeats, (end - middle) / 1_000_000.0 / repeats));
+        }
+    }
+
+    private static void reportPersistence(boolean print, String name, long begin, long saved, File file) {
+        long loaded = System.nanoTime();
+        if (print) {
+            System.out.println(String.format("%-16s %10.0f %10.0f %12d", name, (saved - begin) / 1_000_000.0,
+                    (loaded - saved) / 1_000_000.0, file.length() / 1024));
+        }
+    }
+
+    private static void reportAppends(boolean print, String name, int records, long begin) {
+        long nanos = System.nanoTime() - begin;
+        if (print) {
+            System.out.println(String.format("%-24s %12.0f", name, records / (nanos / 1_000_000_000.0)));
+        }
+    }
+
+    private static void reportBinding(boolean print, String name, int rows, long begin, long bytesBefore) {
+        long nanos = System.nanoTime() - begin;
+        long allocated = allocatedBytes() - bytesBefore;
+        if (print) {
+            System.out.println(String.format("%-16s %10.0f %16d", name, (double) nanos / rows, allocated / rows));
+        }
+    }
+
+    private static void reportRate(boolean print, String name, long bytes, long begin) {
+        long nanos = System.nanoTime() - begin;
+        if (print) {
+            System.out.println(String.format("%-22s %10.1f %12.0f", name,
+                    bytes / (1024.0 * 1024.0) / (nanos / 1_000_000_000.0), nanos / 1_000_000.0));
+        }
+    }
+
+    /**
+     * The quote-toggling line parser CSVUtil used before the RFC 4180 engine,
+     * kept here as the benchmark baseline.
+     */
+    private static String[] legacyParseLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean insideQuotes = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                insideQuotes = !insideQuotes;
+            } else if (c == ',' && !insideQuotes) {
+                values.add(current.toString().trim());
+                current = new StringBuilder();
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString().trim());
+        return values.toArray(new String[0]);
+    }
+
+    private static void reportParse(boolean print, String name, File file, long begin, long bytesBefore) {
+        long nanos = System.nanoTime() - begin;
+        long allocated = allocatedBytes() - bytesBefore;
+        if (print) {
+            double megabytes = file.length() / (1024.0 * 1024.0);
+            System.out.println(String.format("%-16s %10.1f %12.0f %16d", name,
+                    megabytes / (nanos / 1_000_000_000.0), nanos / 1_000_000.0, allocated / (1024 * 1024)));
+        }
+    }
+
+    private static File generateAppointmentCsv(int megabytes) throws IOException {
+        File file = new File(System.getProperty("java.io.tmpdir"), "meditrack-bench-" + megabytes + "mb.csv");
+        long target = megabytes * 1024L * 1024L;
+        if (file.length() >= target) {
+            return file;
+        }
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 9, 0);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.UTF_8), 1 << 16)) {
+            long written = 0;
+            for (long i = 0; written < target; i++) {
+                String row = "APT" + (10_000_000 + i) + ",PAT" + (i % 50_000) + ",DOC" + (i % DOCTORS) + ","
+                        + base.plusMinutes(30 * (i % 100_000)) + ",\"Follow-up, routine\",CONFIRMED\n";
+                writer.write(row);
+                written += row.length();
+            }
+        }
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static void printCsvRow(String name, long rows, long bytes, long nanos, long heapBytes) {
+        double megabytes = bytes / (1024.0 * 1024.0);
+        System.out.println(String.format("%-12s %12d %12.1f %14d", name, rows,
+                megabytes / (nanos / 1_000_000_000.0), heapBytes / (1024 * 1024)));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static double sumDoubles(Bill[] bills) {
+        double sum = 0;
+        for (Bill bill : bills) {
+            sum += bill.getTotalAmount();
+        }
+        return sum;
+    }
+
+    private static long sumPaise(Bill[] bills) {
+        long sum = 0;
+        for (Bill bill : bills) {
+            sum += bill.getTotalAmountPaise();
+        }
+        return sum;
+    }
+
+    private static double runContentionRound(final DataStore<String> store, final boolean globalLock,
+                                             int threads) {
+        for (int i = 0; i < PRELOADED_KEYS; i++) {
+            store.add("K" + i, "V" + i);
+        }
+
+        final int opsPerThread = OPS_PER_ROUND / threads;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            final int threadId = t;
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                    for (int i = 0; i < opsPerThread; i++) {
+                        int op = random.nextInt(100);
+                        String key = "K" + random.nextInt(PRELOADED_KEYS);
+                        if (op < 70) {
+                            if (globalLock) {
+                                synchronized (store) {
+                                    store.get(key);
+                                }
+                            } else {
+                                store.get(key);
+                            }
+                        } else if (op < 90) {
+                            if (globalLock) {
+                                synchronized (store) {
+                                    store.update(key, "U" + i);
+                                }
+                            } else {
+                                store.update(key, "U" + i);
+                            }
+                        } else {
+                            String newKey = "N" + threadId + "-" + i;
+                            if (globalLock) {
+                                synchronized (store) {
+                                    store.add(newKey, "V" + i);
+                                }
+                            } else {
+                                store.add(newKey, "V" + i);
+                            }
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            worker.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long elapsed = System.nanoTime() - begin;
+        return (opsPerThread * (double) threads) / (elapsed / 1_000_000_000.0);
+    }
+}
@@ -1,10 +1,33 @@
 package com.airtribe.meditrack.test;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
+import com.airtribe.meditrack.constants.Constants;
 import com.airtribe.meditrack.entity.Appointment;
 import com.airtribe.meditrack.entity.AppointmentStatus;
+import com.airtribe.meditrack.entity.AvailableSlot;
 import com.airtribe.meditrack.entity.Bill;
 import com.airtribe.meditrack.entity.BillSummary;
 import com.airtribe.meditrack.entity.Doctor;
@@ -13,11 +36,30 @@ import com.airtribe.meditrack.entity.Specialization;
 import com.airtribe.meditrack.exception.AppointmentNotFoundException;
 import com.airtribe.meditrack.exception.InvalidDataException;
 import com.airtribe.meditrack.service.AppointmentService;
+import com.airtribe.meditrack.service.AvailabilityService;
 import com.airtribe.meditrack.service.BillingService;
+import com.airtribe.meditrack.service.CSVSchemas;
 import com.airtribe.meditrack.service.DoctorService;
 import com.airtribe.meditrack.service.PatientService;
+import com.airtribe.meditrack.service.SnapshotCodecs;
+import com.airtribe.meditrack.util.CSVAppender;
+import com.airtribe.meditrack.util.CSVBinder;
+import com.airtribe.meditrack.util.CSVReader;
+import com.airtribe.meditrack.util.CSVRecord;
+import com.airtribe.meditrack.util.CSVUtil;
+import com.airtribe.meditrack.util.Checkpointer;
+import com.airtribe.meditrack.util.ConcurrentDataStore;
+import com.airtribe.meditrack.util.DataStore;
+import com.airtribe.meditrack.util.FullTextIndex;
+import com.airtribe.meditrack.util.HashIndex;
 import com.airtribe.meditrack.util.IdGenerator;
+import com.airtribe.meditrack.util.MappedCSVParser;
+import com.airtribe.meditrack.util.Money;
+import com.airtribe.meditrack.util.NameIndex;
+import com.airtribe.meditrack.util.OrderedIndex;
+import com.airtribe.meditrack.util.TieredDataStore;
 import com.airtribe.meditrack.util.Validator;
+import com.airtribe.meditrack.util.WriteAheadLog;
 
 /**
  * Manual test runner for MediTrack application.
@@ -65,6 +107,30 @@ public class TestRunner {
         testImmutability();
         testCloning();
         testStreams();
+        testConcurrentDataStore();
+        testDataStoreSlots();
+        testSecondaryIndexes();
+        testAppointmentTimeIndex();
+        testDoubleBookingUnderContention();
+        testSlotAvailability();
+        testBillingAggregates();
+        testMoney();
+        testDurableIdBlocks();
+        testStreamingCSVReader();
+        testMappedCSVParser();
+        testParallelCSVImport();
+        testCSVRoundTrip();
+        testCSVBinder();
+        testCSVAppender();
+        testSnapshots();
+        testWriteAheadLog();
+        testCheckpointer();
+        testTieredPatientStore();
+        testDoctorRoster();
+        testNameIndex();
+        testAllergyIndex();
+        testAgeAndBmiIndexes();
+        testFullTextIndex();
     }
     
     /**
@@ -157,6 +223,24 @@ public class TestRunner {
         assertTrue(billId.startsWith("BILL"), "Bill ID should start with BILL");
         testsPassed++;
         
+        // Fast path must render exactly what String.format did
+        boolean sameAsFormat = true;
+        for (long n : new long[] {0, 7, 1001, 99999, 100000, 10000001, 123456789012L}) {
+            sameAsFormat &= IdGenerator.formatPatientId(n).equals("PAT" + String.format("%05d", n))
+                    && IdGenerator.formatAppointmentId(n).equals("APT" + String.format("%08d", n))
+                    && IdGenerator.formatBillId(n).equals("BILL" + String.format("%08d", n));
+        }
+        assertTrue(sameAsFormat, "Formatted IDs should match String.format output");
+        testsPassed++;
+        
+        long number = gen1.nextAppointmentNumber();
+        assertEquals(number, IdGenerator.parseNumber(IdGenerator.formatAppointmentId(number),
+                IdGenerator.APPOINTMENT_PREFIX), "Numeric ID should round-trip through its string form");
+        testsPassed++;
+        assertEquals(-1L, IdGenerator.parseNumber("DOC00501", IdGenerator.PATIENT_PREFIX),
+                "Parsing should reject a foreign prefix");
+        testsPassed++;
+        
         System.out.println();
     }
     
@@ -413,6 +497,1519 @@ public class TestRunner {
         System.out.println();
     }
     
+    /**
+     * Test concurrent DataStore under parallel writers
+     */
+    private static void testConcurrentDataStore() {
+        System.out.println("--- Testing Concurrent DataStore ---");
+        
+        final ConcurrentDataStore<String> store = new ConcurrentDataStore<>();
+        final int threads = 8;
+        final int perThread = 1000;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int threadId = t;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    store.add("T" + threadId + "-" + i, "value");
+                }
+            });
+            workers[t].start();
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        assertEquals(threads * perThread, store.size(), "Concurrent adds should not lose entries");
+        testsPassed++;
+        assertEquals(threads * perThread, store.getAll().size(), "Ordered view should match key map");
+        testsPassed++;
+        
+        // Deleting while iterating must not throw ConcurrentModificationException
+        int visited = 0;
+        Iterator<String> iterator = store.iterator();
+        while (iterator.hasNext()) {
+            iterator.next();
+            store.delete("T0-" + visited);
+            visited++;
+        }
+        assertEquals(threads * perThread - perThread, store.size(), "Deletes during iteration should apply");
+        testsPassed++;
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test DataStore slot index, tombstones and compaction
+     */
+    private static void testDataStoreSlots() {
+        System.out.println("--- Testing DataStore Slots & Compaction ---");
+        
+        DataStore<String> store = new DataStore<>();
+        for (int i = 0; i < 1000; i++) {
+            store.add("K" + i, "V" + i);
+        }
+        
+        // Delete every even key, forcing tombstones and compaction
+        for (int i = 0; i < 1000; i += 2) {
+            store.delete("K" + i);
+        }
+        assertEquals(500, store.size(), "Size should reflect deletes");
+        testsPassed++;
+        
+        assertEquals("V1", store.getByIndex(0), "getByIndex should skip deleted entries");
+        testsPassed++;
+        assertEquals("V999", store.getByIndex(499), "getByIndex should keep insertion order");
+        testsPassed++;
+        
+        store.update("K501", "updated");
+        assertEquals("updated", store.getByIndex(250), "Update should replace in place");
+        testsPassed++;
+        
+        int count = 0;
+        Iterator<String> iterator = store.iterator();
+        while (iterator.hasNext()) {
+            iterator.next();
+            if (count++ % 2 == 0) {
+                iterator.remove();
+            }
+        }
+        assertEquals(250, store.size(), "Iterator remove should delete from the store");
+        testsPassed++;
+        assertEquals(250, store.getAll().size(), "Ordered view should match key map");
+        testsPassed++;
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test secondary index maintenance on add/update/delete
+     */
+    private static void testSecondaryIndexes() {
+        System.out.println("--- Testing Secondary Indexes ---");
+        
+        DataStore<Patient> store = new DataStore<>();
+        HashIndex<Patient, String> byBloodType = store.addHashIndex("bloodType", Patient::getBloodType);
+        OrderedIndex<Patient, Integer> byAge = store.addOrderedIndex("age", Patient::getAge);
+        
+        for (int i = 0; i < 10; i++) {
+            Patient patient = new Patient("P" + i, "Patient " + i, "p" + i + "@email.com",
+                    "9000000000", 20 + i, "Female", "Pune");
+            patient.setBloodType(i % 2 == 0 ? "A+" : "B+");
+            store.add(patient.getId(), patient);
+        }
+        
+        assertEquals(5, store.findBy(byBloodType, "A+").size(), "Hash index should find matching entities");
+        testsPassed++;
+        
+        // Mutate in place, then tell the store
+        Patient changed = store.get("P0");
+        changed.setBloodType("O-");
+        store.update("P0", changed);
+        assertEquals(4, byBloodType.count("A+"), "Update should move entity out of old bucket");
+        testsPassed++;
+        assertEquals(1, byBloodType.count("O-"), "Update should file entity under new key");
+        testsPassed++;
+        
+        store.delete("P1");
+        assertEquals(4, store.findBy(byBloodType, "B+").size(), "Delete should remove entity from index");
+        testsPassed++;
+        
+        assertEquals(3, store.findRange(byAge, 22, 25).size(), "Ordered index should answer range queries");
+        testsPassed++;
+        
+        // Service queries go through the indexes
+        List<Doctor> cardiologists = doctorService.searchBySpecialization(Specialization.CARDIOLOGIST);
+        assertEquals(cardiologists.size(), (int) doctorService.getAllDoctors().stream()
+                .filter(d -> d.getSpecialization() == Specialization.CARDIOLOGIST).count(),
+                "Specialization index should match a full scan");
+        testsPassed++;
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test time-ordered appointment queries
+     */
+    private static void testAppointmentTimeIndex() {
+        System.out.println("--- Testing Appointment Time Index ---");
+        
+        try {
+            Doctor doctor = doctorService.addDoctor("Dr. Rao", "rao@meditrack.com", "9876543212",
+                    50, "Male", "Chennai", Specialization.NEUROLOGIST, 550, 20, "LIC003");
+            Patient patient = patientService.getAllPatients().get(0);
+            LocalDateTime base = LocalDateTime.now().plusDays(30).withHour(10).withMinute(0).withSecond(0).withNano(0);
+            
+            Appointment third = appointmentService.createAppointment(patient.getId(), doctor.getId(),
+                    base.plusHours(2), "Follow-up");
+            Appointment first = appointmentService.createAppointment(patient.getId(), doctor.getId(),
+                    base, "Consultation");
+            Appointment second = appointmentService.createAppointment(patient.getId(), doctor.getId(),
+                    base.plusHours(1), "Scan review");
+            
+            List<Appointment> next = appointmentService.getNextAppointmentsForDoctor(doctor.getId(), 2);
+            assertEquals(2, next.size(), "Next-N query should honour the limit");
+            testsPassed++;
+            assertEquals(first.getAppointmentId(), next.get(0).getAppointmentId(),
+                    "Next-N query should be chronological");
+            testsPassed++;
+            
+            List<Appointment> window = appointmentService.getAppointmentsBetween(base, base.plusHours(2));
+            assertEquals(2, window.size(), "Range query should exclude the end bound");
+            testsPassed++;
+            
+            appointmentService.rescheduleAppointment(third.getAppointmentId(), base.minusHours(1));
+            next = appointmentService.getNextAppointmentsForDoctor(doctor.getId(), 1);
+            assertEquals(third.getAppointmentId(), next.get(0).getAppointmentId(),
+                    "Reschedule should move appointment in the time index");
+            testsPassed++;
+            
+            appointmentService.cancelAppointment(second.getAppointmentId());
+            window = appointmentService.getAppointmentsBetween(base, base.plusHours(2));
+            assertEquals(1, window.size(), "Cancelled appointments should leave the time index");
+            testsPassed++;
+        } catch (AppointmentNotFoundException e) {
+            testsFailed++;
+            System.err.println("Time index test failed: " + e.getMessage());
+        }
+        
+        System.out.println();
+    }
+    
+    /**
+     * Stress test: many desks booking the same slots concurrently
+     */
+    private static void testDoubleBookingUnderContention() {
+        System.out.println("--- Testing Double-Booking Prevention (concurrent) ---");
+        
+        final int threads = 16;
+        final int slotsPerDoctor = 10;
+        final List<Doctor> doctors = new ArrayList<>();
+        for (int d = 0; d < 4; d++) {
+            doctors.add(doctorService.addDoctor("Dr. Stress " + d, "stress" + d + "@meditrack.com",
+                    "98765432" + (20 + d), 40, "Female", "Delhi", Specialization.PEDIATRICIAN, 350, 8, "LICS" + d));
+        }
+        final String patientId = patientService.getAllPatients().get(0).getId();
+        final LocalDateTime day = LocalDateTime.now().plusDays(60).withHour(Constants.CLINIC_OPENING_HOUR)
+                .withMinute(0).withSecond(0).withNano(0);
+        final AtomicInteger booked = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        
+        Thread[] desks = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            desks[t] = new Thread(() -> {
+                List<Object[]> attempts = new ArrayList<>();
+                for (Doctor doctor : doctors) {
+                    for (int slot = 0; slot < slotsPerDoctor; slot++) {
+                        LocalDateTime time = day.plusMinutes((long) slot * Constants.APPOINTMENT_SLOT_DURATION);
+                        attempts.add(new Object[] {doctor.getId(), time});
+                        // Off-grid start overlapping two neighbouring slots
+                        attempts.add(new Object[] {doctor.getId(), time.plusMinutes(15)});
+                    }
+                }
+                Collections.shuffle(attempts);
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (Object[] attempt : attempts) {
+                    try {
+                        appointmentService.createAppointment(patientId, (String) attempt[0],
+                                (LocalDateTime) attempt[1], "Stress booking");
+                        booked.incrementAndGet();
+                    } catch (AppointmentNotFoundException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+            });
+            desks[t].start();
+        }
+        
+        long begin = System.nanoTime();
+        start.countDown();
+        try {
+            for (Thread desk : desks) {
+                desk.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        double seconds = (System.nanoTime() - begin) / 1_000_000_000.0;
+        
+        // Invariant: per doctor, active appointments start at least one slot apart
+        int overlaps = 0;
+        for (Doctor doctor : doctors) {
+            List<Appointment> schedule = appointmentService.getNextAppointmentsForDoctor(doctor.getId(),
+                    Integer.MAX_VALUE);
+            for (int i = 1; i < schedule.size(); i++) {
+                long gap = Duration.between(schedule.get(i - 1).getAppointmentDateTime(),
+                        schedule.get(i).getAppointmentDateTime()).toMinutes();
+                if (gap < Constants.APPOINTMENT_SLOT_DURATION) {
+                    overlaps++;
+                }
+            }
+        }
+        
+        assertEquals(0, overlaps, "No doctor should be double-booked");
+        testsPassed++;
+        assertEquals(threads * doctors.size() * slotsPerDoctor * 2, booked.get() + rejected.get(),
+                "Every attempt should be either booked or rejected");
+        testsPassed++;
+        assertTrue(booked.get() >= doctors.size() * slotsPerDoctor / 2, "Free slots should get booked");
+        testsPassed++;
+        System.out.println(String.format("Booked %d, rejected %d in %.3f s (%.0f attempts/sec)",
+                booked.get(), rejected.get(), seconds, (booked.get() + rejected.get()) / seconds));
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test slot-availability search across doctors
+     */
+    private static void testSlotAvailability() {
+        System.out.println("--- Testing Slot Availability ---");
+        
+        try {
+            AvailabilityService availability = appointmentService.getAvailabilityService();
+            Doctor senior = doctorService.addDoctor("Dr. Iyer", "iyer@meditrack.com", "9876543230",
+                    55, "Female", "Kochi", Specialization.ENT, 380, 25, "LIC010");
+            senior.setRating(4.5);
+            doctorService.updateDoctor(senior.getId(), senior);
+            Doctor junior = doctorService.addDoctor("Dr. Bose", "bose@meditrack.com", "9876543231",
+                    32, "Male", "Kolkata", Specialization.ENT, 380, 4, "LIC011");
+            junior.setRating(3.0);
+            doctorService.updateDoctor(junior.getId(), junior);
+            String patientId = patientService.getAllPatients().get(0).getId();
+            
+            LocalDate date = LocalDate.now().plusDays(90);
+            LocalDateTime opening = date.atTime(Constants.CLINIC_OPENING_HOUR, 0);
+            
+            AvailableSlot earliest = availability.findEarliestAvailable(Specialization.ENT, date.atStartOfDay(), 1);
+            assertEquals(opening, earliest.getStart(), "Earliest slot should be at opening time");
+            testsPassed++;
+            assertEquals(senior.getId(), earliest.getDoctorId(), "Ties should go to the higher-rated doctor");
+            testsPassed++;
+            
+            Appointment first = appointmentService.createAppointment(patientId, senior.getId(), opening, "ENT");
+            appointmentService.createAppointment(patientId, junior.getId(), opening, "ENT");
+            earliest = availability.findEarliestAvailable(Specialization.ENT, date.atStartOfDay(), 1);
+            assertEquals(opening.plusMinutes(30), earliest.getStart(), "Booked slots should not be offered");
+            testsPassed++;
+            
+            // Off-grid booking occupies both slots it overlaps
+            appointmentService.createAppointment(patientId, senior.getId(), opening.plusMinutes(45), "ENT");
+            assertEquals(AvailabilityService.SLOTS_PER_DAY - 3, availability.getFreeSlots(senior.getId(), date).size(),
+                    "Off-grid appointment should block two slots");
+            testsPassed++;
+            
+            appointmentService.cancelAppointment(first.getAppointmentId());
+            assertEquals(AvailabilityService.SLOTS_PER_DAY - 2, availability.getFreeSlots(senior.getId(), date).size(),
+                    "Cancellation should free the slot");
+            testsPassed++;
+            
+            List<AvailableSlot> options = availability.findAvailableSlots(Specialization.ENT, date.atStartOfDay(), 1, 3);
+            assertEquals(3, options.size(), "N-best query should honour the limit");
+            testsPassed++;
+            assertEquals(junior.getId(), options.get(1).getDoctorId(), "Options should follow per-doctor availability");
+            testsPassed++;
+            
+            assertEquals(2 * AvailabilityService.SLOTS_PER_DAY - 3,
+                    availability.getDayView(Specialization.ENT, date).size(), "Day view should list all free slots");
+            testsPassed++;
+        } catch (AppointmentNotFoundException e) {
+            testsFailed++;
+            System.err.println("Availability test failed: " + e.getMessage());
+        }
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test incrementally maintained billing aggregates
+     */
+    private static void testBillingAggregates() {
+        System.out.println("--- Testing Billing Aggregates ---");
+        
+        try {
+            List<Appointment> appointments = appointmentService.getAllAppointments();
+            for (int i = 1; i <= 5 && i < appointments.size(); i++) {
+                Bill bill = billingService.generateBillForAppointment(appointments.get(i).getAppointmentId());
+                if (i % 2 == 0) {
+                    billingService.markBillAsPaid(bill.getBillId());
+                }
+            }
+            
+            // Charges edited on the entity, then re-recorded
+            Bill edited = billingService.getPendingBills().get(0);
+            edited.setMedicinesCharges(250);
+            billingService.refreshBill(edited.getBillId());
+            
+            double scannedRevenue = billingService.getPaidBills().stream().mapToDouble(Bill::getTotalAmount).sum();
+            assertTrue(Math.abs(billingService.getTotalRevenue() - scannedRevenue) < 0.01,
+                    "Running revenue should match a scan");
+            testsPassed++;
+            assertEquals(billingService.getPendingBills().size(), billingService.getPendingBillCount(),
+                    "Running pending count should match a scan");
+            testsPassed++;
+            
+            String doctorId = edited.getDoctorId();
+            double doctorBilled = billingService.getAllBills().stream()
+                    .filter(b -> b.getDoctorId().equals(doctorId))
+                    .mapToDouble(Bill::getTotalAmount).sum();
+            assertTrue(Math.abs(billingService.getDoctorTotals(doctorId).getTotalAmount() - doctorBilled) < 0.01,
+                    "Per-doctor totals should match a scan");
+            testsPassed++;
+            
+            assertTrue(billingService.verifyAggregates(), "Aggregates should pass the consistency check");
+            testsPassed++;
+        } catch (AppointmentNotFoundException e) {
+            testsFailed++;
+            System.err.println("Billing aggregate test failed: " + e.getMessage());
+        }
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test fixed-point money arithmetic
+     */
+    private static void testMoney() {
+        System.out.println("--- Testing Money ---");
+        
+        assertEquals(101L, Money.ofRupees(1.005), "Rupees should round half-up on the written decimal");
+        testsPassed++;
+        assertEquals(18L, Money.taxOn(99L), "Tax of 0.99 should round 17.82 paise up to 18");
+        testsPassed++;
+        assertEquals("1234.05", Money.format(123405L), "Money should format with two decimals");
+        testsPassed++;
+        
+        Bill bill = new Bill("BILLM1", "APT0", "PAT0", "DOC0", 500.10);
+        bill.setMedicinesCharges(0.20);
+        assertEquals(50030L + Money.taxOn(50030L), bill.getTotalAmountPaise(),
+                "Bill total should be charges plus rounded tax, in paise");
+        testsPassed++;
+        
+        // Ten thousand 0.10 charges: doubles drift, paise do not
+        long paise = 0;
+        double rupees = 0.0;
+        for (int i = 0; i < 10_000; i++) {
+            paise += Money.ofRupees(0.10);
+            rupees += 0.10;
+        }
+        assertEquals(100000L, paise, "Paise sum should be exact");
+        testsPassed++;
+        assertTrue(rupees != 1000.0, "Double sum drifts (why totals are kept in paise)");
+        testsPassed++;
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test durable ID block reservation across a simulated restart
+     */
+    private static void testDurableIdBlocks() {
+        System.out.println("--- Testing Durable ID Blocks ---");
+        
+        IdGenerator generator = IdGenerator.getInstance();
+        try {
+            File stateFile = File.createTempFile("meditrack-ids", ".properties");
+            stateFile.delete();
+            stateFile.deleteOnExit();
+            
+            generator.enablePersistence(stateFile.getPath());
+            long first = generator.nextBillNumber();
+            long second = generator.nextBillNumber();
+            Properties marks = new Properties();
+            try (FileInputStream in = new FileInputStream(stateFile)) {
+                marks.load(in);
+            }
+            assertEquals(first + Constants.ID_BLOCK_SIZE - 1, Long.parseLong(marks.getProperty("bill")),
+                    "First ID should reserve a whole block on disk");
+            testsPassed++;
+            assertEquals(first + 1, second, "IDs inside the block should not touch the file");
+            testsPassed++;
+            
+            // A later run that had reserved further ahead before crashing
+            marks.setProperty("bill", Long.toString(second + 5000));
+            try (FileOutputStream out = new FileOutputStream(stateFile)) {
+                marks.store(out, null);
+            }
+            generator.enablePersistence(stateFile.getPath());
+            assertEquals(second + 5001, generator.nextBillNumber(), "Restart should resume above the high-water mark");
+            testsPassed++;
+        } catch (IOException e) {
+            testsFailed++;
+            System.err.println("Durable ID test failed: " + e.getMessage());
+        } finally {
+            generator.disablePersistence();
+        }
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test streaming CSV reader against the list-based reader
+     */
+    private static void testStreamingCSVReader() {
+        System.out.println("--- Testing Streaming CSV Reader ---");
+        
+        try {
+            File file = File.createTempFile("meditrack-stream", ".csv");
+            file.deleteOnExit();
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                writer.write("id,name,fee\r\nDOC1, \"Kumar, Rajesh\" ,500\n\nDOC2,Priya,-42\rDOC3,\"Dr \"\"P\"\"\",7");
+            }
+            
+            List<String[]> expected = CSVUtil.readCSV(file.getPath());
+            List<String[]> streamed = new ArrayList<>();
+            CSVReader.forEach(file.getPath(), record -> streamed.add(record.toArray()));
+            boolean same = expected.size() == streamed.size();
+            for (int i = 0; same && i < expected.size(); i++) {
+                same = Arrays.equals(expected.get(i), streamed.get(i));
+            }
+            assertTrue(same, "Streamed records should match readCSV");
+            testsPassed++;
+            
+            try (CSVReader reader = CSVReader.open(file.getPath())) {
+                reader.next();
+                CSVRecord record = reader.next();
+                assertEquals("Kumar, Rajesh", record.get(1), "Quoted comma should stay in one field");
+                testsPassed++;
+                assertEquals(500L, record.getLong(2), "Numeric field should parse without allocation");
+                testsPassed++;
+            }
+            
+            try (CSVReader reader = CSVReader.open(file.getPath());
+                 Stream<CSVRecord> records = reader.stream()) {
+                long negative = records.filter(r -> r.size() == 3 && r.get(2).startsWith("-")).count();
+                assertEquals(1L, negative, "Stream form should see every record");
+                testsPassed++;
+            }
+        } catch (IOException e) {
+            testsFailed++;
+            System.err.println("Streaming CSV test failed: " + e.getMessage());
+        }
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test memory-mapped CSV parser against the list-based reader
+     */
+    private static void testMappedCSVParser() {
+        System.out.println("--- Testing Memory-Mapped CSV Parser ---");
+        
+        try {
+            File file = File.createTempFile("meditrack-mapped", ".csv");
+            file.deleteOnExit();
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                writer.write("APT1,PAT1, \"Fever, cough\" ,1200\r\nAPT2,PAT2,Cold,-7\n\nAPT3,PAT3,\"\",0");
+            }
+            
+            List<String[]> expected = CSVUtil.readCSV(file.getPath());
+            List<String[]> mapped = new ArrayList<>();
+            final long[] feeSum = new long[1];
+            CSVUtil.forEachMappedRecord(file.getPath(), record -> {
+                mapped.add(record.toArray());
+                if (record.size() == 4) {
+                    feeSum[0] += record.getLong(3);
+                }
+            });
+            boolean same = expected.size() == mapped.size();
+            for (int i = 0; same && i < expected.size(); i++) {
+                same = Arrays.equals(expected.get(i), mapped.get(i));
+            }
+            assertTrue(same, "Mapped records should match readCSV");
+            testsPassed++;
+            assertEquals(1193L, feeSum[0], "Numeric fields should parse from the mapping");
+            testsPassed++;
+            
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                writer.write("APT4,\u00e9t\u00e9");
+            }
+            try (MappedCSVParser parser = new MappedCSVParser(file.getPath())) {
+                assertEquals("\u00e9t\u00e9", parser.next().get(1), "Non-ASCII fields should decode as UTF-8");
+                testsPassed++;
+            }
+        } catch (IOException e) {
+            testsFailed++;
+            System.err.println("Mapped CSV test failed: " + e.getMessage());
+        }
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test parallel chunked import of an appointment export
+     */
+    private static void testParallelCSVImport() {
+        System.out.println("--- Testing Parallel CSV Import ---");
+        
+        try {
+            File file = File.createTempFile("meditrack-import", ".csv");
+            file.deleteOnExit();
+            int rows = 60_000;
+            LocalDateTime base = LocalDateTime.of(2030, 1, 1, 9, 0);
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                    StandardCharsets.UTF_8))) {
+                writer.write("appointmentId,patientId,doctorId,dateTime,reason,status\n");
+                for (int i = 0; i < rows; i++) {
+                    writer.write("IMP" + i + ",PAT" + (i % 700) + ",DOC" + (i % 40) + "," + base.plusMinutes(30L * i)
+                            + ",\"Checkup, annual\"," + (i % 10 == 0 ? "CANCELLED" : "CONFIRMED")
+                            + (i % 2 == 0 ? "\r\n" : "\n"));
+                }
+            }
+            
+            AppointmentService importer = new AppointmentService(new DoctorService(), new PatientService());
+            long imported = importer.importFromCSV(file.getPath(), 4);
+            assertEquals((long) rows, imported, "Every row should be imported exactly once");
+            testsPassed++;
+            assertEquals(rows, importer.getTotalAppointments(), "Store should hold every imported appointment");
+            testsPassed++;
+            assertEquals(rows / 10, importer.getAppointmentsByStatus(AppointmentStatus.CANCELLED).size(),
+                    "Imported status should be indexed");
+            testsPassed++;
+            Appointment last = importer.getAppointmentById("IMP" + (rows - 1));
+            assertEquals("Checkup, annual", last.getReason(), "Quoted field should survive chunking");
+            testsPassed++;
+        } catch (IOException | AppointmentNotFoundException e) {
+            testsFailed++;
+            System.err.println("Parallel import test failed: " + e.getMessage());
+        }
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test RFC 4180 parsing: joinLine/parseLine round-trip on random values,
+     * and multi-line fields read the same by every reader
+     */
+    private static void testCSVRoundTrip() {
+        System.out.println("--- Testing CSV Round-Trip (RFC 4180) ---");
+        
+        char[] alphabet = {'a', 'Z', '7', ' ', '\t', ',', '"', '\n', '\r', '\u00e9'};
+        Random random = new Random(4180);
+        int mismatches = 0;
+        for (int i = 0; i < 5_000; i++) {
+            String[] values = new String[1 + random.nextInt(6)];
+            for (int v = 0; v < values.length; v++) {
+                StringBuilder value = new StringBuilder();
+                for (int c = random.nextInt(8); c > 0; c--) {
+                    value.append(alphabet[random.nextInt(alphabet.length)]);
+                }
+                values[v] = value.toString();
+            }
+            if (!Arrays.equals(values, CSVUtil.parseLine(CSVUtil.joinLine(values)))) {
+                mismatches++;
+            }
+        }
+        assertEquals(0, mismatches, "parseLine(joinLine(values)) should return the values");
+        testsPassed++;
+        
+        String[] escaped = CSVUtil.parseLine("\"He said \"\"hi\"\"\",  plain  ,\"  padded  \"");
+        assertEquals("He said \"hi\"", escaped[0], "Doubled quotes should unescape");
+        testsPassed++;
+        assertEquals("  padded  ", escaped[2], "Whitespace inside quotes should be kept");
+        testsPassed++;
+        
+        try {
+            File file = File.createTempFile("meditrack-rfc", ".csv");
+            file.deleteOnExit();
+            List<String[]> rows = new ArrayList<>();
+            rows.add(new String[] {"PAT1", "Asthma since 2010,\r\nmild \"seasonal\"", "A+"});
+            rows.add(new String[] {"PAT2", "", "O-"});
+            CSVUtil.writeCSV(file.getPath(), rows);
+            
+            List<String[]> read = CSVUtil.readCSV(file.getPath());
+            List<String[]> mapped = new ArrayList<>();
+            CSVUtil.forEachMappedRecord(file.getPath(), record -> mapped.add(record.toArray()));
+            boolean same = read.size() == 2 && mapped.size() == 2;
+            for (int i = 0; same && i < rows.size(); i++) {
+                same = Arrays.equals(rows.get(i), read.get(i)) && Arrays.equals(rows.get(i), mapped.get(i));
+            }
+            assertTrue(same, "Multi-line fields should survive writeCSV and every reader");
+            testsPassed++;
+            
+            try (CSVReader reader = CSVReader.open(file.getPath())) {
+                reader.next();
+                assertEquals(3L, reader.next().getLineNumber(), "Line numbers should count embedded line breaks");
+                testsPassed++;
+            }
+        } catch (IOException e) {
+            testsFailed++;
+            System.err.println("CSV round-trip test failed: " + e.getMessage());
+        }
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test typed binding: header-mapped columns in any order, enums, dates,
+     * money and numbers parsed in place
+     */
+    private static void testCSVBinder() {
+        System.out.println("--- Testing CSV Binder ---");
+        
+        try {
+            File file = File.createTempFile("meditrack-bind", ".csv");
+            file.deleteOnExit();
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                    StandardCharsets.UTF_8))) {
+                writer.write("paid,billDate,consultationFee,billId,unknown,testCharges,patientId\n");
+                writer.write("yes,05-03-2030 14:30:00,1234.565,BILL9,x,0.1,PAT1\n");
+                writer.write("0,2030-03-05T09:15,\"500\",BILL10,,,PAT2\n");
+            }
+            List<Bill> bills = new ArrayList<>();
+            try (CSVReader reader = CSVReader.open(file.getPath())) {
+                CSVBinder.Mapping<Bill> mapping = CSVSchemas.BILL.forHeader(reader.next());
+                for (CSVRecord record : reader) {
+                    bills.add(mapping.bind(record));
+                }
+            }
+            Bill first = bills.get(0);
+            assertEquals("BILL9", first.getBillId(), "Column should be found by header name");
+            testsPassed++;
+            assertEquals(123457L, first.getConsultationFeePaise(), "Money should round half-up to paise");
+            testsPassed++;
+            assertEquals(10L, first.getTestChargesPaise(), "0.1 rupees should be exactly 10 paise");
+            testsPassed++;
+            assertEquals(LocalDateTime.of(2030, 3, 5, 14, 30), first.getBillDate(), "DateUtil format should parse");
+            testsPassed++;
+            assertTrue(first.isPaid(), "yes should bind as true");
+            testsPassed++;
+            Bill second = bills.get(1);
+            assertEquals(LocalDateTime.of(2030, 3, 5, 9, 15), second.getBillDate(), "ISO format should parse");
+            testsPassed++;
+            assertEquals(50000L, second.getConsultationFeePaise(), "Quoted number should parse");
+            testsPassed++;
+            assertEquals(0L, second.getTestChargesPaise(), "Empty field should keep the default");
+            testsPassed++;
+            
+            Doctor doctor = CSVSchemas.DOCTOR.defaultMapping().bind(new TestRecord(
+                    "DOC7", "Dr. Rao", "rao@example.com", "9876543210", "52", "F", "Pune",
+                    "CARDIOLOGIST", "1500.5", "20", "LIC-7", "4.75", "1200"));
+            assertEquals(Specialization.CARDIOLOGIST, doctor.getSpecialization(), "Enum should bind");
+            testsPassed++;
+            assertEquals(52, doctor.getAge(), "Int should bind");
+            testsPassed++;
+            assertEquals(4.75, doctor.getRating(), "Double should bind");
+            testsPassed++;
+            
+            Random random = new Random(15);
+            int mismatches = 0;
+            for (int i = 0; i < 10_000; i++) {
+                String value = random.nextInt(1_000_000) + "." + random.nextInt(100_000);
+                if (i % 3 == 0) {
+                    value = "-" + value;
+                }
+                if (new TestRecord(value).getDouble(0) != Double.parseDouble(value)) {
+                    mismatches++;
+                }
+            }
+            assertEquals(0, mismatches, "In-place double parsing should match Double.parseDouble");
+            testsPassed++;
+            
+            try {
+                CSVSchemas.DOCTOR.forHeader("id", "age").bind(new TestRecord("DOC8", "old"));
+                testsFailed++;
+                System.err.println("Unparseable field should be rejected");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("'age'"), "Error should name the column");
+                testsPassed++;
+            }
+        } catch (IOException e) {
+            testsFailed++;
+            System.err.println("CSV binder test failed: " + e.getMessage());
+        }
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test the buffered appender: group writes, timed flush, sync and the
+     * appendToCSV wrapper
+     */
+    private static void testCSVAppender() {
+        System.out.println("--- Testing CSV Appender ---");
+        
+        try {
+            File file = File.createTempFile("meditrack-append", ".csv");
+            file.deleteOnExit();
+            int rows = 5_000;
+            try (CSVAppender appender = CSVAppender.open(file.getPath(), StandardCharsets.UTF_8, 16 * 1024, 0)) {
+                for (int i = 0; i < rows; i++) {
+                    appender.append(new String[] {"APT" + i, "Note, with comma", String.valueOf(i)});
+                }
+                assertTrue(appender.getFlushCount() < rows / 50, "Records should be written in groups");
+                testsPassed++;
+                appender.sync();
+                assertEquals((long) rows, appender.getRecordsAppended(), "Every record should be counted");
+                testsPassed++;
+            }
+            List<String[]> written = CSVUtil.readCSV(file.getPath());
+            assertEquals(rows, written.size(), "Every record should reach the file");
+            testsPassed++;
+            assertEquals("Note, with comma", written.get(rows - 1)[1], "Appended fields should be quoted");
+            testsPassed++;
+            
+            File timed = File.createTempFile("meditrack-append-timed", ".csv");
+            timed.deleteOnExit();
+            try (CSVAppender appender = CSVAppender.open(timed.getPath(), StandardCharsets.UTF_8, 1 << 20, 200)) {
+                appender.append(new String[] {"only"});
+                assertEquals(0L, timed.length(), "Small record should stay buffered");
+                testsPassed++;
+                long deadline = System.currentTimeMillis() + 2_000;
+                while (timed.length() == 0 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertTrue(timed.length() > 0, "Timed flush should write the record");
+                testsPassed++;
+            }
+            
+            File wrapped = File.createTempFile("meditrack-append-util", ".csv");
+            wrapped.deleteOnExit();
+            CSVUtil.appendToCSV(wrapped.getPath(), new String[] {"a", "1"});
+            CSVUtil.appendToCSV(wrapped.getPath(), new String[] {"b", "2"});
+            assertEquals(2, CSVUtil.readCSV(wrapped.getPath()).size(), "appendToCSV should be visible on return");
+            testsPassed++;
+            CSVUtil.closeAppenders();
+        } catch (IOException | InterruptedException e) {
+            testsFailed++;
+            System.err.println("CSV appender test failed: " + e.getMessage());
+        }
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test binary snapshots: every store round-trips through save/load, and
+     * corrupt or mismatched files are rejected
+     */
+    private static void testSnapshots() {
+        System.out.println("--- Testing Binary Snapshots ---");
+        
+        try {
+            File directory = Files.createTempDirectory("meditrack-snapshots").toFile();
+            directory.deleteOnExit();
+            String doctors = new File(directory, "doctors.dat").getPath();
+            String patients = new File(directory, "patients.dat").getPath();
+            String appointments = new File(directory, "appointments.dat").getPath();
+            String bills = new File(directory, "bills.dat").getPath();
+            
+            Patient patient = patientService.getAllPatients().get(0);
+            patient.addAllergy("Penicillin");
+            patient.setEmergencyContact("Ren\u00e9e, 9876500000");
+            Appointment appointment = appointmentService.getAllAppointments().get(0);
+            Bill bill = billingService.generateBillForAppointment(appointment.getAppointmentId());
+            bill.setMedicinesCharges(12.34);
+            
+            assertEquals(doctorService.getAllDoctors().size(), doctorService.saveSnapshot(doctors),
+                    "Every doctor should be saved");
+            testsPassed++;
+            patientService.saveSnapshot(patients);
+            appointmentService.saveSnapshot(appointments);
+            billingService.saveSnapshot(bills);
+            
+            DoctorService loadedDoctors = new DoctorService();
+            PatientService loadedPatients = new PatientService();
+            AppointmentService loadedAppointments = new AppointmentService(loadedDoctors, loadedPatients);
+            BillingService loadedBilling = new BillingService(loadedAppointments);
+            loadedDoctors.loadSnapshot(doctors);
+            loadedPatients.loadSnapshot(patients);
+            loadedAppointments.loadSnapshot(appointments);
+            loadedBilling.loadSnapshot(bills);
+            for (File file : directory.listFiles()) {
+                file.deleteOnExit();
+            }
+            
+            assertEquals(doctorService.getAllDoctors().size(), loadedDoctors.getAllDoctors().size(),
+                    "Doctors should load");
+            testsPassed++;
+            Doctor doctor = doctorService.getAllDoctors().get(0);
+            Doctor loadedDoctor = loadedDoctors.getDoctorById(doctor.getId());
+            assertEquals(doctor.getSpecialization(), loadedDoctor.getSpecialization(), "Enum should round-trip");
+            testsPassed++;
+            Patient loadedPatient = loadedPatients.getPatientById(patient.getId());
+            assertEquals(patient.getAllergies(), loadedPatient.getAllergies(), "Allergy list should round-trip");
+            testsPassed++;
+            assertEquals("Ren\u00e9e, 9876500000", loadedPatient.getEmergencyContact(), "UTF-8 text should round-trip");
+            testsPassed++;
+            Appointment loadedAppointment = loadedAppointments.getAppointmentById(appointment.getAppointmentId());
+            assertEquals(appointment.getAppointmentDateTime(), loadedAppointment.getAppointmentDateTime(),
+                    "Timestamp should round-trip to the nanosecond");
+            testsPassed++;
+            assertEquals(appointment.getStatus(), loadedAppointment.getStatus(), "Status should round-trip");
+            testsPassed++;
+            Bill loadedBill = loadedBilling.getBillById(bill.getBillId());
+            assertEquals(bill.getTotalAmountPaise(), loadedBill.getTotalAmountPaise(), "Bill total should be exact");
+            testsPassed++;
+            assertEquals(billingService.getTotalBills(), loadedBilling.getTotalBills(), "Bills should load");
+            testsPassed++;
+            
+            try {
+                loadedPatients.loadSnapshot(doctors);
+                testsFailed++;
+                System.err.println("Snapshot of another type should be rejected");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("holds Doctor"), "Snapshot of another type should be rejected");
+                testsPassed++;
+            }
+            
+            byte[] bytes = Files.readAllBytes(new File(patients).toPath());
+            bytes[bytes.length / 2] ^= 0x20;
+            Files.write(new File(patients).toPath(), bytes);
+            try {
+                new PatientService().loadSnapshot(patients);
+                testsFailed++;
+                System.err.println("Corrupt snapshot should be rejected");
+            } catch (IOException e) {
+                testsPassed++;
+            }
+        } catch (IOException | AppointmentNotFoundException e) {
+            testsFailed++;
+            System.err.println("Snapshot test failed: " + e.getMessage());
+        }
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test the write-ahead log: changes survive a simulated crash, a torn
+     * record is cut off, and concurrent commits share fsyncs
+     */
+    private static void testWriteAheadLog() {
+        System.out.println("--- Testing Write-Ahead Log ---");
+        
+        try {
+            File logFile = File.createTempFile("meditrack-wal", ".log");
+            logFile.deleteOnExit();
+            DoctorService doctors = new DoctorService();
+            PatientService patients = new PatientService();
+            AppointmentService appointments = new AppointmentService(doctors, patients);
+            BillingService bills = new BillingService(appointments);
+            WriteAheadLog log = WriteAheadLog.open(logFile.getPath(), 0);
+            doctors.attachLog(log);
+            patients.attachLog(log);
+            appointments.attachLog(log);
+            bills.attachLog(log);
+            assertEquals(0L, log.replay(), "New log should be empty");
+            testsPassed++;
+            
+            Doctor doctor = doctors.addDoctor("Dr. Wal", "wal@meditrack.com", "9876543240", 45, "Female",
+                    "Delhi", Specialization.DERMATOLOGIST, 700, 12, "LIC-WAL");
+            Patient patient = patients.addPatient("Log Patient", "log@email.com", "9876543241", 33, "Male", "Delhi");
+            Patient removed = patients.addPatient("Gone Patient", "gone@email.com", "9876543242", 40, "Male", "Agra");
+            patients.addAllergy(patient.getId(), "Latex");
+            patients.removePatient(removed.getId());
+            LocalDateTime slot = LocalDateTime.now().plusDays(40).withHour(11).withMinute(0).withSecond(0).withNano(0);
+            Appointment kept = appointments.createAppointment(patient.getId(), doctor.getId(), slot, "Rash");
+            Appointment moved = appointments.createAppointment(patient.getId(), doctor.getId(), slot.plusHours(1), "Review");
+            appointments.confirmAppointment(kept.getAppointmentId());
+            appointments.rescheduleAppointment(moved.getAppointmentId(), slot.plusHours(3));
+            Bill bill = bills.generateBillForAppointment(kept.getAppointmentId());
+            bills.markBillAsPaid(bill.getBillId());
+            assertTrue(log.getSyncCount() > 0, "Synchronous commits should fsync");
+            testsPassed++;
+            
+            // Crash: drop the services without saving anything, and tear the last record
+            long intact = logFile.length();
+            try (FileOutputStream out = new FileOutputStream(logFile, true)) {
+                out.write(new byte[] {0, 0, 0, 40, 1, 2, 3});
+            }
+            
+            DoctorService recoveredDoctors = new DoctorService();
+            PatientService recoveredPatients = new PatientService();
+            AppointmentService recoveredAppointments = new AppointmentService(recoveredDoctors, recoveredPatients);
+            BillingService recoveredBills = new BillingService(recoveredAppointments);
+            WriteAheadLog reopened = WriteAheadLog.open(logFile.getPath(), 0);
+            recoveredDoctors.attachLog(reopened);
+            recoveredPatients.attachLog(reopened);
+            recoveredAppointments.attachLog(reopened);
+            recoveredBills.attachLog(reopened);
+            assertTrue(reopened.replay() > 0, "Logged changes should replay");
+            testsPassed++;
+            assertEquals(intact, logFile.length(), "Torn record should be cut off");
+            testsPassed++;
+            
+            assertEquals(Specialization.DERMATOLOGIST, recoveredDoctors.getDoctorById(doctor.getId()).getSpecialization(),
+                    "Doctor should be recovered");
+            testsPassed++;
+            assertEquals(1, recoveredPatients.getTotalPatients(), "Deleted patient should stay deleted");
+            testsPassed++;
+            assertEquals(Collections.singletonList("Latex"),
+                    recoveredPatients.getPatientById(patient.getId()).getAllergies(), "Allergy should be recovered");
+            testsPassed++;
+            assertEquals(AppointmentStatus.CONFIRMED,
+                    recoveredAppointments.getAppointmentById(kept.getAppointmentId()).getStatus(),
+                    "Confirmation should be recovered");
+            testsPassed++;
+            assertTrue(recoveredAppointments.isSlotAvailable(doctor.getId(), slot.plusHours(1))
+                    && !recoveredAppointments.isSlotAvailable(doctor.getId(), slot.plusHours(3)),
+                    "Reschedule should be recovered with availability");
+            testsPassed++;
+            assertTrue(recoveredBills.getBillById(bill.getBillId()).isPaid(), "Payment should be recovered");
+            testsPassed++;
+            assertEquals(bills.getTotalRevenuePaise(), recoveredBills.getTotalRevenuePaise(),
+                    "Ledger should match after recovery");
+            testsPassed++;
+            
+            // Entities already in a store came from the snapshot and are not logged again
+            File loadedFile = File.createTempFile("meditrack-wal-loaded", ".log");
+            loadedFile.deleteOnExit();
+            PatientService loaded = new PatientService();
+            loaded.addPatient("Loaded Patient", "loaded@email.com", "9876543243", 50, "Female", "Pune");
+            WriteAheadLog loadedLog = WriteAheadLog.open(loadedFile.getPath(), 0);
+            loaded.attachLog(loadedLog);
+            assertEquals(0L, loadedLog.getAppendCount(), "Attaching should not log existing entities");
+            testsPassed++;
+            loadedLog.close();
+            
+            // Writers that commit concurrently share fsyncs
+            File groupFile = File.createTempFile("meditrack-wal-group", ".log");
+            groupFile.deleteOnExit();
+            final WriteAheadLog groupLog = WriteAheadLog.open(groupFile.getPath(), 0);
+            final DataStore<Patient> shared = new ConcurrentDataStore<>();
+            groupLog.attach("patients", shared, SnapshotCodecs.PATIENT);
+            Thread[] writers = new Thread[8];
+            for (int t = 0; t < writers.length; t++) {
+                final int thread = t;
+                writers[t] = new Thread(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        Patient entry = new Patient();
+                        entry.setId("W" + thread + "-" + i);
+                        shared.add(entry.getId(), entry);
+                    }
+                });
+                writers[t].start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            assertEquals(800L, groupLog.getAppendCount(), "Every change should be logged");
+            testsPassed++;
+            assertTrue(groupLog.getSyncCount() < groupLog.getAppendCount(), "Concurrent commits should share fsyncs");
+            testsPassed++;
+            groupLog.close();
+            log.close();
+            reopened.close();
+        } catch (IOException | AppointmentNotFoundException | InterruptedException e) {
+            testsFailed++;
+            System.err.println("Write-ahead log test failed: " + e.getMessage());
+        }
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test checkpointing and log compaction.
+     */
+    private static void testCheckpointer() {
+        System.out.println("--- Testing Checkpointer ---");
+        
+        try {
+            File logFile = File.createTempFile("meditrack-checkpoint", ".log");
+            File snapshotFile = File.createTempFile("meditrack-checkpoint", ".dat");
+            logFile.deleteOnExit();
+            snapshotFile.deleteOnExit();
+            final PatientService patients = new PatientService();
+            WriteAheadLog log = WriteAheadLog.open(logFile.getPath(), 0);
+            patients.attachLog(log);
+            log.replay();
+            Patient first = patients.addPatient("Before Mark", "before@email.com", "9876543250", 30, "Male", "Pune");
+            patients.addPatient("Also Before", "also@email.com", "9876543251", 31, "Female", "Pune");
+            long beforeCheckpoint = log.size();
+            
+            // A writer changes the store while the snapshot is being taken
+            final String[] concurrentId = new String[1];
+            Checkpointer checkpointer = Checkpointer.start(log, () -> {
+                concurrentId[0] = patients.addPatient("During Save", "during@email.com", "9876543252", 32,
+                        "Male", "Pune").getId();
+                patients.saveSnapshot(snapshotFile.getPath());
+                patients.addAllergy(first.getId(), "Penicillin");
+            }, 0, 0);
+            long dropped = checkpointer.checkpoint();
+            assertEquals(beforeCheckpoint, dropped, "Records before the mark should be compacted away");
+            testsPassed++;
+            assertTrue(log.size() > 0, "Records logged during the checkpoint should stay");
+            testsPassed++;
+            assertEquals(1L, checkpointer.getCheckpointCount(), "Checkpoint should be counted");
+            testsPassed++;
+            assertEquals(0L, log.compact(0), "A stale mark should drop nothing");
+            testsPassed++;
+            Patient after = patients.addPatient("After Checkpoint", "after@email.com", "9876543253", 33,
+                    "Female", "Pune");
+            checkpointer.close();
+            
+            // Crash, then restart from the snapshot plus the compacted log
+            PatientService recovered = new PatientService();
+            recovered.loadSnapshot(snapshotFile.getPath());
+            WriteAheadLog reopened = WriteAheadLog.open(logFile.getPath(), 0);
+            recovered.attachLog(reopened);
+            assertEquals(3L, reopened.replay(), "Only changes since the mark should replay");
+            testsPassed++;
+            assertEquals(4, recovered.getTotalPatients(), "Every patient should be recovered");
+            testsPassed++;
+            assertTrue(recovered.getPatientById(concurrentId[0]) != null
+                    && recovered.getPatientById(after.getId()) != null, "Patients added around the snapshot should be recovered");
+            testsPassed++;
+            assertEquals(Collections.singletonList("Penicillin"),
+                    recovered.getPatientById(first.getId()).getAllergies(), "Change after the snapshot should be recovered");
+            testsPassed++;
+            assertTrue(reopened.getReplayMillis() >= 0, "Replay time should be measured");
+            testsPassed++;
+            
+            // Size trigger
+            Checkpointer triggered = Checkpointer.start(reopened, () -> recovered.saveSnapshot(snapshotFile.getPath()),
+                    1, 0);
+            for (int i = 0; i < 100 && triggered.getCheckpointCount() == 0; i++) {
+                Thread.sleep(50);
+            }
+            triggered.close();
+            assertTrue(triggered.getCheckpointCount() > 0 && reopened.size() == 0,
+                    "Log size should trigger a checkpoint");
+            testsPassed++;
+            reopened.close();
+            log.close();
+        } catch (Exception e) {
+            System.out.println("??? FAIL: Checkpointer test threw " + e);
+            testsFailed++;
+        }
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test the tiered patient store: summaries in memory, records on disk.
+     */
+    private static void testTieredPatientStore() {
+        System.out.println("--- Testing Tiered Patient Store ---");
+        
+        try {
+            File recordFile = File.createTempFile("meditrack-patients", ".records");
+            recordFile.deleteOnExit();
+            PatientService patients = new PatientService(recordFile.getPath(), 2);
+            Patient first = patients.addPatient("Cold Patient", "cold@email.com", "9876543260", 50, "Male", "Pune");
+            patients.updateMedicalHistory(first.getId(), "Asthma since 2010");
+            patients.addAllergy(first.getId(), "Dust");
+            for (int i = 0; i < 4; i++) {
+                patients.addPatient("Warm Patient " + i, "warm" + i + "@email.com", "987654327" + i, 30 + i,
+                        "Female", "Pune");
+            }
+            Patient loaded = patients.getPatientById(first.getId());
+            assertTrue(loaded != first, "Evicted patient should be read back from disk");
+            testsPassed++;
+            assertEquals("Asthma since 2010", loaded.getMedicalHistory(), "Medical history should survive eviction");
+            testsPassed++;
+            assertEquals(Collections.singletonList("Dust"), loaded.getAllergies(), "Allergies should survive eviction");
+            testsPassed++;
+            assertEquals(first.getId(), patients.searchByName("cold patient").getId(),
+                    "Name search should use the in-memory summaries");
+            testsPassed++;
+            assertEquals(5, patients.getAllPatients().size(), "All patients should be listed");
+            testsPassed++;
+            assertEquals(1, patients.searchByAge(50).size(), "Record scans should still work");
+            testsPassed++;
+            assertTrue(patients.removePatient(first.getId()) && patients.getPatientById(first.getId()) == null,
+                    "Removed patient should be gone");
+            testsPassed++;
+            
+            File storeFile = File.createTempFile("meditrack-tiered", ".records");
+            storeFile.deleteOnExit();
+            TieredDataStore<Patient, String> store = new TieredDataStore<>(storeFile.getPath(),
+                    SnapshotCodecs.PATIENT, Patient::getName, 1);
+            for (int i = 0; i < 3; i++) {
+                Patient patient = new Patient("TP" + i, "Tiered " + i, "t" + i + "@email.com", "98765432" + i, 40,
+                        "Male", "Agra");
+                store.add(patient.getId(), patient);
+            }
+            store.get("TP0");
+            store.get("TP0");
+            assertEquals(1L, store.getCacheMisses(), "Second read should hit the cache");
+            testsPassed++;
+            store.getAll();
+            assertEquals(1, store.getCachedCount(), "Scans should not fill the cache");
+            testsPassed++;
+            assertEquals("Tiered 2", store.getSummary("TP2"), "Summary should be kept in memory");
+            testsPassed++;
+            for (int round = 0; round < 50; round++) {
+                Patient patient = store.get("TP1");
+                patient.setMedicalHistory("Visit " + round);
+                store.update("TP1", patient);
+            }
+            long before = store.getFileSize();
+            store.compact();
+            assertTrue(store.getFileSize() < before, "Compaction should drop superseded records");
+            testsPassed++;
+            store.add("TP0", store.get("TP2"));
+            assertEquals("Visit 49", store.search(patient -> patient.getId().equals("TP1")).get(0).getMedicalHistory(),
+                    "Records should be intact after compaction");
+            testsPassed++;
+            store.close();
+        } catch (Exception e) {
+            System.out.println("??? FAIL: Tiered store test threw " + e);
+            testsFailed++;
+        }
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test the doctor roster: per-specialization fee sums and rankings.
+     */
+    private static void testDoctorRoster() {
+        System.out.println("--- Testing Doctor Roster ---");
+        
+        DoctorService doctors = new DoctorService();
+        Doctor first = doctors.addDoctor("Dr. Rank A", "ranka@meditrack.com", "9876543280", 50, "Male", "Pune",
+                Specialization.NEUROLOGIST, 500, 20, "LIC-RA");
+        Doctor second = doctors.addDoctor("Dr. Rank B", "rankb@meditrack.com", "9876543281", 40, "Female", "Pune",
+                Specialization.NEUROLOGIST, 700, 10, "LIC-RB");
+        Doctor third = doctors.addDoctor("Dr. Rank C", "rankc@meditrack.com", "9876543282", 45, "Male", "Pune",
+                Specialization.NEUROLOGIST, 600.10, 15, "LIC-RC");
+        Doctor other = doctors.addDoctor("Dr. Rank D", "rankd@meditrack.com", "9876543283", 35, "Female", "Pune",
+                Specialization.ENT, 300, 5, "LIC-RD");
+        first.setRating(4.1);
+        doctors.updateDoctor(first.getId(), first);
+        second.setRating(4.9);
+        doctors.updateDoctor(second.getId(), second);
+        third.setRating(4.5);
+        doctors.updateDoctor(third.getId(), third);
+        other.setRating(5.0);
+        doctors.updateDoctor(other.getId(), other);
+        
+        assertEquals(3, doctors.countBySpecialization(Specialization.NEUROLOGIST), "Specialization count");
+        testsPassed++;
+        assertEquals(600.03, Math.round(doctors.getAverageConsultationFee(Specialization.NEUROLOGIST) * 100) / 100.0,
+                "Average fee from running sums");
+        testsPassed++;
+        assertEquals(Arrays.asList(second, third), doctors.getTopDoctorsByRating(Specialization.NEUROLOGIST, 2),
+                "Best 2 neurologists by rating");
+        testsPassed++;
+        assertEquals(first, doctors.getTopDoctorsByExperience(Specialization.NEUROLOGIST, 1).get(0),
+                "Most experienced neurologist");
+        testsPassed++;
+        assertEquals(Arrays.asList(other, second, third, first), doctors.getDoctorsSortedByRating(),
+                "Whole roster by rating");
+        testsPassed++;
+        
+        // Moving a doctor to another specialization backs out the old filing
+        second.setSpecialization(Specialization.ENT);
+        second.setConsultationFee(400);
+        doctors.updateDoctor(second.getId(), second);
+        assertEquals(550.05, Math.round(doctors.getAverageConsultationFee(Specialization.NEUROLOGIST) * 100) / 100.0,
+                "Average fee after a doctor moves");
+        testsPassed++;
+        assertEquals(Arrays.asList(other, second), doctors.getTopDoctorsByRating(Specialization.ENT, 5),
+                "Moved doctor should rank in the new specialization");
+        testsPassed++;
+        doctors.removeDoctor(third.getId());
+        assertEquals(Collections.singletonList(first), doctors.searchBySpecialization(Specialization.NEUROLOGIST),
+                "Removed doctor should leave the roster");
+        testsPassed++;
+        assertEquals(0.0, doctors.getAverageConsultationFee(Specialization.SURGEON), "Empty specialization average");
+        testsPassed++;
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test prefix, substring and typo-tolerant name search.
+     */
+    private static void testNameIndex() {
+        System.out.println("--- Testing Name Index ---");
+        
+        DataStore<String> store = new ConcurrentDataStore<>();
+        NameIndex<String> names = store.addIndex("name", new NameIndex<String>(name -> name));
+        store.add("N1", "Anita Sharma");
+        store.add("N2", "Anil Kumar");
+        store.add("N3", "Sunita Rao");
+        store.add("N4", "ANI");
+        store.add("N5", "O'Brien,  Mary");
+        
+        assertEquals("o brien mary", NameIndex.normalize(" O'Brien,  Mary "), "Names normalize case and punctuation");
+        testsPassed++;
+        assertEquals(Arrays.asList("N4", "N2", "N1"), names.search("ani", 10),
+                "Exact match first, then shorter prefixes");
+        testsPassed++;
+        assertEquals(Arrays.asList("N3", "N1"), names.search("NITA", 10), "Substring matches");
+        testsPassed++;
+        assertEquals(Collections.singletonList("N1"), names.search("sharam", 10), "Transposed letters match");
+        testsPassed++;
+        assertEquals(Collections.singletonList("N5"), names.search("obrien", 10), "Missing space matches");
+        testsPassed++;
+        assertEquals(Collections.singletonList("N5"), names.search("o'brien", 10), "Punctuation is ignored");
+        testsPassed++;
+        assertEquals(Arrays.asList("N4", "N2"), names.search("an", 2), "Results stop at the limit");
+        testsPassed++;
+        assertTrue(names.search("zzz", 10).isEmpty(), "Unrelated query finds nothing");
+        testsPassed++;
+        
+        // Renames and deletes reach the index
+        store.update("N4", "Zed");
+        store.delete("N2");
+        assertEquals(Collections.singletonList("N1"), names.search("ani", 10), "Index follows updates and deletes");
+        testsPassed++;
+        assertEquals(Collections.singletonList("N4"), names.findExact("zed"), "Exact lookup after rename");
+        testsPassed++;
+        
+        // Dead slots are compacted away without losing live names
+        for (int i = 0; i < 3000; i++) {
+            store.add("B" + i, "Bulk Name " + i);
+        }
+        for (int i = 0; i < 2900; i++) {
+            store.delete("B" + i);
+        }
+        assertEquals(104, names.size(), "Live names after bulk delete");
+        testsPassed++;
+        assertEquals("B2999", names.search("bulk name 2999", 10).get(0), "Search after compaction");
+        testsPassed++;
+        
+        PatientService patients = new PatientService();
+        Patient patient = patients.addPatient("Meera Nair", "meera@example.com", "9876543290", 31, "Female", "Kochi");
+        assertEquals(patient, patients.searchByName("MEERA NAIR"), "Service exact search ignores case");
+        testsPassed++;
+        assertTrue(patients.searchByName("Meera-Nair") == null, "Service exact search keeps punctuation");
+        testsPassed++;
+        assertEquals(Collections.singletonList(patient), patients.searchPatientsByName("mera", 5),
+                "Service fuzzy search");
+        testsPassed++;
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test the allergy dictionary and bitmap index.
+     */
+    private static void testAllergyIndex() {
+        System.out.println("--- Testing Allergy Index ---");
+        
+        PatientService patients = new PatientService();
+        Patient first = patients.addPatient("Alert One", "one@example.com", "9876543291", 30, "Male", "Pune");
+        Patient second = patients.addPatient("Alert Two", "two@example.com", "9876543292", 40, "Female", "Pune");
+        Patient third = patients.addPatient("Alert Three", "three@example.com", "9876543293", 50, "Male", "Pune");
+        patients.addAllergy(first.getId(), "Penicillin");
+        patients.addAllergy(first.getId(), "Latex");
+        patients.addAllergy(second.getId(), "Penicillin");
+        patients.addAllergy(second.getId(), "Penicillin");
+        patients.addAllergy(third.getId(), "Sulfa");
+        
+        assertEquals(Collections.singletonList("Penicillin"), second.getAllergies(), "Duplicate allergy ignored");
+        testsPassed++;
+        assertEquals(first.getAllergyCodes()[0], second.getAllergyCodes()[0], "Same allergy, same code");
+        testsPassed++;
+        assertTrue(first.hasAllergy("Latex") && !second.hasAllergy("Latex"), "Allergy check by code");
+        testsPassed++;
+        assertEquals(Collections.singletonList(first), patients.getPatientsAllergicToAll(
+                Arrays.asList("Penicillin", "Latex")), "Allergic to all");
+        testsPassed++;
+        assertEquals(Arrays.asList(first, third), patients.getPatientsAllergicToAny(Arrays.asList("Latex", "Sulfa")),
+                "Allergic to any");
+        testsPassed++;
+        assertTrue(patients.getPatientsAllergicToAll(Arrays.asList("Penicillin", "Unheard Of")).isEmpty(),
+                "Unknown allergy matches nobody");
+        testsPassed++;
+        
+        // Updates and deletes reach the bitmaps, and freed ordinals are reused
+        second.setAllergies(Collections.singletonList("Latex"));
+        patients.updatePatient(second.getId(), second);
+        patients.removePatient(third.getId());
+        Patient fourth = patients.addPatient("Alert Four", "four@example.com", "9876543294", 60, "Female", "Pune");
+        patients.addAllergy(fourth.getId(), "Latex");
+        assertEquals(1, patients.countPatientsWithAllergy("Penicillin"), "Count after update");
+        testsPassed++;
+        assertEquals(0, patients.countPatientsWithAllergy("Sulfa"), "Count after delete");
+        testsPassed++;
+        assertEquals(3, patients.getPatientsAllergicToAny(Collections.singletonList("Latex")).size(),
+                "Patients allergic to latex");
+        testsPassed++;
+        
+        try {
+            Patient cloned = first.clone();
+            first.addAllergy("Iodine");
+            assertEquals(Arrays.asList("Penicillin", "Latex"), cloned.getAllergies(), "Clone keeps its allergies");
+            testsPassed++;
+        } catch (CloneNotSupportedException e) {
+            testsFailed++;
+        }
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test the age and cached BMI range indexes.
+     */
+    private static void testAgeAndBmiIndexes() {
+        System.out.println("--- Testing Age and BMI Indexes ---");
+        
+        PatientService patients = new PatientService();
+        Patient young = patients.addPatient("Range Young", "young@example.com", "9876543295", 24, "Male", "Pune");
+        Patient middle = patients.addPatient("Range Middle", "middle@example.com", "9876543296", 45, "Female", "Pune");
+        Patient old = patients.addPatient("Range Old", "old@example.com", "9876543297", 71, "Male", "Pune");
+        Patient unmeasured = patients.addPatient("Range None", "none@example.com", "9876543298", 38, "Male", "Pune");
+        young.setHeight(180);
+        young.setWeight(55);
+        patients.updatePatient(young.getId(), young);
+        middle.setHeight(160);
+        middle.setWeight(70);
+        patients.updatePatient(middle.getId(), middle);
+        old.setHeight(170);
+        old.setWeight(95);
+        patients.updatePatient(old.getId(), old);
+        
+        assertEquals(Arrays.asList(unmeasured, middle), patients.searchByAgeRange(30, 45), "Age range is inclusive");
+        testsPassed++;
+        assertEquals(Collections.singletonList(old), patients.searchByAge(71), "Exact age");
+        testsPassed++;
+        Map<Integer, Integer> bands = patients.getAgeHistogram(10);
+        assertEquals(Arrays.asList(20, 30, 40, 70), new ArrayList<>(bands.keySet()), "Age bands present");
+        testsPassed++;
+        
+        assertEquals(Arrays.asList(middle, old), patients.getPatientsWithHighBMI(25.0), "BMI over threshold");
+        testsPassed++;
+        assertEquals(Collections.singletonList(old), patients.getPatientsWithHighBMI(middle.getBMI()),
+                "Threshold inside a bin is exclusive");
+        testsPassed++;
+        assertEquals(Collections.singletonList(middle), patients.getPatientsByBMIRange(25.0, 30.0),
+                "BMI range is half-open");
+        testsPassed++;
+        Map<String, Integer> categories = patients.getBMICategoryCounts();
+        assertEquals(Arrays.asList(1, 1, 0, 1, 1), new ArrayList<>(categories.values()), "BMI categories");
+        testsPassed++;
+        
+        // Changing weight invalidates the cached BMI and re-files the patient
+        old.setWeight(70);
+        assertEquals(Math.round(70 / (1.7 * 1.7) * 100) / 100.0, Math.round(old.getBMI() * 100) / 100.0,
+                "BMI recomputed after weight change");
+        testsPassed++;
+        patients.updatePatient(old.getId(), old);
+        assertEquals(Collections.singletonList(middle), patients.getPatientsWithHighBMI(25.0),
+                "Index follows the new BMI");
+        testsPassed++;
+        
+        System.out.println();
+    }
+    
+    /**
+     * Test full-text search over medical histories and appointment notes.
+     */
+    private static void testFullTextIndex() {
+        System.out.println("--- Testing Full-Text Index ---");
+        
+        assertEquals(Arrays.asList("type", "2", "diabetes", "x", "ray"),
+                FullTextIndex.tokenize("Type-2 DIABETES; x-ray."), "Tokenizer splits on punctuation and folds case");
+        testsPassed++;
+        
+        DataStore<String> store = new ConcurrentDataStore<>();
+        FullTextIndex<String> text = store.addIndex("text", new FullTextIndex<String>(value -> value));
+        store.add("H1", "Type 2 diabetes, controlled. Chest pain on exertion.");
+        store.add("H2", "Asthma since childhood; pain in chest after exercise.");
+        store.add("H3", "Smoker. Type 2 diabetes with chest pain.");
+        store.add("H4", "Hypertension. Former smoker.");
+        
+        assertEquals(Arrays.asList("H1", "H3"), text.search("diabetes chest", 10), "All words must match");
+        testsPassed++;
+        assertEquals(Arrays.asList("H1", "H3"), text.search("\"chest pain\"", 10), "Phrase needs adjacent words");
+        testsPassed++;
+        assertEquals(Collections.singletonList("H1"), text.search("\"chest pain\" -smoker", 10), "Excluded word");
+        testsPassed++;
+        assertEquals(Arrays.asList("H2", "H4"), text.search("asthma OR hypertension", 10), "Alternatives");
+        testsPassed++;
+        assertEquals(Collections.singletonList("H1"), text.search("type-2 diabetes", 1), "Limit");
+        testsPassed++;
+        assertTrue(text.search("-smoker", 10).isEmpty(), "Only exclusions match nothing");
+        testsPassed++;
+        
+        // Updates replace the old text; unchanged text is not re-indexed
+        store.update("H2", "Asthma, well controlled.");
+        assertTrue(text.search("chest", 10).indexOf("H2") < 0, "Old text no longer matches");
+        testsPassed++;
+        long bytes = text.getPostingsBytes();
+        store.update("H4", "Hypertension. Former smoker.");
+        assertEquals(bytes, text.getPostingsBytes(), "Unchanged text is not re-indexed");
+        testsPassed++;
+        store.delete("H3");
+        assertEquals(Collections.singletonList("H1"), text.search("diabetes", 10), "Deleted record no longer matches");
+        testsPassed++;
+        
+        // Churn past the compaction threshold
+        for (int i = 0; i < 1500; i++) {
+            store.add("C" + i, "routine visit " + i);
+            store.delete("C" + i);
+        }
+        assertEquals(3, text.getDocumentCount(), "Live records after churn");
+        testsPassed++;
+        assertEquals(Arrays.asList("H1", "H2"), text.search("controlled", 10), "Search after compaction");
+        testsPassed++;
+        
+        try {
+            DoctorService doctors = new DoctorService();
+            PatientService patients = new PatientService();
+            AppointmentService appointments = new AppointmentService(doctors, patients);
+            Doctor doctor = doctors.addDoctor("Dr. Notes", "notes@meditrack.com", "9876543299", 50, "Male",
+                    "Pune", Specialization.CARDIOLOGIST, 800, 20, "LIC-NOTES");
+            Patient patient = patients.addPatient("Text Patient", "text@example.com", "9876543300", 52, "Male", "Pune");
+            patients.updateMedicalHistory(patient.getId(), "Atrial fibrillation, on warfarin.");
+            assertEquals(Collections.singletonList(patient), patients.searchByMedicalHistory("warfarin", 10),
+                    "Medical history search");
+            testsPassed++;
+            
+            LocalDateTime slot = LocalDateTime.now().plusDays(50).withHour(10).withMinute(0).withSecond(0).withNano(0);
+            Appointment appointment = appointments.createAppointment(patient.getId(), doctor.getId(), slot, "Review");
+            appointments.completeAppointment(appointment.getAppointmentId(),
+                    "Palpitations resolved; continue warfarin.");
+            assertEquals(Collections.singletonList(appointment), appointments.searchNotes("warfarin palpitations", 10),
+                    "Completed appointment notes are searchable");
+            testsPassed++;
+        } catch (AppointmentNotFoundException e) {
+            testsFailed++;
+        }
+        
+        System.out.println();
+    }
+    
+    /**
+     * In-memory record for binder tests
+     */
+    private static final class TestRecord implements CSVRecord {
+        private final String[] values;
+        
+        private TestRecord(String... values) {
+            this.values = values;
+        }
+        
+        @Override
+        public int size() {
+            return values.length;
+        }
+        
+        @Override
+        public String get(int index) {
+            return values[index];
+        }
+        
+        @Override
+        public int length(int index) {
+            return values[index].length();
+        }
+        
+        @Override
+        public char charAt(int index, int position) {
+            return values[index].charAt(position);
+        }
+        
+        @Override
+        public long getLineNumber() {
+            return 1;
+        }
+    }
+    
     /**
      * Test assertion helper
      */
@@ -0,0 +1,248 @@
+package com.airtribe.meditrack.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Base class of the keyed entity stores. Subclasses hold the entities
+ * (DataStore in slot lists, ConcurrentDataStore in concurrent maps,
+ * TieredDataStore mostly on disk); this class keeps the secondary indexes
+ * registered on the store and the lookups that go through them.
+ * Subclasses call indexPut/indexRemove/indexClear on every add, update
+ * and delete.
+ * @param <T> The type of entity stored
+ */
+public abstract class AbstractDataStore<T> {
+    private final List<StoreIndex<T>> indexes = new CopyOnWriteArrayList<>();
+    private final Map<String, StoreIndex<T>> indexesByName = new ConcurrentHashMap<>();
+
+    /**
+     * Add an entity to the store. Re-adding an existing key replaces it
+     * and moves it to the end of the insertion order.
+     *
+     * @param key the key
+     * @param entity the entity
+     */
+    public abstract void add(String key, T entity);
+
+    /**
+     * Get entity by key.
+     *
+     * @param key the key
+     * @return the entity, or null if there is none
+     */
+    public abstract T get(String key);
+
+    /**
+     * Get all entities in insertion order.
+     *
+     * @return the all
+     */
+    public abstract List<T> getAll();
+
+    /**
+     * Update entity, keeping its insertion position.
+     *
+     * @param key the key
+     * @param entity the entity
+     */
+    public abstract void update(String key, T entity);
+
+    /**
+     * Delete entity by key.
+     *
+     * @param key the key
+     * @return true, if successful
+     */
+    public abstract boolean delete(String key);
+
+    /**
+     * Check if key exists.
+     *
+     * @param key the key
+     * @return true, if successful
+     */
+    public abstract boolean exists(String key);
+
+    /**
+     * Get total count of entities.
+     *
+     * @return the int
+     */
+    public abstract int size();
+
+    /**
+     * Clear the store.
+     */
+    public abstract void clear();
+
+    /**
+     * Get iterator for entities, in insertion order.
+     *
+     * @return the iterator
+     */
+    public abstract Iterator<T> iterator();
+
+    /**
+     * Search by predicate.
+     *
+     * @param predicate the predicate
+     * @return the list
+     */
+    public abstract List<T> search(SearchPredicate<T> predicate);
+
+    /**
+     * Get keys of all live entries, in insertion order.
+     *
+     * @return the keys
+     */
+    protected abstract List<String> keySnapshot();
+
+    /**
+     * Register a hash index for exact-match lookups on an extracted key.
+     *
+     * @param name the index name
+     * @param extractor the index key extractor
+     * @return the index
+     */
+    public <K> HashIndex<T, K> addHashIndex(String name, KeyExtractor<T, K> extractor) {
+        return addIndex(name, new HashIndex<T, K>(extractor));
+    }
+
+    /**
+     * Register an ordered index for exact-match and range lookups on an extracted key.
+     *
+     * @param name the index name
+     * @param extractor the index key extractor
+     * @return the index
+     */
+    public <K extends Comparable<? super K>> OrderedIndex<T, K> addOrderedIndex(String name,
+                                                                            KeyExtractor<T, K> extractor) {
+        return addIndex(name, new OrderedIndex<T, K>(extractor));
+    }
+
+    /**
+     * Register a secondary index and build it from the current contents.
+     * Indexes are meant to be registered while the store is being set up.
+     *
+     * @param name the index name
+     * @param index the index
+     * @return the index
+     */
+    public <I extends StoreIndex<T>> I addIndex(String name, I index) {
+        if (indexesByName.putIfAbsent(name, index) != null) {
+            throw new IllegalArgumentException("Index already registered: " + name);
+        }
+        for (String key : keySnapshot()) {
+            T entity = get(key);
+            if (entity != null) {
+                index.put(key, entity);
+            }
+        }
+        indexes.add(index);
+        return index;
+    }
+
+    /**
+     * Get a registered index by name.
+     *
+     * @param name the index name
+     * @return the index, or null if none is registered under that name
+     */
+    public StoreIndex<T> getIndex(String name) {
+        return indexesByName.get(name);
+    }
+
+    /**
+     * Find entities filed under an index key.
+     *
+     * @param index the index
+     * @param value the index key
+     * @return the list
+     */
+    public <K> List<T> findBy(KeyIndex<T, K> index, K value) {
+        return resolve(index.lookup(value));
+    }
+
+    /**
+     * Find entities whose index key falls in [from, to). A null bound is unbounded.
+     *
+     * @param index the index
+     * @param from the inclusive lower bound
+     * @param to the exclusive upper bound
+     * @return the list, in index key order
+     */
+    public <K extends Comparable<? super K>> List<T> findRange(OrderedIndex<T, K> index, K from, K to) {
+        return resolve(index.range(from, true, to, false, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Resolve primary keys to entities, skipping keys deleted in the meantime.
+     *
+     * @param keys the primary keys
+     * @return the list
+     */
+    public List<T> resolve(Collection<String> keys) {
+        List<T> results = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            T entity = get(key);
+            if (entity != null) {
+                results.add(entity);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Propagate an add/update to the secondary indexes.
+     *
+     * @param key the key
+     * @param entity the entity
+     */
+    protected void indexPut(String key, T entity) {
+        for (StoreIndex<T> index : indexes) {
+            index.put(key, entity);
+        }
+    }
+
+    /**
+     * Propagate a delete to the secondary indexes.
+     *
+     * @param key the key
+     */
+    protected void indexRemove(String key) {
+        for (StoreIndex<T> index : indexes) {
+            index.remove(key);
+        }
+    }
+
+    /**
+     * Empty the secondary indexes.
+     */
+    protected void indexClear() {
+        for (StoreIndex<T> index : indexes) {
+            index.clear();
+        }
+    }
+
+    /**
+     * Functional interface for search predicates
+     */
+    @FunctionalInterface
+    public interface SearchPredicate<T> {
+        boolean matches(T entity);
+    }
+
+    /**
+     * Functional interface for secondary index key extractors
+     */
+    @FunctionalInterface
+    public interface KeyExtractor<T, K> {
+        K extract(T entity);
+    }
+}
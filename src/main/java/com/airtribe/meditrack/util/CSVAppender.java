@@ -0,0 +1,267 @@
+package com.airtribe.meditrack.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived, buffered appender for one CSV file.
+ * Records are joined with CSVUtil.joinLine into an in-memory buffer and
+ * written to the file in groups: when the buffer reaches flushBytes, or at
+ * the latest maxDelayMillis after the first unflushed record (a shared daemon
+ * thread does the timed flushes). flush() hands buffered records to the OS;
+ * sync() also forces them to the storage device and is the durability barrier.
+ * Records not yet flushed are lost if the process dies; open appenders are
+ * flushed (not synced) at JVM shutdown.
+ * Thread-safe. An error from a timed flush is reported by the next call.
+ */
+public class CSVAppender implements Closeable, Flushable {
+    public static final int DEFAULT_FLUSH_BYTES = 64 * 1024;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 100;
+
+    private static final Set<CSVAppender> OPEN = ConcurrentHashMap.newKeySet();
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "csv-appender-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (CSVAppender appender : OPEN) {
+                try {
+                    appender.flush();
+                } catch (IOException e) {
+                    System.err.println("Error flushing CSV file on exit: " + appender.filePath);
+                }
+            }
+        }, "csv-appender-exit"));
+    }
+
+    private final String filePath;
+    private final FileChannel channel;
+    private final CharsetEncoder encoder;
+    private final int flushBytes;
+    private final long maxDelayMillis;
+    private final StringBuilder pending = new StringBuilder();
+    private final ByteBuffer bytes = ByteBuffer.allocate(8 * 1024);
+    private ScheduledFuture<?> timedFlush;
+    private IOException flushError;
+    private long recordsAppended;
+    private long flushCount;
+    private boolean closed;
+
+    private CSVAppender(String filePath, Charset charset, int flushBytes, long maxDelayMillis) throws IOException {
+        File parent = new File(filePath).getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        this.filePath = filePath;
+        this.channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.flushBytes = flushBytes;
+        this.maxDelayMillis = maxDelayMillis;
+        OPEN.add(this);
+    }
+
+    /**
+     * Open a UTF-8 appender with the default thresholds.
+     *
+     * @param filePath the file path
+     * @return the appender
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static CSVAppender open(String filePath) throws IOException {
+        return open(filePath, StandardCharsets.UTF_8, DEFAULT_FLUSH_BYTES, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * Open an appender.
+     *
+     * @param filePath the file path
+     * @param charset the charset
+     * @param flushBytes buffered characters that trigger a write
+     * @param maxDelayMillis longest time a record stays buffered, 0 for no timed flush
+     * @return the appender
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static CSVAppender open(String filePath, Charset charset, int flushBytes, long maxDelayMillis)
+            throws IOException {
+        if (flushBytes <= 0 || maxDelayMillis < 0) {
+            throw new IllegalArgumentException("Invalid flush thresholds: " + flushBytes + " bytes, "
+                    + maxDelayMillis + " ms");
+        }
+        return new CSVAppender(filePath, charset, flushBytes, maxDelayMillis);
+    }
+
+    /**
+     * Buffer one record.
+     *
+     * @param record the record
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public synchronized void append(String[] record) throws IOException {
+        checkUsable();
+        pending.append(CSVUtil.joinLine(record)).append(System.lineSeparator());
+        recordsAppended++;
+        afterAppend();
+    }
+
+    /**
+     * Buffer several records as one group.
+     *
+     * @param records the records
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public synchronized void appendAll(List<String[]> records) throws IOException {
+        checkUsable();
+        for (String[] record : records) {
+            pending.append(CSVUtil.joinLine(record)).append(System.lineSeparator());
+        }
+        recordsAppended += records.size();
+        afterAppend();
+    }
+
+    /**
+     * Write buffered records to the file (to the OS, not necessarily to disk).
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        checkUsable();
+        writePending();
+    }
+
+    /**
+     * Durability barrier: write buffered records and force them to the
+     * storage device. Every record appended before the call survives a crash
+     * once it returns.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public synchronized void sync() throws IOException {
+        checkUsable();
+        writePending();
+        channel.force(false);
+    }
+
+    /**
+     * Flush buffered records and close the file. Does not sync.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        OPEN.remove(this);
+        try {
+            writePending();
+        } finally {
+            channel.close();
+        }
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public synchronized long getRecordsAppended() {
+        return recordsAppended;
+    }
+
+    /**
+     * Get the number of group writes so far.
+     *
+     * @return the flush count
+     */
+    public synchronized long getFlushCount() {
+        return flushCount;
+    }
+
+    private void afterAppend() throws IOException {
+        if (pending.length() >= flushBytes) {
+            writePending();
+        } else if (timedFlush == null && maxDelayMillis > 0) {
+            timedFlush = FLUSHER.schedule(this::timedFlush, maxDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void timedFlush() {
+        timedFlush = null;
+        if (closed || flushError != null) {
+            return;
+        }
+        try {
+            writePending();
+        } catch (IOException e) {
+            flushError = e;
+        }
+    }
+
+    private void writePending() throws IOException {
+        if (timedFlush != null) {
+            timedFlush.cancel(false);
+            timedFlush = null;
+        }
+        if (pending.length() == 0) {
+            return;
+        }
+        CharBuffer chars = CharBuffer.wrap(pending);
+        encoder.reset();
+        while (encoder.encode(chars, bytes, true).isOverflow()) {
+            drain();
+        }
+        while (encoder.flush(bytes).isOverflow()) {
+            drain();
+        }
+        drain();
+        pending.setLength(0);
+        if (pending.capacity() > 4 * flushBytes) {
+            pending.trimToSize();
+        }
+        flushCount++;
+    }
+
+    private void drain() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    private void checkUsable() throws IOException {
+        if (closed) {
+            throw new IOException("Appender is closed: " + filePath);
+        }
+        if (flushError != null) {
+            IOException error = flushError;
+            flushError = null;
+            throw new IOException("Timed flush failed for " + filePath, error);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.airtribe.meditrack.util;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Schema-driven binding of CSV records to entities.
+ * A binder declares, per column name, how to parse the field and which
+ * setter receives it. Numbers, money, enums and date-times are parsed from
+ * the record's characters, so only text columns allocate a String.
+ * Column names are resolved once per header into a Mapping (an array of
+ * column binders by position), so binding a row does no lookups or reflection.
+ * Empty fields leave the entity's default in place; unknown header columns
+ * are ignored.
+ * @param <T> The type of entity bound
+ */
+public final class CSVBinder<T> {
+    private final Supplier<T> factory;
+    private final Map<String, Column<T>> columns;
+
+    private CSVBinder(Builder<T> builder) {
+        this.factory = builder.factory;
+        this.columns = new LinkedHashMap<>(builder.columns);
+    }
+
+    /**
+     * Start a binder for entities created by the given factory.
+     *
+     * @param factory the entity factory
+     * @return the builder
+     */
+    public static <T> Builder<T> builder(Supplier<T> factory) {
+        return new Builder<>(factory);
+    }
+
+    /**
+     * Get the declared column names, in declaration order (the default layout).
+     *
+     * @return the column names
+     */
+    public String[] getColumnNames() {
+        return columns.keySet().toArray(new String[0]);
+    }
+
+    /**
+     * Map columns by position in declaration order, for files without a header.
+     *
+     * @return the mapping
+     */
+    public Mapping<T> defaultMapping() {
+        return forHeader(getColumnNames());
+    }
+
+    /**
+     * Map columns by the names in a header record.
+     *
+     * @param header the header record
+     * @return the mapping
+     */
+    public Mapping<T> forHeader(CSVRecord header) {
+        return forHeader(header.toArray());
+    }
+
+    /**
+     * Map columns by name.
+     *
+     * @param names the column names, in file order
+     * @return the mapping
+     */
+    public Mapping<T> forHeader(String... names) {
+        List<Column<T>> byPosition = new ArrayList<>(names.length);
+        List<String> namesByPosition = new ArrayList<>(names.length);
+        for (String name : names) {
+            byPosition.add(columns.get(name.trim()));
+            namesByPosition.add(name.trim());
+        }
+        return new Mapping<>(factory, byPosition, namesByPosition);
+    }
+
+    /**
+     * Check whether a record is a header for this binder (its first field is a
+     * declared column name).
+     *
+     * @param record the record
+     * @return true, if it looks like a header
+     */
+    public boolean isHeader(CSVRecord record) {
+        if (record.size() == 0) {
+            return false;
+        }
+        for (String name : columns.keySet()) {
+            if (record.contentEquals(0, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Column positions resolved against one header; binds rows to new entities.
+     * @param <T> The type of entity bound
+     */
+    public static final class Mapping<T> {
+        private final Supplier<T> factory;
+        private final Column<T>[] byPosition;
+        private final String[] names;
+
+        @SuppressWarnings("unchecked")
+        private Mapping(Supplier<T> factory, List<Column<T>> byPosition, List<String> names) {
+            this.factory = factory;
+            this.byPosition = byPosition.toArray(new Column[0]);
+            this.names = names.toArray(new String[0]);
+        }
+
+        /**
+         * Bind a record to a new entity.
+         *
+         * @param record the record
+         * @return the entity
+         * @throws IllegalArgumentException if a field cannot be parsed
+         */
+        public T bind(CSVRecord record) {
+            T entity = factory.get();
+            int count = Math.min(record.size(), byPosition.length);
+            for (int i = 0; i < count; i++) {
+                Column<T> column = byPosition[i];
+                if (column != null && record.length(i) > 0) {
+                    try {
+                        column.bind(entity, record, i);
+                    } catch (RuntimeException e) {
+                        throw new IllegalArgumentException("Line " + record.getLineNumber() + ", column '"
+                                + names[i] + "': " + e.getMessage(), e);
+                    }
+                }
+            }
+            return entity;
+        }
+    }
+
+    /**
+     * Builder for CSVBinder.
+     * @param <T> The type of entity bound
+     */
+    public static final class Builder<T> {
+        private final Supplier<T> factory;
+        private final Map<String, Column<T>> columns = new LinkedHashMap<>();
+
+        private Builder(Supplier<T> factory) {
+            this.factory = factory;
+        }
+
+        public Builder<T> stringColumn(String name, BiConsumer<T, String> setter) {
+            return column(name, (entity, record, index) -> setter.accept(entity, record.get(index)));
+        }
+
+        public Builder<T> intColumn(String name, ObjIntConsumer<T> setter) {
+            return column(name, (entity, record, index) -> setter.accept(entity, record.getInt(index)));
+        }
+
+        public Builder<T> doubleColumn(String name, ObjDoubleConsumer<T> setter) {
+            return column(name, (entity, record, index) -> setter.accept(entity, record.getDouble(index)));
+        }
+
+        /**
+         * A rupee amount column delivered as exact paise (see Money).
+         *
+         * @param name the column name
+         * @param setter the paise setter
+         * @return the builder
+         */
+        public Builder<T> moneyColumn(String name, ObjLongConsumer<T> setter) {
+            return column(name, (entity, record, index) -> setter.accept(entity, FieldParsers.parsePaise(record, index)));
+        }
+
+        /**
+         * A boolean column: true/false, yes/no or 1/0, case-insensitive.
+         *
+         * @param name the column name
+         * @param setter the setter
+         * @return the builder
+         */
+        public Builder<T> booleanColumn(String name, BiConsumer<T, Boolean> setter) {
+            return column(name, (entity, record, index) -> setter.accept(entity, parseBoolean(record, index)));
+        }
+
+        public <E extends Enum<E>> Builder<T> enumColumn(String name, Class<E> type, BiConsumer<T, E> setter) {
+            final E[] constants = type.getEnumConstants();
+            return column(name, (entity, record, index) -> {
+                for (E constant : constants) {
+                    if (record.contentEquals(index, constant.name())) {
+                        setter.accept(entity, constant);
+                        return;
+                    }
+                }
+                setter.accept(entity, Enum.valueOf(type, record.get(index)));
+            });
+        }
+
+        /**
+         * A date-time column in DateUtil.DATE_TIME_PATTERN or ISO-8601 form.
+         *
+         * @param name the column name
+         * @param setter the setter
+         * @return the builder
+         */
+        public Builder<T> dateTimeColumn(String name, BiConsumer<T, LocalDateTime> setter) {
+            return column(name, (entity, record, index) ->
+                    setter.accept(entity, FieldParsers.parseDateTime(record, index)));
+        }
+
+        /**
+         * A column with custom parsing.
+         *
+         * @param name the column name
+         * @param column the column binder
+         * @return the builder
+         */
+        public Builder<T> column(String name, Column<T> column) {
+            if (columns.put(name, column) != null) {
+                throw new IllegalArgumentException("Column declared twice: " + name);
+            }
+            return this;
+        }
+
+        public CSVBinder<T> build() {
+            return new CSVBinder<>(this);
+        }
+
+        private static Boolean parseBoolean(CSVRecord record, int index) {
+            String[] truthy = {"true", "yes", "1"};
+            String[] falsy = {"false", "no", "0"};
+            for (int i = 0; i < truthy.length; i++) {
+                if (equalsIgnoreCase(record, index, truthy[i])) {
+                    return Boolean.TRUE;
+                }
+                if (equalsIgnoreCase(record, index, falsy[i])) {
+                    return Boolean.FALSE;
+                }
+            }
+            throw new IllegalArgumentException("Not a boolean: " + record.get(index));
+        }
+
+        private static boolean equalsIgnoreCase(CSVRecord record, int index, String value) {
+            if (record.length(index) != value.length()) {
+                return false;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                if (Character.toLowerCase(record.charAt(index, i)) != value.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Functional interface binding one field of a record into an entity
+     */
+    @FunctionalInterface
+    public interface Column<T> {
+        void bind(T entity, CSVRecord record, int index);
+    }
+}
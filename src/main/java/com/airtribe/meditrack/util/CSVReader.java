@@ -0,0 +1,282 @@
+package com.airtribe.meditrack.util;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streaming CSV reader that yields one record at a time.
+ * Memory stays bounded by the read buffer plus the longest row, whatever the
+ * file size: the same CSVRecord object is refilled for every row, so callers
+ * must copy anything they keep (CSVRecord.toArray()).
+ * Parsing follows RFC 4180: a field starting with a double quote runs to the
+ * matching closing quote and may contain commas, line breaks (LF, CR or CRLF)
+ * and doubled quotes standing for one quote. A quote inside an unquoted field
+ * is kept as a literal. Whitespace around a field is trimmed, except inside
+ * its quotes. A quote left open at end of input is closed there.
+ */
+public class CSVReader implements Closeable, Iterable<CSVRecord> {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Tokenizer states
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_SEEN = 3;
+
+    private final Reader reader;
+    private final char[] buffer;
+    private final RecordBuffer record = new RecordBuffer();
+    private int position;
+    private int limit;
+    private boolean eof;
+    private boolean skipLineFeed;
+    private long lineNumber;
+    private boolean iterating;
+
+    /**
+     * Instantiates a new CSV reader over a character stream.
+     *
+     * @param reader the reader
+     */
+    public CSVReader(Reader reader) {
+        this(reader, BUFFER_SIZE);
+    }
+
+    /**
+     * Instantiates a new CSV reader with a given read buffer size.
+     *
+     * @param reader the reader
+     * @param bufferSize the read buffer size in chars
+     */
+    CSVReader(Reader reader, int bufferSize) {
+        this.reader = reader;
+        this.buffer = new char[Math.max(1, bufferSize)];
+    }
+
+    /**
+     * Open a UTF-8 CSV file.
+     *
+     * @param filePath the file path
+     * @return the reader
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static CSVReader open(String filePath) throws IOException {
+        return open(filePath, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Open a CSV file in the given charset.
+     *
+     * @param filePath the file path
+     * @param charset the charset
+     * @return the reader
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static CSVReader open(String filePath, Charset charset) throws IOException {
+        return new CSVReader(new InputStreamReader(new FileInputStream(filePath), charset));
+    }
+
+    /**
+     * Call a handler for every record of a file.
+     *
+     * @param filePath the file path
+     * @param handler the handler
+     * @return the number of records
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static long forEach(String filePath, RecordHandler handler) throws IOException {
+        try (CSVReader reader = open(filePath)) {
+            return reader.forEachRemaining(handler);
+        }
+    }
+
+    /**
+     * Advance to the next record.
+     *
+     * @return the record, or null at end of input
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public CSVRecord next() throws IOException {
+        if (!fill()) {
+            return null;
+        }
+        record.reset(++lineNumber);
+        int state = FIELD_START;
+        boolean afterCarriageReturn = false;
+        while (position < limit || fill()) {
+            char c = buffer[position++];
+            if (state == QUOTED) {
+                if (c == '"') {
+                    state = QUOTE_SEEN;
+                } else {
+                    // Embedded line break: count it so later records report the right line
+                    if (c == '\r' || (c == '\n' && !afterCarriageReturn)) {
+                        lineNumber++;
+                    }
+                    afterCarriageReturn = c == '\r';
+                    record.append(c);
+                }
+                continue;
+            }
+            if (state == QUOTE_SEEN) {
+                if (c == '"') {
+                    record.append('"');
+                    state = QUOTED;
+                    continue;
+                }
+                record.endQuoted();
+                state = UNQUOTED;
+            }
+            if (c == ',') {
+                record.endField();
+                state = FIELD_START;
+            } else if (c == '\n' || c == '\r') {
+                skipLineFeed = c == '\r';
+                break;
+            } else if (c == '"' && state == FIELD_START) {
+                record.beginQuoted();
+                state = QUOTED;
+            } else {
+                record.append(c);
+                if (c > ' ') {
+                    state = UNQUOTED;
+                }
+            }
+        }
+        if (state == QUOTED || state == QUOTE_SEEN) {
+            // Quote still open at end of input (or just closed): keep what was read
+            record.endQuoted();
+        }
+        record.endField();
+        return record;
+    }
+
+    /**
+     * Call a handler for every remaining record.
+     *
+     * @param handler the handler
+     * @return the number of records
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public long forEachRemaining(RecordHandler handler) throws IOException {
+        long count = 0;
+        CSVRecord current;
+        while ((current = next()) != null) {
+            handler.handle(current);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Get an iterator over the remaining records. I/O errors surface as
+     * UncheckedIOException. Every element is the same reused record.
+     *
+     * @return the iterator
+     */
+    @Override
+    public Iterator<CSVRecord> iterator() {
+        if (iterating) {
+            throw new IllegalStateException("CSVReader can only be iterated once");
+        }
+        iterating = true;
+        return new Iterator<CSVRecord>() {
+            private CSVRecord pending;
+            private boolean done;
+
+            @Override
+            public boolean hasNext() {
+                if (pending == null && !done) {
+                    try {
+                        pending = CSVReader.this.next();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    done = pending == null;
+                }
+                return pending != null;
+            }
+
+            @Override
+            public CSVRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                CSVRecord result = pending;
+                pending = null;
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Get a sequential stream over the remaining records; closing the stream
+     * closes the reader. Map each record to a value before collecting, since
+     * the record object itself is reused.
+     *
+     * @return the stream
+     */
+    public Stream<CSVRecord> stream() {
+        Spliterator<CSVRecord> spliterator = Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Make sure input is available, refilling the buffer and dropping the LF
+     * of a CRLF pair whose CR ended the previous record.
+     *
+     * @return false at end of input
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private boolean fill() throws IOException {
+        while (true) {
+            if (position == limit) {
+                int read = eof ? -1 : reader.read(buffer, 0, buffer.length);
+                if (read < 0) {
+                    eof = true;
+                    return false;
+                }
+                position = 0;
+                limit = read;
+            } else if (skipLineFeed) {
+                skipLineFeed = false;
+                if (buffer[position] == '\n') {
+                    position++;
+                }
+            } else {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Callback invoked once per record
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        void handle(CSVRecord record) throws IOException;
+    }
+}
@@ -0,0 +1,140 @@
+package com.airtribe.meditrack.util;
+
+/**
+ * One CSV record as seen by the streaming readers.
+ * Readers reuse the same record object for every row, so a record is only
+ * valid until the reader moves on; call toArray() to keep the values.
+ */
+public interface CSVRecord {
+
+    /**
+     * Get the number of fields.
+     *
+     * @return the field count
+     */
+    int size();
+
+    /**
+     * Get a field as a new String.
+     *
+     * @param index the field index
+     * @return the value
+     */
+    String get(int index);
+
+    /**
+     * Get the length of a field without materializing it.
+     *
+     * @param index the field index
+     * @return the length
+     */
+    int length(int index);
+
+    /**
+     * Get one character of a field without materializing it.
+     *
+     * @param index the field index
+     * @param position the position in the field
+     * @return the character
+     */
+    char charAt(int index, int position);
+
+    /**
+     * Get the 1-based line number the record starts on.
+     *
+     * @return the line number
+     */
+    long getLineNumber();
+
+    /**
+     * Parse a field as a long without allocating.
+     *
+     * @param index the field index
+     * @return the value
+     * @throws NumberFormatException if the field is not a decimal integer
+     */
+    default long getLong(int index) {
+        int length = length(index);
+        if (length == 0) {
+            throw new NumberFormatException("Empty field " + index + " on line " + getLineNumber());
+        }
+        int position = 0;
+        boolean negative = charAt(index, 0) == '-';
+        if (negative || charAt(index, 0) == '+') {
+            position++;
+        }
+        if (position == length || length - position > 18) {
+            return Long.parseLong(get(index));
+        }
+        long value = 0;
+        for (; position < length; position++) {
+            char c = charAt(index, position);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Not a number in field " + index + " on line "
+                        + getLineNumber() + ": " + get(index));
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse a field as an int without allocating.
+     *
+     * @param index the field index
+     * @return the value
+     * @throws NumberFormatException if the field is not a decimal int
+     */
+    default int getInt(int index) {
+        long value = getLong(index);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Out of int range in field " + index + " on line " + getLineNumber());
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parse a field as a double. Plain decimals of up to 15 digits are parsed
+     * in place (exactly as Double.parseDouble would round them); anything else
+     * goes through Double.parseDouble.
+     *
+     * @param index the field index
+     * @return the value
+     */
+    default double getDouble(int index) {
+        return FieldParsers.parseDouble(this, index);
+    }
+
+    /**
+     * Compare a field with a string without materializing it.
+     *
+     * @param index the field index
+     * @param value the string
+     * @return true, if the field equals the string
+     */
+    default boolean contentEquals(int index, String value) {
+        int length = length(index);
+        if (length != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (charAt(index, i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy all fields out of the reusable record.
+     *
+     * @return the values
+     */
+    default String[] toArray() {
+        String[] values = new String[size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = get(i);
+        }
+        return values;
+    }
+}
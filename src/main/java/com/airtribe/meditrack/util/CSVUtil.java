@@ -1,8 +1,11 @@
 package com.airtribe.meditrack.util;
 
 import java.io.*;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Utility class for CSV file operations.
@@ -11,9 +14,11 @@ import java.util.List;
 public class CSVUtil {
     public static final String CSV_DELIMITER = ",";
     public static final String CSV_QUOTE = "\"";
+    private static final Map<String, CSVAppender> APPENDERS = new ConcurrentHashMap<>();
     
     /**
      * Read CSV file and return list of string arrays.
+     * Holds the whole file in memory; stream large files with CSVReader instead.
      *
      * @param filePath the file path
      * @return the list
@@ -22,11 +27,10 @@ public class CSVUtil {
     public static List<String[]> readCSV(String filePath) throws IOException {
         List<String[]> records = new ArrayList<>();
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] values = parseLine(line);
-                records.add(values);
+        try (CSVReader reader = new CSVReader(new BufferedReader(new FileReader(filePath)))) {
+            CSVRecord record;
+            while ((record = reader.next()) != null) {
+                records.add(record.toArray());
             }
         } catch (IOException e) {
             System.err.println("Error reading CSV file: " + filePath);
@@ -36,6 +40,31 @@ public class CSVUtil {
         return records;
     }
     
+    /**
+     * Stream a CSV file record by record in bounded memory.
+     *
+     * @param filePath the file path
+     * @param handler the handler, given a reused record
+     * @return the number of records
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static long forEachRecord(String filePath, CSVReader.RecordHandler handler) throws IOException {
+        return CSVReader.forEach(filePath, handler);
+    }
+    
+    /**
+     * Parse a read-only UTF-8 CSV file through a memory mapping, materializing
+     * field Strings only when the handler asks for them.
+     *
+     * @param filePath the file path
+     * @param handler the handler, given a reused record
+     * @return the number of records
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static long forEachMappedRecord(String filePath, CSVReader.RecordHandler handler) throws IOException {
+        return MappedCSVParser.forEach(filePath, handler);
+    }
+    
     /**
      * Write CSV file from list of string arrays.
      *
@@ -60,20 +89,32 @@ public class CSVUtil {
     }
     
     /**
-     * Append a record to CSV file.
+     * Append a record to CSV file. Goes through a long-lived appender per file
+     * (opened on first use) and is flushed to the OS before returning, so there
+     * is no open/close per record; use CSVAppender directly to batch writes.
      *
      * @param filePath the file path
      * @param record the record
      * @throws IOException Signals that an I/O exception has occurred.
      */
     public static void appendToCSV(String filePath, String[] record) throws IOException {
-        File file = new File(filePath);
-        boolean fileExists = file.exists();
-        
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, true))) {
-            String line = joinLine(record);
-            writer.write(line);
-            writer.newLine();
+        try {
+            CSVAppender appender = APPENDERS.get(filePath);
+            if (appender == null) {
+                synchronized (APPENDERS) {
+                    appender = APPENDERS.get(filePath);
+                    if (appender == null) {
+                        // Same charset as readCSV and writeCSV
+                        appender = CSVAppender.open(filePath, Charset.defaultCharset(),
+                                CSVAppender.DEFAULT_FLUSH_BYTES, 0);
+                        APPENDERS.put(filePath, appender);
+                    }
+                }
+            }
+            synchronized (appender) {
+                appender.append(record);
+                appender.flush();
+            }
         } catch (IOException e) {
             System.err.println("Error appending to CSV file: " + filePath);
             throw e;
@@ -81,46 +122,59 @@ public class CSVUtil {
     }
     
     /**
-     * Parse a CSV line handling quoted values.
+     * Close the appenders opened by appendToCSV.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static void closeAppenders() throws IOException {
+        synchronized (APPENDERS) {
+            IOException failure = null;
+            for (CSVAppender appender : APPENDERS.values()) {
+                try {
+                    appender.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            APPENDERS.clear();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+    
+    /**
+     * Parse one CSV record (RFC 4180, see CSVReader). Line breaks inside
+     * quotes belong to the record; anything after an unquoted line break is ignored.
      *
      * @param line the line
      * @return the string[]
      */
-    private static String[] parseLine(String line) {
-        List<String> values = new ArrayList<>();
-        StringBuilder current = new StringBuilder();
-        boolean insideQuotes = false;
-        
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            
-            if (c == '"') {
-                insideQuotes = !insideQuotes;
-            } else if (c == ',' && !insideQuotes) {
-                values.add(current.toString().trim());
-                current = new StringBuilder();
-            } else {
-                current.append(c);
-            }
+    public static String[] parseLine(String line) {
+        try (CSVReader reader = new CSVReader(new StringReader(line), line.length() + 1)) {
+            CSVRecord record = reader.next();
+            return record != null ? record.toArray() : new String[] {""};
+        } catch (IOException e) {
+            // A StringReader does not fail
+            throw new UncheckedIOException(e);
         }
-        
-        values.add(current.toString().trim());
-        return values.toArray(new String[0]);
     }
     
     /**
-     * Join values into a CSV line, quoting if necessary.
+     * Join values into a CSV line, quoting if necessary: values containing a
+     * comma, quote or line break, or with whitespace at either end (which
+     * parsing would otherwise trim).
      *
      * @param values the values
      * @return the string
      */
-    private static String joinLine(String[] values) {
+    public static String joinLine(String[] values) {
         StringBuilder line = new StringBuilder();
         
         for (int i = 0; i < values.length; i++) {
             String value = values[i] != null ? values[i] : "";
             
-            if (value.contains(",") || value.contains("\"")) {
+            if (needsQuotes(value)) {
                 line.append(CSV_QUOTE).append(value.replace("\"", "\"\"")).append(CSV_QUOTE);
             } else {
                 line.append(value);
@@ -134,6 +188,22 @@ public class CSVUtil {
         return line.toString();
     }
     
+    private static boolean needsQuotes(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        if (value.charAt(0) <= ' ' || value.charAt(value.length() - 1) <= ' ') {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+    
     // Prevent instantiation
     private CSVUtil() {
         throw new AssertionError("Cannot instantiate CSVUtil class");
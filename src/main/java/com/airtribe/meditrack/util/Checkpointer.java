@@ -0,0 +1,179 @@
+package com.airtribe.meditrack.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background checkpointer that keeps a WriteAheadLog, and so the replay at
+ * the next startup, short.
+ * A checkpoint marks the end of the log, saves snapshots of the stores while
+ * writers carry on (concurrent stores iterate weakly consistently, so the
+ * snapshot is fuzzy), and then compacts the log up to the mark. Every change
+ * a fuzzy snapshot may have missed was logged after the mark, and replaying
+ * the log's full-state records over the snapshot restores the latest state.
+ * A checkpoint runs when the log reaches maxLogBytes or intervalMillis after
+ * the last one, whichever comes first; 0 disables a trigger.
+ */
+public class Checkpointer implements Closeable {
+    private static final long MAX_POLL_MILLIS = 100;
+
+    private final WriteAheadLog log;
+    private final SnapshotTask task;
+    private final long maxLogBytes;
+    private final long intervalMillis;
+    private final ScheduledExecutorService scheduler;
+    private long lastCheckpointNanos;
+    private long checkpointCount;
+    private long failureCount;
+    private long lastDurationNanos;
+    private long maxDurationNanos;
+    private long totalDurationNanos;
+    private long bytesCompacted;
+    private IOException lastError;
+
+    private Checkpointer(WriteAheadLog log, SnapshotTask task, long maxLogBytes, long intervalMillis) {
+        this.log = log;
+        this.task = task;
+        this.maxLogBytes = maxLogBytes;
+        this.intervalMillis = intervalMillis;
+        this.lastCheckpointNanos = System.nanoTime();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wal-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start checkpointing a log in the background.
+     *
+     * @param log the write-ahead log
+     * @param task saves snapshots of every store attached to the log
+     * @param maxLogBytes the log size that triggers a checkpoint, 0 for none
+     * @param intervalMillis the time between checkpoints, 0 for none
+     * @return the checkpointer
+     */
+    public static Checkpointer start(WriteAheadLog log, SnapshotTask task, long maxLogBytes, long intervalMillis) {
+        if (maxLogBytes < 0 || intervalMillis < 0) {
+            throw new IllegalArgumentException("Invalid checkpoint trigger: " + maxLogBytes + " bytes, "
+                    + intervalMillis + " ms");
+        }
+        Checkpointer checkpointer = new Checkpointer(log, task, maxLogBytes, intervalMillis);
+        if (maxLogBytes > 0 || intervalMillis > 0) {
+            long poll = intervalMillis > 0 ? Math.min(intervalMillis, MAX_POLL_MILLIS) : MAX_POLL_MILLIS;
+            checkpointer.scheduler.scheduleWithFixedDelay(checkpointer::checkTriggers, poll, poll,
+                    TimeUnit.MILLISECONDS);
+        }
+        return checkpointer;
+    }
+
+    /**
+     * Take a checkpoint now.
+     *
+     * @return the number of log bytes compacted away
+     * @throws IOException if saving a snapshot or compacting the log fails; the log is then left whole
+     */
+    public synchronized long checkpoint() throws IOException {
+        long begin = System.nanoTime();
+        try {
+            long mark = log.checkpointMark();
+            task.save();
+            long dropped = log.compact(mark);
+            long nanos = System.nanoTime() - begin;
+            checkpointCount++;
+            lastDurationNanos = nanos;
+            maxDurationNanos = Math.max(maxDurationNanos, nanos);
+            totalDurationNanos += nanos;
+            bytesCompacted += dropped;
+            return dropped;
+        } catch (IOException e) {
+            failureCount++;
+            lastError = e;
+            throw e;
+        } finally {
+            lastCheckpointNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Stop checkpointing, waiting for a running checkpoint to finish.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public synchronized long getCheckpointCount() {
+        return checkpointCount;
+    }
+
+    public synchronized long getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * Get the error of the last failed checkpoint.
+     *
+     * @return the error, or null if none failed
+     */
+    public synchronized IOException getLastError() {
+        return lastError;
+    }
+
+    public synchronized double getLastDurationMillis() {
+        return lastDurationNanos / 1_000_000.0;
+    }
+
+    public synchronized double getMaxDurationMillis() {
+        return maxDurationNanos / 1_000_000.0;
+    }
+
+    public synchronized double getAverageDurationMillis() {
+        return checkpointCount == 0 ? 0 : totalDurationNanos / 1_000_000.0 / checkpointCount;
+    }
+
+    /**
+     * Get the number of log bytes dropped by all checkpoints so far.
+     *
+     * @return the bytes compacted
+     */
+    public synchronized long getBytesCompacted() {
+        return bytesCompacted;
+    }
+
+    private void checkTriggers() {
+        try {
+            boolean due;
+            synchronized (this) {
+                due = intervalMillis > 0
+                        && System.nanoTime() - lastCheckpointNanos >= TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+            }
+            long size = log.size();
+            if (size > 0 && (due || (maxLogBytes > 0 && size >= maxLogBytes))) {
+                checkpoint();
+            }
+        } catch (IOException e) {
+            // Recorded in lastError; the log stays whole and the next trigger retries
+            System.err.println("Checkpoint of " + log.getFilePath() + " failed: " + e.getMessage());
+        } catch (RuntimeException e) {
+            // Keep the schedule alive
+            System.err.println("Checkpoint of " + log.getFilePath() + " failed: " + e);
+        }
+    }
+
+    /**
+     * Functional interface that saves a snapshot of every store attached to the log
+     */
+    @FunctionalInterface
+    public interface SnapshotTask {
+        void save() throws IOException;
+    }
+}
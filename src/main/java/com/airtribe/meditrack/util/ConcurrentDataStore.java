@@ -0,0 +1,272 @@
+package com.airtribe.meditrack.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Thread-safe DataStore for stores written by several threads at once
+ * (reception desks, kiosk, batch importer).
+ * Reads are lock-free; writers only serialize per key stripe, never globally.
+ * Iteration, getAll() and search() are weakly consistent: they never throw
+ * ConcurrentModificationException and reflect some state between the start
+ * and the end of the traversal.
+ * @param <T> The type of entity stored
+ */
+public class ConcurrentDataStore<T> extends DataStore<T> {
+    private final ConcurrentHashMap<String, Entry<T>> store;
+    private final ConcurrentSkipListMap<Long, Entry<T>> ordered;
+    private final AtomicLong sequence;
+    private final StripedLock locks;
+
+    public ConcurrentDataStore() {
+        this(StripedLock.DEFAULT_STRIPES);
+    }
+
+    /**
+     * Instantiates a new concurrent data store.
+     *
+     * @param stripes the number of writer lock stripes
+     */
+    public ConcurrentDataStore(int stripes) {
+        this.store = new ConcurrentHashMap<>();
+        this.ordered = new ConcurrentSkipListMap<>();
+        this.sequence = new AtomicLong();
+        this.locks = new StripedLock(stripes);
+    }
+
+    /**
+     * Add an entity to the store. Re-adding an existing key replaces it
+     * and moves it to the end of the insertion order.
+     *
+     * @param key the key
+     * @param entity the entity
+     */
+    @Override
+    public void add(String key, T entity) {
+        Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            Entry<T> previous = store.get(key);
+            if (previous != null) {
+                ordered.remove(previous.seq);
+            }
+            Entry<T> entry = new Entry<>(key, sequence.incrementAndGet(), entity);
+            ordered.put(entry.seq, entry);
+            store.put(key, entry);
+            indexPut(key, entity);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get entity by key.
+     *
+     * @param key the key
+     * @return the t
+     */
+    @Override
+    public T get(String key) {
+        Entry<T> entry = store.get(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Get all entities in insertion order.
+     *
+     * @return the all
+     */
+    @Override
+    public List<T> getAll() {
+        List<T> results = new ArrayList<>(store.size());
+        for (Entry<T> entry : ordered.values()) {
+            results.add(entry.value);
+        }
+        return results;
+    }
+
+    /**
+     * Get entity by index. This walks the ordered view, so it is O(index);
+     * prefer iterator() for traversal.
+     *
+     * @param index the index
+     * @return the by index
+     */
+    @Override
+    public T getByIndex(int index) {
+        if (index < 0) {
+            return null;
+        }
+        int position = 0;
+        for (Entry<T> entry : ordered.values()) {
+            if (position++ == index) {
+                return entry.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Update entity in place, keeping its insertion position.
+     *
+     * @param key the key
+     * @param entity the entity
+     */
+    @Override
+    public void update(String key, T entity) {
+        Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            Entry<T> entry = store.get(key);
+            if (entry != null) {
+                entry.value = entity;
+                indexPut(key, entity);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Delete entity by key.
+     *
+     * @param key the key
+     * @return true, if successful
+     */
+    @Override
+    public boolean delete(String key) {
+        Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            Entry<T> entry = store.remove(key);
+            if (entry != null) {
+                ordered.remove(entry.seq);
+                indexRemove(key);
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Check if key exists.
+     *
+     * @param key the key
+     * @return true, if successful
+     */
+    @Override
+    public boolean exists(String key) {
+        return store.containsKey(key);
+    }
+
+    /**
+     * Get total count of entities.
+     *
+     * @return the int
+     */
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    /**
+     * Clear the store, one key at a time (no global lock).
+     */
+    @Override
+    public void clear() {
+        for (String key : store.keySet()) {
+            delete(key);
+        }
+    }
+
+    /**
+     * Get weakly-consistent iterator for entities.
+     *
+     * @return the iterator
+     */
+    @Override
+    public Iterator<T> iterator() {
+        final Iterator<Entry<T>> entries = ordered.values().iterator();
+        return new Iterator<T>() {
+            private Entry<T> current;
+
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (!entries.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                current = entries.next();
+                return current.value;
+            }
+
+            @Override
+            public void remove() {
+                if (current == null) {
+                    throw new IllegalStateException();
+                }
+                delete(current.key);
+                current = null;
+            }
+        };
+    }
+
+    /**
+     * Search by predicate over a weakly-consistent traversal.
+     *
+     * @param predicate the predicate
+     * @return the list
+     */
+    @Override
+    public List<T> search(SearchPredicate<T> predicate) {
+        List<T> results = new ArrayList<>();
+        for (Entry<T> entry : ordered.values()) {
+            T entity = entry.value;
+            if (predicate.matches(entity)) {
+                results.add(entity);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Get keys of all live entries, in insertion order.
+     *
+     * @return the keys
+     */
+    @Override
+    protected List<String> keySnapshot() {
+        List<String> results = new ArrayList<>(store.size());
+        for (Entry<T> entry : ordered.values()) {
+            results.add(entry.key);
+        }
+        return results;
+    }
+
+    /**
+     * Store slot: key, insertion sequence and current value.
+     */
+    private static final class Entry<T> {
+        private final String key;
+        private final long seq;
+        private volatile T value;
+
+        private Entry(String key, long seq, T value) {
+            this.key = key;
+            this.seq = seq;
+            this.value = value;
+        }
+    }
+}
@@ -5,148 +5,302 @@ import java.util.*;
 /**
  * Generic DataStore class demonstrating generics and collections.
  * Provides basic CRUD operations for any type of entity.
+ * Entities are kept in insertion order in slot lists; each key maps to its slot,
+ * so get/update/delete are O(1). Deleted slots become tombstones that are
+ * compacted away once they outnumber the live entries.
+ * Secondary indexes registered on the store are maintained on add/update/delete.
+ * Not thread-safe; see ConcurrentDataStore for stores shared between threads.
  * @param <T> The type of entity stored
  */
-public class DataStore<T> {
-    private Map<String, T> store;
-    private List<T> list;
-    
+public class DataStore<T> extends AbstractDataStore<T> {
+    // Below this many tombstones compaction is not worth the pass
+    private static final int MIN_TOMBSTONES_TO_COMPACT = 32;
+
+    private Map<String, Integer> slots;
+    private List<String> keys;
+    private List<T> values;
+    private int tombstones;
+    private int modCount;
+
     public DataStore() {
-        this.store = new HashMap<>();
-        this.list = new ArrayList<>();
+        this.slots = new HashMap<>();
+        this.keys = new ArrayList<>();
+        this.values = new ArrayList<>();
     }
-    
+
     /**
-     * Add an entity to the store.
+     * Add an entity to the store. Re-adding an existing key replaces it
+     * and moves it to the end of the insertion order.
      *
      * @param key the key
      * @param entity the entity
      */
+    @Override
     public void add(String key, T entity) {
-        store.put(key, entity);
-        list.add(entity);
+        Integer previous = slots.get(key);
+        if (previous != null) {
+            removeSlot(previous);
+        }
+        slots.put(key, keys.size());
+        keys.add(key);
+        values.add(entity);
+        modCount++;
+        indexPut(key, entity);
     }
-    
+
     /**
      * Get entity by key.
      *
      * @param key the key
      * @return the t
      */
+    @Override
     public T get(String key) {
-        return store.get(key);
+        Integer slot = slots.get(key);
+        return slot != null ? values.get(slot) : null;
     }
-    
+
     /**
      * Get all entities.
      *
      * @return the all
      */
+    @Override
     public List<T> getAll() {
-        return new ArrayList<>(list);
+        if (tombstones == 0) {
+            return new ArrayList<>(values);
+        }
+        List<T> results = new ArrayList<>(slots.size());
+        for (int i = 0; i < keys.size(); i++) {
+            if (keys.get(i) != null) {
+                results.add(values.get(i));
+            }
+        }
+        return results;
     }
-    
+
     /**
-     * Get entity by index.
+     * Get entity by index (position among live entities in insertion order).
      *
      * @param index the index
      * @return the by index
      */
     public T getByIndex(int index) {
-        if (index >= 0 && index < list.size()) {
-            return list.get(index);
+        if (index >= 0 && index < slots.size()) {
+            if (tombstones > 0) {
+                compact();
+            }
+            return values.get(index);
         }
         return null;
     }
-    
+
     /**
      * Update entity.
      *
      * @param key the key
      * @param entity the entity
      */
+    @Override
     public void update(String key, T entity) {
-        if (store.containsKey(key)) {
-            int index = list.indexOf(store.get(key));
-            store.put(key, entity);
-            if (index >= 0) {
-                list.set(index, entity);
-            }
+        Integer slot = slots.get(key);
+        if (slot != null) {
+            values.set(slot, entity);
+            indexPut(key, entity);
         }
     }
-    
+
     /**
      * Delete entity by key.
      *
      * @param key the key
      * @return true, if successful
      */
+    @Override
     public boolean delete(String key) {
-        T entity = store.remove(key);
-        if (entity != null) {
-            list.remove(entity);
+        Integer slot = slots.get(key);
+        if (slot != null) {
+            removeSlot(slot);
+            modCount++;
+            indexRemove(key);
+            if (tombstones >= MIN_TOMBSTONES_TO_COMPACT && tombstones > slots.size()) {
+                compact();
+            }
             return true;
         }
         return false;
     }
-    
+
     /**
      * Check if key exists.
      *
      * @param key the key
      * @return true, if successful
      */
+    @Override
     public boolean exists(String key) {
-        return store.containsKey(key);
+        return slots.containsKey(key);
     }
-    
+
     /**
      * Get total count of entities.
      *
      * @return the int
      */
+    @Override
     public int size() {
-        return store.size();
+        return slots.size();
     }
-    
+
     /**
      * Clear the store.
      */
+    @Override
     public void clear() {
-        store.clear();
-        list.clear();
+        slots.clear();
+        keys.clear();
+        values.clear();
+        tombstones = 0;
+        modCount++;
+        indexClear();
     }
-    
+
     /**
-     * Get iterator for entities.
+     * Get iterator for entities (fail-fast, like the list iterator it replaces).
      *
      * @return the iterator
      */
+    @Override
     public Iterator<T> iterator() {
-        return list.iterator();
+        return new SlotIterator();
     }
-    
+
     /**
      * Search by predicate (using Java 8 streams if needed).
      *
      * @param predicate the predicate
      * @return the list
      */
+    @Override
     public List<T> search(SearchPredicate<T> predicate) {
         List<T> results = new ArrayList<>();
-        for (T entity : list) {
-            if (predicate.matches(entity)) {
-                results.add(entity);
+        for (int i = 0; i < keys.size(); i++) {
+            if (keys.get(i) != null) {
+                T entity = values.get(i);
+                if (predicate.matches(entity)) {
+                    results.add(entity);
+                }
             }
         }
         return results;
     }
-    
+
     /**
-     * Functional interface for search predicates
+     * Get keys of all live entries, in insertion order.
+     *
+     * @return the keys
      */
-    @FunctionalInterface
-    public interface SearchPredicate<T> {
-        boolean matches(T entity);
+    @Override
+    protected List<String> keySnapshot() {
+        List<String> results = new ArrayList<>(slots.size());
+        for (String key : keys) {
+            if (key != null) {
+                results.add(key);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Turn a slot into a tombstone, dropping it outright when it is the last one.
+     *
+     * @param slot the slot
+     */
+    private void removeSlot(int slot) {
+        slots.remove(keys.get(slot));
+        int last = keys.size() - 1;
+        if (slot == last) {
+            keys.remove(last);
+            values.remove(last);
+            // Trailing tombstones can go too
+            while (!keys.isEmpty() && keys.get(keys.size() - 1) == null) {
+                keys.remove(keys.size() - 1);
+                values.remove(values.size() - 1);
+                tombstones--;
+            }
+        } else {
+            keys.set(slot, null);
+            values.set(slot, null);
+            tombstones++;
+        }
+    }
+
+    /**
+     * Squeeze out tombstones, preserving insertion order and re-pointing slots.
+     */
+    private void compact() {
+        int write = 0;
+        for (int read = 0; read < keys.size(); read++) {
+            String key = keys.get(read);
+            if (key != null) {
+                if (write != read) {
+                    keys.set(write, key);
+                    values.set(write, values.get(read));
+                    slots.put(key, write);
+                }
+                write++;
+            }
+        }
+        keys.subList(write, keys.size()).clear();
+        values.subList(write, values.size()).clear();
+        tombstones = 0;
+        modCount++;
+    }
+
+    /**
+     * Iterator over live slots; remove() leaves a tombstone so positions stay valid.
+     */
+    private class SlotIterator implements Iterator<T> {
+        private int cursor;
+        private int lastReturned = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            checkForComodification();
+            while (cursor < keys.size() && keys.get(cursor) == null) {
+                cursor++;
+            }
+            return cursor < keys.size();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = cursor++;
+            return values.get(lastReturned);
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            String key = keys.get(lastReturned);
+            removeSlot(lastReturned);
+            indexRemove(key);
+            lastReturned = -1;
+            modCount++;
+            expectedModCount = modCount;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
     }
 }
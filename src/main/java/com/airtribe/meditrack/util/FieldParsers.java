@@ -0,0 +1,168 @@
+package com.airtribe.meditrack.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+
+/**
+ * Allocation-free parsers reading numbers, money and date-times straight
+ * from CSVRecord fields. Anything outside the fast-path shapes falls back to
+ * the JDK parser on a materialized String, so results are always the same
+ * as the String-based equivalents.
+ */
+final class FieldParsers {
+    // Exact double values of 10^0 .. 10^15
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+        1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+
+    /**
+     * Parse a double. Plain decimals of up to 15 digits are parsed in place.
+     *
+     * @param record the record
+     * @param index the field index
+     * @return the value, as Double.parseDouble would return it
+     */
+    static double parseDouble(CSVRecord record, int index) {
+        int length = record.length(index);
+        int position = 0;
+        boolean negative = length > 0 && record.charAt(index, 0) == '-';
+        if (negative || (length > 0 && record.charAt(index, 0) == '+')) {
+            position++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; position < length; position++) {
+            char c = record.charAt(index, position);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                break;
+            }
+        }
+        if (position < length || digits == 0 || digits > 15) {
+            return Double.parseDouble(record.get(index));
+        }
+        // Both operands are exact, so the division is correctly rounded
+        double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse a rupee amount such as "1250.5" straight to paise, without going
+     * through a double. More than two decimals round half-up, as Money.ofRupees does.
+     *
+     * @param record the record
+     * @param index the field index
+     * @return the amount in paise
+     */
+    static long parsePaise(CSVRecord record, int index) {
+        int length = record.length(index);
+        int position = 0;
+        boolean negative = length > 0 && record.charAt(index, 0) == '-';
+        if (negative) {
+            position++;
+        }
+        long rupees = 0;
+        int digits = 0;
+        for (; position < length && digits <= 15; position++) {
+            char c = record.charAt(index, position);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            rupees = rupees * 10 + (c - '0');
+            digits++;
+        }
+        long paise = 0;
+        int decimals = 0;
+        if (position < length && record.charAt(index, position) == '.') {
+            for (position++; position < length && decimals < 2; position++, decimals++) {
+                char c = record.charAt(index, position);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                paise = paise * 10 + (c - '0');
+            }
+        }
+        if (position < length || (digits == 0 && decimals == 0) || digits > 15) {
+            return new BigDecimal(record.get(index)).movePointRight(2).setScale(0, RoundingMode.HALF_UP)
+                    .longValueExact();
+        }
+        if (decimals == 1) {
+            paise *= 10;
+        }
+        long value = rupees * Money.PAISE_PER_RUPEE + paise;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse a date-time in DateUtil.DATE_TIME_PATTERN ("dd-MM-yyyy HH:mm:ss")
+     * or ISO-8601 ("yyyy-MM-ddTHH:mm[:ss]") form.
+     *
+     * @param record the record
+     * @param index the field index
+     * @return the date time
+     */
+    static LocalDateTime parseDateTime(CSVRecord record, int index) {
+        int length = record.length(index);
+        if (length == 19 && record.charAt(index, 2) == '-' && record.charAt(index, 5) == '-'
+                && record.charAt(index, 10) == ' ' && record.charAt(index, 13) == ':'
+                && record.charAt(index, 16) == ':') {
+            int day = digits(record, index, 0, 2);
+            int month = digits(record, index, 3, 2);
+            int year = digits(record, index, 6, 4);
+            int hour = digits(record, index, 11, 2);
+            int minute = digits(record, index, 14, 2);
+            int second = digits(record, index, 17, 2);
+            if ((day | month | year | hour | minute | second) >= 0) {
+                return LocalDateTime.of(year, month, day, hour, minute, second);
+            }
+        } else if ((length == 16 || length == 19) && record.charAt(index, 4) == '-'
+                && record.charAt(index, 7) == '-' && record.charAt(index, 10) == 'T'
+                && record.charAt(index, 13) == ':' && (length == 16 || record.charAt(index, 16) == ':')) {
+            int year = digits(record, index, 0, 4);
+            int month = digits(record, index, 5, 2);
+            int day = digits(record, index, 8, 2);
+            int hour = digits(record, index, 11, 2);
+            int minute = digits(record, index, 14, 2);
+            int second = length == 19 ? digits(record, index, 17, 2) : 0;
+            if ((day | month | year | hour | minute | second) >= 0) {
+                return LocalDateTime.of(year, month, day, hour, minute, second);
+            }
+        }
+        String value = record.get(index);
+        return value.indexOf('T') >= 0 ? LocalDateTime.parse(value) : DateUtil.parseDateTime(value);
+    }
+
+    /**
+     * Read a fixed-width run of digits.
+     *
+     * @param record the record
+     * @param index the field index
+     * @param from the first position
+     * @param count the number of digits
+     * @return the number, or -1 if a character is not a digit
+     */
+    private static int digits(CSVRecord record, int index, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = record.charAt(index, i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // Prevent instantiation
+    private FieldParsers() {
+        throw new AssertionError("Cannot instantiate FieldParsers class");
+    }
+}
@@ -0,0 +1,614 @@
+package com.airtribe.meditrack.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over one free-text field (medical history, appointment
+ * notes), for finding records by the words in them without a scan.
+ * Text is split into lower-case runs of letters and digits. Each term has a
+ * postings list of the documents containing it and the word positions in
+ * each, held as varints in one byte array: the gap from the previous
+ * document, the number of positions, then the gaps between positions.
+ * Documents are numbered in the order they are indexed, so a changed record
+ * is appended as a new document and its old one becomes dead; dead documents
+ * are compacted away once they outnumber the live ones.
+ * Queries (see search) combine terms with AND, OR and NOT, and quoted
+ * phrases match consecutive words. Records whose text has not changed are
+ * not re-indexed when the store updates them.
+ * @param <T> The type of entity indexed
+ */
+public class FullTextIndex<T> implements StoreIndex<T> {
+    // Below this many dead documents compaction is not worth the pass
+    private static final int MIN_DEAD_TO_REBUILD = 1024;
+    private static final String OR = "OR";
+
+    private final DataStore.KeyExtractor<T, String> extractor;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Document> documents = new HashMap<>();
+    private final Map<String, Postings> postingsByTerm = new HashMap<>();
+    // Per document number: the primary key, null once the document is dead
+    private String[] keys = new String[64];
+    private int documentCount;
+    private int deadCount;
+
+    /**
+     * Instantiates a new full-text index.
+     *
+     * @param extractor the text extractor
+     */
+    public FullTextIndex(DataStore.KeyExtractor<T, String> extractor) {
+        this.extractor = extractor;
+    }
+
+    @Override
+    public void put(String key, T entity) {
+        String text = entity != null ? extractor.extract(entity) : null;
+        long fingerprint = fingerprint(text);
+        lock.readLock().lock();
+        try {
+            Document previous = documents.get(key);
+            if (previous != null && previous.fingerprint == fingerprint) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        // Tokenize outside the write lock
+        Map<String, int[]> positionsByTerm = positionsByTerm(tokenize(text));
+        lock.writeLock().lock();
+        try {
+            Document previous = documents.remove(key);
+            if (previous != null) {
+                kill(previous.number);
+            }
+            if (!positionsByTerm.isEmpty()) {
+                documents.put(key, new Document(append(key, positionsByTerm), fingerprint));
+            }
+            compactIfWasteful();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        lock.writeLock().lock();
+        try {
+            Document previous = documents.remove(key);
+            if (previous != null) {
+                kill(previous.number);
+                compactIfWasteful();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            postingsByTerm.clear();
+            keys = new String[64];
+            documentCount = 0;
+            deadCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Search the text. Words must all appear (AND); "quoted words" must
+     * appear together in that order; a leading - excludes records with a word
+     * or phrase; and OR between groups of those matches records matching any
+     * group. For example: diabetes "chest pain" -smoker OR asthma.
+     * A group with only excluded words matches nothing.
+     *
+     * @param query the query
+     * @param limit the maximum number of results
+     * @return the primary keys, least recently indexed first
+     */
+    public List<String> search(String query, int limit) {
+        List<Clause> clauses = parse(query);
+        lock.readLock().lock();
+        try {
+            int[] matches = new int[0];
+            for (Clause clause : clauses) {
+                matches = union(matches, evaluate(clause));
+            }
+            List<String> results = new ArrayList<>(Math.min(matches.length, Math.max(limit, 0)));
+            for (int i = 0; i < matches.length && results.size() < limit; i++) {
+                results.add(keys[matches[i]]);
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of distinct terms indexed.
+     *
+     * @return the term count
+     */
+    public int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return postingsByTerm.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of records indexed.
+     *
+     * @return the document count
+     */
+    public int getDocumentCount() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the size of all postings lists, dead documents included.
+     *
+     * @return the bytes used by postings
+     */
+    public long getPostingsBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (Postings postings : postingsByTerm.values()) {
+                bytes += postings.length;
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Split text into lower-case terms: runs of letters and digits.
+     *
+     * @param text the text, may be null
+     * @return the terms, in order
+     */
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Live documents matching every positive part of a clause and no negative one.
+     */
+    private int[] evaluate(Clause clause) {
+        if (clause.required.isEmpty()) {
+            return new int[0];
+        }
+        int[] matches = null;
+        for (List<String> phrase : clause.required) {
+            int[] phraseMatches = matchPhrase(phrase);
+            matches = matches == null ? phraseMatches : intersect(matches, phraseMatches);
+            if (matches.length == 0) {
+                return matches;
+            }
+        }
+        for (List<String> phrase : clause.excluded) {
+            matches = subtract(matches, matchPhrase(phrase));
+        }
+        int count = 0;
+        for (int number : matches) {
+            if (keys[number] != null) {
+                matches[count++] = number;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * Documents containing the terms at consecutive positions, found by
+     * leapfrogging one cursor per term to a common document and then
+     * checking positions there.
+     */
+    private int[] matchPhrase(List<String> phrase) {
+        Cursor[] cursors = new Cursor[phrase.size()];
+        for (int i = 0; i < cursors.length; i++) {
+            Postings postings = postingsByTerm.get(phrase.get(i));
+            if (postings == null) {
+                return new int[0];
+            }
+            cursors[i] = new Cursor(postings);
+            if (!cursors[i].next()) {
+                return new int[0];
+            }
+        }
+        int[] matches = new int[16];
+        int count = 0;
+        while (true) {
+            int target = cursors[0].document;
+            boolean aligned = true;
+            for (Cursor cursor : cursors) {
+                if (!cursor.advanceTo(target)) {
+                    return Arrays.copyOf(matches, count);
+                }
+                if (cursor.document != target) {
+                    target = cursor.document;
+                    aligned = false;
+                }
+            }
+            if (!aligned) {
+                if (!cursors[0].advanceTo(target)) {
+                    return Arrays.copyOf(matches, count);
+                }
+                continue;
+            }
+            if (cursors.length == 1 || consecutive(cursors)) {
+                if (count == matches.length) {
+                    matches = Arrays.copyOf(matches, count * 2);
+                }
+                matches[count++] = target;
+            }
+            if (!cursors[0].next()) {
+                return Arrays.copyOf(matches, count);
+            }
+        }
+    }
+
+    private static boolean consecutive(Cursor[] cursors) {
+        int[][] positions = new int[cursors.length][];
+        for (int i = 0; i < cursors.length; i++) {
+            positions[i] = cursors[i].positions();
+        }
+        for (int start : positions[0]) {
+            boolean found = true;
+            for (int i = 1; i < positions.length && found; i++) {
+                found = Arrays.binarySearch(positions[i], start + i) >= 0;
+            }
+            if (found) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int append(String key, Map<String, int[]> positionsByTerm) {
+        if (documentCount == keys.length) {
+            keys = Arrays.copyOf(keys, documentCount * 2);
+        }
+        int number = documentCount++;
+        keys[number] = key;
+        for (Map.Entry<String, int[]> entry : positionsByTerm.entrySet()) {
+            Postings postings = postingsByTerm.get(entry.getKey());
+            if (postings == null) {
+                postings = new Postings();
+                postingsByTerm.put(entry.getKey(), postings);
+            }
+            postings.append(number, entry.getValue());
+        }
+        return number;
+    }
+
+    private void kill(int number) {
+        keys[number] = null;
+        deadCount++;
+    }
+
+    /**
+     * Rewrite every postings list without dead documents, renumbering the
+     * live ones densely in their existing order.
+     */
+    private void compactIfWasteful() {
+        if (deadCount < MIN_DEAD_TO_REBUILD || deadCount <= documentCount - deadCount) {
+            return;
+        }
+        int[] renumbered = new int[documentCount];
+        String[] liveKeys = new String[Math.max(64, documentCount - deadCount)];
+        int live = 0;
+        for (int number = 0; number < documentCount; number++) {
+            if (keys[number] != null) {
+                renumbered[number] = live;
+                liveKeys[live] = keys[number];
+                documents.put(keys[number], new Document(live, documents.get(keys[number]).fingerprint));
+                live++;
+            } else {
+                renumbered[number] = -1;
+            }
+        }
+        Map<String, Postings> rewritten = new HashMap<>();
+        for (Map.Entry<String, Postings> entry : postingsByTerm.entrySet()) {
+            Postings compacted = new Postings();
+            Cursor cursor = new Cursor(entry.getValue());
+            while (cursor.next()) {
+                if (renumbered[cursor.document] >= 0) {
+                    compacted.append(renumbered[cursor.document], cursor.positions());
+                }
+            }
+            if (compacted.length > 0) {
+                rewritten.put(entry.getKey(), compacted);
+            }
+        }
+        postingsByTerm.clear();
+        postingsByTerm.putAll(rewritten);
+        keys = liveKeys;
+        documentCount = live;
+        deadCount = 0;
+    }
+
+    private static Map<String, int[]> positionsByTerm(List<String> terms) {
+        Map<String, int[]> positions = new LinkedHashMap<>();
+        for (int position = 0; position < terms.size(); position++) {
+            int[] termPositions = positions.get(terms.get(position));
+            if (termPositions == null) {
+                termPositions = new int[] {position};
+            } else {
+                termPositions = Arrays.copyOf(termPositions, termPositions.length + 1);
+                termPositions[termPositions.length - 1] = position;
+            }
+            positions.put(terms.get(position), termPositions);
+        }
+        return positions;
+    }
+
+    /**
+     * Parse a query into OR-ed clauses of required and excluded phrases (a
+     * single word is a phrase of one term; so is a hyphenated word, which
+     * tokenizes to consecutive terms).
+     */
+    private static List<Clause> parse(String query) {
+        List<Clause> clauses = new ArrayList<>();
+        Clause clause = new Clause();
+        clauses.add(clause);
+        int i = 0;
+        int length = query != null ? query.length() : 0;
+        while (i < length) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            boolean excluded = c == '-' && i + 1 < length && !Character.isWhitespace(query.charAt(i + 1));
+            if (excluded) {
+                i++;
+            }
+            String text;
+            if (query.charAt(i) == '"') {
+                int end = query.indexOf('"', i + 1);
+                end = end < 0 ? length : end;
+                text = query.substring(i + 1, end);
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < length && !Character.isWhitespace(query.charAt(end))) {
+                    end++;
+                }
+                text = query.substring(i, end);
+                i = end;
+                if (!excluded && text.equals(OR)) {
+                    clause = new Clause();
+                    clauses.add(clause);
+                    continue;
+                }
+            }
+            List<String> phrase = tokenize(text);
+            if (!phrase.isEmpty()) {
+                (excluded ? clause.excluded : clause.required).add(phrase);
+            }
+        }
+        return clauses;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length;) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                result[count++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                result[count++] = b[j++];
+            } else {
+                result[count++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static int[] subtract(int[] a, int[] b) {
+        int[] result = new int[a.length];
+        int count = 0;
+        int j = 0;
+        for (int value : a) {
+            while (j < b.length && b[j] < value) {
+                j++;
+            }
+            if (j == b.length || b[j] != value) {
+                result[count++] = value;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the text, to skip re-indexing unchanged records.
+     */
+    private static long fingerprint(String text) {
+        if (text == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * An indexed record: its document number and text fingerprint.
+     */
+    private static final class Document {
+        private final int number;
+        private final long fingerprint;
+
+        private Document(int number, long fingerprint) {
+            this.number = number;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * The required and excluded phrases of one OR branch of a query.
+     */
+    private static final class Clause {
+        private final List<List<String>> required = new ArrayList<>();
+        private final List<List<String>> excluded = new ArrayList<>();
+    }
+
+    /**
+     * One term's postings: for each document, in increasing document order,
+     * varints of the document gap, the position count and the position gaps.
+     */
+    private static final class Postings {
+        private byte[] bytes = new byte[8];
+        private int length;
+        private int lastDocument = -1;
+
+        private void append(int document, int[] positions) {
+            writeVarInt(document - lastDocument);
+            writeVarInt(positions.length);
+            int previous = 0;
+            for (int position : positions) {
+                writeVarInt(position - previous);
+                previous = position;
+            }
+            lastDocument = document;
+        }
+
+        private void writeVarInt(int value) {
+            if (length + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5));
+            }
+            while ((value & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+    }
+
+    /**
+     * Forward-only reader of one postings list.
+     */
+    private static final class Cursor {
+        private final Postings postings;
+        private int offset;
+        private int document = -1;
+        private int positionCount;
+        private int positionsOffset;
+
+        private Cursor(Postings postings) {
+            this.postings = postings;
+        }
+
+        /**
+         * Move to the next document, false at the end.
+         */
+        private boolean next() {
+            if (offset >= postings.length) {
+                return false;
+            }
+            document += readVarInt();
+            positionCount = readVarInt();
+            positionsOffset = offset;
+            // Skip the positions: one terminating byte (high bit clear) each
+            for (int skipped = 0; skipped < positionCount; offset++) {
+                if (postings.bytes[offset] >= 0) {
+                    skipped++;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Move to the first document at or after target, false at the end.
+         */
+        private boolean advanceTo(int target) {
+            while (document < target) {
+                if (!next()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int[] positions() {
+            int saved = offset;
+            offset = positionsOffset;
+            int[] positions = new int[positionCount];
+            int position = 0;
+            for (int i = 0; i < positionCount; i++) {
+                position += readVarInt();
+                positions[i] = position;
+            }
+            offset = saved;
+            return positions;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = postings.bytes[offset++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.airtribe.meditrack.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hash-based secondary index for exact-match lookups in O(1).
+ * @param <T> The type of entity indexed
+ * @param <K> The type of index key
+ */
+public class HashIndex<T, K> extends KeyIndex<T, K> {
+    
+    /**
+     * Instantiates a new hash index.
+     *
+     * @param extractor the index key extractor
+     */
+    public HashIndex(DataStore.KeyExtractor<T, K> extractor) {
+        super(extractor, new ConcurrentHashMap<K, Bucket>());
+    }
+}
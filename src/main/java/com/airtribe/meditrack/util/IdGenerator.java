@@ -1,19 +1,58 @@
 package com.airtribe.meditrack.util;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.airtribe.meditrack.constants.Constants;
+
 /**
  * ID Generator using Singleton pattern (eager initialization) and AtomicInteger.
  * Demonstrates thread-safe ID generation and singleton concepts.
+ * IDs are rendered by hand into a per-thread char buffer rather than through
+ * String.format, so each ID costs one String and nothing else. Callers that
+ * key on numbers can take the raw counter value and render the ID later.
+ * With persistence enabled, numbers are reserved in blocks of
+ * Constants.ID_BLOCK_SIZE and each block's high-water mark is written and
+ * fsynced before any number from it is handed out. A restart resumes above
+ * the recorded marks, so IDs are never reused, at the cost of skipping the
+ * unused rest of the last block. Between blocks, allocation is a plain CAS.
  */
 public class IdGenerator {
+    public static final String PATIENT_PREFIX = "PAT";
+    public static final String DOCTOR_PREFIX = "DOC";
+    public static final String APPOINTMENT_PREFIX = "APT";
+    public static final String BILL_PREFIX = "BILL";
+    private static final int PATIENT_WIDTH = 5;
+    private static final int DOCTOR_WIDTH = 5;
+    private static final int APPOINTMENT_WIDTH = 8;
+    private static final int BILL_WIDTH = 8;
+    
+    // Longest prefix plus the 19 digits of Long.MAX_VALUE
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[32]);
+    
     // Eager singleton initialization
     private static final IdGenerator INSTANCE = new IdGenerator();
     
-    private final AtomicInteger patientCounter = new AtomicInteger(1000);
-    private final AtomicInteger doctorCounter = new AtomicInteger(500);
-    private final AtomicInteger appointmentCounter = new AtomicInteger(10000);
-    private final AtomicInteger billCounter = new AtomicInteger(5000);
+    private final Counter patientCounter = new Counter("patient", 1000);
+    private final Counter doctorCounter = new Counter("doctor", 500);
+    private final Counter appointmentCounter = new Counter("appointment", 10000);
+    private final Counter billCounter = new Counter("bill", 5000);
+    private final Counter[] counters = {patientCounter, doctorCounter, appointmentCounter, billCounter};
+    
+    // High-water mark file; null while persistence is off
+    private Path stateFile;
     
     /**
      * Instantiates a new id generator.
@@ -38,7 +77,7 @@ public class IdGenerator {
      * @return the string
      */
     public String generatePatientId() {
-        return "PAT" + String.format("%05d", patientCounter.incrementAndGet());
+        return formatPatientId(nextPatientNumber());
     }
     
     /**
@@ -47,7 +86,7 @@ public class IdGenerator {
      * @return the string
      */
     public String generateDoctorId() {
-        return "DOC" + String.format("%05d", doctorCounter.incrementAndGet());
+        return formatDoctorId(nextDoctorNumber());
     }
     
     /**
@@ -56,7 +95,7 @@ public class IdGenerator {
      * @return the string
      */
     public String generateAppointmentId() {
-        return "APT" + String.format("%08d", appointmentCounter.incrementAndGet());
+        return formatAppointmentId(nextAppointmentNumber());
     }
     
     /**
@@ -65,7 +104,138 @@ public class IdGenerator {
      * @return the string
      */
     public String generateBillId() {
-        return "BILL" + String.format("%08d", billCounter.incrementAndGet());
+        return formatBillId(nextBillNumber());
+    }
+    
+    /**
+     * Allocate the next patient number without rendering it.
+     *
+     * @return the patient number
+     */
+    public long nextPatientNumber() {
+        return allocate(patientCounter);
+    }
+    
+    /**
+     * Allocate the next doctor number without rendering it.
+     *
+     * @return the doctor number
+     */
+    public long nextDoctorNumber() {
+        return allocate(doctorCounter);
+    }
+    
+    /**
+     * Allocate the next appointment number without rendering it.
+     *
+     * @return the appointment number
+     */
+    public long nextAppointmentNumber() {
+        return allocate(appointmentCounter);
+    }
+    
+    /**
+     * Allocate the next bill number without rendering it.
+     *
+     * @return the bill number
+     */
+    public long nextBillNumber() {
+        return allocate(billCounter);
+    }
+    
+    /**
+     * Render a patient number as its ID, e.g. 1001 as "PAT01001".
+     *
+     * @param number the patient number
+     * @return the string
+     */
+    public static String formatPatientId(long number) {
+        return format(PATIENT_PREFIX, PATIENT_WIDTH, number);
+    }
+    
+    /**
+     * Render a doctor number as its ID, e.g. 501 as "DOC00501".
+     *
+     * @param number the doctor number
+     * @return the string
+     */
+    public static String formatDoctorId(long number) {
+        return format(DOCTOR_PREFIX, DOCTOR_WIDTH, number);
+    }
+    
+    /**
+     * Render an appointment number as its ID, e.g. 10001 as "APT00010001".
+     *
+     * @param number the appointment number
+     * @return the string
+     */
+    public static String formatAppointmentId(long number) {
+        return format(APPOINTMENT_PREFIX, APPOINTMENT_WIDTH, number);
+    }
+    
+    /**
+     * Render a bill number as its ID, e.g. 5001 as "BILL00005001".
+     *
+     * @param number the bill number
+     * @return the string
+     */
+    public static String formatBillId(long number) {
+        return format(BILL_PREFIX, BILL_WIDTH, number);
+    }
+    
+    /**
+     * Recover the number from a generated ID (the inverse of the format methods).
+     *
+     * @param id the id
+     * @param prefix the expected prefix
+     * @return the number, or -1 if the id does not have that prefix followed by digits
+     */
+    public static long parseNumber(String id, String prefix) {
+        if (id == null || !id.startsWith(prefix) || id.length() == prefix.length()
+                || id.length() - prefix.length() > 18) {
+            return -1;
+        }
+        long number = 0;
+        for (int i = prefix.length(); i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+    
+    /**
+     * Same output as prefix + String.format("%0" + width + "d", number) for
+     * non-negative numbers, without the format parsing and boxing.
+     *
+     * @param prefix the prefix
+     * @param width the minimum digit count, zero-padded
+     * @param number the number
+     * @return the string
+     */
+    private static String format(String prefix, int width, long number) {
+        if (number < 0) {
+            throw new IllegalArgumentException("ID number must not be negative: " + number);
+        }
+        char[] buffer = BUFFER.get();
+        int digits = 1;
+        for (long rest = number / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        int length = prefix.length() + Math.max(width, digits);
+        prefix.getChars(0, prefix.length(), buffer, 0);
+        int pos = length;
+        long rest = number;
+        do {
+            buffer[--pos] = (char) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest > 0);
+        while (pos > prefix.length()) {
+            buffer[--pos] = '0';
+        }
+        return new String(buffer, 0, length);
     }
     
     /**
@@ -74,7 +244,7 @@ public class IdGenerator {
      * @return the current patient count
      */
     public int getCurrentPatientCount() {
-        return patientCounter.get();
+        return patientCounter.value.get();
     }
     
     /**
@@ -83,16 +253,141 @@ public class IdGenerator {
      * @return the current doctor count
      */
     public int getCurrentDoctorCount() {
-        return doctorCounter.get();
+        return doctorCounter.value.get();
     }
     
     /**
      * Reset counters (useful for testing).
      */
     protected void resetCounters() {
-        patientCounter.set(1000);
-        doctorCounter.set(500);
-        appointmentCounter.set(10000);
-        billCounter.set(5000);
+        for (Counter counter : counters) {
+            counter.value.set(counter.initial);
+        }
+    }
+    
+    /**
+     * Turn on durable block allocation backed by a high-water mark file.
+     * Counters resume above the marks recorded in the file (if it exists),
+     * so numbers issued before a restart or crash are never issued again.
+     *
+     * @param filePath the high-water mark file
+     * @throws IOException if the file exists but cannot be read
+     */
+    public synchronized void enablePersistence(String filePath) throws IOException {
+        Path file = new File(filePath).toPath();
+        Properties marks = new Properties();
+        if (Files.exists(file)) {
+            try (InputStream in = new FileInputStream(file.toFile())) {
+                marks.load(in);
+            }
+        }
+        for (Counter counter : counters) {
+            String mark = marks.getProperty(counter.key);
+            if (mark != null) {
+                int highWater = Integer.parseInt(mark.trim());
+                if (highWater > counter.value.get()) {
+                    counter.value.set(highWater);
+                }
+            }
+            // Nothing is reserved yet: the next number opens a block
+            counter.reservedUpTo = counter.value.get();
+        }
+        stateFile = file;
+    }
+    
+    /**
+     * Turn durable block allocation off (numbers are then only unique per run).
+     */
+    public synchronized void disablePersistence() {
+        stateFile = null;
+        for (Counter counter : counters) {
+            counter.reservedUpTo = Long.MAX_VALUE;
+        }
+    }
+    
+    /**
+     * Hand out the next number of a counter. Lock-free unless it is the first
+     * number past the reserved block.
+     *
+     * @param counter the counter
+     * @return the number
+     */
+    private long allocate(Counter counter) {
+        long number = counter.value.incrementAndGet();
+        if (number > counter.reservedUpTo) {
+            reserve(counter, number);
+        }
+        return number;
+    }
+    
+    /**
+     * Record a new block covering the number before it is handed out. Threads
+     * that drew numbers from the same block wait here until it is durable.
+     *
+     * @param counter the counter
+     * @param number the number that ran past the reserved block
+     */
+    private synchronized void reserve(Counter counter, long number) {
+        if (number <= counter.reservedUpTo) {
+            return;
+        }
+        long upTo = number + Constants.ID_BLOCK_SIZE - 1;
+        try {
+            writeMarks(counter, upTo);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot record ID high-water mark in " + stateFile, e);
+        }
+        counter.reservedUpTo = upTo;
+    }
+    
+    /**
+     * Write all high-water marks to a temp file, fsync it and move it over the
+     * old file, so a crash leaves either the old or the new marks.
+     *
+     * @param changed the counter whose block is being extended
+     * @param upTo the new end of its block
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void writeMarks(Counter changed, long upTo) throws IOException {
+        Properties marks = new Properties();
+        for (Counter counter : counters) {
+            long mark = counter == changed ? upTo : Math.max(counter.reservedUpTo, counter.value.get());
+            marks.setProperty(counter.key, Long.toString(Math.min(mark, Integer.MAX_VALUE)));
+        }
+        Path parent = stateFile.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = parent.resolve(stateFile.getFileName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+            marks.store(out, "MediTrack ID high-water marks");
+            out.getFD().sync();
+        }
+        try {
+            Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        // Make the rename itself durable where the platform allows syncing a directory
+        try (FileChannel directory = FileChannel.open(parent, StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // Not supported on this platform; the file contents are already synced
+        }
+    }
+    
+    /**
+     * One ID sequence and the end of its durably reserved block.
+     */
+    private static final class Counter {
+        private final String key;
+        private final int initial;
+        private final AtomicInteger value;
+        // Long.MAX_VALUE while persistence is off, so allocate() never reserves
+        private volatile long reservedUpTo = Long.MAX_VALUE;
+        
+        private Counter(String key, int initial) {
+            this.key = key;
+            this.initial = initial;
+            this.value = new AtomicInteger(initial);
+        }
     }
 }
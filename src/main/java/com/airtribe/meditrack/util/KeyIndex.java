@@ -0,0 +1,152 @@
+package com.airtribe.meditrack.util;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Base class for single-valued secondary indexes (one index key per entity).
+ * Remembers the key each entity was filed under, so entities that are mutated
+ * in place are re-filed correctly when the store is told about the update.
+ * Entities whose extracted key is null are not indexed.
+ * Primary keys within one index key are kept in key order, which for
+ * generated IDs is creation order.
+ * @param <T> The type of entity indexed
+ * @param <K> The type of index key
+ */
+public abstract class KeyIndex<T, K> implements StoreIndex<T> {
+    private final DataStore.KeyExtractor<T, K> extractor;
+    private final Map<String, K> keyOf;
+    private final Map<K, Bucket> buckets;
+    private final StripedLock locks;
+    
+    /**
+     * Instantiates a new key index.
+     *
+     * @param extractor the index key extractor
+     * @param buckets the (concurrent) map implementation holding the buckets
+     */
+    protected KeyIndex(DataStore.KeyExtractor<T, K> extractor, Map<K, Bucket> buckets) {
+        this.extractor = extractor;
+        this.keyOf = new ConcurrentHashMap<>();
+        this.buckets = buckets;
+        this.locks = new StripedLock();
+    }
+    
+    @Override
+    public void put(String key, T entity) {
+        K newValue = entity != null ? extractor.extract(entity) : null;
+        K oldValue = keyOf.get(key);
+        if (oldValue != null && oldValue.equals(newValue)) {
+            return;
+        }
+        if (oldValue != null) {
+            unlink(oldValue, key);
+        }
+        if (newValue != null) {
+            link(newValue, key);
+            keyOf.put(key, newValue);
+        } else {
+            keyOf.remove(key);
+        }
+    }
+    
+    @Override
+    public void remove(String key) {
+        K oldValue = keyOf.remove(key);
+        if (oldValue != null) {
+            unlink(oldValue, key);
+        }
+    }
+    
+    @Override
+    public void clear() {
+        keyOf.clear();
+        buckets.clear();
+    }
+    
+    /**
+     * Get primary keys filed under an index key.
+     *
+     * @param value the index key
+     * @return read-only view of the primary keys (empty if none)
+     */
+    public Set<String> lookup(K value) {
+        Bucket bucket = value != null ? buckets.get(value) : null;
+        return bucket != null ? Collections.unmodifiableSet(bucket.keys) : Collections.<String>emptySet();
+    }
+    
+    /**
+     * Count entities filed under an index key in O(1).
+     *
+     * @param value the index key
+     * @return the count
+     */
+    public int count(K value) {
+        Bucket bucket = value != null ? buckets.get(value) : null;
+        return bucket != null ? bucket.size : 0;
+    }
+    
+    /**
+     * Get the index key an entity is currently filed under.
+     *
+     * @param key the primary key
+     * @return the index key, or null if not indexed
+     */
+    public K keyOf(String key) {
+        return keyOf.get(key);
+    }
+    
+    /**
+     * Get number of distinct index keys.
+     *
+     * @return the distinct key count
+     */
+    public int distinctKeys() {
+        return buckets.size();
+    }
+    
+    private void link(K value, String key) {
+        Lock lock = locks.get(value);
+        lock.lock();
+        try {
+            Bucket bucket = buckets.get(value);
+            if (bucket == null) {
+                bucket = new Bucket();
+                buckets.put(value, bucket);
+            }
+            if (bucket.keys.add(key)) {
+                bucket.size++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void unlink(K value, String key) {
+        Lock lock = locks.get(value);
+        lock.lock();
+        try {
+            Bucket bucket = buckets.get(value);
+            if (bucket != null && bucket.keys.remove(key)) {
+                bucket.size--;
+                if (bucket.size == 0) {
+                    buckets.remove(value);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Primary keys sharing one index key. Mutated only under the key's stripe lock.
+     */
+    protected static final class Bucket {
+        final Set<String> keys = new ConcurrentSkipListSet<>();
+        volatile int size;
+    }
+}
@@ -0,0 +1,372 @@
+package com.airtribe.meditrack.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Read-only CSV parser over a memory-mapped UTF-8 file.
+ * Tokenizes directly on the mapped bytes and keeps each field as an offset
+ * range; a field becomes a String only when get() is called. Unquoted ASCII
+ * fields are never copied (length, charAt and the numeric getters read the
+ * mapping). Quoted or non-ASCII fields are decoded once, on first access.
+ * The file is mapped in windows of up to WINDOW_SIZE bytes, so files larger
+ * than 2 GB work too; a single record must fit in one window.
+ * Parsing follows RFC 4180 exactly as CSVReader does.
+ */
+public class MappedCSVParser implements Closeable {
+    private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+    // Tokenizer states
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_SEEN = 3;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long end;
+    private final long windowSize;
+    private final MappedRecord record = new MappedRecord();
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+    private long lineNumber;
+
+    /**
+     * Map a CSV file for parsing.
+     *
+     * @param filePath the file path
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public MappedCSVParser(String filePath) throws IOException {
+        this(filePath, WINDOW_SIZE);
+    }
+
+    /**
+     * Map a CSV file for parsing with a custom window size.
+     *
+     * @param filePath the file path
+     * @param windowSize the largest region mapped at once
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    MappedCSVParser(String filePath, long windowSize) throws IOException {
+        this(filePath, 0, -1, windowSize);
+    }
+
+    /**
+     * Map a byte range of a CSV file for parsing. The range must start and end
+     * on record boundaries; line numbers then count from the start of the range.
+     *
+     * @param filePath the file path
+     * @param start the first byte
+     * @param end the byte after the last one, or -1 for end of file
+     * @param windowSize the largest region mapped at once
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    MappedCSVParser(String filePath, long start, long end, long windowSize) throws IOException {
+        this.file = new RandomAccessFile(filePath, "r");
+        this.channel = file.getChannel();
+        this.end = end < 0 ? channel.size() : Math.min(end, channel.size());
+        this.windowSize = Math.min(windowSize, Integer.MAX_VALUE);
+        this.position = start;
+    }
+
+    /**
+     * Call a handler for every record of a file.
+     *
+     * @param filePath the file path
+     * @param handler the handler
+     * @return the number of records
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static long forEach(String filePath, CSVReader.RecordHandler handler) throws IOException {
+        try (MappedCSVParser parser = new MappedCSVParser(filePath)) {
+            long count = 0;
+            CSVRecord current;
+            while ((current = parser.next()) != null) {
+                handler.handle(current);
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Advance to the next record.
+     *
+     * @return the record (reused between calls), or null at end of file
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public MappedRecord next() throws IOException {
+        if (position >= end) {
+            return null;
+        }
+        if (!tokenize()) {
+            // Record ran off the window: remap starting at the record and retry
+            map(position);
+            if (!tokenize()) {
+                throw new IOException("Record at line " + (lineNumber + 1) + " is longer than the "
+                        + windowSize + "-byte mapping window");
+            }
+        }
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        file.close();
+    }
+
+    /**
+     * Tokenize the record at position within the current window.
+     *
+     * @return false if the window ends before the record does
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private boolean tokenize() throws IOException {
+        if (window == null || position < windowStart || position >= windowStart + window.limit()) {
+            map(position);
+        }
+        int limit = window.limit();
+        boolean lastWindow = windowStart + limit == end;
+        int i = (int) (position - windowStart);
+        long line = lineNumber + 1;
+        record.reset(window, line);
+        int fieldStart = i;
+        int flags = 0;
+        int state = FIELD_START;
+        boolean afterCarriageReturn = false;
+        while (true) {
+            if (i == limit) {
+                if (!lastWindow) {
+                    return false;
+                }
+                record.addField(fieldStart, i, flags);
+                break;
+            }
+            byte b = window.get(i);
+            if (state == QUOTED) {
+                if (b == '"') {
+                    state = QUOTE_SEEN;
+                } else if (b == '\r' || (b == '\n' && !afterCarriageReturn)) {
+                    line++;
+                } else if (b < 0) {
+                    flags |= MappedRecord.NON_ASCII;
+                }
+                afterCarriageReturn = b == '\r';
+                i++;
+                continue;
+            }
+            if (state == QUOTE_SEEN) {
+                if (b == '"') {
+                    state = QUOTED;
+                    i++;
+                    continue;
+                }
+                state = UNQUOTED;
+            }
+            if (b == ',') {
+                record.addField(fieldStart, i, flags);
+                fieldStart = i + 1;
+                flags = 0;
+                state = FIELD_START;
+            } else if (b == '\n' || b == '\r') {
+                record.addField(fieldStart, i, flags);
+                i++;
+                if (b == '\r') {
+                    if (i == limit && !lastWindow) {
+                        // Cannot see whether an LF follows; re-read the record from the next window
+                        return false;
+                    }
+                    if (i < limit && window.get(i) == '\n') {
+                        i++;
+                    }
+                }
+                break;
+            } else if (b == '"' && state == FIELD_START) {
+                flags |= MappedRecord.QUOTED;
+                state = QUOTED;
+            } else {
+                if (b < 0) {
+                    flags |= MappedRecord.NON_ASCII;
+                }
+                if ((b & 0xFF) > ' ') {
+                    state = UNQUOTED;
+                }
+            }
+            i++;
+        }
+        position = windowStart + i;
+        lineNumber = line;
+        return true;
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, end - start));
+    }
+
+    /**
+     * A record whose fields are byte ranges of the mapped file.
+     */
+    public static final class MappedRecord implements CSVRecord {
+        private static final int QUOTED = 1;
+        private static final int NON_ASCII = 2;
+
+        private ByteBuffer bytes;
+        private long lineNumber;
+        private int fields;
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int[] flags = new int[16];
+        private String[] decoded = new String[16];
+        private byte[] scratch = new byte[256];
+
+        private MappedRecord() {
+        }
+
+        private void reset(ByteBuffer bytes, long lineNumber) {
+            this.bytes = bytes;
+            this.lineNumber = lineNumber;
+            Arrays.fill(decoded, 0, fields, null);
+            this.fields = 0;
+        }
+
+        private void addField(int start, int end, int fieldFlags) {
+            // Trim like String.trim(); quoted fields are trimmed after unquoting
+            if ((fieldFlags & QUOTED) == 0) {
+                while (start < end && (bytes.get(start) & 0xFF) <= ' ') {
+                    start++;
+                }
+                while (end > start && (bytes.get(end - 1) & 0xFF) <= ' ') {
+                    end--;
+                }
+            }
+            if (fields == starts.length) {
+                int capacity = fields * 2;
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                flags = Arrays.copyOf(flags, capacity);
+                decoded = Arrays.copyOf(decoded, capacity);
+            }
+            starts[fields] = start;
+            ends[fields] = end;
+            flags[fields] = fieldFlags;
+            fields++;
+        }
+
+        @Override
+        public int size() {
+            return fields;
+        }
+
+        @Override
+        public String get(int index) {
+            checkIndex(index);
+            String value = decoded[index];
+            if (value == null) {
+                value = decode(index);
+                if (flags[index] != 0) {
+                    decoded[index] = value;
+                }
+            }
+            return value;
+        }
+
+        @Override
+        public int length(int index) {
+            checkIndex(index);
+            return flags[index] == 0 ? ends[index] - starts[index] : get(index).length();
+        }
+
+        @Override
+        public char charAt(int index, int position) {
+            checkIndex(index);
+            if (flags[index] != 0) {
+                return get(index).charAt(position);
+            }
+            if (position < 0 || position >= ends[index] - starts[index]) {
+                throw new IndexOutOfBoundsException("Position " + position + " in field " + index);
+            }
+            return (char) bytes.get(starts[index] + position);
+        }
+
+        @Override
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * Get the raw bytes of a field as a read-only view of the mapping
+         * (after trimming, before unquoting). No bytes are copied.
+         *
+         * @param index the field index
+         * @return the slice
+         */
+        public ByteBuffer slice(int index) {
+            checkIndex(index);
+            ByteBuffer view = bytes.asReadOnlyBuffer();
+            view.limit(ends[index]).position(starts[index]);
+            return view.slice();
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(toArray());
+        }
+
+        private String decode(int index) {
+            int start = starts[index];
+            int end = ends[index];
+            if (scratch.length < end - start) {
+                scratch = new byte[Math.max(end - start, scratch.length * 2)];
+            }
+            if ((flags[index] & QUOTED) == 0) {
+                for (int i = start; i < end; i++) {
+                    scratch[i - start] = bytes.get(i);
+                }
+                return new String(scratch, 0, end - start, StandardCharsets.UTF_8);
+            }
+            // Skip whitespace before the opening quote, unescape "" inside the quotes and
+            // keep anything after the closing quote, trimming trailing whitespace outside them
+            int i = start;
+            while (bytes.get(i) != '"') {
+                i++;
+            }
+            i++;
+            int length = 0;
+            int quotedLength = -1;
+            for (; i < end; i++) {
+                byte b = bytes.get(i);
+                if (quotedLength < 0 && b == '"') {
+                    if (i + 1 < end && bytes.get(i + 1) == '"') {
+                        scratch[length++] = '"';
+                        i++;
+                    } else {
+                        quotedLength = length;
+                    }
+                } else {
+                    scratch[length++] = b;
+                }
+            }
+            // An unclosed quote runs to the end of the field
+            int keep = quotedLength >= 0 ? quotedLength : length;
+            while (length > keep && (scratch[length - 1] & 0xFF) <= ' ') {
+                length--;
+            }
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private void checkIndex(int index) {
+            if (index < 0 || index >= fields) {
+                throw new IndexOutOfBoundsException("Field " + index + " of " + fields + " on line " + lineNumber);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.airtribe.meditrack.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.airtribe.meditrack.constants.Constants;
+
+/**
+ * Utility class for fixed-point money in paise (1/100 rupee) held in a long.
+ * All arithmetic is plain long math, so sums are exact and allocation-free;
+ * conversion to and from rupees happens only at the API edges.
+ */
+public class Money {
+    public static final long PAISE_PER_RUPEE = 100;
+    private static final long BASIS_POINTS = 10_000;
+    
+    /**
+     * Convert rupees to paise, rounding half-up on the decimal value as written
+     * (so 1.005 becomes 101 paise, where Math.round(1.005 * 100) gives 100).
+     *
+     * @param rupees the amount in rupees
+     * @return the amount in paise
+     */
+    public static long ofRupees(double rupees) {
+        return BigDecimal.valueOf(rupees).movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+    
+    /**
+     * Convert paise to rupees.
+     *
+     * @param paise the amount in paise
+     * @return the amount in rupees
+     */
+    public static double toRupees(long paise) {
+        return paise / (double) PAISE_PER_RUPEE;
+    }
+    
+    /**
+     * GST on an amount at Constants.TAX_RATE_BASIS_POINTS, rounded half-up to the paisa.
+     *
+     * @param paise the taxable amount in paise
+     * @return the tax in paise
+     */
+    public static long taxOn(long paise) {
+        return percentOf(paise, Constants.TAX_RATE_BASIS_POINTS);
+    }
+    
+    /**
+     * Apply a rate in basis points, rounding half away from zero.
+     *
+     * @param paise the amount in paise
+     * @param basisPoints the rate (1800 = 18%)
+     * @return the result in paise
+     */
+    public static long percentOf(long paise, int basisPoints) {
+        long scaled = paise * basisPoints;
+        long half = BASIS_POINTS / 2;
+        return scaled >= 0 ? (scaled + half) / BASIS_POINTS : -((-scaled + half) / BASIS_POINTS);
+    }
+    
+    /**
+     * Format paise as a rupee amount with two decimals, e.g. "1234.50".
+     *
+     * @param paise the amount in paise
+     * @return the string
+     */
+    public static String format(long paise) {
+        StringBuilder builder = new StringBuilder(16);
+        if (paise < 0) {
+            builder.append('-');
+        }
+        long abs = Math.abs(paise);
+        long fraction = abs % PAISE_PER_RUPEE;
+        builder.append(abs / PAISE_PER_RUPEE).append('.');
+        if (fraction < 10) {
+            builder.append('0');
+        }
+        return builder.append(fraction).toString();
+    }
+    
+    // Prevent instantiation
+    private Money() {
+        throw new AssertionError("Cannot instantiate Money class");
+    }
+}
@@ -0,0 +1,575 @@
+package com.airtribe.meditrack.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Name index for the lookups reception staff type all day: case-insensitive
+ * prefix, substring and typo-tolerant search with ranked, limited results.
+ * Names are normalized (lower case, punctuation and runs of spaces folded to
+ * one space) and padded as "  name ", and every trigram of the padded name
+ * gets a posting list of the entries containing it. A trigram is three
+ * characters from a 38-symbol alphabet (space, a-z, 0-9, anything else), so
+ * the posting lists live in one flat array with no hashing. Entries get
+ * increasing slot numbers, so every posting list is sorted.
+ * Search finds candidates by intersecting posting lists, then checks and
+ * ranks them by normalized name: exact, then name prefix, then word prefix,
+ * then substring. If that leaves room under the limit and the query has 3
+ * or more characters, names sharing enough trigrams with it are compared by
+ * edit distance (adjacent transpositions count as one edit), allowing one
+ * typo up to 4 characters and two beyond. Within a rank, shorter names come
+ * first, then older entries.
+ * Substrings need 3 characters; 2-character queries match word prefixes and
+ * 1-character queries scan every name.
+ * Renamed and deleted entries leave dead slots behind, which are compacted
+ * away once they outnumber the live ones.
+ * @param <T> The type of entity indexed
+ */
+public class NameIndex<T> implements StoreIndex<T> {
+    private static final int ALPHABET = 38;
+    private static final int OTHER = ALPHABET - 1;
+    // Below this many dead slots compaction is not worth the pass
+    private static final int MIN_DEAD_TO_REBUILD = 1024;
+    // Fuzzy matching compares at most this many of the best trigram matches
+    private static final int MAX_FUZZY_CANDIDATES = 200;
+    private static final int EXACT = 0;
+    private static final int NAME_PREFIX = 1;
+    private static final int WORD_PREFIX = 2;
+    private static final int SUBSTRING = 3;
+    private static final int FUZZY = 4;
+
+    private final DataStore.KeyExtractor<T, String> extractor;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> slotOf = new HashMap<>();
+    private final int[][] postings = new int[ALPHABET * ALPHABET * ALPHABET][];
+    private final int[] postingSizes = new int[ALPHABET * ALPHABET * ALPHABET];
+    // Per slot: primary key and normalized name, both null once the slot is dead
+    private String[] keys = new String[64];
+    private String[] names = new String[64];
+    private int slotCount;
+    private int deadCount;
+
+    /**
+     * Instantiates a new name index.
+     *
+     * @param extractor the name extractor
+     */
+    public NameIndex(DataStore.KeyExtractor<T, String> extractor) {
+        this.extractor = extractor;
+    }
+
+    @Override
+    public void put(String key, T entity) {
+        String name = normalize(entity != null ? extractor.extract(entity) : null);
+        lock.writeLock().lock();
+        try {
+            Integer previous = slotOf.get(key);
+            if (previous != null) {
+                if (names[previous].equals(name)) {
+                    return;
+                }
+                kill(previous);
+                slotOf.remove(key);
+            }
+            if (!name.isEmpty()) {
+                slotOf.put(key, link(key, name));
+            }
+            compactIfWasteful();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        lock.writeLock().lock();
+        try {
+            Integer previous = slotOf.remove(key);
+            if (previous != null) {
+                kill(previous);
+                compactIfWasteful();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            slotOf.clear();
+            Arrays.fill(postings, null);
+            Arrays.fill(postingSizes, 0);
+            keys = new String[64];
+            names = new String[64];
+            slotCount = 0;
+            deadCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find entries whose name equals the given one, ignoring case, punctuation and spacing.
+     *
+     * @param name the name
+     * @return the primary keys, oldest entry first
+     */
+    public List<String> findExact(String name) {
+        String query = normalize(name);
+        List<String> results = new ArrayList<>();
+        if (query.isEmpty()) {
+            return results;
+        }
+        lock.readLock().lock();
+        try {
+            for (int slot : intersect(trigrams(" " + query, true))) {
+                if (query.equals(names[slot])) {
+                    results.add(keys[slot]);
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Search names by prefix, substring and, to fill the limit, approximate match.
+     *
+     * @param query what the user typed
+     * @param limit the maximum number of results
+     * @return the primary keys, best match first
+     */
+    public List<String> search(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        // Worst match at the head, so it is the one dropped when the queue overflows
+        PriorityQueue<Match> best = new PriorityQueue<>(Collections.reverseOrder());
+        lock.readLock().lock();
+        try {
+            // Word starts outrank other substrings, which are only looked up to fill the limit
+            int[] starts = normalized.length() == 1 ? scan(normalized) : intersect(trigrams(" " + normalized, true));
+            offerMatches(best, normalized, starts, null, limit);
+            if (best.size() < limit && normalized.length() >= 3) {
+                offerMatches(best, normalized, intersect(trigrams(normalized, true)), starts, limit);
+            }
+            if (best.size() < limit && normalized.length() >= 3) {
+                for (int slot : fuzzyCandidates(normalized)) {
+                    String name = names[slot];
+                    int distance = distance(normalized, name);
+                    if (rank(normalized, name) < 0 && distance <= maxTypos(normalized)) {
+                        offer(best, new Match(FUZZY + distance, name.length(), slot), limit);
+                    }
+                }
+            }
+            Match[] ordered = best.toArray(new Match[0]);
+            Arrays.sort(ordered);
+            List<String> results = new ArrayList<>(ordered.length);
+            for (Match match : ordered) {
+                results.add(keys[match.slot]);
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of indexed names.
+     *
+     * @return the size
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotOf.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Normalize a name for indexing and search: lower case, with every run of
+     * characters other than letters and digits folded to one space.
+     *
+     * @param name the name, may be null
+     * @return the normalized name, empty if there is nothing to index
+     */
+    public static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(name.length());
+        boolean space = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(Character.toLowerCase(c));
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Live slots in every one of the given posting lists, walking the
+     * shortest and galloping through the others, which are all sorted.
+     */
+    private int[] intersect(int[] codes) {
+        Integer[] lists = new Integer[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            if (postingSizes[codes[i]] == 0) {
+                return new int[0];
+            }
+            lists[i] = codes[i];
+        }
+        Arrays.sort(lists, Comparator.comparingInt(code -> postingSizes[code]));
+        int[] driver = postings[lists[0]];
+        int[] results = new int[postingSizes[lists[0]]];
+        int[] cursors = new int[lists.length];
+        int count = 0;
+        for (int i = 0; i < postingSizes[lists[0]]; i++) {
+            int slot = driver[i];
+            boolean everywhere = keys[slot] != null;
+            for (int j = 1; j < lists.length && everywhere; j++) {
+                int size = postingSizes[lists[j]];
+                cursors[j] = gallop(postings[lists[j]], cursors[j], size, slot);
+                if (cursors[j] == size) {
+                    return Arrays.copyOf(results, count);
+                }
+                everywhere = postings[lists[j]][cursors[j]] == slot;
+            }
+            if (everywhere) {
+                results[count++] = slot;
+            }
+        }
+        return Arrays.copyOf(results, count);
+    }
+
+    /**
+     * Index of the first element at or after from that is at least target,
+     * or size if there is none.
+     */
+    private static int gallop(int[] list, int from, int size, int target) {
+        int step = 1;
+        int high = from;
+        while (high < size && list[high] < target) {
+            from = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        int found = Arrays.binarySearch(list, from, Math.min(high + 1, size), target);
+        return found >= 0 ? found : -found - 1;
+    }
+
+    private void offerMatches(PriorityQueue<Match> best, String query, int[] slots, int[] offered, int limit) {
+        for (int slot : slots) {
+            if (offered != null && Arrays.binarySearch(offered, slot) >= 0) {
+                continue;
+            }
+            int rank = rank(query, names[slot]);
+            if (rank >= 0) {
+                offer(best, new Match(rank, names[slot].length(), slot), limit);
+            }
+        }
+    }
+
+    private int[] scan(String query) {
+        int[] results = new int[slotCount - deadCount];
+        int count = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (names[slot] != null && names[slot].contains(query)) {
+                results[count++] = slot;
+            }
+        }
+        return Arrays.copyOf(results, count);
+    }
+
+    /**
+     * Live slots sharing the most trigrams with " " + query + " ". Each typo
+     * breaks at most 4 trigrams (3 unless it is a transposition), so a name
+     * within the allowed typos shares all but 4 per typo of them, and must be
+     * in at least one of the shortest lists that many short of them all.
+     * Those lists are merged to find the candidates, whose counts are then
+     * completed from the longer lists.
+     */
+    private int[] fuzzyCandidates(String query) {
+        int[] codes = trigrams(" " + query + " ", true);
+        int required = Math.max(1, codes.length - 4 * maxTypos(query));
+        Integer[] lists = new Integer[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            lists[i] = codes[i];
+        }
+        Arrays.sort(lists, Comparator.comparingInt(code -> postingSizes[code]));
+        int generators = codes.length - required + 1;
+        int[] cursors = new int[codes.length];
+        int[] found = new int[16];
+        byte[] sharedBy = new byte[16];
+        int[] histogram = new int[codes.length + 1];
+        int count = 0;
+        while (true) {
+            int slot = Integer.MAX_VALUE;
+            for (int i = 0; i < generators; i++) {
+                if (cursors[i] < postingSizes[lists[i]]) {
+                    slot = Math.min(slot, postings[lists[i]][cursors[i]]);
+                }
+            }
+            if (slot == Integer.MAX_VALUE) {
+                break;
+            }
+            int shared = 0;
+            for (int i = 0; i < generators; i++) {
+                if (cursors[i] < postingSizes[lists[i]] && postings[lists[i]][cursors[i]] == slot) {
+                    cursors[i]++;
+                    shared++;
+                }
+            }
+            for (int i = generators; i < lists.length && shared + lists.length - i >= required; i++) {
+                cursors[i] = gallop(postings[lists[i]], cursors[i], postingSizes[lists[i]], slot);
+                if (cursors[i] < postingSizes[lists[i]] && postings[lists[i]][cursors[i]] == slot) {
+                    shared++;
+                }
+            }
+            if (shared >= required && keys[slot] != null) {
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, count * 2);
+                    sharedBy = Arrays.copyOf(sharedBy, count * 2);
+                }
+                found[count] = slot;
+                sharedBy[count++] = (byte) Math.min(shared, Byte.MAX_VALUE);
+                histogram[shared]++;
+            }
+        }
+        // Keep the candidates sharing the most trigrams, without sorting them all
+        int cutoff = codes.length;
+        int kept = histogram[cutoff];
+        while (cutoff > required && (kept == 0 || kept + histogram[cutoff - 1] <= MAX_FUZZY_CANDIDATES)) {
+            kept += histogram[--cutoff];
+        }
+        kept = Math.min(kept, MAX_FUZZY_CANDIDATES);
+        int[] results = new int[kept];
+        int taken = 0;
+        for (int i = 0; i < count && taken < kept; i++) {
+            if (sharedBy[i] >= cutoff) {
+                results[taken++] = found[i];
+            }
+        }
+        return Arrays.copyOf(results, taken);
+    }
+
+    private static int rank(String query, String name) {
+        if (name.equals(query)) {
+            return EXACT;
+        }
+        if (name.startsWith(query)) {
+            return NAME_PREFIX;
+        }
+        int at = name.indexOf(query);
+        if (at < 0) {
+            return -1;
+        }
+        if (name.charAt(at - 1) == ' ' || name.contains(" " + query)) {
+            return WORD_PREFIX;
+        }
+        return SUBSTRING;
+    }
+
+    private static int maxTypos(String query) {
+        return query.length() <= 4 ? 1 : 2;
+    }
+
+    /**
+     * Edit distance from the query to the whole name or, for a one-word
+     * query, to the closest word of the name.
+     */
+    private static int distance(String query, String name) {
+        int limit = maxTypos(query);
+        int best = boundedDistance(query, name, limit);
+        if (query.indexOf(' ') < 0) {
+            int start = 0;
+            while (start < name.length() && best > 0) {
+                int end = name.indexOf(' ', start);
+                if (end < 0) {
+                    end = name.length();
+                }
+                best = Math.min(best, boundedDistance(query, name.substring(start, end), limit));
+                start = end + 1;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Optimal string alignment distance (Levenshtein plus adjacent
+     * transpositions), or limit + 1 once it must exceed limit.
+     */
+    private static int boundedDistance(String a, String b, int limit) {
+        if (Math.abs(a.length() - b.length()) > limit) {
+            return limit + 1;
+        }
+        int[] previous2 = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[b.length()], limit + 1);
+    }
+
+    private int link(String key, String name) {
+        if (slotCount == keys.length) {
+            keys = Arrays.copyOf(keys, slotCount * 2);
+            names = Arrays.copyOf(names, slotCount * 2);
+        }
+        int slot = slotCount++;
+        keys[slot] = key;
+        names[slot] = name;
+        for (int code : trigrams("  " + name + " ", true)) {
+            int[] list = postings[code];
+            int size = postingSizes[code];
+            if (list == null) {
+                list = new int[4];
+            } else if (size == list.length) {
+                list = Arrays.copyOf(list, size * 2);
+            }
+            list[size] = slot;
+            postings[code] = list;
+            postingSizes[code] = size + 1;
+        }
+        return slot;
+    }
+
+    private void kill(int slot) {
+        keys[slot] = null;
+        names[slot] = null;
+        deadCount++;
+    }
+
+    private void compactIfWasteful() {
+        if (deadCount < MIN_DEAD_TO_REBUILD || deadCount <= slotCount - deadCount) {
+            return;
+        }
+        String[] oldKeys = keys;
+        String[] oldNames = names;
+        int oldCount = slotCount;
+        Arrays.fill(postings, null);
+        Arrays.fill(postingSizes, 0);
+        keys = new String[Math.max(64, oldCount - deadCount)];
+        names = new String[keys.length];
+        slotCount = 0;
+        deadCount = 0;
+        for (int slot = 0; slot < oldCount; slot++) {
+            if (oldKeys[slot] != null) {
+                slotOf.put(oldKeys[slot], link(oldKeys[slot], oldNames[slot]));
+            }
+        }
+    }
+
+    /**
+     * Trigram codes of a text, optionally without duplicates.
+     */
+    private static int[] trigrams(String text, boolean distinct) {
+        int count = Math.max(0, text.length() - 2);
+        int[] codes = new int[count];
+        for (int i = 0; i < count; i++) {
+            codes[i] = (symbol(text.charAt(i)) * ALPHABET + symbol(text.charAt(i + 1))) * ALPHABET
+                    + symbol(text.charAt(i + 2));
+        }
+        if (!distinct || count < 2) {
+            return codes;
+        }
+        Arrays.sort(codes);
+        int unique = 1;
+        for (int i = 1; i < count; i++) {
+            if (codes[i] != codes[unique - 1]) {
+                codes[unique++] = codes[i];
+            }
+        }
+        return Arrays.copyOf(codes, unique);
+    }
+
+    private static int symbol(char c) {
+        if (c == ' ') {
+            return 0;
+        }
+        if (c >= 'a' && c <= 'z') {
+            return 1 + c - 'a';
+        }
+        if (c >= '0' && c <= '9') {
+            return 27 + c - '0';
+        }
+        return OTHER;
+    }
+
+    /**
+     * A ranked candidate; lower sorts first.
+     */
+    private static final class Match implements Comparable<Match> {
+        private final int rank;
+        private final int length;
+        private final int slot;
+
+        private Match(int rank, int length, int slot) {
+            this.rank = rank;
+            this.length = length;
+            this.slot = slot;
+        }
+
+        @Override
+        public int compareTo(Match other) {
+            if (rank != other.rank) {
+                return Integer.compare(rank, other.rank);
+            }
+            if (length != other.length) {
+                return Integer.compare(length, other.length);
+            }
+            return Integer.compare(slot, other.slot);
+        }
+    }
+
+    private static void offer(PriorityQueue<Match> best, Match match, int limit) {
+        if (best.size() < limit) {
+            best.add(match);
+        } else if (match.compareTo(best.peek()) < 0) {
+            best.poll();
+            best.add(match);
+        }
+    }
+}
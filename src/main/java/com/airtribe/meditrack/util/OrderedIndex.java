@@ -0,0 +1,106 @@
+package com.airtribe.meditrack.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Sorted secondary index supporting exact-match and range lookups
+ * in O(log n + k).
+ * @param <T> The type of entity indexed
+ * @param <K> The type of index key
+ */
+public class OrderedIndex<T, K extends Comparable<? super K>> extends KeyIndex<T, K> {
+    private final ConcurrentSkipListMap<K, Bucket> sorted;
+    
+    /**
+     * Instantiates a new ordered index.
+     *
+     * @param extractor the index key extractor
+     */
+    public OrderedIndex(DataStore.KeyExtractor<T, K> extractor) {
+        this(extractor, new ConcurrentSkipListMap<K, Bucket>());
+    }
+    
+    private OrderedIndex(DataStore.KeyExtractor<T, K> extractor, ConcurrentSkipListMap<K, Bucket> sorted) {
+        super(extractor, sorted);
+        this.sorted = sorted;
+    }
+    
+    /**
+     * Get primary keys whose index key falls in a range, in index key order.
+     * A null bound means unbounded on that side.
+     *
+     * @param from the lower bound
+     * @param fromInclusive whether the lower bound is inclusive
+     * @param to the upper bound
+     * @param toInclusive whether the upper bound is inclusive
+     * @param limit the maximum number of keys to return
+     * @return the primary keys
+     */
+    public List<String> range(K from, boolean fromInclusive, K to, boolean toInclusive, int limit) {
+        List<String> results = new ArrayList<>();
+        for (Bucket bucket : view(from, fromInclusive, to, toInclusive).values()) {
+            for (String key : bucket.keys) {
+                if (results.size() >= limit) {
+                    return results;
+                }
+                results.add(key);
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Count entities whose index key falls in a range.
+     * Walks the distinct keys in range, not the entities.
+     *
+     * @param from the lower bound
+     * @param fromInclusive whether the lower bound is inclusive
+     * @param to the upper bound
+     * @param toInclusive whether the upper bound is inclusive
+     * @return the count
+     */
+    public int countRange(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        int count = 0;
+        for (Bucket bucket : view(from, fromInclusive, to, toInclusive).values()) {
+            count += bucket.size;
+        }
+        return count;
+    }
+    
+    /**
+     * Count entities per index key in a range, for histograms.
+     * Walks the distinct keys in range, not the entities.
+     *
+     * @param from the lower bound
+     * @param fromInclusive whether the lower bound is inclusive
+     * @param to the upper bound
+     * @param toInclusive whether the upper bound is inclusive
+     * @return the count of each index key, in index key order
+     */
+    public NavigableMap<K, Integer> countByKey(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        NavigableMap<K, Integer> counts = new TreeMap<>(sorted.comparator());
+        for (Map.Entry<K, Bucket> entry : view(from, fromInclusive, to, toInclusive).entrySet()) {
+            int size = entry.getValue().size;
+            if (size > 0) {
+                counts.put(entry.getKey(), size);
+            }
+        }
+        return counts;
+    }
+    
+    private NavigableMap<K, Bucket> view(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        NavigableMap<K, Bucket> view = sorted;
+        if (from != null) {
+            view = view.tailMap(from, fromInclusive);
+        }
+        if (to != null) {
+            view = view.headMap(to, toInclusive);
+        }
+        return view;
+    }
+}
@@ -0,0 +1,273 @@
+package com.airtribe.meditrack.util;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Parallel CSV ingestion on a fork/join pool.
+ * The file is cut into byte ranges that end on record boundaries, each range
+ * is parsed with a MappedCSVParser, and mapped records are handed to the
+ * consumer in batches. Batches arrive concurrently and in no particular
+ * order, so the consumer must be thread-safe and order-insensitive.
+ * Boundaries are quote-aware: a first parallel pass counts quotes per range,
+ * so a newline inside a quoted field (balanced RFC 4180 quoting) is never
+ * taken for a record end.
+ */
+public class ParallelCSVReader {
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+    private static final long MIN_CHUNK_BYTES = 1024 * 1024;
+    // More chunks than threads, so a slow chunk does not leave cores idle
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+
+    /**
+     * Read a CSV file in parallel.
+     *
+     * @param filePath the file path
+     * @param parallelism the number of worker threads
+     * @param batchSize the number of mapped records per batch
+     * @param mapper turns a record into a value (null to skip it); runs on worker threads
+     * @param consumer receives batches; runs on worker threads, concurrently
+     * @return the number of records read
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static <T> long read(String filePath, int parallelism, int batchSize,
+                                RecordMapper<T> mapper, BatchConsumer<T> consumer) throws IOException {
+        long[] boundaries = findBoundaries(filePath, parallelism);
+        LongAdder records = new LongAdder();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new ChunkTask<T>(filePath, boundaries, 0, boundaries.length - 1,
+                    batchSize, mapper, consumer, records));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+        return records.sum();
+    }
+
+    /**
+     * Cut the file into ranges that start and end on record boundaries.
+     *
+     * @param filePath the file path
+     * @param parallelism the number of worker threads
+     * @return the boundaries: chunk i is [boundaries[i], boundaries[i + 1])
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    static long[] findBoundaries(String filePath, int parallelism) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filePath, "r")) {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            int chunks = (int) Math.max(1, Math.min((long) parallelism * CHUNKS_PER_THREAD, size / MIN_CHUNK_BYTES));
+            long[] splits = new long[chunks + 1];
+            for (int i = 0; i <= chunks; i++) {
+                splits[i] = size * i / chunks;
+            }
+            if (chunks == 1) {
+                return splits;
+            }
+
+            // Pass 1: quote count per raw split, to know whether each split point is inside quotes
+            boolean[] oddQuotes = new boolean[chunks];
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new QuoteCountTask(channel, splits, 0, chunks, oddQuotes));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                pool.shutdown();
+            }
+
+            // Pass 2: move each split forward past the first record terminator outside quotes
+            List<Long> boundaries = new ArrayList<>(chunks + 1);
+            boundaries.add(0L);
+            boolean insideQuotes = false;
+            for (int i = 1; i < chunks; i++) {
+                insideQuotes ^= oddQuotes[i - 1];
+                long boundary = nextRecordStart(channel, splits[i], size, insideQuotes);
+                if (boundary > boundaries.get(boundaries.size() - 1) && boundary < size) {
+                    boundaries.add(boundary);
+                }
+            }
+            boundaries.add(size);
+            long[] result = new long[boundaries.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = boundaries.get(i);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Find the start of the first record at or after a position.
+     *
+     * @param channel the file channel
+     * @param from the position
+     * @param size the file size
+     * @param insideQuotes whether from lies inside a quoted field
+     * @return the record start, or size if there is none
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static long nextRecordStart(FileChannel channel, long from, long size, boolean insideQuotes)
+            throws IOException {
+        long windowStart = from;
+        while (windowStart < size) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                    Math.min(WINDOW_SIZE, size - windowStart));
+            for (int i = 0; i < window.limit(); i++) {
+                byte b = window.get(i);
+                if (b == '"') {
+                    insideQuotes = !insideQuotes;
+                } else if (!insideQuotes && (b == '\n' || b == '\r')) {
+                    long next = windowStart + i + 1;
+                    // Keep CRLF together
+                    if (b == '\r' && next < size) {
+                        if (i + 1 < window.limit() ? window.get(i + 1) == '\n' : readByte(channel, next) == '\n') {
+                            next++;
+                        }
+                    }
+                    return next;
+                }
+            }
+            windowStart += window.limit();
+        }
+        return size;
+    }
+
+    private static byte readByte(FileChannel channel, long position) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, 1).get(0);
+    }
+
+    /**
+     * Counts quotes per raw split range, splitting the ranges across the pool.
+     */
+    private static final class QuoteCountTask extends RecursiveAction {
+        private final FileChannel channel;
+        private final long[] splits;
+        private final int from;
+        private final int to;
+        private final boolean[] oddQuotes;
+
+        private QuoteCountTask(FileChannel channel, long[] splits, int from, int to, boolean[] oddQuotes) {
+            this.channel = channel;
+            this.splits = splits;
+            this.from = from;
+            this.to = to;
+            this.oddQuotes = oddQuotes;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new QuoteCountTask(channel, splits, from, middle, oddQuotes),
+                        new QuoteCountTask(channel, splits, middle, to, oddQuotes));
+                return;
+            }
+            try {
+                boolean odd = false;
+                for (long start = splits[from]; start < splits[from + 1]; start += WINDOW_SIZE) {
+                    MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                            Math.min(WINDOW_SIZE, splits[from + 1] - start));
+                    for (int i = 0; i < window.limit(); i++) {
+                        if (window.get(i) == '"') {
+                            odd = !odd;
+                        }
+                    }
+                }
+                oddQuotes[from] = odd;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Parses a run of chunks, splitting the run across the pool.
+     */
+    private static final class ChunkTask<T> extends RecursiveAction {
+        private final String filePath;
+        private final long[] boundaries;
+        private final int from;
+        private final int to;
+        private final int batchSize;
+        private final RecordMapper<T> mapper;
+        private final BatchConsumer<T> consumer;
+        private final LongAdder records;
+
+        private ChunkTask(String filePath, long[] boundaries, int from, int to, int batchSize,
+                          RecordMapper<T> mapper, BatchConsumer<T> consumer, LongAdder records) {
+            this.filePath = filePath;
+            this.boundaries = boundaries;
+            this.from = from;
+            this.to = to;
+            this.batchSize = batchSize;
+            this.mapper = mapper;
+            this.consumer = consumer;
+            this.records = records;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ChunkTask<T>(filePath, boundaries, from, middle, batchSize, mapper, consumer, records),
+                        new ChunkTask<T>(filePath, boundaries, middle, to, batchSize, mapper, consumer, records));
+                return;
+            }
+            try (MappedCSVParser parser = new MappedCSVParser(filePath, boundaries[from], boundaries[to],
+                    WINDOW_SIZE)) {
+                List<T> batch = new ArrayList<>(batchSize);
+                long count = 0;
+                CSVRecord record;
+                while ((record = parser.next()) != null) {
+                    count++;
+                    T value = mapper.map(record);
+                    if (value != null) {
+                        batch.add(value);
+                        if (batch.size() == batchSize) {
+                            consumer.accept(batch);
+                            batch = new ArrayList<>(batchSize);
+                        }
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    consumer.accept(batch);
+                }
+                records.add(count);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Functional interface turning a (reused) record into a value
+     */
+    @FunctionalInterface
+    public interface RecordMapper<T> {
+        T map(CSVRecord record) throws IOException;
+    }
+
+    /**
+     * Functional interface receiving batches of mapped values
+     */
+    @FunctionalInterface
+    public interface BatchConsumer<T> {
+        void accept(List<T> batch) throws IOException;
+    }
+
+    // Prevent instantiation
+    private ParallelCSVReader() {
+        throw new AssertionError("Cannot instantiate ParallelCSVReader class");
+    }
+}
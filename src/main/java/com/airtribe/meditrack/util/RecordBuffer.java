@@ -0,0 +1,134 @@
+package com.airtribe.meditrack.util;
+
+import java.util.Arrays;
+
+/**
+ * Reusable CSVRecord backed by one growable char array holding the unquoted
+ * field values back to back, plus field start/end offsets. Parsers reset it
+ * per row, so steady-state parsing allocates nothing.
+ * Unquoted fields are trimmed like String.trim(); for a quoted field only the
+ * whitespace outside the quotes is dropped.
+ */
+class RecordBuffer implements CSVRecord {
+    private char[] chars = new char[256];
+    private int length;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int fields;
+    private int fieldStart;
+    // End of the quoted content of the current field, -1 if it is not quoted
+    private int quotedEnd = -1;
+    private boolean quoted;
+    private long lineNumber;
+
+    /**
+     * Start a new record.
+     *
+     * @param lineNumber the line the record starts on
+     */
+    void reset(long lineNumber) {
+        this.length = 0;
+        this.fields = 0;
+        this.fieldStart = 0;
+        this.quoted = false;
+        this.quotedEnd = -1;
+        this.lineNumber = lineNumber;
+    }
+
+    /**
+     * Append a character to the current field.
+     *
+     * @param c the character
+     */
+    void append(char c) {
+        if (length == chars.length) {
+            chars = Arrays.copyOf(chars, chars.length * 2);
+        }
+        chars[length++] = c;
+    }
+
+    /**
+     * An opening quote at the start of the current field: drop the leading
+     * whitespace seen so far and protect what follows from trimming.
+     */
+    void beginQuoted() {
+        length = fieldStart;
+        quoted = true;
+    }
+
+    /**
+     * The closing quote of the current field.
+     */
+    void endQuoted() {
+        quotedEnd = length;
+    }
+
+    /**
+     * Close the current field, trimming whitespace outside any quotes.
+     */
+    void endField() {
+        int start = fieldStart;
+        int end = length;
+        if (!quoted) {
+            while (start < end && chars[start] <= ' ') {
+                start++;
+            }
+        }
+        int keep = quoted ? Math.max(start, quotedEnd) : start;
+        while (end > keep && chars[end - 1] <= ' ') {
+            end--;
+        }
+        if (fields == starts.length) {
+            starts = Arrays.copyOf(starts, fields * 2);
+            ends = Arrays.copyOf(ends, fields * 2);
+        }
+        starts[fields] = start;
+        ends[fields] = end;
+        fields++;
+        fieldStart = length;
+        quoted = false;
+        quotedEnd = -1;
+    }
+
+    @Override
+    public int size() {
+        return fields;
+    }
+
+    @Override
+    public String get(int index) {
+        checkIndex(index);
+        return new String(chars, starts[index], ends[index] - starts[index]);
+    }
+
+    @Override
+    public int length(int index) {
+        checkIndex(index);
+        return ends[index] - starts[index];
+    }
+
+    @Override
+    public char charAt(int index, int position) {
+        checkIndex(index);
+        if (position < 0 || position >= ends[index] - starts[index]) {
+            throw new IndexOutOfBoundsException("Position " + position + " in field " + index);
+        }
+        return chars[starts[index] + position];
+    }
+
+    @Override
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= fields) {
+            throw new IndexOutOfBoundsException("Field " + index + " of " + fields + " on line " + lineNumber);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.airtribe.meditrack.util;
+
+import java.io.IOException;
+
+/**
+ * Binary encoding of one entity type for Snapshots.
+ * @param <T> The type of entity encoded
+ */
+public interface SnapshotCodec<T> {
+
+    /**
+     * Get the type name recorded in the snapshot header.
+     *
+     * @return the type name
+     */
+    String getType();
+
+    /**
+     * Get the current version of this type's layout; written to the header
+     * and passed back to read(), so older snapshots stay loadable.
+     *
+     * @return the version
+     */
+    int getVersion();
+
+    /**
+     * Get the store key of an entity.
+     *
+     * @param entity the entity
+     * @return the key
+     */
+    String keyOf(T entity);
+
+    void write(T entity, SnapshotWriter out) throws IOException;
+
+    T read(SnapshotReader in, int version) throws IOException;
+}
@@ -0,0 +1,175 @@
+package com.airtribe.meditrack.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32;
+
+/**
+ * Buffered reader of the binary snapshot encoding written by SnapshotWriter.
+ * Every byte consumed is added to a CRC32 checksum.
+ */
+public class SnapshotReader {
+    private final ReadableByteChannel channel;
+    private final CRC32 checksum = new CRC32();
+    private final ByteBuffer buffer;
+    // Start of the consumed bytes not yet added to the checksum
+    private int checksumMark;
+
+    /**
+     * Instantiates a new snapshot reader.
+     *
+     * @param channel the channel
+     * @param bufferSize the buffer size
+     */
+    public SnapshotReader(ReadableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(Math.max(bufferSize, 64));
+        this.buffer.limit(0);
+    }
+
+    public int readByte() throws IOException {
+        require(1);
+        return buffer.get() & 0xFF;
+    }
+
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    public int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in snapshot");
+    }
+
+    public long readLong() throws IOException {
+        long zigZag = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = readByte();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new IOException("Malformed varlong in snapshot");
+    }
+
+    public int readInt() throws IOException {
+        long value = readLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IOException("Int out of range in snapshot: " + value);
+        }
+        return (int) value;
+    }
+
+    public double readDouble() throws IOException {
+        require(8);
+        return buffer.getDouble();
+    }
+
+    public String readString() throws IOException {
+        int length = readVarInt() - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.capacity()) {
+            byte[] bytes = new byte[length];
+            readBytes(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        require(length);
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * Read a nullable enum written by writeEnum.
+     *
+     * @param values the enum's values()
+     * @return the constant, or null
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public <E extends Enum<E>> E readEnum(E[] values) throws IOException {
+        int ordinal = readVarInt() - 1;
+        if (ordinal < 0) {
+            return null;
+        }
+        if (ordinal >= values.length) {
+            throw new IOException("Unknown enum ordinal in snapshot: " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    public LocalDateTime readDateTime() throws IOException {
+        if (!readBoolean()) {
+            return null;
+        }
+        long epochSecond = readLong();
+        return LocalDateTime.ofEpochSecond(epochSecond, readVarInt(), ZoneOffset.UTC);
+    }
+
+    public void readBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            require(1);
+            int count = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.get(bytes, offset, count);
+            offset += count;
+        }
+    }
+
+    /**
+     * Get the checksum of everything read so far.
+     *
+     * @return the CRC32 value
+     */
+    public long getChecksum() {
+        updateChecksum();
+        return checksum.getValue();
+    }
+
+    /**
+     * Check that the channel has no bytes left.
+     *
+     * @return true, if at end of input
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public boolean atEnd() throws IOException {
+        return !buffer.hasRemaining() && !fill();
+    }
+
+    private void require(int bytes) throws IOException {
+        while (buffer.remaining() < bytes) {
+            if (!fill()) {
+                throw new EOFException("Snapshot ends unexpectedly");
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        updateChecksum();
+        buffer.compact();
+        checksumMark = 0;
+        int read = channel.read(buffer);
+        buffer.flip();
+        return read > 0;
+    }
+
+    private void updateChecksum() {
+        checksum.update(buffer.array(), buffer.arrayOffset() + checksumMark, buffer.position() - checksumMark);
+        checksumMark = buffer.position();
+    }
+}
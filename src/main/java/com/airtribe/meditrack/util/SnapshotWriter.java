@@ -0,0 +1,183 @@
+package com.airtribe.meditrack.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32;
+
+/**
+ * Buffered writer of the binary snapshot encoding (see Snapshots).
+ * Integers are variable-length (zig-zag for signed values), strings are a
+ * length prefix plus UTF-8 bytes, enums are ordinals and date-times are UTC
+ * epoch seconds plus nanos. Nullable values use 0 as the null marker.
+ * Every byte written is added to a CRC32 checksum.
+ */
+public class SnapshotWriter {
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final CRC32 checksum = new CRC32();
+
+    /**
+     * Instantiates a new snapshot writer.
+     *
+     * @param channel the channel
+     * @param bufferSize the buffer size
+     */
+    public SnapshotWriter(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(Math.max(bufferSize, 64));
+    }
+
+    public void writeByte(int value) throws IOException {
+        ensure(1);
+        buffer.put((byte) value);
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        writeByte(value ? 1 : 0);
+    }
+
+    /**
+     * Write a non-negative int in 1 to 5 bytes, 7 bits per byte.
+     *
+     * @param value the value
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void writeVarInt(int value) throws IOException {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Write a long in 1 to 10 bytes, zig-zag encoded so small negative values stay short.
+     *
+     * @param value the value
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void writeLong(long value) throws IOException {
+        ensure(10);
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        buffer.put((byte) zigZag);
+    }
+
+    public void writeInt(int value) throws IOException {
+        writeLong(value);
+    }
+
+    public void writeDouble(double value) throws IOException {
+        ensure(8);
+        buffer.putDouble(value);
+    }
+
+    /**
+     * Write a nullable string: length + 1 (0 for null), then the UTF-8 bytes.
+     *
+     * @param value the value
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+        int length = value.length();
+        boolean ascii = true;
+        for (int i = 0; i < length && ascii; i++) {
+            ascii = value.charAt(i) < 0x80;
+        }
+        if (!ascii) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length + 1);
+            writeBytes(bytes);
+            return;
+        }
+        writeVarInt(length + 1);
+        if (length > buffer.capacity()) {
+            writeBytes(value.getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        ensure(length);
+        byte[] array = buffer.array();
+        int offset = buffer.arrayOffset() + buffer.position();
+        for (int i = 0; i < length; i++) {
+            array[offset + i] = (byte) value.charAt(i);
+        }
+        buffer.position(buffer.position() + length);
+    }
+
+    /**
+     * Write a nullable enum as ordinal + 1 (0 for null).
+     *
+     * @param value the value
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void writeEnum(Enum<?> value) throws IOException {
+        writeVarInt(value == null ? 0 : value.ordinal() + 1);
+    }
+
+    /**
+     * Write a nullable date-time as a presence byte, UTC epoch seconds and nanos.
+     *
+     * @param value the value
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void writeDateTime(LocalDateTime value) throws IOException {
+        writeBoolean(value != null);
+        if (value != null) {
+            writeLong(value.toEpochSecond(ZoneOffset.UTC));
+            writeVarInt(value.getNano());
+        }
+    }
+
+    public void writeBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            ensure(1);
+            int count = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, count);
+            offset += count;
+        }
+    }
+
+    /**
+     * Write out buffered bytes and get the checksum of everything written so far.
+     *
+     * @return the CRC32 value
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public long flushAndChecksum() throws IOException {
+        flush();
+        return checksum.getValue();
+    }
+
+    /**
+     * Write out buffered bytes.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        checksum.update(buffer.array(), buffer.arrayOffset(), buffer.limit());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.airtribe.meditrack.util;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compact binary snapshots of entity collections, written and read over NIO
+ * file channels.
+ * Layout: the magic bytes "MTSN", the format version, the codec's type name
+ * and version, the record count, the records as encoded by the codec, and a
+ * CRC32 of everything before it. Saving writes a temp file, fsyncs it and
+ * moves it over the old snapshot, so a crash leaves either the old or the
+ * new snapshot.
+ */
+public class Snapshots {
+    public static final int FORMAT_VERSION = 1;
+    private static final byte[] MAGIC = {'M', 'T', 'S', 'N'};
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Save entities to a snapshot file.
+     *
+     * @param filePath the file path
+     * @param entities the entities
+     * @param codec the codec
+     * @return the number of entities written
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static <T> int save(String filePath, Collection<T> entities, SnapshotCodec<T> codec)
+            throws IOException {
+        Path target = Paths.get(filePath).toAbsolutePath();
+        Path parent = target.getParent();
+        Files.createDirectories(parent);
+        Path temp = parent.resolve(target.getFileName() + ".tmp");
+        int count = 0;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            SnapshotWriter out = new SnapshotWriter(channel, BUFFER_SIZE);
+            out.writeBytes(MAGIC);
+            out.writeVarInt(FORMAT_VERSION);
+            out.writeString(codec.getType());
+            out.writeVarInt(codec.getVersion());
+            out.writeVarInt(entities.size());
+            for (T entity : entities) {
+                codec.write(entity, out);
+                count++;
+            }
+            if (count != entities.size()) {
+                throw new IOException("Collection changed while saving snapshot " + filePath);
+            }
+            out.writeLong(out.flushAndChecksum());
+            out.flush();
+            channel.force(false);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        // Make the rename itself durable where the platform allows syncing a directory
+        try (FileChannel directory = FileChannel.open(parent, StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // Not supported on this platform; the file contents are already synced
+        }
+        return count;
+    }
+
+    /**
+     * Load all entities from a snapshot file.
+     *
+     * @param filePath the file path
+     * @param codec the codec
+     * @return the entities, in the order they were saved
+     * @throws IOException if the file cannot be read, or is not a valid snapshot of the codec's type
+     */
+    public static <T> List<T> load(String filePath, SnapshotCodec<T> codec) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            SnapshotReader in = new SnapshotReader(channel, BUFFER_SIZE);
+            byte[] magic = new byte[MAGIC.length];
+            in.readBytes(magic);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (magic[i] != MAGIC[i]) {
+                    throw new IOException("Not a snapshot file: " + filePath);
+                }
+            }
+            int formatVersion = in.readVarInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot format " + formatVersion + " in " + filePath);
+            }
+            String type = in.readString();
+            if (!codec.getType().equals(type)) {
+                throw new IOException("Snapshot " + filePath + " holds " + type + ", not " + codec.getType());
+            }
+            int version = in.readVarInt();
+            if (version > codec.getVersion()) {
+                throw new IOException("Snapshot " + filePath + " is " + type + " version " + version
+                        + ", newer than supported version " + codec.getVersion());
+            }
+            int count = in.readVarInt();
+            List<T> entities = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                entities.add(codec.read(in, version));
+            }
+            long expected = in.getChecksum();
+            if (in.readLong() != expected || !in.atEnd()) {
+                throw new IOException("Snapshot " + filePath + " is corrupt (checksum mismatch)");
+            }
+            return entities;
+        }
+    }
+
+    // Prevent instantiation
+    private Snapshots() {
+        throw new AssertionError("Cannot instantiate Snapshots class");
+    }
+}
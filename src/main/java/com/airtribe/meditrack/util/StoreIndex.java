@@ -0,0 +1,31 @@
+package com.airtribe.meditrack.util;
+
+/**
+ * Secondary index that a DataStore keeps in sync with its entries.
+ * The store calls put() on add/update and remove() on delete; writes for one
+ * primary key are always serialized by the store, so implementations only
+ * need to guard state shared between different keys.
+ * @param <T> The type of entity indexed
+ */
+public interface StoreIndex<T> {
+    
+    /**
+     * Index (or re-index) an entity under its primary key.
+     *
+     * @param key the primary key
+     * @param entity the entity
+     */
+    void put(String key, T entity);
+    
+    /**
+     * Drop a primary key from the index.
+     *
+     * @param key the primary key
+     */
+    void remove(String key);
+    
+    /**
+     * Drop every entry from the index.
+     */
+    void clear();
+}
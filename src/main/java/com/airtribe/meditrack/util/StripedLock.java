@@ -0,0 +1,61 @@
+package com.airtribe.meditrack.util;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed pool of locks selected by key hash (lock striping).
+ * Operations on keys that map to different stripes never contend,
+ * so there is no single global lock for writers to queue on.
+ */
+public class StripedLock {
+    public static final int DEFAULT_STRIPES = 64;
+
+    private final Lock[] locks;
+    private final int mask;
+
+    /**
+     * Instantiates a new striped lock with the default stripe count.
+     */
+    public StripedLock() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Instantiates a new striped lock.
+     *
+     * @param stripes the requested number of stripes (rounded up to a power of two)
+     */
+    public StripedLock(int stripes) {
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.locks = new Lock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Get the lock guarding the given key.
+     *
+     * @param key the key
+     * @return the lock
+     */
+    public Lock get(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return locks[h & mask];
+    }
+
+    /**
+     * Get number of stripes.
+     *
+     * @return the stripe count
+     */
+    public int getStripeCount() {
+        return locks.length;
+    }
+}
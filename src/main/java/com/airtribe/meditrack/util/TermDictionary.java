@@ -0,0 +1,80 @@
+package com.airtribe.meditrack.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary interning a small vocabulary of strings (allergies and the
+ * like) to dense int codes 0, 1, 2, ... in first-seen order, so records
+ * can hold codes instead of strings and indexes can use codes as array
+ * positions. Codes are never reused or removed, and terms match exactly.
+ * Lookups are lock-free; interning a new term takes the dictionary lock.
+ */
+public class TermDictionary {
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] terms = new String[16];
+    private volatile int size;
+
+    /**
+     * Get the code of a term, assigning the next code if it is new.
+     *
+     * @param term the term
+     * @return the code
+     */
+    public int intern(String term) {
+        if (term == null) {
+            throw new IllegalArgumentException("Term cannot be null");
+        }
+        Integer code = codes.get(term);
+        if (code != null) {
+            return code;
+        }
+        synchronized (this) {
+            code = codes.get(term);
+            if (code != null) {
+                return code;
+            }
+            int next = size;
+            String[] grown = next == terms.length ? Arrays.copyOf(terms, next * 2) : terms;
+            grown[next] = term;
+            // Publish the term before its code can be seen
+            terms = grown;
+            size = next + 1;
+            codes.put(term, next);
+            return next;
+        }
+    }
+
+    /**
+     * Get the code of a term without interning it.
+     *
+     * @param term the term
+     * @return the code, or -1 if the term has never been interned
+     */
+    public int codeOf(String term) {
+        Integer code = term != null ? codes.get(term) : null;
+        return code != null ? code : -1;
+    }
+
+    /**
+     * Get the term for a code.
+     *
+     * @param code the code
+     * @return the term
+     */
+    public String termOf(int code) {
+        if (code < 0 || code >= size) {
+            throw new IllegalArgumentException("Unknown term code: " + code);
+        }
+        return terms[code];
+    }
+
+    /**
+     * Get the number of terms interned.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+}
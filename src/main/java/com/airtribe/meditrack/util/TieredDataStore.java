@@ -0,0 +1,612 @@
+package com.airtribe.meditrack.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe DataStore for large stores of which only a few entities are
+ * in use at a time. Memory holds a compact summary of each entity and where
+ * its full record lives in a record file (encoded by its SnapshotCodec), plus
+ * an LRU cache of recently used full entities. get() serves the cache or
+ * loads the record; add/update write the record through and cache the entity.
+ * Scans (getAll, search, iterator) read every record but do not fill the
+ * cache, so a report does not evict the patients being seen today.
+ * The record file is scratch space, truncated when the store is created and
+ * rebuilt as the store is filled from a snapshot and the write-ahead log.
+ * Superseded records are garbage until the file is compacted, which happens
+ * once garbage outgrows the live records.
+ * An entity changed in place must be passed to update(), as for the log;
+ * otherwise the change is lost when the entity leaves the cache.
+ * @param <T> The type of entity stored
+ * @param <S> The type of the in-memory summary
+ */
+public class TieredDataStore<T, S> extends DataStore<T> implements Closeable {
+    // Below this much garbage compaction is not worth the pass
+    private static final long MIN_GARBAGE_TO_COMPACT = 1024 * 1024;
+
+    private final Path filePath;
+    private final SnapshotCodec<T> codec;
+    private final KeyExtractor<T, S> summarizer;
+    private final ConcurrentHashMap<String, Entry<S>> store = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Entry<S>> ordered = new ConcurrentSkipListMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final StripedLock locks = new StripedLock();
+    // Read side: appends and record reads; write side: compaction, which moves records
+    private final ReadWriteLock fileLock = new ReentrantReadWriteLock();
+    private final Object appendMonitor = new Object();
+    // Guarded by itself
+    private final LinkedHashMap<String, T> cache;
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final AtomicLong liveBytes = new AtomicLong();
+    private final AtomicLong garbageBytes = new AtomicLong();
+    private FileChannel channel;
+    private long fileSize;
+
+    /**
+     * Instantiates a new tiered data store, creating or truncating its record file.
+     *
+     * @param filePath the record file path
+     * @param codec the codec of the full records
+     * @param summarizer extracts the summary kept in memory
+     * @param cacheSize the number of full entities to cache
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public TieredDataStore(String filePath, SnapshotCodec<T> codec, KeyExtractor<T, S> summarizer,
+                           final int cacheSize) throws IOException {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("Invalid cache size: " + cacheSize);
+        }
+        this.filePath = Paths.get(filePath).toAbsolutePath();
+        this.codec = codec;
+        this.summarizer = summarizer;
+        this.cache = new LinkedHashMap<String, T>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        Files.createDirectories(this.filePath.getParent());
+        this.channel = FileChannel.open(this.filePath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Add an entity to the store. Re-adding an existing key replaces it
+     * and moves it to the end of the insertion order.
+     *
+     * @param key the key
+     * @param entity the entity
+     */
+    @Override
+    public void add(String key, T entity) {
+        Lock lock = locks.get(key);
+        lock.lock();
+        // Held until the record's location is published, so compaction cannot miss it
+        fileLock.readLock().lock();
+        try {
+            Entry<S> previous = store.get(key);
+            if (previous != null) {
+                ordered.remove(previous.seq);
+                discard(previous.location);
+            }
+            Entry<S> entry = new Entry<>(key, sequence.incrementAndGet(), summarizer.extract(entity),
+                    write(entity));
+            ordered.put(entry.seq, entry);
+            store.put(key, entry);
+            cachePut(key, entity);
+            indexPut(key, entity);
+        } finally {
+            fileLock.readLock().unlock();
+            lock.unlock();
+        }
+        compactIfWasteful();
+    }
+
+    /**
+     * Get entity by key, from the cache or else from the record file.
+     *
+     * @param key the key
+     * @return the t
+     */
+    @Override
+    public T get(String key) {
+        T cached = cacheGet(key);
+        if (cached != null) {
+            cacheHits.increment();
+            return cached;
+        }
+        Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            // A writer may have cached a newer version while this thread waited
+            cached = cacheGet(key);
+            if (cached != null) {
+                cacheHits.increment();
+                return cached;
+            }
+            Entry<S> entry = store.get(key);
+            if (entry == null) {
+                return null;
+            }
+            cacheMisses.increment();
+            T entity = read(entry);
+            cachePut(key, entity);
+            return entity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get all entities in insertion order. This reads every record.
+     *
+     * @return the all
+     */
+    @Override
+    public List<T> getAll() {
+        List<T> results = new ArrayList<>(store.size());
+        for (Entry<S> entry : ordered.values()) {
+            T entity = scan(entry);
+            if (entity != null) {
+                results.add(entity);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Get entity by index. This walks the ordered view, so it is O(index).
+     *
+     * @param index the index
+     * @return the by index
+     */
+    @Override
+    public T getByIndex(int index) {
+        if (index < 0) {
+            return null;
+        }
+        int position = 0;
+        for (Entry<S> entry : ordered.values()) {
+            if (position++ == index) {
+                return get(entry.key);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Update entity in place, keeping its insertion position.
+     *
+     * @param key the key
+     * @param entity the entity
+     */
+    @Override
+    public void update(String key, T entity) {
+        Lock lock = locks.get(key);
+        lock.lock();
+        fileLock.readLock().lock();
+        try {
+            Entry<S> entry = store.get(key);
+            if (entry == null) {
+                return;
+            }
+            Location previous = entry.location;
+            entry.location = write(entity);
+            entry.summary = summarizer.extract(entity);
+            discard(previous);
+            cachePut(key, entity);
+            indexPut(key, entity);
+        } finally {
+            fileLock.readLock().unlock();
+            lock.unlock();
+        }
+        compactIfWasteful();
+    }
+
+    /**
+     * Delete entity by key.
+     *
+     * @param key the key
+     * @return true, if successful
+     */
+    @Override
+    public boolean delete(String key) {
+        Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            Entry<S> entry = store.remove(key);
+            if (entry == null) {
+                return false;
+            }
+            ordered.remove(entry.seq);
+            discard(entry.location);
+            synchronized (cache) {
+                cache.remove(key);
+            }
+            indexRemove(key);
+        } finally {
+            lock.unlock();
+        }
+        compactIfWasteful();
+        return true;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return store.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    /**
+     * Clear the store, one key at a time (no global lock).
+     */
+    @Override
+    public void clear() {
+        for (String key : store.keySet()) {
+            delete(key);
+        }
+    }
+
+    /**
+     * Get weakly-consistent iterator for entities, reading records as it goes.
+     *
+     * @return the iterator
+     */
+    @Override
+    public Iterator<T> iterator() {
+        final Iterator<Entry<S>> entries = ordered.values().iterator();
+        return new Iterator<T>() {
+            private T next;
+            private String nextKey;
+            private String current;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && entries.hasNext()) {
+                    Entry<S> entry = entries.next();
+                    next = scan(entry);
+                    nextKey = entry.key;
+                }
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T result = next;
+                current = nextKey;
+                next = null;
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                if (current == null) {
+                    throw new IllegalStateException();
+                }
+                delete(current);
+                current = null;
+            }
+        };
+    }
+
+    /**
+     * Search by predicate over a weakly-consistent traversal. This reads every record.
+     *
+     * @param predicate the predicate
+     * @return the list
+     */
+    @Override
+    public List<T> search(SearchPredicate<T> predicate) {
+        List<T> results = new ArrayList<>();
+        for (Entry<S> entry : ordered.values()) {
+            T entity = scan(entry);
+            if (entity != null && predicate.matches(entity)) {
+                results.add(entity);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Search the in-memory summaries, reading only the matching records.
+     *
+     * @param predicate the predicate on summaries
+     * @return the matching entities, in insertion order
+     */
+    public List<T> searchSummaries(SearchPredicate<S> predicate) {
+        List<T> results = new ArrayList<>();
+        for (Entry<S> entry : ordered.values()) {
+            if (predicate.matches(entry.summary)) {
+                T entity = get(entry.key);
+                if (entity != null) {
+                    results.add(entity);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Get the in-memory summary of an entity, without reading its record.
+     *
+     * @param key the key
+     * @return the summary, or null if there is no such entity
+     */
+    public S getSummary(String key) {
+        Entry<S> entry = store.get(key);
+        return entry != null ? entry.summary : null;
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    public int getCachedCount() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Get the size of the record file, including superseded records.
+     *
+     * @return the size in bytes
+     */
+    public long getFileSize() {
+        synchronized (appendMonitor) {
+            return fileSize;
+        }
+    }
+
+    /**
+     * Rewrite the record file with only the live records.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void compact() throws IOException {
+        fileLock.writeLock().lock();
+        try {
+            compactLocked();
+        } finally {
+            fileLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Close the record file.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    @Override
+    public void close() throws IOException {
+        fileLock.writeLock().lock();
+        try {
+            channel.close();
+        } finally {
+            fileLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get keys of all live entries, in insertion order.
+     *
+     * @return the keys
+     */
+    @Override
+    protected List<String> keySnapshot() {
+        List<String> results = new ArrayList<>(store.size());
+        for (Entry<S> entry : ordered.values()) {
+            results.add(entry.key);
+        }
+        return results;
+    }
+
+    /**
+     * Read an entity for a scan: the cached one if any, else its record,
+     * without caching it.
+     *
+     * @return the entity, or null if it was deleted meanwhile
+     */
+    private T scan(Entry<S> entry) {
+        T cached = cacheGet(entry.key);
+        if (cached != null) {
+            return cached;
+        }
+        Lock lock = locks.get(entry.key);
+        lock.lock();
+        try {
+            return store.get(entry.key) == entry ? read(entry) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Location write(T entity) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try {
+            SnapshotWriter out = new SnapshotWriter(Channels.newChannel(bytes), 256);
+            codec.write(entity, out);
+            out.flush();
+        } catch (IOException e) {
+            // The sink is in memory; only a codec can fail here
+            throw new UncheckedIOException(e);
+        }
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        try {
+            long offset;
+            synchronized (appendMonitor) {
+                offset = fileSize;
+                fileSize += record.remaining();
+            }
+            long position = offset;
+            while (record.hasRemaining()) {
+                position += channel.write(record, position);
+            }
+            liveBytes.addAndGet(record.capacity());
+            return new Location(offset, record.capacity());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write record file " + filePath, e);
+        }
+    }
+
+    private T read(Entry<S> entry) {
+        Location location;
+        ByteBuffer record;
+        fileLock.readLock().lock();
+        try {
+            // Read the location under the lock; compaction moves records
+            location = entry.location;
+            record = ByteBuffer.allocate(location.length);
+            while (record.hasRemaining()) {
+                if (channel.read(record, location.offset + record.position()) < 0) {
+                    throw new IOException("Record file " + filePath + " ends unexpectedly");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read record file " + filePath, e);
+        } finally {
+            fileLock.readLock().unlock();
+        }
+        try {
+            return codec.read(new SnapshotReader(Channels.newChannel(new ByteArrayInputStream(record.array())),
+                    location.length), codec.getVersion());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt record in " + filePath, e);
+        }
+    }
+
+    private void discard(Location location) {
+        liveBytes.addAndGet(-location.length);
+        garbageBytes.addAndGet(location.length);
+    }
+
+    private void compactIfWasteful() {
+        if (!isWasteful()) {
+            return;
+        }
+        fileLock.writeLock().lock();
+        try {
+            // Another writer may have compacted while this one waited
+            if (isWasteful()) {
+                compactLocked();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot compact record file " + filePath, e);
+        } finally {
+            fileLock.writeLock().unlock();
+        }
+    }
+
+    private boolean isWasteful() {
+        long garbage = garbageBytes.get();
+        return garbage >= MIN_GARBAGE_TO_COMPACT && garbage > liveBytes.get();
+    }
+
+    private void compactLocked() throws IOException {
+        Path temp = filePath.resolveSibling(filePath.getFileName() + ".tmp");
+        long position = 0;
+        try (FileChannel copy = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Entry<S> entry : store.values()) {
+                Location location = entry.location;
+                long copied = 0;
+                while (copied < location.length) {
+                    copied += channel.transferTo(location.offset + copied, location.length - copied, copy);
+                }
+                entry.location = new Location(position, location.length);
+                position += location.length;
+            }
+        }
+        channel.close();
+        try {
+            Files.move(temp, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, filePath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        channel = FileChannel.open(filePath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        synchronized (appendMonitor) {
+            fileSize = position;
+        }
+        liveBytes.set(position);
+        garbageBytes.set(0);
+    }
+
+    private T cacheGet(String key) {
+        synchronized (cache) {
+            return cache.get(key);
+        }
+    }
+
+    private void cachePut(String key, T entity) {
+        synchronized (cache) {
+            cache.put(key, entity);
+        }
+    }
+
+    /**
+     * Where a record lives in the record file.
+     */
+    private static final class Location {
+        private final long offset;
+        private final int length;
+
+        private Location(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Store slot: key, insertion sequence, summary and record location.
+     */
+    private static final class Entry<S> {
+        private final String key;
+        private final long seq;
+        private volatile S summary;
+        private volatile Location location;
+
+        private Entry(String key, long seq, S summary, Location location) {
+            this.key = key;
+            this.seq = seq;
+            this.summary = summary;
+            this.location = location;
+        }
+    }
+}
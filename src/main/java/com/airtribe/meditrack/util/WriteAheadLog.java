@@ -0,0 +1,687 @@
+package com.airtribe.meditrack.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of DataStore mutations, with group commit.
+ * A store attached to the log gets an index that logs every add/update as
+ * the entity's full new state (encoded by its SnapshotCodec), every delete
+ * as its key and every clear as a marker. Replaying the log on top of the
+ * last snapshot therefore rebuilds each key's latest state, and replaying a
+ * record twice is harmless.
+ * Records are framed as [payload length][CRC32 of payload][payload], so a
+ * record torn by a crash is detected; replay stops there and cuts it off.
+ * Commit modes, chosen by groupCommitMillis:
+ * 0 - synchronous: a mutation returns once its record is on disk. Threads
+ * that log while an fsync is running wait for it and then share the next
+ * one, so concurrent writers pay one fsync per batch, not per record.
+ * greater than 0 - asynchronous: a mutation returns once its record is
+ * buffered, and a daemon thread writes and fsyncs the batch every
+ * groupCommitMillis, which bounds what a crash can lose. sync() is the
+ * barrier for callers that need an explicit commit point.
+ * A Checkpointer keeps the log short: it takes a checkpointMark(), saves
+ * snapshots while writers keep logging, then compact()s away everything
+ * before the mark.
+ */
+public class WriteAheadLog implements Closeable {
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte CLEAR = 3;
+    private static final int FRAME_HEADER = 8;
+    private static final int REPLAY_CHUNK = 1024 * 1024;
+
+    private final String filePath;
+    private FileChannel channel;
+    private final long groupCommitMillis;
+    private final Map<String, Target<?>> targets = new HashMap<>();
+    private final ByteSink payload = new ByteSink();
+    private final SnapshotWriter payloadWriter = new SnapshotWriter(payload, 4096);
+    private final CRC32 crc = new CRC32();
+    private final ScheduledExecutorService flusher;
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    private long appendedLsn;
+    private volatile long durableLsn;
+    private volatile IOException flushError;
+    private volatile boolean replaying;
+    private long appendCount;
+    private long syncCount;
+    // Log offset of the file's first byte; grows as compaction drops records
+    private long baseOffset;
+    private long replayNanos;
+    // True while a leader writes and fsyncs a batch; at most one does at a time
+    private boolean flushing;
+    private boolean closed;
+
+    private WriteAheadLog(String filePath, long groupCommitMillis) throws IOException {
+        File parent = new File(filePath).getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        this.filePath = filePath;
+        this.channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.groupCommitMillis = groupCommitMillis;
+        if (groupCommitMillis > 0) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "wal-group-commit");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::groupCommit, groupCommitMillis, groupCommitMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * Open (or create) a log. Attach stores and replay() it before logging new mutations.
+     *
+     * @param filePath the file path
+     * @param groupCommitMillis 0 for synchronous commits, otherwise the fsync interval
+     * @return the log
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static WriteAheadLog open(String filePath, long groupCommitMillis) throws IOException {
+        if (groupCommitMillis < 0) {
+            throw new IllegalArgumentException("Invalid group commit interval: " + groupCommitMillis);
+        }
+        return new WriteAheadLog(filePath, groupCommitMillis);
+    }
+
+    /**
+     * Log a store's mutations under a name, and replay that name's records into it.
+     *
+     * @param name the store name recorded in the log
+     * @param store the store
+     * @param codec the entity codec
+     */
+    public <T> void attach(String name, DataStore<T> store, SnapshotCodec<T> codec) {
+        attach(name, store, codec, null);
+    }
+
+    /**
+     * Log a store's mutations under a name, and replay that name's records into
+     * it, telling a listener about each replayed change (for state derived
+     * from the store outside its indexes).
+     *
+     * @param name the store name recorded in the log
+     * @param store the store
+     * @param codec the entity codec
+     * @param listener called after each replayed change, may be null
+     */
+    public synchronized <T> void attach(String name, DataStore<T> store, SnapshotCodec<T> codec,
+                                        ReplayListener<T> listener) {
+        if (targets.containsKey(name)) {
+            throw new IllegalArgumentException("Store already attached: " + name);
+        }
+        targets.put(name, new Target<>(store, codec, listener));
+        // addIndex() feeds the index the store's current contents; those came
+        // from the snapshot and must not be logged again
+        LoggingIndex<T> index = store.addIndex("wal", new LoggingIndex<>(name, codec));
+        index.live = true;
+    }
+
+    /**
+     * Apply every intact record to its attached store, in log order, and cut
+     * off a torn record at the end. Records of unknown stores are skipped.
+     * Call once at startup, after loading the snapshot and before the stores
+     * are shared; replayed changes are not logged again.
+     *
+     * @return the number of records replayed
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public synchronized long replay() throws IOException {
+        awaitIdle();
+        replaying = true;
+        long begin = System.nanoTime();
+        try {
+            return replayRecords();
+        } finally {
+            replaying = false;
+            replayNanos = System.nanoTime() - begin;
+        }
+    }
+
+    /**
+     * Write and fsync every record logged so far.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void sync() throws IOException {
+        long lsn;
+        synchronized (this) {
+            lsn = appendedLsn;
+        }
+        awaitDurable(lsn);
+    }
+
+    /**
+     * Empty the log, once a snapshot covers everything in it. Nothing may be
+     * logged between taking that snapshot and the reset.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public synchronized void reset() throws IOException {
+        awaitIdle();
+        baseOffset += channel.size() + pending.position();
+        pending.clear();
+        channel.truncate(0);
+        channel.force(true);
+        durableLsn = appendedLsn;
+    }
+
+    /**
+     * Mark the current end of the log. A snapshot started after this call
+     * reflects every record before the mark, whatever writers log meanwhile.
+     *
+     * @return the log offset to pass to compact()
+     * @throws IOException if interrupted
+     */
+    public synchronized long checkpointMark() throws IOException {
+        awaitIdle();
+        return baseOffset + channel.size() + pending.position();
+    }
+
+    /**
+     * Drop every record before a checkpoint mark, once a snapshot taken after
+     * the mark is on disk. The records logged since the mark are copied to a
+     * new file that atomically replaces the log; appends wait for the copy,
+     * which only holds what was logged while the snapshot was being saved.
+     * A mark taken before a reset() or a later compact() drops nothing.
+     *
+     * @param mark the offset returned by checkpointMark()
+     * @return the number of bytes dropped
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public synchronized long compact(long mark) throws IOException {
+        awaitIdle();
+        long dropped = mark - baseOffset;
+        if (dropped <= 0) {
+            return 0;
+        }
+        pending.flip();
+        channel.position(channel.size());
+        while (pending.hasRemaining()) {
+            channel.write(pending);
+        }
+        pending.clear();
+        Path target = Paths.get(filePath).toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel copy = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = dropped;
+            long size = channel.size();
+            while (position < size) {
+                position += channel.transferTo(position, size - position, copy);
+            }
+            copy.force(false);
+        }
+        channel.close();
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        channel = FileChannel.open(target, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try (FileChannel directory = FileChannel.open(target.getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // Not supported on this platform; the file contents are already synced
+        }
+        baseOffset = mark;
+        durableLsn = appendedLsn;
+        return dropped;
+    }
+
+    /**
+     * Write and fsync pending records and close the file.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+        }
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        try {
+            sync();
+        } finally {
+            synchronized (this) {
+                closed = true;
+                channel.close();
+            }
+        }
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * Get the number of records logged since the log was opened.
+     *
+     * @return the append count
+     */
+    public synchronized long getAppendCount() {
+        return appendCount;
+    }
+
+    /**
+     * Get the number of fsyncs since the log was opened; with group commit this
+     * stays well below the append count.
+     *
+     * @return the sync count
+     */
+    public synchronized long getSyncCount() {
+        return syncCount;
+    }
+
+    /**
+     * Get how long the last replay() took.
+     *
+     * @return the replay time in milliseconds
+     */
+    public synchronized double getReplayMillis() {
+        return replayNanos / 1_000_000.0;
+    }
+
+    /**
+     * Get the size of the log file, including records not yet written.
+     *
+     * @return the size in bytes
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public synchronized long size() throws IOException {
+        return channel.size() + pending.position();
+    }
+
+    /**
+     * Frame and buffer one record.
+     *
+     * @return the record's log sequence number
+     */
+    private synchronized <T> long append(byte op, String store, String key, T entity, SnapshotCodec<T> codec) {
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed: " + filePath);
+        }
+        IOException error = flushError;
+        if (error != null) {
+            throw new UncheckedIOException("Group commit failed for " + filePath, error);
+        }
+        try {
+            payload.reset();
+            payloadWriter.writeLong(appendedLsn + 1);
+            payloadWriter.writeByte(op);
+            payloadWriter.writeString(store);
+            payloadWriter.writeString(key);
+            if (op == PUT) {
+                payloadWriter.writeVarInt(codec.getVersion());
+                codec.write(entity, payloadWriter);
+            }
+            payloadWriter.flush();
+        } catch (IOException e) {
+            // The sink is in memory; only a codec can fail here
+            throw new UncheckedIOException(e);
+        }
+        crc.reset();
+        crc.update(payload.bytes, 0, payload.length);
+        pending = ensureCapacity(pending, FRAME_HEADER + payload.length);
+        pending.putInt(payload.length);
+        pending.putInt((int) crc.getValue());
+        pending.put(payload.bytes, 0, payload.length);
+        appendCount++;
+        return ++appendedLsn;
+    }
+
+    /**
+     * Wait until a record is on disk. If no fsync is running, the caller becomes
+     * the leader: it takes everything buffered so far and writes and fsyncs it
+     * without holding the lock, so other threads keep appending meanwhile and
+     * the next leader commits all of them with one fsync. Followers whose
+     * records were in the leader's batch are woken and return.
+     *
+     * @param lsn the record's log sequence number
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void awaitDurable(long lsn) throws IOException {
+        if (durableLsn >= lsn) {
+            return;
+        }
+        ByteBuffer batch;
+        long batchLsn;
+        synchronized (this) {
+            while (flushing && durableLsn < lsn) {
+                waitForLeader();
+            }
+            if (durableLsn >= lsn) {
+                return;
+            }
+            if (closed) {
+                throw new IOException("Write-ahead log is closed: " + filePath);
+            }
+            flushing = true;
+            batch = pending;
+            pending = spare;
+            spare = batch;
+            batchLsn = appendedLsn;
+        }
+        boolean written = false;
+        try {
+            batch.flip();
+            channel.position(channel.size());
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            channel.force(false);
+            written = true;
+        } catch (IOException e) {
+            // The batch is lost; fail every later append rather than pretend it committed
+            flushError = e;
+            throw e;
+        } finally {
+            batch.clear();
+            synchronized (this) {
+                if (written) {
+                    durableLsn = batchLsn;
+                    syncCount++;
+                }
+                flushing = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Wait, holding the lock, until no leader is writing a batch.
+     *
+     * @throws IOException if interrupted
+     */
+    private void awaitIdle() throws IOException {
+        while (flushing) {
+            waitForLeader();
+        }
+    }
+
+    private void waitForLeader() throws IOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a write-ahead log commit");
+        }
+    }
+
+    private void groupCommit() {
+        try {
+            sync();
+        } catch (IOException e) {
+            flushError = e;
+        }
+    }
+
+    private long replayRecords() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        long replayed = 0;
+        // Read the log in large chunks; a frame that straddles a chunk is carried over
+        ByteBuffer window = ByteBuffer.allocate(REPLAY_CHUNK);
+        window.limit(0);
+        long windowEnd = 0;
+        ByteSource source = new ByteSource();
+        while (position + FRAME_HEADER <= size) {
+            if (window.remaining() < FRAME_HEADER) {
+                windowEnd = refill(window, windowEnd, FRAME_HEADER);
+            }
+            int length = window.getInt(window.position());
+            int checksum = window.getInt(window.position() + 4);
+            if (length < 0 || position + FRAME_HEADER + length > size) {
+                break;
+            }
+            if (window.remaining() < FRAME_HEADER + length) {
+                if (window.capacity() < FRAME_HEADER + length) {
+                    ByteBuffer larger = ByteBuffer.allocate(FRAME_HEADER + length);
+                    larger.put(window).flip();
+                    window = larger;
+                }
+                windowEnd = refill(window, windowEnd, FRAME_HEADER + length);
+            }
+            int offset = window.arrayOffset() + window.position() + FRAME_HEADER;
+            crc.reset();
+            crc.update(window.array(), offset, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            ByteBuffer body = window.duplicate();
+            body.position(window.position() + FRAME_HEADER).limit(window.position() + FRAME_HEADER + length);
+            source.bytes = body;
+            applyRecord(new SnapshotReader(source, length));
+            window.position(window.position() + FRAME_HEADER + length);
+            position += FRAME_HEADER + length;
+            replayed++;
+        }
+        if (position < size) {
+            System.err.println("Write-ahead log " + filePath + ": dropping " + (size - position)
+                    + " bytes of torn or corrupt records after record " + replayed);
+            channel.truncate(position);
+            channel.force(true);
+        }
+        return replayed;
+    }
+
+    /**
+     * Keep the window's unread bytes and read more after them until it holds
+     * at least the given number of bytes.
+     *
+     * @return the file offset after the window's last byte
+     */
+    private long refill(ByteBuffer window, long windowEnd, int needed) throws IOException {
+        window.compact();
+        while (window.position() < needed) {
+            int read = channel.read(window, windowEnd);
+            if (read < 0) {
+                throw new IOException("Unexpected end of write-ahead log " + filePath);
+            }
+            windowEnd += read;
+        }
+        window.flip();
+        return windowEnd;
+    }
+
+    private void applyRecord(SnapshotReader in) throws IOException {
+        in.readLong();
+        int op = in.readByte();
+        String store = in.readString();
+        String key = in.readString();
+        Target<?> target = targets.get(store);
+        if (target != null) {
+            target.apply(op, key, in);
+        }
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int extra) {
+        if (buffer.remaining() >= extra) {
+            return buffer;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + extra));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    /**
+     * Index that logs its store's mutations.
+     */
+    private final class LoggingIndex<T> implements StoreIndex<T> {
+        private final String name;
+        private final SnapshotCodec<T> codec;
+        private volatile boolean live;
+
+        private LoggingIndex(String name, SnapshotCodec<T> codec) {
+            this.name = name;
+            this.codec = codec;
+        }
+
+        @Override
+        public void put(String key, T entity) {
+            log(PUT, key, entity);
+        }
+
+        @Override
+        public void remove(String key) {
+            log(DELETE, key, null);
+        }
+
+        @Override
+        public void clear() {
+            log(CLEAR, "", null);
+        }
+
+        private void log(byte op, String key, T entity) {
+            if (replaying || !live) {
+                return;
+            }
+            long lsn = append(op, name, key, entity, codec);
+            if (groupCommitMillis == 0) {
+                try {
+                    awaitDurable(lsn);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot commit to write-ahead log " + filePath, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * An attached store and how to apply its records.
+     */
+    private static final class Target<T> {
+        private final DataStore<T> store;
+        private final SnapshotCodec<T> codec;
+        private final ReplayListener<T> listener;
+
+        private Target(DataStore<T> store, SnapshotCodec<T> codec, ReplayListener<T> listener) {
+            this.store = store;
+            this.codec = codec;
+            this.listener = listener;
+        }
+
+        private void apply(int op, String key, SnapshotReader in) throws IOException {
+            T before = store.get(key);
+            T after = null;
+            if (op == PUT) {
+                after = codec.read(in, in.readVarInt());
+                store.add(key, after);
+            } else if (op == DELETE) {
+                store.delete(key);
+            } else if (op == CLEAR) {
+                store.clear();
+            } else {
+                throw new IOException("Unknown write-ahead log operation " + op);
+            }
+            if (listener != null && op != CLEAR) {
+                listener.replayed(before, after);
+            }
+        }
+    }
+
+    /**
+     * Growable in-memory channel that record payloads are encoded into.
+     */
+    private static final class ByteSink implements WritableByteChannel {
+        private byte[] bytes = new byte[4096];
+        private int length;
+
+        private void reset() {
+            length = 0;
+        }
+
+        @Override
+        public int write(ByteBuffer source) {
+            int count = source.remaining();
+            if (length + count > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+            }
+            source.get(bytes, length, count);
+            length += count;
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Channel over one record's payload.
+     */
+    private static final class ByteSource implements ReadableByteChannel {
+        private ByteBuffer bytes;
+
+        @Override
+        public int read(ByteBuffer target) {
+            if (!bytes.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(target.remaining(), bytes.remaining());
+            ByteBuffer slice = bytes.duplicate();
+            slice.limit(slice.position() + count);
+            target.put(slice);
+            bytes.position(bytes.position() + count);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Functional interface told about each change applied during replay
+     */
+    @FunctionalInterface
+    public interface ReplayListener<T> {
+        /**
+         * @param before the entity before the change, or null
+         * @param after the entity after the change, or null for a delete
+         */
+        void replayed(T before, T after);
+    }
+}